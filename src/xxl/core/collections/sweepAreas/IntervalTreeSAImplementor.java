@@ -0,0 +1,382 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.sweepAreas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import xxl.core.functions.Function;
+
+/**
+ * An implementation of the interface {@link SweepAreaImplementor} based on
+ * an interval tree. The intervals are kept in a randomized balanced search
+ * tree (treap) ordered by their lower bounds, where every node additionally
+ * stores the minimal and the maximal upper bound of its subtree. A query
+ * descends only into the subtrees whose maximal upper bound reaches the
+ * query range and stops at the first lower bound beyond it; an expiration
+ * descends only into the subtrees whose minimal upper bound is smaller than
+ * the sweep position. Both operations need <i>O(log n + k)</i> expected time
+ * for <i>k</i> resulting elements.
+ * 
+ * @see RangeSAImplementor
+ * @see RangeSweepArea
+ */
+public class IntervalTreeSAImplementor<E> extends RangeSAImplementor<E> {
+
+	/**
+	 * A node of the interval tree.
+	 */
+	protected class Node {
+
+		/**
+		 * The element.
+		 */
+		protected E element;
+
+		/**
+		 * The lower bound of the interval of the element.
+		 */
+		protected double low;
+
+		/**
+		 * The upper bound of the interval of the element.
+		 */
+		protected double high;
+
+		/**
+		 * The minimal upper bound of the subtree.
+		 */
+		protected double minHigh;
+
+		/**
+		 * The maximal upper bound of the subtree.
+		 */
+		protected double maxHigh;
+
+		/**
+		 * The random priority of the node (the heap order of the treap).
+		 */
+		protected int priority;
+
+		/**
+		 * The left and right subtree.
+		 */
+		protected Node left, right;
+
+		/**
+		 * Creates a new leaf holding the given element.
+		 * 
+		 * @param element The element.
+		 * @param low The lower bound of the interval of the element.
+		 * @param high The upper bound of the interval of the element.
+		 */
+		protected Node(E element, double low, double high) {
+			this.element = element;
+			this.low = low;
+			this.high = minHigh = maxHigh = high;
+			this.priority = random.nextInt();
+		}
+
+		/**
+		 * Recomputes the bounds of the subtree from the children.
+		 */
+		protected void update() {
+			minHigh = maxHigh = high;
+			if (left != null) {
+				minHigh = Math.min(minHigh, left.minHigh);
+				maxHigh = Math.max(maxHigh, left.maxHigh);
+			}
+			if (right != null) {
+				minHigh = Math.min(minHigh, right.minHigh);
+				maxHigh = Math.max(maxHigh, right.maxHigh);
+			}
+		}
+	}
+
+	/**
+	 * The root of the interval tree.
+	 */
+	protected Node root;
+
+	/**
+	 * The number of elements.
+	 */
+	protected int size;
+
+	/**
+	 * The random number generator delivering the priorities of the nodes.
+	 */
+	protected Random random;
+
+	/**
+	 * A flag reporting the success of the last removal.
+	 */
+	private boolean removed;
+
+	/**
+	 * Constructs a new IntervalTreeSAImplementor.
+	 * 
+	 * @param low The function delivering the lower bound of the interval of
+	 * 		  an element.
+	 * @param high The function delivering the upper bound of the interval of
+	 * 		  an element.
+	 * @param queryLow The functions delivering the lower bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param queryHigh The functions delivering the upper bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 */
+	public IntervalTreeSAImplementor(Function<? super E, ? extends Number> low, Function<? super E, ? extends Number> high, Function<? super E, ? extends Number>[] queryLow, Function<? super E, ? extends Number>[] queryHigh) {
+		super(low, high, queryLow, queryHigh);
+		this.random = new Random();
+	}
+
+	/**
+	 * Inserts the given element into the interval tree.
+	 * 
+	 * @param o The object to be inserted.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the insertion due to the passed argument.
+	 */
+	@Override
+	public void insert(E o) throws IllegalArgumentException {
+		root = insert(root, new Node(o, low(o), high(o)));
+		size++;
+	}
+
+	/**
+	 * Inserts a node into the given subtree.
+	 * 
+	 * @param node The root of the subtree.
+	 * @param leaf The new node.
+	 * @return The new root of the subtree.
+	 */
+	protected Node insert(Node node, Node leaf) {
+		if (node == null)
+			return leaf;
+		if (leaf.low < node.low) {
+			node.left = insert(node.left, leaf);
+			if (node.left.priority > node.priority)
+				return rotateRight(node);
+		}
+		else {
+			node.right = insert(node.right, leaf);
+			if (node.right.priority > node.priority)
+				return rotateLeft(node);
+		}
+		node.update();
+		return node;
+	}
+
+	/**
+	 * Rotates the given node to the right.
+	 * 
+	 * @param node The node.
+	 * @return The new root of the subtree.
+	 */
+	protected Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		left.update();
+		return left;
+	}
+
+	/**
+	 * Rotates the given node to the left.
+	 * 
+	 * @param node The node.
+	 * @return The new root of the subtree.
+	 */
+	protected Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		right.update();
+		return right;
+	}
+
+	/**
+	 * Merges two subtrees, where all lower bounds of the first one are not
+	 * greater than those of the second one.
+	 * 
+	 * @param left The left subtree.
+	 * @param right The right subtree.
+	 * @return The root of the merged tree.
+	 */
+	protected Node merge(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.update();
+			return left;
+		}
+		right.left = merge(left, right.left);
+		right.update();
+		return right;
+	}
+
+	/**
+	 * Removes the specified element from the interval tree.
+	 * 
+	 * @param o The object to be removed.
+	 * @return <tt>True</tt> if the removal has been successful, otherwise <tt>false</tt>.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the removal due to the passed argument.
+	 */
+	@Override
+	public boolean remove(E o) throws IllegalArgumentException {
+		removed = false;
+		root = remove(root, o, low(o));
+		if (removed)
+			size--;
+		return removed;
+	}
+
+	/**
+	 * Removes the specified element from the given subtree.
+	 * 
+	 * @param node The root of the subtree.
+	 * @param o The object to be removed.
+	 * @param low The lower bound of the interval of the object.
+	 * @return The new root of the subtree.
+	 */
+	protected Node remove(Node node, E o, double low) {
+		if (node == null)
+			return null;
+		if (low < node.low)
+			node.left = remove(node.left, o, low);
+		else if (low > node.low)
+			node.right = remove(node.right, o, low);
+		else if (equals.invoke(o, node.element)) {
+			removed = true;
+			return merge(node.left, node.right);
+		}
+		else {
+			// equal lower bounds may be located in both subtrees
+			node.left = remove(node.left, o, low);
+			if (!removed)
+				node.right = remove(node.right, o, low);
+		}
+		node.update();
+		return node;
+	}
+
+	@Override
+	protected List<E> range(double low, double high) {
+		List<E> result = new ArrayList<E>();
+		range(root, low, high, result);
+		return result;
+	}
+
+	/**
+	 * Collects the elements of the given subtree overlapping the given range.
+	 * 
+	 * @param node The root of the subtree.
+	 * @param low The lower bound of the range.
+	 * @param high The upper bound of the range.
+	 * @param result The list receiving the elements.
+	 */
+	protected void range(Node node, double low, double high, List<E> result) {
+		while (node != null && node.maxHigh >= low) {
+			range(node.left, low, high, result);
+			if (node.low > high)
+				return;
+			if (node.high >= low)
+				result.add(node.element);
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Removes all elements whose upper bound is smaller than the given
+	 * sweep position.
+	 * 
+	 * @param position The sweep position.
+	 * @return The removed elements.
+	 */
+	@Override
+	public List<E> expire(double position) {
+		List<E> result = new ArrayList<E>();
+		root = expire(root, position, result);
+		size -= result.size();
+		return result;
+	}
+
+	/**
+	 * Removes the expired elements from the given subtree.
+	 * 
+	 * @param node The root of the subtree.
+	 * @param position The sweep position.
+	 * @param result The list receiving the removed elements.
+	 * @return The new root of the subtree.
+	 */
+	protected Node expire(Node node, double position, List<E> result) {
+		if (node == null || node.minHigh >= position)
+			return node;
+		node.left = expire(node.left, position, result);
+		node.right = expire(node.right, position, result);
+		if (node.high < position) {
+			result.add(node.element);
+			return merge(node.left, node.right);
+		}
+		node.update();
+		return node;
+	}
+
+	/**
+	 * Removes all elements from the interval tree.
+	 */
+	@Override
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	/**
+	 * Closes this implementor. In this case,
+	 * only {@link #clear()} is executed.
+	 */
+	@Override
+	public void close() {
+		clear();
+	}
+
+	/**
+	 * Returns the number of elements of the interval tree.
+	 * 
+	 * @return The size.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+}
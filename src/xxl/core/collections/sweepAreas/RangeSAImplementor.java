@@ -0,0 +1,246 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.sweepAreas;
+
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.functions.Function;
+
+/**
+ * An abstract implementation of the interface {@link SweepAreaImplementor}
+ * for non-equi predicates like band joins or interval overlaps. Every
+ * element of the SweepArea is described by an interval
+ * <code>[low(e), high(e)]</code> (a point if both functions deliver the same
+ * value) and every query object <code>o</code> of input <code>ID</code> by a
+ * query range <code>[queryLow[ID](o), queryHigh[ID](o)]</code>. A query
+ * only inspects the elements whose intervals overlap the query range; they
+ * are finally checked by the query predicate of the input as usual.
+ * 
+ * <p>If the query objects are processed in ascending order of their lower
+ * bounds (as in a sweep), an element whose upper bound is smaller than the
+ * lower bound of the current query range will not qualify any more. Such
+ * elements are removed by {@link #expire(double)}, which is used by a
+ * {@link RangeSweepArea} for its reorganization instead of a sequential
+ * scan.</p>
+ *
+ * @see RangeSweepArea
+ * @see IntervalTreeSAImplementor
+ * @see SegmentTreeSAImplementor
+ * @see SortedArraySAImplementor
+ */
+public abstract class RangeSAImplementor<E> extends AbstractSAImplementor<E> {
+
+	/**
+	 * The function delivering the lower bound of the interval of an
+	 * element.
+	 */
+	protected Function<? super E, ? extends Number> low;
+
+	/**
+	 * The function delivering the upper bound of the interval of an
+	 * element.
+	 */
+	protected Function<? super E, ? extends Number> high;
+
+	/**
+	 * The functions delivering the lower bound of the query range of a query
+	 * object, one for each input ID.
+	 */
+	protected Function<? super E, ? extends Number>[] queryLow;
+
+	/**
+	 * The functions delivering the upper bound of the query range of a query
+	 * object, one for each input ID.
+	 */
+	protected Function<? super E, ? extends Number>[] queryHigh;
+
+	/**
+	 * Constructs a new RangeSAImplementor.
+	 * 
+	 * @param low The function delivering the lower bound of the interval of
+	 * 		  an element.
+	 * @param high The function delivering the upper bound of the interval of
+	 * 		  an element.
+	 * @param queryLow The functions delivering the lower bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param queryHigh The functions delivering the upper bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 */
+	public RangeSAImplementor(Function<? super E, ? extends Number> low, Function<? super E, ? extends Number> high, Function<? super E, ? extends Number>[] queryLow, Function<? super E, ? extends Number>[] queryHigh) {
+		this.low = low;
+		this.high = high;
+		this.queryLow = queryLow;
+		this.queryHigh = queryHigh;
+	}
+
+	/**
+	 * Returns the lower bound of the interval of the given element.
+	 * 
+	 * @param o The element.
+	 * @return The lower bound.
+	 */
+	protected double low(E o) {
+		return low.invoke(o).doubleValue();
+	}
+
+	/**
+	 * Returns the upper bound of the interval of the given element.
+	 * 
+	 * @param o The element.
+	 * @return The upper bound.
+	 */
+	protected double high(E o) {
+		return high.invoke(o).doubleValue();
+	}
+
+	/**
+	 * Returns the lower bound of the query range of the given query object.
+	 * 
+	 * @param o The query object.
+	 * @param ID The ID of the input of the query object.
+	 * @return The lower bound of the query range.
+	 */
+	public double queryLow(E o, int ID) {
+		return queryLow[ID].invoke(o).doubleValue();
+	}
+
+	/**
+	 * Returns the upper bound of the query range of the given query object.
+	 * 
+	 * @param o The query object.
+	 * @param ID The ID of the input of the query object.
+	 * @return The upper bound of the query range.
+	 */
+	public double queryHigh(E o, int ID) {
+		return queryHigh[ID].invoke(o).doubleValue();
+	}
+
+	/**
+	 * Returns all elements whose intervals overlap the given range.
+	 * 
+	 * @param low The lower bound of the range.
+	 * @param high The upper bound of the range.
+	 * @return The elements overlapping the range.
+	 */
+	protected abstract List<E> range(double low, double high);
+
+	/**
+	 * Removes all elements whose upper bound is smaller than the given
+	 * sweep position.
+	 * 
+	 * @param position The sweep position.
+	 * @return The removed elements.
+	 */
+	public abstract List<E> expire(double position);
+
+	/**
+	 * Returns an iterator over the given candidates whose <code>remove</code>
+	 * method removes the last returned element from this implementor.
+	 * 
+	 * @param candidates The candidates.
+	 * @return An iterator over the candidates.
+	 */
+	protected Iterator<E> candidates(final List<E> candidates) {
+		if (candidates.isEmpty())
+			return new EmptyCursor<E>();
+		return new AbstractCursor<E>() {
+			int index = 0;
+
+			@Override
+			public boolean hasNextObject() {
+				return index < candidates.size();
+			}
+
+			@Override
+			public E nextObject() {
+				return candidates.get(index++);
+			}
+
+			@Override
+			public void remove() throws IllegalStateException, UnsupportedOperationException {
+				super.remove();
+				RangeSAImplementor.this.remove(candidates.get(index-1));
+			}
+
+			@Override
+			public boolean supportsRemove() {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Queries this implementor with the help of the query range of the
+	 * given object. The elements overlapping the query range are filtered
+	 * by the query predicate of the input.
+	 * 
+	 * @param o The query object.
+	 * @param ID An ID determining from which input this method
+	 * 		is triggered.
+	 * @return An iterator delivering all matching elements.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the query operation due to the passed argument.
+	 * @see #filter(Iterator, Object, int)
+	 */
+	@Override
+	public Iterator<E> query(E o, int ID) throws IllegalArgumentException {
+		if (size() == 0)
+			return new EmptyCursor<E>();
+		return filter(candidates(range(queryLow(o, ID), queryHigh(o, ID))), o, ID);
+	}
+
+	/**
+	 * Queries this implementor with the help of the query range of the
+	 * first query object. The elements overlapping the query range are
+	 * filtered by the query predicates of all query objects.
+	 * 
+	 * @param os The query objects.
+	 * @param IDs The IDs of the inputs of the query objects.
+	 * @param valid The number of valid query objects.
+	 * @return An iterator delivering all matching elements.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the query operation due to the passed arguments.
+	 */
+	@Override
+	public Iterator<E> query(E[] os, int[] IDs, int valid) throws IllegalArgumentException {
+		if (size() == 0)
+			return new EmptyCursor<E>();
+		return filter(candidates(range(queryLow(os[0], IDs[0]), queryHigh(os[0], IDs[0]))), os, IDs, valid);
+	}
+
+	/**
+	 * Returns an iterator over all elements of this implementor.
+	 * 
+	 * @return An iterator over all elements.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return candidates(range(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+	}
+}
@@ -0,0 +1,146 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.sweepAreas;
+
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.predicates.Equal;
+import xxl.core.predicates.Predicate;
+
+/**
+ * A SweepArea for non-equi predicates like band joins or interval overlaps,
+ * which is based on a {@link RangeSAImplementor}. A query only inspects the
+ * elements whose intervals overlap the query range of the query object.
+ * Instead of scanning all elements, the expiration and reorganization
+ * remove the elements whose upper bound is smaller than the lower bound of
+ * the query range of <code>currentStatus</code>, i.e., the query objects
+ * have to arrive in ascending order of the lower bounds of their query
+ * ranges.
+ * 
+ * @see RangeSAImplementor
+ * @see ImplementorBasedSweepArea
+ */
+public class RangeSweepArea<E> extends ImplementorBasedSweepArea<E> {
+
+	/**
+	 * Returns the remove-predicates of a RangeSweepArea, which are fulfilled
+	 * if the upper bound of an element is smaller than the lower bound of the
+	 * query range of the current status.
+	 * 
+	 * @param impl The underlying implementor.
+	 * @param dim The number of inputs.
+	 * @return The remove-predicates.
+	 */
+	protected static <E> Predicate<? super E>[] removePredicates(final RangeSAImplementor<E> impl, int dim) {
+		Predicate<? super E>[] predicates = new Predicate[dim];
+		for (int i = 0; i < dim; i++) {
+			final int ID = i;
+			predicates[i] = new AbstractPredicate<E>() {
+				@Override
+				public boolean invoke(E o, E currentStatus) {
+					return impl.high(o) < impl.queryLow(currentStatus, ID);
+				}
+			};
+		}
+		return predicates;
+	}
+
+	/**
+	 * Returns query-predicates that are fulfilled if the interval of an
+	 * element overlaps the query range of the query object.
+	 * 
+	 * @param impl The underlying implementor.
+	 * @param dim The number of inputs.
+	 * @return The query-predicates.
+	 */
+	public static <E> Predicate<? super E>[] overlapPredicates(final RangeSAImplementor<E> impl, int dim) {
+		Predicate<? super E>[] predicates = new Predicate[dim];
+		for (int i = 0; i < dim; i++) {
+			final int ID = i;
+			predicates[i] = new AbstractPredicate<E>() {
+				@Override
+				public boolean invoke(E o, E query) {
+					return impl.low(o) <= impl.queryHigh(query, ID) && impl.high(o) >= impl.queryLow(query, ID);
+				}
+			};
+		}
+		return predicates;
+	}
+
+	/**
+	 * Constructs a new RangeSweepArea.
+	 * 
+	 * @param impl The underlying implementor.
+	 * @param ID The ID of this SweepArea.
+	 * @param selfReorganize A flag to determine if this SweepArea can reorganize itself.
+	 * @param queryPredicates An array of binary query-predicates used to probe this SweepArea. 
+	 * 		  They are only evaluated for the elements overlapping the query range.
+	 * @param equals The predicate used to determine equality of objects within the SweepArea.
+	 */
+	public RangeSweepArea(RangeSAImplementor<E> impl, int ID, boolean selfReorganize, Predicate<? super E>[] queryPredicates, Predicate<? super E> equals) {
+		super(impl, ID, selfReorganize, queryPredicates, removePredicates(impl, queryPredicates.length), equals);
+	}
+
+	/**
+	 * Constructs a new RangeSweepArea whose elements qualify if their
+	 * intervals overlap the query range.
+	 * 
+	 * @param impl The underlying implementor.
+	 * @param ID The ID of this SweepArea.
+	 * @param selfReorganize A flag to determine if this SweepArea can reorganize itself.
+	 * @param dim The number of inputs.
+	 */
+	public RangeSweepArea(RangeSAImplementor<E> impl, int ID, boolean selfReorganize, int dim) {
+		this(impl, ID, selfReorganize, overlapPredicates(impl, dim), new Equal<E>());
+	}
+
+	/**
+	 * Removes the elements whose upper bound is smaller than the lower bound
+	 * of the query range of <code>currentStatus</code> and returns them.
+	 * The elements are removed from the SweepArea immediately.
+	 * 
+	 * @param currentStatus The object containing the necessary information
+	 * 		to detect expired elements.
+	 * @param ID An ID determining from which input this method
+	 * 		is triggered.
+	 * @return an iteration over the removed elements.
+	 * @throws IllegalStateException Throws an IllegalStateException if
+	 * 		   this method is called at an invalid state.
+	 */
+	@Override
+	public Iterator<E> expire(E currentStatus, int ID) throws IllegalStateException {
+		if (ID == this.ID && !selfReorganize)
+			return new EmptyCursor<E>();
+		RangeSAImplementor<E> impl = (RangeSAImplementor<E>)this.impl;
+		List<E> expired = impl.expire(impl.queryLow(currentStatus, ID));
+		for (E o : expired)
+			outerRemove(o);
+		return expired.iterator();
+	}
+}
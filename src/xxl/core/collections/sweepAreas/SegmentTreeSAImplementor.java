@@ -0,0 +1,419 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.sweepAreas;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import xxl.core.functions.Function;
+
+/**
+ * An implementation of the interface {@link SweepAreaImplementor} based on
+ * a dynamic segment tree over the universe <code>[min, max]</code>. The
+ * nodes of the tree are created on demand by halving the range of their
+ * parent. An interval is stored in the maximal nodes whose ranges are
+ * covered by the interval (at most two per level); at the maximal depth of
+ * the tree a node also stores the intervals that only overlap its range.
+ * Hence, the maximal depth determines the resolution of the tree: the leaves
+ * should not be considerably wider than the typical interval.
+ * 
+ * <p>A query visits the nodes whose ranges overlap the query range. Since an
+ * interval can be stored in several of these nodes, it is only reported by
+ * the node containing its <i>reference point</i>, i.e., the maximum of its
+ * lower bound and the lower bound of the query range (like the reference
+ * point method of the {@link xxl.core.spatial.cursors.PlaneSweep plane-sweep}),
+ * so no duplicates are produced.</p>
+ * 
+ * <p>The elements are additionally kept in a priority queue ordered by their
+ * upper bounds, so an expiration only touches the expired elements. Expired
+ * and removed elements are marked and physically removed from the nodes
+ * when these are visited by the next query; if the marked elements outnumber
+ * the remaining ones, the tree is rebuilt.</p>
+ * 
+ * @see RangeSAImplementor
+ * @see RangeSweepArea
+ */
+public class SegmentTreeSAImplementor<E> extends RangeSAImplementor<E> {
+
+	/**
+	 * The default maximal depth of the segment tree.
+	 */
+	public static final int DEFAULT_DEPTH = 20;
+
+	/**
+	 * An element of the segment tree together with its interval.
+	 */
+	protected class Entry {
+
+		/**
+		 * The element.
+		 */
+		protected E element;
+
+		/**
+		 * The lower bound of the interval of the element.
+		 */
+		protected double low;
+
+		/**
+		 * The upper bound of the interval of the element.
+		 */
+		protected double high;
+
+		/**
+		 * A flag marking expired and removed elements.
+		 */
+		protected boolean removed;
+
+		/**
+		 * Creates a new entry.
+		 * 
+		 * @param element The element.
+		 */
+		protected Entry(E element) {
+			this.element = element;
+			this.low = low(element);
+			this.high = high(element);
+		}
+	}
+
+	/**
+	 * A node of the segment tree covering the range <code>[from, to)</code>.
+	 */
+	protected class Node {
+
+		/**
+		 * The range of the node.
+		 */
+		protected double from, to;
+
+		/**
+		 * The children of the node (or <code>null</code> if they have not been
+		 * created yet).
+		 */
+		protected Node left, right;
+
+		/**
+		 * The entries stored in the node (or <code>null</code>).
+		 */
+		protected List<Entry> entries;
+
+		/**
+		 * Creates a new node covering the given range.
+		 * 
+		 * @param from The lower bound of the range (inclusive).
+		 * @param to The upper bound of the range (exclusive).
+		 */
+		protected Node(double from, double to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * The lower bound of the universe.
+	 */
+	protected double min;
+
+	/**
+	 * The upper bound of the universe.
+	 */
+	protected double max;
+
+	/**
+	 * The maximal depth of the segment tree.
+	 */
+	protected int depth;
+
+	/**
+	 * The root of the segment tree.
+	 */
+	protected Node root;
+
+	/**
+	 * The entries ordered by the upper bounds of their intervals.
+	 */
+	protected PriorityQueue<Entry> queue;
+
+	/**
+	 * The number of elements.
+	 */
+	protected int size;
+
+	/**
+	 * The number of entries that are marked but possibly still stored in the
+	 * nodes.
+	 */
+	protected int removed;
+
+	/**
+	 * Constructs a new SegmentTreeSAImplementor.
+	 * 
+	 * @param low The function delivering the lower bound of the interval of
+	 * 		  an element.
+	 * @param high The function delivering the upper bound of the interval of
+	 * 		  an element.
+	 * @param queryLow The functions delivering the lower bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param queryHigh The functions delivering the upper bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param min The lower bound of the universe containing all intervals.
+	 * @param max The upper bound of the universe containing all intervals.
+	 * @param depth The maximal depth of the segment tree, i.e., the leaves
+	 * 		  cover <code>(max-min)/2<sup>depth</sup></code>.
+	 */
+	public SegmentTreeSAImplementor(Function<? super E, ? extends Number> low, Function<? super E, ? extends Number> high, Function<? super E, ? extends Number>[] queryLow, Function<? super E, ? extends Number>[] queryHigh, double min, double max, int depth) {
+		super(low, high, queryLow, queryHigh);
+		if (!(min <= max))
+			throw new IllegalArgumentException("the universe must not be empty");
+		this.min = min;
+		this.max = max;
+		this.depth = depth;
+		this.queue = new PriorityQueue<Entry>(16, new Comparator<Entry>() {
+			public int compare(Entry entry0, Entry entry1) {
+				return Double.compare(entry0.high, entry1.high);
+			}
+		});
+	}
+
+	/**
+	 * Constructs a new SegmentTreeSAImplementor with a maximal depth of
+	 * {@link #DEFAULT_DEPTH}.
+	 * 
+	 * @param low The function delivering the lower bound of the interval of
+	 * 		  an element.
+	 * @param high The function delivering the upper bound of the interval of
+	 * 		  an element.
+	 * @param queryLow The functions delivering the lower bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param queryHigh The functions delivering the upper bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param min The lower bound of the universe containing all intervals.
+	 * @param max The upper bound of the universe containing all intervals.
+	 */
+	public SegmentTreeSAImplementor(Function<? super E, ? extends Number> low, Function<? super E, ? extends Number> high, Function<? super E, ? extends Number>[] queryLow, Function<? super E, ? extends Number>[] queryHigh, double min, double max) {
+		this(low, high, queryLow, queryHigh, min, max, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Inserts the given element into the segment tree.
+	 * 
+	 * @param o The object to be inserted.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if the interval of the element is not contained in the universe.
+	 */
+	@Override
+	public void insert(E o) throws IllegalArgumentException {
+		Entry entry = new Entry(o);
+		if (entry.low < min || entry.high > max || entry.low > entry.high)
+			throw new IllegalArgumentException("the interval of the element is not contained in the universe");
+		insert(entry);
+		queue.add(entry);
+		size++;
+	}
+
+	/**
+	 * Stores the given entry in the nodes covered by its interval.
+	 * 
+	 * @param entry The entry.
+	 */
+	protected void insert(Entry entry) {
+		if (root == null)
+			root = new Node(min, Math.nextUp(max));
+		insert(root, entry, Math.nextUp(entry.high), 0);
+	}
+
+	/**
+	 * Stores the given entry in the given subtree.
+	 * 
+	 * @param node The root of the subtree.
+	 * @param entry The entry.
+	 * @param to The exclusive upper bound of the interval of the entry.
+	 * @param depth The depth of the node.
+	 */
+	protected void insert(Node node, Entry entry, double to, int depth) {
+		double middle = node.from + (node.to - node.from)/2;
+		if (entry.low <= node.from && node.to <= to || depth == this.depth || middle <= node.from || middle >= node.to) {
+			if (node.entries == null)
+				node.entries = new ArrayList<Entry>(4);
+			node.entries.add(entry);
+			return;
+		}
+		if (entry.low < middle) {
+			if (node.left == null)
+				node.left = new Node(node.from, middle);
+			insert(node.left, entry, to, depth+1);
+		}
+		if (to > middle) {
+			if (node.right == null)
+				node.right = new Node(middle, node.to);
+			insert(node.right, entry, to, depth+1);
+		}
+	}
+
+	/**
+	 * Removes the specified element from the segment tree. The element is
+	 * searched in the nodes containing the lower bound of its interval.
+	 * 
+	 * @param o The object to be removed.
+	 * @return <tt>True</tt> if the removal has been successful, otherwise <tt>false</tt>.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the removal due to the passed argument.
+	 */
+	@Override
+	public boolean remove(E o) throws IllegalArgumentException {
+		double low = low(o);
+		Node node = root;
+		if (node == null || low < node.from || low >= node.to)
+			return false;
+		while (node != null) {
+			if (node.entries != null)
+				for (Entry entry : node.entries)
+					if (!entry.removed && equals.invoke(o, entry.element)) {
+						mark(entry);
+						return true;
+					}
+			node = low < node.from + (node.to - node.from)/2 ? node.left : node.right;
+		}
+		return false;
+	}
+
+	/**
+	 * Marks the given entry as removed.
+	 * 
+	 * @param entry The entry.
+	 */
+	protected void mark(Entry entry) {
+		entry.removed = true;
+		size--;
+		if (++removed > size && removed > 64)
+			rebuild();
+	}
+
+	/**
+	 * Rebuilds the segment tree from the entries that are not marked.
+	 */
+	protected void rebuild() {
+		List<Entry> entries = new ArrayList<Entry>(size);
+		for (Entry entry : queue)
+			if (!entry.removed)
+				entries.add(entry);
+		root = null;
+		queue.clear();
+		for (Entry entry : entries) {
+			insert(entry);
+			queue.add(entry);
+		}
+		removed = 0;
+	}
+
+	@Override
+	protected List<E> range(double low, double high) {
+		List<E> result = new ArrayList<E>();
+		range(root, low, high, Math.nextUp(high), result);
+		return result;
+	}
+
+	/**
+	 * Collects the elements of the given subtree overlapping the given range.
+	 * 
+	 * @param node The root of the subtree.
+	 * @param low The lower bound of the range.
+	 * @param high The upper bound of the range.
+	 * @param to The exclusive upper bound of the range.
+	 * @param result The list receiving the elements.
+	 */
+	protected void range(Node node, double low, double high, double to, List<E> result) {
+		if (node == null || node.to <= low || node.from >= to)
+			return;
+		if (node.entries != null) {
+			int size = 0;
+			for (Entry entry : node.entries)
+				if (!entry.removed) {
+					node.entries.set(size++, entry);
+					double reference = Math.max(entry.low, low);
+					if (node.from <= reference && reference < node.to && entry.low <= high && entry.high >= low)
+						result.add(entry.element);
+				}
+			// drop the marked entries
+			for (int i = node.entries.size(); --i >= size;)
+				node.entries.remove(i);
+		}
+		range(node.left, low, high, to, result);
+		range(node.right, low, high, to, result);
+	}
+
+	/**
+	 * Removes all elements whose upper bound is smaller than the given
+	 * sweep position.
+	 * 
+	 * @param position The sweep position.
+	 * @return The removed elements.
+	 */
+	@Override
+	public List<E> expire(double position) {
+		List<E> result = new ArrayList<E>();
+		while (!queue.isEmpty() && queue.peek().high < position) {
+			Entry entry = queue.poll();
+			if (!entry.removed) {
+				result.add(entry.element);
+				mark(entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all elements from the segment tree.
+	 */
+	@Override
+	public void clear() {
+		root = null;
+		queue.clear();
+		size = removed = 0;
+	}
+
+	/**
+	 * Closes this implementor. In this case,
+	 * only {@link #clear()} is executed.
+	 */
+	@Override
+	public void close() {
+		clear();
+	}
+
+	/**
+	 * Returns the number of elements of the segment tree.
+	 * 
+	 * @return The size.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,232 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.collections.sweepAreas;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import xxl.core.functions.Function;
+
+/**
+ * An implementation of the interface {@link SweepAreaImplementor} for
+ * elements described by a single key (e.g., the timestamp of a band join).
+ * The keys are kept in ascending order in a primitive <code>double</code>
+ * array together with an array of the elements, so a query determines the
+ * first key of its query range by binary search and scans the array up to
+ * the last one. Since the elements expire in ascending order of their keys,
+ * an expiration only advances the start of the occupied part of the arrays.
+ * An element with a key not smaller than the last one is appended; other
+ * insertions shift the greater keys.
+ * 
+ * @see RangeSAImplementor
+ * @see RangeSweepArea
+ */
+public class SortedArraySAImplementor<E> extends RangeSAImplementor<E> {
+
+	/**
+	 * The keys in ascending order.
+	 */
+	protected double[] keys;
+
+	/**
+	 * The elements belonging to the keys.
+	 */
+	protected Object[] elements;
+
+	/**
+	 * The index of the first element.
+	 */
+	protected int from;
+
+	/**
+	 * The index behind the last element.
+	 */
+	protected int to;
+
+	/**
+	 * Constructs a new SortedArraySAImplementor.
+	 * 
+	 * @param key The function delivering the key of an element.
+	 * @param queryLow The functions delivering the lower bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param queryHigh The functions delivering the upper bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param capacity The initial capacity of the arrays.
+	 */
+	public SortedArraySAImplementor(Function<? super E, ? extends Number> key, Function<? super E, ? extends Number>[] queryLow, Function<? super E, ? extends Number>[] queryHigh, int capacity) {
+		super(key, key, queryLow, queryHigh);
+		this.keys = new double[Math.max(capacity, 1)];
+		this.elements = new Object[keys.length];
+	}
+
+	/**
+	 * Constructs a new SortedArraySAImplementor with an initial capacity of
+	 * 16 elements.
+	 * 
+	 * @param key The function delivering the key of an element.
+	 * @param queryLow The functions delivering the lower bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 * @param queryHigh The functions delivering the upper bound of the query
+	 * 		  range of a query object, indexed by the ID of its input.
+	 */
+	public SortedArraySAImplementor(Function<? super E, ? extends Number> key, Function<? super E, ? extends Number>[] queryLow, Function<? super E, ? extends Number>[] queryHigh) {
+		this(key, queryLow, queryHigh, 16);
+	}
+
+	/**
+	 * Returns the index of the first key that is not smaller than the given
+	 * one.
+	 * 
+	 * @param key The key.
+	 * @return The index of the first key not smaller than <code>key</code>.
+	 */
+	protected int search(double key) {
+		int low = from, high = to;
+		while (low < high) {
+			int middle = low + high >>> 1;
+			if (keys[middle] < key)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Inserts the given element at the position of its key.
+	 * 
+	 * @param o The object to be inserted.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the insertion due to the passed argument.
+	 */
+	@Override
+	public void insert(E o) throws IllegalArgumentException {
+		double key = low(o);
+		if (to == keys.length) {
+			if (2*from >= keys.length) {
+				// reuse the space of the expired elements
+				System.arraycopy(keys, from, keys, 0, to-from);
+				System.arraycopy(elements, from, elements, 0, to-from);
+				Arrays.fill(elements, to-from, to, null);
+			}
+			else {
+				double[] newKeys = new double[2*keys.length];
+				Object[] newElements = new Object[newKeys.length];
+				System.arraycopy(keys, from, newKeys, 0, to-from);
+				System.arraycopy(elements, from, newElements, 0, to-from);
+				keys = newKeys;
+				elements = newElements;
+			}
+			to -= from;
+			from = 0;
+		}
+		int index = to;
+		if (to > from && key < keys[to-1]) {
+			index = search(Math.nextUp(key));
+			System.arraycopy(keys, index, keys, index+1, to-index);
+			System.arraycopy(elements, index, elements, index+1, to-index);
+		}
+		keys[index] = key;
+		elements[index] = o;
+		to++;
+	}
+
+	/**
+	 * Removes the specified element from the arrays.
+	 * 
+	 * @param o The object to be removed.
+	 * @return <tt>True</tt> if the removal has been successful, otherwise <tt>false</tt>.
+	 * @throws IllegalArgumentException Throws an IllegalArgumentException
+	 * 		if something goes wrong with the removal due to the passed argument.
+	 */
+	@Override
+	public boolean remove(E o) throws IllegalArgumentException {
+		double key = low(o);
+		for (int i = search(key); i < to && keys[i] == key; i++)
+			if (equals.invoke(o, (E)elements[i])) {
+				System.arraycopy(keys, i+1, keys, i, to-i-1);
+				System.arraycopy(elements, i+1, elements, i, to-i-1);
+				elements[--to] = null;
+				return true;
+			}
+		return false;
+	}
+
+	@Override
+	protected List<E> range(double low, double high) {
+		List<E> result = new ArrayList<E>();
+		for (int i = search(low); i < to && keys[i] <= high; i++)
+			result.add((E)elements[i]);
+		return result;
+	}
+
+	/**
+	 * Removes all elements whose key is smaller than the given sweep
+	 * position.
+	 * 
+	 * @param position The sweep position.
+	 * @return The removed elements.
+	 */
+	@Override
+	public List<E> expire(double position) {
+		int end = search(position);
+		List<E> result = new ArrayList<E>(end-from);
+		for (; from < end; from++) {
+			result.add((E)elements[from]);
+			elements[from] = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all elements from the arrays.
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(elements, from, to, null);
+		from = to = 0;
+	}
+
+	/**
+	 * Closes this implementor. In this case,
+	 * only {@link #clear()} is executed.
+	 */
+	@Override
+	public void close() {
+		clear();
+	}
+
+	/**
+	 * Returns the number of elements.
+	 * 
+	 * @return The size.
+	 */
+	@Override
+	public int size() {
+		return to-from;
+	}
+}
@@ -0,0 +1,62 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import xxl.core.cursors.AbstractCursor;
+
+/**
+ * A skeletal implementation of the interface {@link BatchCursor} storing the
+ * types of the columns. Subclasses have to implement the methods
+ * <code>hasNextObject</code> and <code>nextObject</code> delivering the
+ * batches like every {@link AbstractCursor abstract cursor}.
+ */
+public abstract class AbstractBatchCursor extends AbstractCursor<Batch> implements BatchCursor {
+
+	/**
+	 * The types of the columns of the delivered batches.
+	 */
+	protected Batch.Type[] types;
+
+	/**
+	 * Creates a new batch cursor delivering batches with the given column
+	 * types.
+	 *
+	 * @param types the types of the columns.
+	 */
+	public AbstractBatchCursor(Batch.Type[] types) {
+		this.types = types;
+	}
+
+	/**
+	 * Returns the types of the columns of the batches delivered by this
+	 * cursor.
+	 *
+	 * @return the types of the columns.
+	 */
+	public Batch.Type[] types() {
+		return types;
+	}
+}
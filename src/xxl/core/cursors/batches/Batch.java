@@ -0,0 +1,368 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import java.util.Arrays;
+
+/**
+ * A batch of rows stored column by column in primitive arrays (column
+ * vectors). Columns of the type {@link Type#LONG} are stored in
+ * <code>long</code> arrays, columns of the type {@link Type#DOUBLE} in
+ * <code>double</code> arrays and all other columns in object arrays. Integral
+ * values, dates (as milliseconds) and booleans (as <code>0</code> and
+ * <code>1</code>) should be stored in long columns in order to be processed
+ * without boxing.
+ * 
+ * <p>A batch contains <code>size</code> rows (at most
+ * <code>capacity</code>). Operators like the {@link BatchFilter batch filter}
+ * do not copy the qualifying rows, but set a <i>selection vector</i>
+ * containing the indices of the selected rows in ascending order. The method
+ * {@link #row(int)} maps the position of a selected row to its index in the
+ * column vectors. Columns are numbered from <code>0</code>.</p>
+ * 
+ * <p>Batch cursors usually reuse their batches, so a batch is only valid
+ * until the next batch is requested from the cursor that delivered it.</p>
+ *
+ * @see BatchCursor
+ */
+public class Batch {
+
+	/**
+	 * The types of column vectors.
+	 */
+	public static enum Type {
+
+		/**
+		 * A column stored in a <code>long</code> array.
+		 */
+		LONG,
+
+		/**
+		 * A column stored in a <code>double</code> array.
+		 */
+		DOUBLE,
+
+		/**
+		 * A column stored in an object array.
+		 */
+		OBJECT
+	}
+
+	/**
+	 * The default number of rows of a batch.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Returns a new column vector of the given type.
+	 *
+	 * @param type the type of the column.
+	 * @param capacity the length of the column vector.
+	 * @return a new <code>long</code>, <code>double</code> or object array.
+	 */
+	public static Object newColumn(Type type, int capacity) {
+		switch (type) {
+			case LONG :
+				return new long[capacity];
+			case DOUBLE :
+				return new double[capacity];
+			default :
+				return new Object[capacity];
+		}
+	}
+
+	/**
+	 * The types of the columns.
+	 */
+	protected Type[] types;
+
+	/**
+	 * The column vectors.
+	 */
+	protected Object[] columns;
+
+	/**
+	 * The maximal number of rows.
+	 */
+	protected int capacity;
+
+	/**
+	 * The number of rows.
+	 */
+	protected int size = 0;
+
+	/**
+	 * The selection vector or <code>null</code> if all rows are selected.
+	 */
+	protected int[] selection = null;
+
+	/**
+	 * The number of selected rows.
+	 */
+	protected int count = 0;
+
+	/**
+	 * Creates a new batch backed on the given column vectors.
+	 *
+	 * @param types the types of the columns.
+	 * @param columns the column vectors, which have to match the types and
+	 *        provide at least <code>capacity</code> entries.
+	 * @param capacity the maximal number of rows.
+	 */
+	public Batch(Type[] types, Object[] columns, int capacity) {
+		this.types = types;
+		this.columns = columns;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates a new empty batch allocating its column vectors.
+	 *
+	 * @param types the types of the columns.
+	 * @param capacity the maximal number of rows.
+	 */
+	public Batch(Type[] types, int capacity) {
+		this(types, new Object[types.length], capacity);
+		for (int i = 0; i < types.length; i++)
+			columns[i] = newColumn(types[i], capacity);
+	}
+
+	/**
+	 * Returns the types of the columns.
+	 *
+	 * @return the types of the columns.
+	 */
+	public Type[] types() {
+		return types;
+	}
+
+	/**
+	 * Returns the number of columns.
+	 *
+	 * @return the number of columns.
+	 */
+	public int columns() {
+		return columns.length;
+	}
+
+	/**
+	 * Returns the maximal number of rows.
+	 *
+	 * @return the capacity of the batch.
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of rows (including the rows that are not selected).
+	 *
+	 * @return the number of rows.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets the number of rows and selects all of them.
+	 *
+	 * @param size the number of rows.
+	 */
+	public void setSize(int size) {
+		this.size = size;
+		this.selection = null;
+		this.count = size;
+	}
+
+	/**
+	 * Returns the column vector of the given column.
+	 *
+	 * @param column the column.
+	 * @return the column vector.
+	 */
+	public Object column(int column) {
+		return columns[column];
+	}
+
+	/**
+	 * Returns the column vector of the given long column.
+	 *
+	 * @param column the column.
+	 * @return the column vector.
+	 */
+	public long[] longs(int column) {
+		return (long[])columns[column];
+	}
+
+	/**
+	 * Returns the column vector of the given double column.
+	 *
+	 * @param column the column.
+	 * @return the column vector.
+	 */
+	public double[] doubles(int column) {
+		return (double[])columns[column];
+	}
+
+	/**
+	 * Returns the column vector of the given object column.
+	 *
+	 * @param column the column.
+	 * @return the column vector.
+	 */
+	public Object[] objects(int column) {
+		return (Object[])columns[column];
+	}
+
+	/**
+	 * Returns whether only a part of the rows is selected.
+	 *
+	 * @return <code>true</code> if a selection vector is set.
+	 */
+	public boolean isSelective() {
+		return selection != null;
+	}
+
+	/**
+	 * Returns the selection vector or <code>null</code> if all rows are
+	 * selected.
+	 *
+	 * @return the selection vector.
+	 */
+	public int[] selection() {
+		return selection;
+	}
+
+	/**
+	 * Returns the number of selected rows.
+	 *
+	 * @return the number of selected rows.
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Sets the selection vector.
+	 *
+	 * @param selection the indices of the selected rows in ascending order.
+	 * @param count the number of selected rows.
+	 */
+	public void select(int[] selection, int count) {
+		this.selection = selection;
+		this.count = count;
+	}
+
+	/**
+	 * Returns the index of the selected row at the given position.
+	 *
+	 * @param position the position among the selected rows.
+	 * @return the index of the row in the column vectors.
+	 */
+	public int row(int position) {
+		return selection == null ? position : selection[position];
+	}
+
+	/**
+	 * Returns the value of the given row and column as an object.
+	 *
+	 * @param row the index of the row.
+	 * @param column the column.
+	 * @return the (boxed) value.
+	 */
+	public Object get(int row, int column) {
+		switch (types[column]) {
+			case LONG :
+				return ((long[])columns[column])[row];
+			case DOUBLE :
+				return ((double[])columns[column])[row];
+			default :
+				return ((Object[])columns[column])[row];
+		}
+	}
+
+	/**
+	 * Sets the value of the given row and column. Values of long and double
+	 * columns have to be {@link Number numbers}.
+	 *
+	 * @param row the index of the row.
+	 * @param column the column.
+	 * @param value the value.
+	 */
+	public void set(int row, int column, Object value) {
+		switch (types[column]) {
+			case LONG :
+				((long[])columns[column])[row] = ((Number)value).longValue();
+				break;
+			case DOUBLE :
+				((double[])columns[column])[row] = ((Number)value).doubleValue();
+				break;
+			default :
+				((Object[])columns[column])[row] = value;
+		}
+	}
+
+	/**
+	 * Copies a row of another batch with the same column types into this
+	 * batch.
+	 *
+	 * @param source the batch containing the row.
+	 * @param sourceRow the index of the row in the source batch.
+	 * @param sourceColumn the first column of the source batch to be copied.
+	 * @param targetRow the index of the row in this batch.
+	 * @param targetColumn the first column of this batch to be written.
+	 * @param columns the number of columns to be copied.
+	 */
+	public void copy(Batch source, int sourceRow, int sourceColumn, int targetRow, int targetColumn, int columns) {
+		for (int i = 0; i < columns; i++)
+			switch (types[targetColumn+i]) {
+				case LONG :
+					((long[])this.columns[targetColumn+i])[targetRow] = ((long[])source.columns[sourceColumn+i])[sourceRow];
+					break;
+				case DOUBLE :
+					((double[])this.columns[targetColumn+i])[targetRow] = ((double[])source.columns[sourceColumn+i])[sourceRow];
+					break;
+				default :
+					((Object[])this.columns[targetColumn+i])[targetRow] = ((Object[])source.columns[sourceColumn+i])[sourceRow];
+			}
+	}
+
+	/**
+	 * Returns a string representation of the selected rows.
+	 *
+	 * @return a string representation of the batch.
+	 */
+	public String toString() {
+		StringBuilder string = new StringBuilder("Batch" + Arrays.toString(types) + "[");
+		for (int i = 0; i < count; i++) {
+			string.append(i == 0 ? "(" : ", (");
+			for (int j = 0; j < columns.length; j++)
+				string.append(j == 0 ? "" : ", ").append(get(row(i), j));
+			string.append(')');
+		}
+		return string.append(']').toString();
+	}
+}
@@ -0,0 +1,455 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A vectorized aggregation operator computing count, sum, minimum, maximum
+ * and average of long and double columns, optionally grouped by a long
+ * column. The groups are kept in an open addressing hash table whose
+ * aggregates are stored column-wise in primitive arrays. For every input
+ * batch the group of every selected row is determined first, afterwards the
+ * aggregates are updated one column at a time in tight loops.
+ * 
+ * <p>The output consists of a single batch per {@link Batch#capacity()}
+ * groups; the first column contains the grouping value (if any), the
+ * remaining columns contain the aggregates in the given order. Count
+ * delivers a long column, average a double column and the other aggregates
+ * a column of the type of the aggregated column. A global aggregation of an
+ * empty input delivers no row.</p>
+ *
+ * @see xxl.core.cursors.groupers.HashAggregator
+ */
+public class BatchAggregator extends AbstractBatchCursor {
+
+	/**
+	 * The supported aggregates.
+	 */
+	public static enum Aggregate {
+
+		/**
+		 * The number of rows.
+		 */
+		COUNT,
+
+		/**
+		 * The sum of the values.
+		 */
+		SUM,
+
+		/**
+		 * The minimal value.
+		 */
+		MIN,
+
+		/**
+		 * The maximal value.
+		 */
+		MAX,
+
+		/**
+		 * The average of the values.
+		 */
+		AVG
+	}
+
+	/**
+	 * Returns the column types of the output of an aggregator.
+	 *
+	 * @param types the column types of the input.
+	 * @param group the grouping column or <code>-1</code>.
+	 * @param aggregates the aggregates.
+	 * @param columns the aggregated columns.
+	 * @return the column types of the output.
+	 */
+	protected static Batch.Type[] types(Batch.Type[] types, int group, Aggregate[] aggregates, int[] columns) {
+		if (aggregates.length != columns.length)
+			throw new IllegalArgumentException("aggregates and columns must have the same length");
+		if (group >= 0 && types[group] != Batch.Type.LONG)
+			throw new IllegalArgumentException("the grouping column must be a long column");
+		int offset = group >= 0 ? 1 : 0;
+		Batch.Type[] result = new Batch.Type[offset + aggregates.length];
+		if (group >= 0)
+			result[0] = Batch.Type.LONG;
+		for (int i = 0; i < aggregates.length; i++) {
+			if (aggregates[i] != Aggregate.COUNT && types[columns[i]] == Batch.Type.OBJECT)
+				throw new IllegalArgumentException("object columns cannot be aggregated");
+			result[offset+i] = aggregates[i] == Aggregate.COUNT ?
+				Batch.Type.LONG :
+				aggregates[i] == Aggregate.AVG ?
+					Batch.Type.DOUBLE :
+					types[columns[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * The input batch cursor.
+	 */
+	protected BatchCursor input;
+
+	/**
+	 * The grouping column or <code>-1</code>.
+	 */
+	protected int group;
+
+	/**
+	 * The aggregates.
+	 */
+	protected Aggregate[] aggregates;
+
+	/**
+	 * The aggregated columns.
+	 */
+	protected int[] columns;
+
+	/**
+	 * The capacity of the output batches.
+	 */
+	protected int capacity;
+
+	/**
+	 * The hash table mapping grouping values to group ids (increased by
+	 * one, zero marks an empty slot).
+	 */
+	protected int[] table;
+
+	/**
+	 * The grouping values of the groups.
+	 */
+	protected long[] keys;
+
+	/**
+	 * The number of rows of the groups.
+	 */
+	protected long[] counts;
+
+	/**
+	 * The states of the aggregates. Every entry is a long or double array
+	 * holding the state of an aggregate for every group.
+	 */
+	protected Object[] states;
+
+	/**
+	 * The number of groups.
+	 */
+	protected int groups;
+
+	/**
+	 * The group ids of the rows of the current input batch.
+	 */
+	protected int[] ids;
+
+	/**
+	 * The index of the next group to be returned.
+	 */
+	protected int position;
+
+	/**
+	 * The reused output batch.
+	 */
+	protected Batch batch;
+
+	/**
+	 * Creates a new batch aggregator.
+	 *
+	 * @param input the input batch cursor.
+	 * @param group the long column used for grouping or <code>-1</code> if
+	 *        the whole input forms a single group.
+	 * @param aggregates the aggregates.
+	 * @param columns the columns aggregated by the aggregates (ignored for
+	 *        {@link Aggregate#COUNT}).
+	 * @param capacity the capacity of the output batches.
+	 * @throws IllegalArgumentException if the grouping column is not a long
+	 *         column or an object column is aggregated.
+	 */
+	public BatchAggregator(BatchCursor input, int group, Aggregate[] aggregates, int[] columns, int capacity) {
+		super(types(input.types(), group, aggregates, columns));
+		this.input = input;
+		this.group = group;
+		this.aggregates = aggregates;
+		this.columns = columns;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates a new batch aggregator delivering batches of default capacity.
+	 *
+	 * @param input the input batch cursor.
+	 * @param group the long column used for grouping or <code>-1</code> if
+	 *        the whole input forms a single group.
+	 * @param aggregates the aggregates.
+	 * @param columns the columns aggregated by the aggregates (ignored for
+	 *        {@link Aggregate#COUNT}).
+	 */
+	public BatchAggregator(BatchCursor input, int group, Aggregate[] aggregates, int[] columns) {
+		this(input, group, aggregates, columns, Batch.DEFAULT_CAPACITY);
+	}
+
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+		groups = 0;
+		position = 0;
+		table = group >= 0 ? new int[64] : null;
+		keys = new long[16];
+		counts = new long[16];
+		states = new Object[aggregates.length];
+		for (int i = 0; i < aggregates.length; i++)
+			states[i] = aggregates[i] == Aggregate.COUNT ?
+				null :
+				Batch.newColumn(aggregates[i] == Aggregate.AVG ? Batch.Type.DOUBLE : input.types()[columns[i]], 16);
+		ids = new int[0];
+		while (input.hasNext())
+			aggregate(input.next());
+		input.close();
+		ids = null;
+		batch = new Batch(types, capacity);
+	}
+
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input.close();
+		table = null;
+		keys = counts = null;
+		states = null;
+		batch = null;
+	}
+
+	/**
+	 * Returns the group id of the given grouping value, inserting a new group
+	 * if necessary.
+	 *
+	 * @param key the grouping value.
+	 * @return the group id.
+	 */
+	protected int group(long key) {
+		int mask = table.length-1;
+		int slot = hash(key) & mask;
+		for (int id; (id = table[slot]) != 0; slot = slot+1 & mask)
+			if (keys[id-1] == key)
+				return id-1;
+		int id = newGroup();
+		keys[id] = key;
+		table[slot] = id+1;
+		if (2*groups > table.length)
+			rehash();
+		return id;
+	}
+
+	/**
+	 * Scrambles the bits of a grouping value.
+	 *
+	 * @param key the grouping value.
+	 * @return the hash value.
+	 */
+	protected static int hash(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int)(key ^ key >>> 32);
+	}
+
+	/**
+	 * Doubles the size of the hash table.
+	 */
+	protected void rehash() {
+		table = new int[2*table.length];
+		int mask = table.length-1;
+		for (int id = 0; id < groups; id++) {
+			int slot = hash(keys[id]) & mask;
+			while (table[slot] != 0)
+				slot = slot+1 & mask;
+			table[slot] = id+1;
+		}
+	}
+
+	/**
+	 * Creates a new group with initial aggregate states and returns its id.
+	 *
+	 * @return the id of the new group.
+	 */
+	protected int newGroup() {
+		if (groups == counts.length) {
+			keys = Arrays.copyOf(keys, 2*groups);
+			counts = Arrays.copyOf(counts, 2*groups);
+			for (int i = 0; i < states.length; i++)
+				if (states[i] instanceof long[])
+					states[i] = Arrays.copyOf((long[])states[i], 2*groups);
+				else if (states[i] != null)
+					states[i] = Arrays.copyOf((double[])states[i], 2*groups);
+		}
+		for (int i = 0; i < states.length; i++)
+			if (states[i] instanceof long[])
+				((long[])states[i])[groups] = aggregates[i] == Aggregate.MIN ?
+					Long.MAX_VALUE :
+					aggregates[i] == Aggregate.MAX ? Long.MIN_VALUE : 0;
+			else if (states[i] != null)
+				((double[])states[i])[groups] = aggregates[i] == Aggregate.MIN ?
+					Double.POSITIVE_INFINITY :
+					aggregates[i] == Aggregate.MAX ? Double.NEGATIVE_INFINITY : 0;
+		return groups++;
+	}
+
+	/**
+	 * Adds the selected rows of the given batch to the aggregates.
+	 *
+	 * @param batch the input batch.
+	 */
+	protected void aggregate(Batch batch) {
+		int count = batch.count();
+		if (count == 0)
+			return;
+		if (ids.length < batch.size())
+			ids = new int[batch.capacity()];
+		if (group >= 0) {
+			long[] values = batch.longs(group);
+			for (int j = 0; j < count; j++) {
+				int i = batch.row(j), id = group(values[i]);
+				counts[ids[i] = id]++;
+			}
+		}
+		else {
+			if (groups == 0)
+				newGroup();
+			counts[0] += count;
+		}
+		for (int k = 0; k < aggregates.length; k++) {
+			if (aggregates[k] == Aggregate.COUNT)
+				continue;
+			if (batch.types()[columns[k]] == Batch.Type.LONG)
+				aggregate(batch, aggregates[k], batch.longs(columns[k]), states[k]);
+			else
+				aggregate(batch, aggregates[k], batch.doubles(columns[k]), (double[])states[k]);
+		}
+	}
+
+	/**
+	 * Updates the states of an aggregate of a long column.
+	 *
+	 * @param batch the input batch.
+	 * @param aggregate the aggregate.
+	 * @param values the values of the aggregated column.
+	 * @param states the states of the aggregate.
+	 */
+	protected void aggregate(Batch batch, Aggregate aggregate, long[] values, Object states) {
+		int count = batch.count();
+		boolean grouped = group >= 0;
+		if (aggregate == Aggregate.AVG) {
+			double[] state = (double[])states;
+			for (int j = 0; j < count; j++) {
+				int i = batch.row(j);
+				state[grouped ? ids[i] : 0] += values[i];
+			}
+			return;
+		}
+		long[] state = (long[])states;
+		switch (aggregate) {
+			case SUM :
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					state[grouped ? ids[i] : 0] += values[i];
+				}
+				break;
+			case MIN :
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j), id = grouped ? ids[i] : 0;
+					state[id] = Math.min(state[id], values[i]);
+				}
+				break;
+			default :
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j), id = grouped ? ids[i] : 0;
+					state[id] = Math.max(state[id], values[i]);
+				}
+		}
+	}
+
+	/**
+	 * Updates the states of an aggregate of a double column.
+	 *
+	 * @param batch the input batch.
+	 * @param aggregate the aggregate.
+	 * @param values the values of the aggregated column.
+	 * @param state the states of the aggregate.
+	 */
+	protected void aggregate(Batch batch, Aggregate aggregate, double[] values, double[] state) {
+		int count = batch.count();
+		boolean grouped = group >= 0;
+		switch (aggregate) {
+			case SUM :
+			case AVG :
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					state[grouped ? ids[i] : 0] += values[i];
+				}
+				break;
+			case MIN :
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j), id = grouped ? ids[i] : 0;
+					state[id] = Math.min(state[id], values[i]);
+				}
+				break;
+			default :
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j), id = grouped ? ids[i] : 0;
+					state[id] = Math.max(state[id], values[i]);
+				}
+		}
+	}
+
+	protected boolean hasNextObject() {
+		return position < groups;
+	}
+
+	protected Batch nextObject() {
+		if (position >= groups)
+			throw new NoSuchElementException();
+		int size = Math.min(capacity, groups-position), offset = group >= 0 ? 1 : 0;
+		if (group >= 0)
+			System.arraycopy(keys, position, batch.longs(0), 0, size);
+		for (int k = 0; k < aggregates.length; k++)
+			switch (aggregates[k]) {
+				case COUNT :
+					System.arraycopy(counts, position, batch.longs(offset+k), 0, size);
+					break;
+				case AVG :
+					double[] sums = (double[])states[k], result = batch.doubles(offset+k);
+					for (int i = 0; i < size; i++)
+						result[i] = sums[position+i]/counts[position+i];
+					break;
+				default :
+					System.arraycopy(states[k], position, batch.column(offset+k), 0, size);
+			}
+		batch.setSize(size);
+		position += size;
+		return batch;
+	}
+}
@@ -0,0 +1,53 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import xxl.core.cursors.Cursor;
+
+/**
+ * A cursor delivering the rows of a relation batch by batch. Every
+ * {@link Batch batch} stores its rows in primitive column vectors, so
+ * operators on batches process their input in tight loops over arrays
+ * instead of calling <code>next</code> and a function for every element.
+ * 
+ * <p>The batches returned by a batch cursor are only valid until its next
+ * batch is requested, because implementations usually reuse them. All
+ * batches of a cursor have the column types returned by
+ * {@link #types()}. Empty batches are never returned.</p>
+ *
+ * @see Batch
+ * @see Batches
+ */
+public interface BatchCursor extends Cursor<Batch> {
+
+	/**
+	 * Returns the types of the columns of the batches delivered by this
+	 * cursor.
+	 *
+	 * @return the types of the columns.
+	 */
+	public abstract Batch.Type[] types();
+}
@@ -0,0 +1,103 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+/**
+ * A vectorized selection operator. The given
+ * {@link BatchPredicate batch predicate} is evaluated on every batch of the
+ * input and the qualifying rows are marked by a selection vector, i.e., no
+ * values are copied. Batches without qualifying rows are skipped.
+ *
+ * @see xxl.core.cursors.filters.Filter
+ * @see BatchPredicates
+ */
+public class BatchFilter extends AbstractBatchCursor {
+
+	/**
+	 * The input batch cursor.
+	 */
+	protected BatchCursor input;
+
+	/**
+	 * The predicate selecting the rows.
+	 */
+	protected BatchPredicate predicate;
+
+	/**
+	 * The selection vector of the current batch.
+	 */
+	protected int[] selection = new int[0];
+
+	/**
+	 * The next batch to be returned.
+	 */
+	protected Batch batch = null;
+
+	/**
+	 * Creates a new batch filter.
+	 *
+	 * @param input the input batch cursor.
+	 * @param predicate the predicate selecting the rows.
+	 */
+	public BatchFilter(BatchCursor input, BatchPredicate predicate) {
+		super(input.types());
+		this.input = input;
+		this.predicate = predicate;
+	}
+
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+	}
+
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input.close();
+	}
+
+	protected boolean hasNextObject() {
+		while (input.hasNext()) {
+			batch = input.next();
+			int[] result = batch.isSelective() ?
+				batch.selection() :
+				(selection.length < batch.size() ? selection = new int[batch.capacity()] : selection);
+			int count = predicate.select(batch, result);
+			if (count > 0) {
+				batch.select(result, count);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected Batch nextObject() {
+		return batch;
+	}
+}
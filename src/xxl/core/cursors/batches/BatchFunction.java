@@ -0,0 +1,56 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+/**
+ * A function computing a new column vector for all selected rows of a
+ * {@link Batch batch} at once.
+ *
+ * @see BatchFunctions
+ * @see BatchMapper
+ */
+public interface BatchFunction {
+
+	/**
+	 * Returns the type of the computed column for the given column types of
+	 * the input.
+	 *
+	 * @param types the types of the columns of the input batches.
+	 * @return the type of the computed column.
+	 */
+	public abstract Batch.Type type(Batch.Type[] types);
+
+	/**
+	 * Computes the values of the selected rows of the given batch and stores
+	 * them at the indices of the rows in the given column vector.
+	 *
+	 * @param batch the input batch.
+	 * @param column the column vector receiving the results. Its type is
+	 *        determined by {@link #type(Batch.Type[])} and its length is at
+	 *        least the size of the batch.
+	 */
+	public abstract void evaluate(Batch batch, Object column);
+}
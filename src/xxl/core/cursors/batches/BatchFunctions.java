@@ -0,0 +1,265 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import xxl.core.functions.Function;
+
+/**
+ * This class provides static methods returning
+ * {@link BatchFunction batch functions}. The arithmetic functions compute
+ * their results in tight loops over the column vectors; only
+ * {@link #objects(Batch.Type, Function, int)} calls a function for every
+ * row.
+ *
+ * @see BatchMapper
+ */
+public class BatchFunctions {
+
+	/**
+	 * The arithmetic operators.
+	 */
+	public static enum Arithmetic {
+
+		/**
+		 * The sum of the operands.
+		 */
+		ADD,
+
+		/**
+		 * The difference of the operands.
+		 */
+		SUBTRACT,
+
+		/**
+		 * The product of the operands.
+		 */
+		MULTIPLY,
+
+		/**
+		 * The quotient of the operands.
+		 */
+		DIVIDE
+	}
+
+	/**
+	 * The default constructor has private access in order to ensure
+	 * non-instantiability.
+	 */
+	private BatchFunctions() {
+		// private access in order to ensure non-instantiability
+	}
+
+	/**
+	 * Applies the operator to two long values.
+	 *
+	 * @param operator the operator.
+	 * @param value0 the first operand.
+	 * @param value1 the second operand.
+	 * @return the result.
+	 */
+	private static long apply(Arithmetic operator, long value0, long value1) {
+		switch (operator) {
+			case ADD :
+				return value0 + value1;
+			case SUBTRACT :
+				return value0 - value1;
+			case MULTIPLY :
+				return value0 * value1;
+			default :
+				return value0 / value1;
+		}
+	}
+
+	/**
+	 * Applies the operator to two double values.
+	 *
+	 * @param operator the operator.
+	 * @param value0 the first operand.
+	 * @param value1 the second operand.
+	 * @return the result.
+	 */
+	private static double apply(Arithmetic operator, double value0, double value1) {
+		switch (operator) {
+			case ADD :
+				return value0 + value1;
+			case SUBTRACT :
+				return value0 - value1;
+			case MULTIPLY :
+				return value0 * value1;
+			default :
+				return value0 / value1;
+		}
+	}
+
+	/**
+	 * Returns a function applying an arithmetic operator to the values of two
+	 * columns of every row. If both columns are long columns, the result is a
+	 * long column, otherwise it is a double column.
+	 *
+	 * @param operator the arithmetic operator.
+	 * @param column0 the column of the first operand.
+	 * @param column1 the column of the second operand.
+	 * @return an arithmetic function.
+	 */
+	public static BatchFunction arithmetic(final Arithmetic operator, final int column0, final int column1) {
+		return new BatchFunction() {
+			public Batch.Type type(Batch.Type[] types) {
+				return types[column0] == Batch.Type.LONG && types[column1] == Batch.Type.LONG ?
+					Batch.Type.LONG :
+					Batch.Type.DOUBLE;
+			}
+
+			public void evaluate(Batch batch, Object column) {
+				int count = batch.count();
+				Batch.Type[] types = batch.types();
+				if (types[column0] == Batch.Type.LONG && types[column1] == Batch.Type.LONG) {
+					long[] values0 = batch.longs(column0), values1 = batch.longs(column1), result = (long[])column;
+					for (int j = 0; j < count; j++) {
+						int i = batch.row(j);
+						result[i] = apply(operator, values0[i], values1[i]);
+					}
+				}
+				else {
+					double[] values0 = doubles(batch, column0), values1 = doubles(batch, column1), result = (double[])column;
+					for (int j = 0; j < count; j++) {
+						int i = batch.row(j);
+						result[i] = apply(operator, values0[i], values1[i]);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns a function applying an arithmetic operator to the values of a
+	 * long column and a constant.
+	 *
+	 * @param operator the arithmetic operator.
+	 * @param column the long column of the first operand.
+	 * @param value the constant second operand.
+	 * @return an arithmetic function delivering a long column.
+	 */
+	public static BatchFunction arithmetic(final Arithmetic operator, final int column, final long value) {
+		return new BatchFunction() {
+			public Batch.Type type(Batch.Type[] types) {
+				return Batch.Type.LONG;
+			}
+
+			public void evaluate(Batch batch, Object column0) {
+				long[] values = batch.longs(column), result = (long[])column0;
+				int count = batch.count();
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					result[i] = apply(operator, values[i], value);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns a function applying an arithmetic operator to the values of a
+	 * long or double column and a constant.
+	 *
+	 * @param operator the arithmetic operator.
+	 * @param column the column of the first operand.
+	 * @param value the constant second operand.
+	 * @return an arithmetic function delivering a double column.
+	 */
+	public static BatchFunction arithmetic(final Arithmetic operator, final int column, final double value) {
+		return new BatchFunction() {
+			public Batch.Type type(Batch.Type[] types) {
+				return Batch.Type.DOUBLE;
+			}
+
+			public void evaluate(Batch batch, Object column0) {
+				double[] values = doubles(batch, column), result = (double[])column0;
+				int count = batch.count();
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					result[i] = apply(operator, values[i], value);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns a function invoking the given function on the (boxed) values of
+	 * a column.
+	 *
+	 * @param type the type of the computed column.
+	 * @param function the function invoked on the values of the column. If
+	 *        the type of the computed column is a long or double column, it
+	 *        has to return {@link Number numbers}.
+	 * @param column the input column.
+	 * @return a function delivering a column of the given type.
+	 */
+	public static BatchFunction objects(final Batch.Type type, final Function<Object, ?> function, final int column) {
+		return new BatchFunction() {
+			public Batch.Type type(Batch.Type[] types) {
+				return type;
+			}
+
+			public void evaluate(Batch batch, Object column0) {
+				int count = batch.count();
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					Object value = function.invoke(batch.get(i, column));
+					switch (type) {
+						case LONG :
+							((long[])column0)[i] = ((Number)value).longValue();
+							break;
+						case DOUBLE :
+							((double[])column0)[i] = ((Number)value).doubleValue();
+							break;
+						default :
+							((Object[])column0)[i] = value;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the values of a long or double column as double values. Long
+	 * columns are converted for the selected rows.
+	 *
+	 * @param batch the batch.
+	 * @param column the column.
+	 * @return the values of the column as double array.
+	 */
+	private static double[] doubles(Batch batch, int column) {
+		if (batch.types()[column] == Batch.Type.DOUBLE)
+			return batch.doubles(column);
+		long[] values = batch.longs(column);
+		double[] result = new double[batch.size()];
+		int count = batch.count();
+		for (int j = 0; j < count; j++) {
+			int i = batch.row(j);
+			result[i] = values[i];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,304 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import java.util.Arrays;
+
+/**
+ * A vectorized inner equi-join of two batch cursors on long columns. The
+ * build input is materialized column-wise into primitive arrays and indexed
+ * by an open addressing hash table whose buckets chain the rows with equal
+ * hash values. The probe input is processed batch-wise: first the pairs of
+ * matching rows are collected, afterwards the output columns are gathered
+ * one column at a time.
+ * 
+ * <p>The output batches consist of the columns of the probe input followed
+ * by the columns of the build input. Since the build input is kept in main
+ * memory, it should be the smaller input; large inputs are better joined by
+ * the spilling {@link xxl.core.cursors.joins.HashJoin hash join}.</p>
+ *
+ * @see xxl.core.cursors.joins.HashJoin
+ */
+public class BatchHashJoin extends AbstractBatchCursor {
+
+	/**
+	 * Returns the column types of the output of a join.
+	 *
+	 * @param probe the column types of the probe input.
+	 * @param build the column types of the build input.
+	 * @return the column types of the output.
+	 */
+	protected static Batch.Type[] types(Batch.Type[] probe, Batch.Type[] build) {
+		Batch.Type[] result = Arrays.copyOf(probe, probe.length + build.length);
+		System.arraycopy(build, 0, result, probe.length, build.length);
+		return result;
+	}
+
+	/**
+	 * The probe input.
+	 */
+	protected BatchCursor probe;
+
+	/**
+	 * The build input.
+	 */
+	protected BatchCursor build;
+
+	/**
+	 * The join column of the probe input.
+	 */
+	protected int probeKey;
+
+	/**
+	 * The join column of the build input.
+	 */
+	protected int buildKey;
+
+	/**
+	 * The capacity of the output batches.
+	 */
+	protected int capacity;
+
+	/**
+	 * The materialized build input.
+	 */
+	protected Batch relation;
+
+	/**
+	 * The hash table mapping hash values to the first row of a chain
+	 * (increased by one, zero marks an empty slot).
+	 */
+	protected int[] table;
+
+	/**
+	 * The next row of the chain of every build row (increased by one, zero
+	 * marks the end of the chain).
+	 */
+	protected int[] next;
+
+	/**
+	 * The current probe batch or <code>null</code>.
+	 */
+	protected Batch current;
+
+	/**
+	 * The position of the next probe row of the current probe batch.
+	 */
+	protected int position;
+
+	/**
+	 * The next build row to be joined with the current probe row (increased
+	 * by one, zero if the chain is exhausted).
+	 */
+	protected int chain;
+
+	/**
+	 * The probe rows of the pairs of the next output batch.
+	 */
+	protected int[] probeRows;
+
+	/**
+	 * The build rows of the pairs of the next output batch.
+	 */
+	protected int[] buildRows;
+
+	/**
+	 * The reused output batch.
+	 */
+	protected Batch batch;
+
+	/**
+	 * Creates a new batch hash join.
+	 *
+	 * @param probe the probe input.
+	 * @param build the build input, which is kept in main memory.
+	 * @param probeKey the long join column of the probe input.
+	 * @param buildKey the long join column of the build input.
+	 * @param capacity the capacity of the output batches.
+	 * @throws IllegalArgumentException if a join column is not a long column.
+	 */
+	public BatchHashJoin(BatchCursor probe, BatchCursor build, int probeKey, int buildKey, int capacity) {
+		super(types(probe.types(), build.types()));
+		if (probe.types()[probeKey] != Batch.Type.LONG || build.types()[buildKey] != Batch.Type.LONG)
+			throw new IllegalArgumentException("the join columns must be long columns");
+		this.probe = probe;
+		this.build = build;
+		this.probeKey = probeKey;
+		this.buildKey = buildKey;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Creates a new batch hash join delivering batches of default capacity.
+	 *
+	 * @param probe the probe input.
+	 * @param build the build input, which is kept in main memory.
+	 * @param probeKey the long join column of the probe input.
+	 * @param buildKey the long join column of the build input.
+	 */
+	public BatchHashJoin(BatchCursor probe, BatchCursor build, int probeKey, int buildKey) {
+		this(probe, build, probeKey, buildKey, Batch.DEFAULT_CAPACITY);
+	}
+
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		probe.open();
+		build.open();
+		relation = new Batch(build.types(), 16);
+		while (build.hasNext()) {
+			Batch batch = build.next();
+			int count = batch.count(), size = relation.size();
+			if (size + count > relation.capacity()) {
+				int capacity = Math.max(2*relation.capacity(), size + count);
+				for (int i = 0; i < relation.columns.length; i++)
+					relation.columns[i] = grow(relation.columns[i], capacity);
+				relation.capacity = capacity;
+			}
+			for (int j = 0; j < count; j++)
+				relation.copy(batch, batch.row(j), 0, size+j, 0, relation.columns.length);
+			relation.setSize(size + count);
+		}
+		build.close();
+		int size = relation.size(), mask = Integer.highestOneBit(Math.max(2*size, 2)) - 1;
+		table = new int[mask+1];
+		next = new int[size];
+		long[] keys = relation.longs(buildKey);
+		for (int i = size; --i >= 0;) {
+			int slot = BatchAggregator.hash(keys[i]) & mask;
+			next[i] = table[slot];
+			table[slot] = i+1;
+		}
+		probeRows = new int[capacity];
+		buildRows = new int[capacity];
+		batch = new Batch(types, capacity);
+		current = null;
+	}
+
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		probe.close();
+		build.close();
+		relation = null;
+		table = next = probeRows = buildRows = null;
+		current = null;
+		batch = null;
+	}
+
+	/**
+	 * Returns a copy of the given column vector with the given length.
+	 *
+	 * @param column the column vector.
+	 * @param length the length of the copy.
+	 * @return the copy of the column vector.
+	 */
+	protected static Object grow(Object column, int length) {
+		if (column instanceof long[])
+			return Arrays.copyOf((long[])column, length);
+		if (column instanceof double[])
+			return Arrays.copyOf((double[])column, length);
+		return Arrays.copyOf((Object[])column, length);
+	}
+
+	/**
+	 * Collects the next pairs of matching rows and gathers them into the
+	 * output batch.
+	 *
+	 * @return the number of joined rows.
+	 */
+	protected int join() {
+		int size = 0, mask = table.length-1;
+		long[] keys = relation.longs(buildKey);
+		while (size < capacity) {
+			if (current == null || position == current.count() && chain == 0) {
+				// the next probe batch may reuse the column vectors of the current one
+				if (size > 0 || !probe.hasNext())
+					break;
+				current = probe.next();
+				position = 0;
+				chain = 0;
+				continue;
+			}
+			long[] values = current.longs(probeKey);
+			if (chain == 0) {
+				chain = table[BatchAggregator.hash(values[current.row(position)]) & mask];
+				position++;
+			}
+			int row = current.row(position-1);
+			long value = values[row];
+			for (; chain != 0 && size < capacity; chain = next[chain-1])
+				if (keys[chain-1] == value) {
+					probeRows[size] = row;
+					buildRows[size++] = chain-1;
+				}
+		}
+		if (size > 0)
+			gather(size);
+		return size;
+	}
+
+	/**
+	 * Gathers the columns of the collected pairs into the output batch.
+	 *
+	 * @param size the number of collected pairs.
+	 */
+	protected void gather(int size) {
+		int columns = current.columns();
+		for (int i = 0; i < types.length; i++) {
+			boolean left = i < columns;
+			Object source = left ? current.column(i) : relation.column(i-columns), target = batch.column(i);
+			int[] rows = left ? probeRows : buildRows;
+			switch (types[i]) {
+				case LONG :
+					long[] longs = (long[])source, longTarget = (long[])target;
+					for (int j = 0; j < size; j++)
+						longTarget[j] = longs[rows[j]];
+					break;
+				case DOUBLE :
+					double[] doubles = (double[])source, doubleTarget = (double[])target;
+					for (int j = 0; j < size; j++)
+						doubleTarget[j] = doubles[rows[j]];
+					break;
+				default :
+					Object[] objects = (Object[])source, objectTarget = (Object[])target;
+					for (int j = 0; j < size; j++)
+						objectTarget[j] = objects[rows[j]];
+			}
+		}
+		batch.setSize(size);
+	}
+
+	protected boolean hasNextObject() {
+		return join() > 0;
+	}
+
+	protected Batch nextObject() {
+		return batch;
+	}
+}
@@ -0,0 +1,126 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+/**
+ * A vectorized projection operator. Every batch of the output consists of
+ * the projected columns of the input batch, which are passed through
+ * without copying, followed by the columns computed by the given
+ * {@link BatchFunction batch functions}. The selection vector of the input
+ * batch is retained.
+ *
+ * @see xxl.core.cursors.mappers.Mapper
+ * @see BatchFunctions
+ */
+public class BatchMapper extends AbstractBatchCursor {
+
+	/**
+	 * Returns the column types of the output of a mapper.
+	 *
+	 * @param types the column types of the input.
+	 * @param projection the projected columns of the input.
+	 * @param functions the functions computing the new columns.
+	 * @return the column types of the output.
+	 */
+	protected static Batch.Type[] types(Batch.Type[] types, int[] projection, BatchFunction[] functions) {
+		Batch.Type[] result = new Batch.Type[projection.length + functions.length];
+		for (int i = 0; i < projection.length; i++)
+			result[i] = types[projection[i]];
+		for (int i = 0; i < functions.length; i++)
+			result[projection.length+i] = functions[i].type(types);
+		return result;
+	}
+
+	/**
+	 * The input batch cursor.
+	 */
+	protected BatchCursor input;
+
+	/**
+	 * The projected columns of the input.
+	 */
+	protected int[] projection;
+
+	/**
+	 * The functions computing the new columns.
+	 */
+	protected BatchFunction[] functions;
+
+	/**
+	 * The reused output batch.
+	 */
+	protected Batch batch;
+
+	/**
+	 * Creates a new batch mapper.
+	 *
+	 * @param input the input batch cursor.
+	 * @param projection the columns of the input that are passed through.
+	 * @param functions the functions computing the new columns, which are
+	 *        appended to the projected columns.
+	 */
+	public BatchMapper(BatchCursor input, int[] projection, BatchFunction... functions) {
+		super(types(input.types(), projection, functions));
+		this.input = input;
+		this.projection = projection;
+		this.functions = functions;
+		this.batch = new Batch(types, new Object[types.length], 0);
+	}
+
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+	}
+
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input.close();
+	}
+
+	protected boolean hasNextObject() {
+		return input.hasNext();
+	}
+
+	protected Batch nextObject() {
+		Batch input = this.input.next();
+		if (batch.capacity < input.size()) {
+			batch.capacity = input.capacity();
+			for (int i = 0; i < functions.length; i++)
+				batch.columns[projection.length+i] = Batch.newColumn(types[projection.length+i], batch.capacity);
+		}
+		for (int i = 0; i < projection.length; i++)
+			batch.columns[i] = input.column(projection[i]);
+		for (int i = 0; i < functions.length; i++)
+			functions[i].evaluate(input, batch.columns[projection.length+i]);
+		batch.size = input.size();
+		batch.select(input.selection(), input.count());
+		return batch;
+	}
+}
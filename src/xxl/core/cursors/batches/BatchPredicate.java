@@ -0,0 +1,51 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+/**
+ * A predicate evaluated on all selected rows of a {@link Batch batch} at
+ * once. Implementations should evaluate the predicate in a tight loop over
+ * the column vectors.
+ *
+ * @see BatchPredicates
+ * @see BatchFilter
+ */
+public interface BatchPredicate {
+
+	/**
+	 * Determines the selected rows of the given batch fulfilling the
+	 * predicate. The indices of these rows are written to the given array in
+	 * ascending order. The array may be the selection vector of the batch
+	 * itself, i.e., implementations must not read an entry of the selection
+	 * vector after writing the same position of the result.
+	 *
+	 * @param batch the batch.
+	 * @param result the array receiving the indices of the qualifying rows.
+	 *        Its length is at least the size of the batch.
+	 * @return the number of qualifying rows.
+	 */
+	public abstract int select(Batch batch, int[] result);
+}
@@ -0,0 +1,347 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import xxl.core.predicates.Predicate;
+
+/**
+ * This class provides static methods returning
+ * {@link BatchPredicate batch predicates}. The comparisons of long and
+ * double columns are evaluated without branches and without boxing; only
+ * {@link #objects(int, Predicate)} calls a predicate for every row.
+ *
+ * @see BatchFilter
+ */
+public class BatchPredicates {
+
+	/**
+	 * The comparison operators.
+	 */
+	public static enum Comparison {
+
+		/**
+		 * The value of the column is equal to the operand.
+		 */
+		EQUAL,
+
+		/**
+		 * The value of the column is not equal to the operand.
+		 */
+		NOT_EQUAL,
+
+		/**
+		 * The value of the column is less than the operand.
+		 */
+		LESS,
+
+		/**
+		 * The value of the column is less than or equal to the operand.
+		 */
+		LESS_EQUAL,
+
+		/**
+		 * The value of the column is greater than the operand.
+		 */
+		GREATER,
+
+		/**
+		 * The value of the column is greater than or equal to the operand.
+		 */
+		GREATER_EQUAL
+	}
+
+	/**
+	 * The default constructor has private access in order to ensure
+	 * non-instantiability.
+	 */
+	private BatchPredicates() {
+		// private access in order to ensure non-instantiability
+	}
+
+	/**
+	 * Returns a predicate selecting the rows whose value in the given long
+	 * column lies in the range <code>[low, high]</code> (or outside of it if
+	 * <code>negate</code> is set).
+	 *
+	 * @param column the long column.
+	 * @param low the lower bound (inclusive).
+	 * @param high the upper bound (inclusive).
+	 * @param negate if <code>true</code> the rows outside of the range are
+	 *        selected.
+	 * @return a range predicate.
+	 */
+	public static BatchPredicate between(final int column, final long low, final long high, final boolean negate) {
+		return new BatchPredicate() {
+			public int select(Batch batch, int[] result) {
+				long[] values = batch.longs(column);
+				int[] selection = batch.selection();
+				int count = batch.count(), size = 0;
+				if (selection == null)
+					for (int i = 0; i < count; i++) {
+						long value = values[i];
+						result[size] = i;
+						size += (value >= low & value <= high) != negate ? 1 : 0;
+					}
+				else
+					for (int j = 0; j < count; j++) {
+						int i = selection[j];
+						long value = values[i];
+						result[size] = i;
+						size += (value >= low & value <= high) != negate ? 1 : 0;
+					}
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns a predicate selecting the rows whose value in the given double
+	 * column lies in the range <code>[low, high]</code> (or outside of it if
+	 * <code>negate</code> is set).
+	 *
+	 * @param column the double column.
+	 * @param low the lower bound (inclusive).
+	 * @param high the upper bound (inclusive).
+	 * @param negate if <code>true</code> the rows outside of the range are
+	 *        selected.
+	 * @return a range predicate.
+	 */
+	public static BatchPredicate between(final int column, final double low, final double high, final boolean negate) {
+		return new BatchPredicate() {
+			public int select(Batch batch, int[] result) {
+				double[] values = batch.doubles(column);
+				int[] selection = batch.selection();
+				int count = batch.count(), size = 0;
+				if (selection == null)
+					for (int i = 0; i < count; i++) {
+						double value = values[i];
+						result[size] = i;
+						size += (value >= low & value <= high) != negate ? 1 : 0;
+					}
+				else
+					for (int j = 0; j < count; j++) {
+						int i = selection[j];
+						double value = values[i];
+						result[size] = i;
+						size += (value >= low & value <= high) != negate ? 1 : 0;
+					}
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns a predicate comparing the values of the given long column with
+	 * a constant.
+	 *
+	 * @param column the long column.
+	 * @param comparison the comparison operator.
+	 * @param value the constant operand.
+	 * @return a comparison predicate.
+	 */
+	public static BatchPredicate compare(int column, Comparison comparison, long value) {
+		switch (comparison) {
+			case EQUAL :
+				return between(column, value, value, false);
+			case NOT_EQUAL :
+				return between(column, value, value, true);
+			case LESS :
+				return between(column, value, Long.MAX_VALUE, true);
+			case LESS_EQUAL :
+				return between(column, Long.MIN_VALUE, value, false);
+			case GREATER :
+				return between(column, Long.MIN_VALUE, value, true);
+			default :
+				return between(column, value, Long.MAX_VALUE, false);
+		}
+	}
+
+	/**
+	 * Returns a predicate comparing the values of the given double column
+	 * with a constant. <code>NaN</code> values only fulfill the comparison
+	 * <code>NOT_EQUAL</code>.
+	 *
+	 * @param column the double column.
+	 * @param comparison the comparison operator.
+	 * @param value the constant operand.
+	 * @return a comparison predicate.
+	 */
+	public static BatchPredicate compare(int column, Comparison comparison, double value) {
+		switch (comparison) {
+			case EQUAL :
+				return between(column, value, value, false);
+			case NOT_EQUAL :
+				return between(column, value, value, true);
+			case LESS :
+				return between(column, Double.NEGATIVE_INFINITY, Math.nextDown(value), false);
+			case LESS_EQUAL :
+				return between(column, Double.NEGATIVE_INFINITY, value, false);
+			case GREATER :
+				return between(column, Math.nextUp(value), Double.POSITIVE_INFINITY, false);
+			default :
+				return between(column, value, Double.POSITIVE_INFINITY, false);
+		}
+	}
+
+	/**
+	 * Returns a predicate comparing the values of two columns of the same
+	 * row. Both columns have to be long columns or double columns.
+	 *
+	 * @param column0 the first column.
+	 * @param comparison the comparison operator.
+	 * @param column1 the second column.
+	 * @return a comparison predicate.
+	 */
+	public static BatchPredicate compare(final int column0, Comparison comparison, final int column1) {
+		final boolean less = comparison == Comparison.LESS || comparison == Comparison.LESS_EQUAL || comparison == Comparison.NOT_EQUAL;
+		final boolean equal = comparison == Comparison.EQUAL || comparison == Comparison.LESS_EQUAL || comparison == Comparison.GREATER_EQUAL;
+		final boolean greater = comparison == Comparison.GREATER || comparison == Comparison.GREATER_EQUAL || comparison == Comparison.NOT_EQUAL;
+		return new BatchPredicate() {
+			public int select(Batch batch, int[] result) {
+				boolean longs = batch.types()[column0] == Batch.Type.LONG;
+				int count = batch.count(), size = 0;
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					int compare = longs ?
+						Long.compare(batch.longs(column0)[i], batch.longs(column1)[i]) :
+						Double.compare(batch.doubles(column0)[i], batch.doubles(column1)[i]);
+					result[size] = i;
+					size += (compare < 0 ? less : compare == 0 ? equal : greater) ? 1 : 0;
+				}
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns a predicate evaluating the given predicate on the values of an
+	 * object column.
+	 *
+	 * @param column the object column.
+	 * @param predicate the predicate invoked on the values of the column.
+	 * @return a predicate on the object column.
+	 */
+	public static BatchPredicate objects(final int column, final Predicate<Object> predicate) {
+		return new BatchPredicate() {
+			public int select(Batch batch, int[] result) {
+				Object[] values = batch.objects(column);
+				int count = batch.count(), size = 0;
+				for (int j = 0; j < count; j++) {
+					int i = batch.row(j);
+					if (predicate.invoke(values[i]))
+						result[size++] = i;
+				}
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns the conjunction of the given predicates. Every predicate is only
+	 * evaluated on the rows fulfilling the previous ones.
+	 *
+	 * @param predicates the predicates.
+	 * @return the conjunction of the predicates.
+	 */
+	public static BatchPredicate and(final BatchPredicate... predicates) {
+		return new BatchPredicate() {
+			public int select(Batch batch, int[] result) {
+				int[] selection = batch.selection();
+				int count = batch.count();
+				try {
+					for (BatchPredicate predicate : predicates) {
+						int size = predicate.select(batch, result);
+						batch.select(result, size);
+						if (size == 0)
+							break;
+					}
+					return batch.count();
+				}
+				finally {
+					batch.select(selection, count);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the disjunction of the given predicates.
+	 *
+	 * @param predicate0 the first predicate.
+	 * @param predicate1 the second predicate.
+	 * @return the disjunction of the predicates.
+	 */
+	public static BatchPredicate or(final BatchPredicate predicate0, final BatchPredicate predicate1) {
+		return new BatchPredicate() {
+			int[] buffer0 = new int[0], buffer1 = new int[0];
+
+			public int select(Batch batch, int[] result) {
+				if (buffer0.length < batch.size()) {
+					buffer0 = new int[batch.capacity()];
+					buffer1 = new int[batch.capacity()];
+				}
+				int size0 = predicate0.select(batch, buffer0), size1 = predicate1.select(batch, buffer1), size = 0;
+				for (int i = 0, j = 0; i < size0 || j < size1;)
+					if (j == size1 || i < size0 && buffer0[i] < buffer1[j])
+						result[size++] = buffer0[i++];
+					else if (i == size0 || buffer1[j] < buffer0[i])
+						result[size++] = buffer1[j++];
+					else {
+						result[size++] = buffer0[i++];
+						j++;
+					}
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Returns the negation of the given predicate, i.e., the selected rows
+	 * not fulfilling it.
+	 *
+	 * @param predicate the predicate.
+	 * @return the negation of the predicate.
+	 */
+	public static BatchPredicate not(final BatchPredicate predicate) {
+		return new BatchPredicate() {
+			int[] buffer = new int[0];
+
+			public int select(Batch batch, int[] result) {
+				if (buffer.length < batch.size())
+					buffer = new int[batch.capacity()];
+				int excluded = predicate.select(batch, buffer), count = batch.count(), size = 0;
+				for (int j = 0, k = 0; j < count; j++) {
+					int i = batch.row(j);
+					if (k < excluded && buffer[k] == i)
+						k++;
+					else
+						result[size++] = i;
+				}
+				return size;
+			}
+		};
+	}
+}
@@ -0,0 +1,288 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.batches;
+
+import java.util.Iterator;
+
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.mappers.Mapper;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.relational.tuples.ArrayTuple;
+import xxl.core.relational.tuples.Tuple;
+
+/**
+ * This class contains static methods converting between
+ * {@link BatchCursor batch cursors} and ordinary
+ * {@link xxl.core.cursors.Cursor cursors}. The adapters box and unbox the
+ * values of primitive columns, so a pipeline should be converted once at its
+ * beginning and once at its end.
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   Cursor&lt;Object[]&gt; result = Batches.toCursor(
+ *       new BatchFilter(
+ *           Batches.fromTuples(input, new Batch.Type[] {Batch.Type.LONG, Batch.Type.DOUBLE}, Batch.DEFAULT_CAPACITY),
+ *           BatchPredicates.compare(0, BatchPredicates.Comparison.LESS, 100)
+ *       )
+ *   );
+ * </pre></code></p>
+ *
+ * @see Batch
+ * @see BatchCursor
+ */
+public class Batches {
+
+	/**
+	 * The default constructor has private access in order to ensure
+	 * non-instantiability.
+	 */
+	private Batches() {
+		// private access in order to ensure non-instantiability
+	}
+
+	/**
+	 * Returns a batch cursor reading the elements of the given iteration
+	 * into batches. The value of every column is determined by a function
+	 * that is invoked on the element; values of long and double columns have
+	 * to be {@link Number numbers}.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param input the input iteration.
+	 * @param types the types of the columns.
+	 * @param columns the functions determining the values of the columns.
+	 * @param capacity the number of rows of a batch.
+	 * @return a batch cursor delivering the elements of the input.
+	 */
+	public static <E> BatchCursor fromCursor(Iterator<? extends E> input, Batch.Type[] types, final Function<? super E, ?>[] columns, int capacity) {
+		if (types.length != columns.length)
+			throw new IllegalArgumentException("the number of column types and functions does not match");
+		return new Source<E>(input, types, capacity) {
+			protected void read(E element, int row) {
+				for (int i = 0; i < columns.length; i++)
+					batch.set(row, i, columns[i].invoke(element));
+			}
+		};
+	}
+
+	/**
+	 * Returns a batch cursor reading the given tuples into batches. The
+	 * columns of long columns are read by <code>getLong</code>, the columns
+	 * of double columns by <code>getDouble</code>.
+	 *
+	 * @param input the input tuples.
+	 * @param types the types of the columns.
+	 * @param capacity the number of rows of a batch.
+	 * @return a batch cursor delivering the tuples.
+	 */
+	public static BatchCursor fromTuples(Iterator<? extends Tuple> input, final Batch.Type[] types, int capacity) {
+		return new Source<Tuple>(input, types, capacity) {
+			protected void read(Tuple tuple, int row) {
+				for (int i = 0; i < types.length; i++)
+					switch (types[i]) {
+						case LONG :
+							batch.longs(i)[row] = tuple.getLong(i+1);
+							break;
+						case DOUBLE :
+							batch.doubles(i)[row] = tuple.getDouble(i+1);
+							break;
+						default :
+							batch.objects(i)[row] = tuple.getObject(i+1);
+					}
+			}
+		};
+	}
+
+	/**
+	 * Returns a batch cursor delivering the rows stored in the given column
+	 * vectors. The values are copied into the batches.
+	 *
+	 * @param types the types of the columns.
+	 * @param columns the column vectors.
+	 * @param size the number of rows.
+	 * @param capacity the number of rows of a batch.
+	 * @return a batch cursor delivering the rows.
+	 */
+	public static BatchCursor fromArrays(Batch.Type[] types, final Object[] columns, final int size, final int capacity) {
+		final Batch batch = new Batch(types, capacity);
+		return new AbstractBatchCursor(types) {
+			int position = 0;
+
+			protected boolean hasNextObject() {
+				return position < size;
+			}
+
+			protected Batch nextObject() {
+				int length = Math.min(capacity, size-position);
+				for (int i = 0; i < columns.length; i++)
+					System.arraycopy(columns[i], position, batch.column(i), 0, length);
+				batch.setSize(length);
+				position += length;
+				return batch;
+			}
+
+			public void reset() {
+				super.reset();
+				position = 0;
+			}
+
+			public boolean supportsReset() {
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns a cursor delivering the selected rows of the given batch
+	 * cursor as object arrays.
+	 *
+	 * @param input the batch cursor.
+	 * @return a cursor delivering the rows as object arrays.
+	 */
+	public static Cursor<Object[]> toCursor(final BatchCursor input) {
+		return new AbstractCursor<Object[]>() {
+			Batch batch = null;
+			int position = 0;
+
+			public void open() {
+				if (isOpened)
+					return;
+				super.open();
+				input.open();
+			}
+
+			public void close() {
+				if (isClosed)
+					return;
+				super.close();
+				input.close();
+			}
+
+			protected boolean hasNextObject() {
+				while (batch == null || position == batch.count()) {
+					if (!input.hasNext())
+						return false;
+					batch = input.next();
+					position = 0;
+				}
+				return true;
+			}
+
+			protected Object[] nextObject() {
+				int row = batch.row(position++);
+				Object[] result = new Object[batch.columns()];
+				for (int i = 0; i < result.length; i++)
+					result[i] = batch.get(row, i);
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Returns a cursor delivering the selected rows of the given batch
+	 * cursor as tuples.
+	 *
+	 * @param input the batch cursor.
+	 * @return a cursor delivering the rows as tuples.
+	 */
+	public static Cursor<Tuple> toTuples(BatchCursor input) {
+		return new Mapper<Object[], Tuple>(
+			new AbstractFunction<Object[], Tuple>() {
+				public Tuple invoke(Object[] row) {
+					return new ArrayTuple(row);
+				}
+			},
+			toCursor(input)
+		);
+	}
+
+	/**
+	 * A batch cursor reading the elements of an iteration into batches.
+	 *
+	 * @param <E> the type of the elements.
+	 */
+	protected static abstract class Source<E> extends AbstractBatchCursor {
+
+		/**
+		 * The input iteration.
+		 */
+		protected Cursor<? extends E> input;
+
+		/**
+		 * The reused batch.
+		 */
+		protected Batch batch;
+
+		/**
+		 * Creates a new source.
+		 *
+		 * @param input the input iteration.
+		 * @param types the types of the columns.
+		 * @param capacity the number of rows of a batch.
+		 */
+		protected Source(Iterator<? extends E> input, Batch.Type[] types, int capacity) {
+			super(types);
+			this.input = Cursors.wrap(input);
+			this.batch = new Batch(types, capacity);
+		}
+
+		/**
+		 * Stores the given element in the given row of the batch.
+		 *
+		 * @param element the element.
+		 * @param row the row of the batch.
+		 */
+		protected abstract void read(E element, int row);
+
+		public void open() {
+			if (isOpened)
+				return;
+			super.open();
+			input.open();
+		}
+
+		public void close() {
+			if (isClosed)
+				return;
+			super.close();
+			input.close();
+		}
+
+		protected boolean hasNextObject() {
+			return input.hasNext();
+		}
+
+		protected Batch nextObject() {
+			int size = 0;
+			while (size < batch.capacity() && input.hasNext())
+				read(input.next(), size++);
+			batch.setSize(size);
+			return batch;
+		}
+	}
+}
@@ -0,0 +1,570 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.exchanges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * A Volcano-style exchange operator connecting cursor pipelines that run in
+ * different threads. The exchange consumes a number of input iterations
+ * (producers), each of them in a thread of its own, and distributes their
+ * elements over a number of output cursors (consumers). Between every
+ * producer and consumer the elements are transferred in batches of
+ * <code>batchSize</code> elements through a bounded channel holding at most
+ * <code>capacity</code> batches per consumer, so a fast producer is blocked
+ * until the consumers catch up.
+ * 
+ * <p>The elements are routed according to the {@link Type type} of the
+ * exchange: they are repartitioned by a partitioning function (e.g., a
+ * {@link #hashPartitioner(Function, int) hash} or a
+ * {@link #rangePartitioner(Function, Comparator, Object[]) range}
+ * partitioner), copied to every consumer (broadcast) or distributed batch by
+ * batch in a round-robin fashion. An exchange with a single consumer gathers
+ * the elements of all producers (see {@link #gather(List)}).</p>
+ * 
+ * <p>The producer threads are started when the first output cursor is
+ * opened. Exceptions thrown by a producer are rethrown (wrapped in a
+ * {@link WrappingRuntimeException}) by the consumers. When an output cursor
+ * is closed, the elements routed to it are discarded; when all output
+ * cursors are closed, the producers are stopped. Note that the outputs of an
+ * exchange with several consumers have to be consumed concurrently,
+ * otherwise a producer blocked by a full channel of one consumer prevents
+ * the others from receiving further elements.</p>
+ * 
+ * <p>The method {@link #parallel(Iterator, Function, Function, int)} uses
+ * two exchanges to clone a cursor pipeline across several workers: the input
+ * is repartitioned over the workers, every worker applies the pipeline to
+ * its partition and the results of the workers are gathered.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   Cursor&lt;Object[]&gt; counts = Exchange.parallel(
+ *       input,
+ *       new AbstractFunction&lt;Cursor&lt;Integer&gt;, Cursor&lt;Object[]&gt;&gt;() {
+ *           public Cursor&lt;Object[]&gt; invoke(Cursor&lt;Integer&gt; partition) {
+ *               return new HashAggregator&lt;Integer, Long, Object[]&gt;(partition, Identity.DEFAULT_INSTANCE, new Count(), Tuplify.DEFAULT_INSTANCE);
+ *           }
+ *       },
+ *       Exchange.hashPartitioner(Identity.DEFAULT_INSTANCE, 4),
+ *       4
+ *   );
+ * </pre></code>
+ * counts the occurrences of the input elements with four workers. As the
+ * input is hash-partitioned on the grouping key, every group is aggregated
+ * by exactly one worker.</p>
+ *
+ * @param <E> the type of the elements transferred by the exchange.
+ * @see xxl.core.cursors.identities.ThreadedIterator
+ */
+public class Exchange<E> {
+
+	/**
+	 * An enumeration of the strategies routing the elements of the producers
+	 * to the consumers.
+	 */
+	public static enum Type {
+
+		/**
+		 * Every element is sent to the consumer determined by the
+		 * partitioning function.
+		 */
+		PARTITION,
+
+		/**
+		 * Every element is sent to all consumers.
+		 */
+		BROADCAST,
+
+		/**
+		 * The batches of every producer are sent to the consumers in a
+		 * round-robin fashion.
+		 */
+		ROUND_ROBIN
+	}
+
+	/**
+	 * The default number of elements transferred in a batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	/**
+	 * The default number of batches a channel holds.
+	 */
+	public static final int DEFAULT_CAPACITY = 4;
+
+	/**
+	 * The marker signaling that a producer is finished.
+	 */
+	protected static final Object END = new Object();
+
+	/**
+	 * Returns a partitioning function assigning an element to a partition by
+	 * hashing its key.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param getKey the function determining the key of an element.
+	 * @param partitions the number of partitions.
+	 * @return a hash partitioning function.
+	 */
+	public static <E> Function<E, Integer> hashPartitioner(final Function<? super E, ?> getKey, final int partitions) {
+		return new AbstractFunction<E, Integer>() {
+			public Integer invoke(E element) {
+				Object key = getKey.invoke(element);
+				int hash = key == null ? 0 : key.hashCode();
+				hash *= 0x85ebca6b;
+				hash ^= hash >>> 13;
+				hash *= 0xc2b2ae35;
+				hash ^= hash >>> 16;
+				return (hash & 0x7fffffff)%partitions;
+			}
+		};
+	}
+
+	/**
+	 * Returns a partitioning function assigning an element to a key range.
+	 * The <code>n</code> sorted splitters define <code>n+1</code>
+	 * partitions; partition <code>i</code> contains the keys greater than
+	 * splitter <code>i-1</code> that are not greater than splitter
+	 * <code>i</code>.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param <K> the type of the keys.
+	 * @param getKey the function determining the key of an element.
+	 * @param comparator the comparator defining the order of the keys.
+	 * @param splitters the sorted upper bounds of the partitions (except the
+	 *        last one).
+	 * @return a range partitioning function.
+	 */
+	public static <E, K> Function<E, Integer> rangePartitioner(final Function<? super E, ? extends K> getKey, final Comparator<? super K> comparator, final K... splitters) {
+		return new AbstractFunction<E, Integer>() {
+			public Integer invoke(E element) {
+				int position = Arrays.binarySearch(splitters, getKey.invoke(element), comparator);
+				return position < 0 ? -position-1 : position;
+			}
+		};
+	}
+
+	/**
+	 * Returns a cursor gathering the elements of the given input iterations,
+	 * each of them consumed in a thread of its own. The order of the
+	 * elements of different inputs is not specified.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param inputs the input iterations.
+	 * @return a cursor delivering the elements of all inputs.
+	 */
+	public static <E> Cursor<E> gather(List<? extends Iterator<? extends E>> inputs) {
+		return new Exchange<E>(inputs, 1, Type.ROUND_ROBIN).output(0);
+	}
+
+	/**
+	 * Executes a cursor pipeline in parallel. The input is distributed over
+	 * <code>workers</code> partitions, the function <code>plan</code> is
+	 * invoked on every partition (a cursor) in order to build a copy of the
+	 * pipeline and the results of all copies, which are consumed in separate
+	 * threads, are gathered.
+	 *
+	 * @param <I> the type of the input elements.
+	 * @param <E> the type of the result elements.
+	 * @param input the input iteration.
+	 * @param plan the function building a copy of the pipeline on a
+	 *        partition of the input.
+	 * @param partitioner the function determining the partition of an input
+	 *        element (e.g., a hash partitioner on the grouping key of an
+	 *        aggregation) or <code>null</code> if the input is distributed in
+	 *        a round-robin fashion.
+	 * @param workers the number of workers.
+	 * @return a cursor delivering the results of all workers.
+	 */
+	public static <I, E> Cursor<E> parallel(Iterator<? extends I> input, Function<? super Cursor<I>, ? extends Iterator<? extends E>> plan, Function<? super I, Integer> partitioner, int workers) {
+		Exchange<I> split = new Exchange<I>(
+			Collections.singletonList(input),
+			workers,
+			partitioner == null ? Type.ROUND_ROBIN : Type.PARTITION,
+			partitioner,
+			DEFAULT_BATCH_SIZE,
+			DEFAULT_CAPACITY
+		);
+		List<Iterator<? extends E>> pipelines = new ArrayList<Iterator<? extends E>>(workers);
+		for (int i = 0; i < workers; i++)
+			pipelines.add(plan.invoke(split.output(i)));
+		return gather(pipelines);
+	}
+
+	/**
+	 * An output of the exchange, i.e., the consumer side of a channel. The
+	 * batches sent by the producers are buffered in a bounded queue.
+	 */
+	protected class Output extends AbstractCursor<E> {
+
+		/**
+		 * The batches, end markers and exceptions sent by the producers.
+		 */
+		protected ArrayBlockingQueue<Object> batches;
+
+		/**
+		 * The number of producers that have not finished yet.
+		 */
+		protected int running = inputs.size();
+
+		/**
+		 * Determines whether the consumer has closed this output.
+		 */
+		protected volatile boolean closed = false;
+
+		/**
+		 * The batch consumed currently.
+		 */
+		protected Object[] batch = new Object[0];
+
+		/**
+		 * The position of the next element in the current batch.
+		 */
+		protected int index = 0;
+
+		/**
+		 * Creates a new output.
+		 *
+		 * @param capacity the maximal number of buffered batches.
+		 */
+		protected Output(int capacity) {
+			batches = new ArrayBlockingQueue<Object>(capacity);
+		}
+
+		/**
+		 * Sends a batch, an end marker or an exception to this output. The
+		 * calling producer is blocked while the channel is full; the item is
+		 * discarded if the output is closed.
+		 *
+		 * @param item the item to be sent.
+		 * @throws InterruptedException if the producer is interrupted.
+		 */
+		protected void send(Object item) throws InterruptedException {
+			while (!closed)
+				if (batches.offer(item, 10, TimeUnit.MILLISECONDS))
+					return;
+		}
+
+		/**
+		 * Opens the output and starts the producers of the exchange.
+		 */
+		public void open() {
+			if (isOpened)
+				return;
+			super.open();
+			start();
+		}
+
+		/**
+		 * Closes the output. Elements routed to this output afterwards are
+		 * discarded; the producers are stopped when all outputs are closed.
+		 */
+		public void close() {
+			if (isClosed)
+				return;
+			super.close();
+			closed = true;
+			batches.clear();
+			stop();
+		}
+
+		/**
+		 * Returns <code>true</code> if the output has more elements. Blocks
+		 * until a batch is available or all producers are finished.
+		 *
+		 * @return <code>true</code> if the output has more elements.
+		 * @throws WrappingRuntimeException if a producer failed.
+		 */
+		protected boolean hasNextObject() {
+			while (index == batch.length) {
+				if (running == 0)
+					return false;
+				Object item;
+				try {
+					item = batches.take();
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new WrappingRuntimeException(ie);
+				}
+				if (item == END)
+					running--;
+				else if (item instanceof Throwable)
+					throw new WrappingRuntimeException((Throwable)item);
+				else {
+					batch = (Object[])item;
+					index = 0;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the next element of the current batch.
+		 *
+		 * @return the next element.
+		 */
+		@SuppressWarnings("unchecked")
+		protected E nextObject() {
+			return (E)batch[index++];
+		}
+	}
+
+	/**
+	 * The input iterations (producers).
+	 */
+	protected List<Cursor<? extends E>> inputs;
+
+	/**
+	 * The strategy routing the elements to the outputs.
+	 */
+	protected Type type;
+
+	/**
+	 * The function determining the output of an element (if the elements are
+	 * partitioned).
+	 */
+	protected Function<? super E, Integer> partitioner;
+
+	/**
+	 * The number of elements transferred in a batch.
+	 */
+	protected int batchSize;
+
+	/**
+	 * The outputs (consumers).
+	 */
+	protected List<Output> outputs;
+
+	/**
+	 * The executor service running the producers or <code>null</code> if the
+	 * producers have not been started yet.
+	 */
+	protected ExecutorService service = null;
+
+	/**
+	 * Creates a new exchange.
+	 *
+	 * @param inputs the input iterations, each of them is consumed by a
+	 *        thread of its own.
+	 * @param consumers the number of outputs.
+	 * @param type the strategy routing the elements to the outputs.
+	 * @param partitioner the function determining the output of an element,
+	 *        which is required if the type is {@link Type#PARTITION}.
+	 * @param batchSize the number of elements transferred in a batch.
+	 * @param capacity the number of batches a channel holds.
+	 * @throws IllegalArgumentException if a size is not positive or the
+	 *         partitioner is missing.
+	 */
+	public Exchange(List<? extends Iterator<? extends E>> inputs, int consumers, Type type, Function<? super E, Integer> partitioner, int batchSize, int capacity) throws IllegalArgumentException {
+		if (inputs.isEmpty() || consumers <= 0 || batchSize <= 0 || capacity <= 0)
+			throw new IllegalArgumentException("an exchange needs at least one input and one output and positive sizes");
+		if (type == Type.PARTITION && partitioner == null)
+			throw new IllegalArgumentException("a partitioning exchange needs a partitioner");
+		this.inputs = new ArrayList<Cursor<? extends E>>(inputs.size());
+		for (Iterator<? extends E> input : inputs)
+			this.inputs.add(Cursors.wrap(input));
+		this.type = type;
+		this.partitioner = partitioner;
+		this.batchSize = batchSize;
+		this.outputs = new ArrayList<Output>(consumers);
+		for (int i = 0; i < consumers; i++)
+			outputs.add(new Output(capacity));
+	}
+
+	/**
+	 * Creates a new exchange partitioning the elements of the inputs by the
+	 * given function using the default batch size and capacity.
+	 *
+	 * @param inputs the input iterations, each of them is consumed by a
+	 *        thread of its own.
+	 * @param consumers the number of outputs.
+	 * @param partitioner the function determining the output of an element.
+	 */
+	public Exchange(List<? extends Iterator<? extends E>> inputs, int consumers, Function<? super E, Integer> partitioner) {
+		this(inputs, consumers, Type.PARTITION, partitioner, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new broadcasting or round-robin exchange using the default
+	 * batch size and capacity.
+	 *
+	 * @param inputs the input iterations, each of them is consumed by a
+	 *        thread of its own.
+	 * @param consumers the number of outputs.
+	 * @param type the strategy routing the elements to the outputs.
+	 */
+	public Exchange(List<? extends Iterator<? extends E>> inputs, int consumers, Type type) {
+		this(inputs, consumers, type, null, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns the output with the given index.
+	 *
+	 * @param index the index of the output.
+	 * @return the output cursor.
+	 */
+	public Cursor<E> output(int index) {
+		return outputs.get(index);
+	}
+
+	/**
+	 * Returns the number of outputs of this exchange.
+	 *
+	 * @return the number of outputs.
+	 */
+	public int consumers() {
+		return outputs.size();
+	}
+
+	/**
+	 * Starts the producer threads unless they have been started already.
+	 */
+	protected synchronized void start() {
+		if (service != null)
+			return;
+		service = Executors.newFixedThreadPool(
+			inputs.size(),
+			new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Exchange producer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			}
+		);
+		for (final Cursor<? extends E> input : inputs)
+			service.submit(
+				new Runnable() {
+					public void run() {
+						produce(input);
+					}
+				}
+			);
+		service.shutdown();
+	}
+
+	/**
+	 * Stops the producer threads if all outputs are closed.
+	 */
+	protected synchronized void stop() {
+		for (Output output : outputs)
+			if (!output.closed)
+				return;
+		if (service != null)
+			service.shutdownNow();
+	}
+
+	/**
+	 * Consumes the given input and routes its elements to the outputs.
+	 *
+	 * @param input the input consumed by the calling producer thread.
+	 */
+	protected void produce(Cursor<? extends E> input) {
+		int consumers = outputs.size();
+		Object[][] buffers = new Object[consumers][batchSize];
+		int[] sizes = new int[consumers];
+		int next = 0;
+		try {
+			try {
+				input.open();
+				while (!Thread.currentThread().isInterrupted() && input.hasNext()) {
+					E element = input.next();
+					switch (type) {
+						case PARTITION :
+							int partition = partitioner.invoke(element);
+							buffers[partition][sizes[partition]++] = element;
+							if (sizes[partition] == batchSize) {
+								outputs.get(partition).send(buffers[partition]);
+								buffers[partition] = new Object[batchSize];
+								sizes[partition] = 0;
+							}
+							break;
+						case BROADCAST :
+							buffers[0][sizes[0]++] = element;
+							if (sizes[0] == batchSize) {
+								for (Output output : outputs)
+									output.send(buffers[0]);
+								buffers[0] = new Object[batchSize];
+								sizes[0] = 0;
+							}
+							break;
+						default :
+							buffers[next][sizes[next]++] = element;
+							if (sizes[next] == batchSize) {
+								outputs.get(next).send(buffers[next]);
+								buffers[next] = new Object[batchSize];
+								sizes[next] = 0;
+								next = (next+1)%consumers;
+							}
+					}
+				}
+				for (int i = 0; i < consumers; i++)
+					if (sizes[i] > 0) {
+						Object[] batch = Arrays.copyOf(buffers[i], sizes[i]);
+						if (type == Type.BROADCAST)
+							for (Output output : outputs)
+								output.send(batch);
+						else
+							outputs.get(i).send(batch);
+					}
+				for (Output output : outputs)
+					output.send(END);
+			}
+			catch (RuntimeException re) {
+				for (Output output : outputs)
+					output.send(re instanceof WrappingRuntimeException ? ((WrappingRuntimeException)re).throwable : re);
+			}
+			catch (Error e) {
+				for (Output output : outputs)
+					output.send(e);
+			}
+			finally {
+				input.close();
+			}
+		}
+		catch (InterruptedException ie) {
+			// the exchange is stopped
+		}
+	}
+}
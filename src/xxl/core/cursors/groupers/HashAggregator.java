@@ -0,0 +1,593 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.groupers;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Constant;
+import xxl.core.functions.Function;
+import xxl.core.math.functions.AggregationFunction;
+import xxl.core.util.memory.SpillingMemoryManageable;
+
+/**
+ * A hash-based aggregation operator computing one aggregate per group of the
+ * input iteration in a single step. In contrast to the
+ * {@link HashGrouper hash-grouper}, which materializes every group as a bag,
+ * only the (partial) aggregate of every group is kept in a main memory hash
+ * table: an element is assigned to the group determined by the function
+ * <code>getKey</code> and the aggregate of the group is updated by the given
+ * {@link AggregationFunction aggregation function}. When the input is
+ * consumed, the function <code>newResult</code> is invoked on the key and the
+ * aggregate of every group and the result is returned.
+ * 
+ * <p><i>Spilling:</i> The hash table holds at most
+ * <code>memSize/entrySize</code> groups. Elements of groups that are already
+ * resident are aggregated immediately even when the table is full, elements
+ * of new groups are distributed over <code>fanOut</code> partitions by
+ * hashing their keys and spilled to queues created by the function
+ * <code>newQueue</code> (e.g., a
+ * {@link xxl.core.collections.queues.io.BlockBasedQueue block-based queue}).
+ * After the groups of the hash table are returned, every spilled partition is
+ * aggregated recursively in the same way using a different hash function.
+ * Partitions that still exceed the memory limit after {@link #MAX_LEVEL}
+ * recursive steps are aggregated in memory. So a group by over keys of high
+ * cardinality neither requires a sort nor the whole input in main memory.</p>
+ * 
+ * <p><i>Memory management:</i> A hash aggregator is
+ * {@link SpillingMemoryManageable memory manageable}, so it can be
+ * registered with a {@link xxl.core.util.memory.MemoryManager memory manager}
+ * that changes its memory at runtime. The memory limit is checked whenever a
+ * new group is inserted into the hash table, i.e., after memory is revoked
+ * the elements of new groups are spilled (or, for a partial aggregator, the
+ * groups are returned) immediately, while the groups that are already
+ * resident are kept until the pass is finished. The memory passed to the
+ * constructor is reported as the preferred memory.</p>
+ * 
+ * <p><i>Two-phase aggregation:</i> A <i>partial</i> hash aggregator (see
+ * {@link #HashAggregator(Iterator, Function, AggregationFunction, Function, int, int)})
+ * never spills. Instead, it returns the groups of its hash table as partial
+ * results whenever the table is full and starts with an empty table again,
+ * i.e., a group may be returned several times. Partial aggregators can be
+ * run independently on partitions of the input (e.g., in different threads);
+ * a final hash aggregator combines their partial results by aggregating the
+ * partial aggregates of equal keys with a combining aggregation function,
+ * e.g., <code>new Sum()</code> for partial counts and sums or
+ * <code>new Minimum()</code> for partial minima.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   HashAggregator&lt;Integer, Long, Object[]&gt; counts = new HashAggregator&lt;Integer, Long, Object[]&gt;(
+ *       new DiscreteRandomNumber(new JavaDiscreteRandomWrapper(1000), 100000),
+ *       Identity.DEFAULT_INSTANCE,
+ *       new Count(),
+ *       Tuplify.DEFAULT_INSTANCE,
+ *       16,
+ *       16*1024,
+ *       4096,
+ *       HashAggregator.DEFAULT_FAN_OUT,
+ *       newQueue
+ *   );
+ * </pre></code>
+ * counts the occurrences of the random numbers. The table holds 1024 groups,
+ * so the elements of the remaining groups are spilled.</p>
+ *
+ * @param <E> the type of the elements consumed by this iteration.
+ * @param <A> the type of the aggregates.
+ * @param <R> the type of the elements returned by this iteration.
+ * @see AggregateGrouper
+ * @see HashGrouper
+ * @see xxl.core.relational.cursors.HashGroupAggregator
+ */
+public class HashAggregator<E, A, R> extends AbstractCursor<R> implements SpillingMemoryManageable {
+
+	/**
+	 * The default number of partitions the spilled elements are distributed
+	 * over.
+	 */
+	public static final int DEFAULT_FAN_OUT = 32;
+
+	/**
+	 * The maximal number of recursive partitioning steps. Partitions on this
+	 * level are aggregated in memory regardless of the memory limit.
+	 */
+	public static final int MAX_LEVEL = 8;
+
+	/**
+	 * One aggregation pass over the input or a spilled partition.
+	 */
+	protected class Pass {
+
+		/**
+		 * The input of this pass.
+		 */
+		protected Cursor<? extends E> input;
+
+		/**
+		 * The recursion level of this pass.
+		 */
+		protected int level;
+
+		/**
+		 * The hash table mapping the keys of the resident groups to their
+		 * aggregates.
+		 */
+		protected HashMap<Object, A> table = new HashMap<Object, A>();
+
+		/**
+		 * The queues storing the spilled partitions (<code>null</code> for
+		 * empty partitions).
+		 */
+		protected Queue<E>[] queues = null;
+
+		/**
+		 * The groups that are returned currently or <code>null</code> while
+		 * the input is consumed.
+		 */
+		protected Iterator<Map.Entry<Object, A>> groups = null;
+
+		/**
+		 * The number of groups that are returned currently.
+		 */
+		protected int returned = 0;
+
+		/**
+		 * Creates a new pass.
+		 *
+		 * @param input the input of the pass.
+		 * @param level the recursion level of the pass.
+		 */
+		protected Pass(Cursor<? extends E> input, int level) {
+			this.input = input;
+			this.level = level;
+		}
+
+		/**
+		 * Consumes the input until it is exhausted or, for a partial
+		 * aggregator, until the hash table is full. Afterwards the groups of
+		 * the hash table are ready to be returned.
+		 */
+		@SuppressWarnings("unchecked")
+		protected void aggregate() {
+			while (input.hasNext()) {
+				E element = input.next();
+				Object key = getKey.invoke(element);
+				A aggregate = table.get(key);
+				if (aggregate != null || table.containsKey(key)) {
+					table.put(key, HashAggregator.this.aggregate.invoke(aggregate, element));
+					continue;
+				}
+				int partition = partition(key, level);
+				// a key of a spilled partition has to be spilled regardless of
+				// the current memory limit (it may have been raised by a memory
+				// manager), otherwise its group would be returned twice
+				if ((queues == null || queues[partition] == null) && (level >= MAX_LEVEL || table.size() < Math.max(1, memSize/entrySize))) {
+					table.put(key, HashAggregator.this.aggregate.invoke(null, element));
+					resident = returned+table.size();
+					peakMemUsage = (int)Math.max(peakMemUsage, Math.min((long)resident*entrySize, Integer.MAX_VALUE));
+				}
+				else if (partial) {
+					returned = table.size();
+					groups = table.entrySet().iterator();
+					table = new HashMap<Object, A>();
+					table.put(key, HashAggregator.this.aggregate.invoke(null, element));
+					resident = returned+1;
+					return;
+				}
+				else {
+					if (queues == null)
+						queues = new Queue[fanOut];
+					if (queues[partition] == null) {
+						queues[partition] = newQueue.invoke(bufferSize, bufferSize);
+						queues[partition].open();
+					}
+					queues[partition].enqueue(element);
+					spilledObjects++;
+				}
+			}
+			input.close();
+			resident = returned = table.size();
+			groups = table.entrySet().iterator();
+			table = null;
+		}
+
+		/**
+		 * Returns whether the input of this pass is consumed completely.
+		 *
+		 * @return <code>true</code> if the input of this pass is consumed.
+		 */
+		protected boolean finished() {
+			return table == null;
+		}
+
+		/**
+		 * Schedules the spilled partitions of this pass for the next level.
+		 */
+		protected void schedule() {
+			if (queues != null)
+				for (int i = 0; i < fanOut; i++)
+					if (queues[i] != null)
+						passes.add(new Pass(new QueueCursor<E>(queues[i]), level+1));
+			queues = null;
+		}
+
+		/**
+		 * Releases the resources of this pass.
+		 */
+		protected void close() {
+			input.close();
+			if (queues != null)
+				for (Queue<E> queue : queues)
+					if (queue != null)
+						queue.close();
+			table = null;
+			groups = null;
+			returned = resident = 0;
+		}
+	}
+
+	/**
+	 * The input iteration to be aggregated.
+	 */
+	protected Cursor<? extends E> input;
+
+	/**
+	 * The function determining the group (key) of an element.
+	 */
+	protected Function<? super E, ?> getKey;
+
+	/**
+	 * The aggregation function computing the aggregate of a group.
+	 */
+	protected AggregationFunction<? super E, A> aggregate;
+
+	/**
+	 * The function invoked on the key and the aggregate of every group in
+	 * order to create a result.
+	 */
+	protected Function<Object, ? extends R> newResult;
+
+	/**
+	 * Determines whether this aggregator computes partial aggregates, i.e.,
+	 * returns its groups instead of spilling elements.
+	 */
+	protected boolean partial;
+
+	/**
+	 * The size of a group (key and aggregate) in main memory.
+	 */
+	protected int entrySize;
+
+	/**
+	 * The memory available for the hash table. It may be changed by a memory
+	 * manager while the aggregator is running.
+	 */
+	protected volatile int memSize;
+
+	/**
+	 * The memory passed to the constructor, reported as the preferred memory.
+	 */
+	protected int preferredMemSize;
+
+	/**
+	 * The maximal memory used by the hash table so far.
+	 */
+	protected volatile int peakMemUsage = 0;
+
+	/**
+	 * The number of elements spilled so far.
+	 */
+	protected volatile long spilledObjects = 0;
+
+	/**
+	 * The number of groups held in main memory, i.e., the groups of the hash
+	 * table and the groups that are returned currently. It is maintained
+	 * separately, because a memory manager may ask for the memory usage
+	 * concurrently.
+	 */
+	protected volatile int resident = 0;
+
+	/**
+	 * The number of partitions the spilled elements are distributed over.
+	 */
+	protected int fanOut;
+
+	/**
+	 * The function returning a new queue used for spilling a partition.
+	 */
+	protected Function<Function<?, Integer>, ? extends Queue<E>> newQueue;
+
+	/**
+	 * A parameterless function returning the size of the buffers of the
+	 * spilled partitions.
+	 */
+	protected Function<?, Integer> bufferSize;
+
+	/**
+	 * The passes that remain to be processed.
+	 */
+	protected LinkedList<Pass> passes = new LinkedList<Pass>();
+
+	/**
+	 * The pass processed currently.
+	 */
+	protected Pass pass = null;
+
+	/**
+	 * Creates a new hash aggregator that spills the elements of the groups
+	 * not fitting in memory.
+	 *
+	 * @param input the input iteration to be aggregated.
+	 * @param getKey the function determining the group (key) of an element.
+	 * @param aggregate the aggregation function computing the aggregate of a
+	 *        group. It is called with <code>null</code> as aggregate for the
+	 *        first element of a group.
+	 * @param newResult a function that is invoked on the key and the
+	 *        aggregate of every group and returns the result.
+	 * @param entrySize the size of a group (key and aggregate) in main
+	 *        memory.
+	 * @param memSize the memory available for the hash table.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param fanOut the number of partitions the spilled elements are
+	 *        distributed over.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 * @throws IllegalArgumentException if one of the sizes is not positive.
+	 */
+	public HashAggregator(Iterator<? extends E> input, Function<? super E, ?> getKey, AggregationFunction<? super E, A> aggregate, Function<Object, ? extends R> newResult, int entrySize, int memSize, int blockSize, int fanOut, Function<Function<?, Integer>, ? extends Queue<E>> newQueue) throws IllegalArgumentException {
+		if (entrySize <= 0 || memSize <= 0 || blockSize <= 0 || fanOut <= 1)
+			throw new IllegalArgumentException("the sizes and the fan-out of a hash aggregator have to be positive");
+		this.input = Cursors.wrap(input);
+		this.getKey = getKey;
+		this.aggregate = aggregate;
+		this.newResult = newResult;
+		this.partial = false;
+		this.entrySize = entrySize;
+		this.memSize = this.preferredMemSize = memSize;
+		this.fanOut = fanOut;
+		this.newQueue = newQueue;
+		this.bufferSize = new Constant<Integer>(blockSize);
+	}
+
+	/**
+	 * Creates a new partial hash aggregator. Whenever the hash table is full,
+	 * its groups are returned and the aggregation continues with an empty
+	 * table. So the same key may be returned several times and the partial
+	 * aggregates of equal keys have to be combined by a final aggregator.
+	 *
+	 * @param input the input iteration to be aggregated.
+	 * @param getKey the function determining the group (key) of an element.
+	 * @param aggregate the aggregation function computing the partial
+	 *        aggregate of a group.
+	 * @param newResult a function that is invoked on the key and the
+	 *        partial aggregate of every group and returns the result.
+	 * @param entrySize the size of a group (key and aggregate) in main
+	 *        memory.
+	 * @param memSize the memory available for the hash table.
+	 * @throws IllegalArgumentException if one of the sizes is not positive.
+	 */
+	public HashAggregator(Iterator<? extends E> input, Function<? super E, ?> getKey, AggregationFunction<? super E, A> aggregate, Function<Object, ? extends R> newResult, int entrySize, int memSize) throws IllegalArgumentException {
+		this(input, getKey, aggregate, newResult, entrySize, memSize, 1, DEFAULT_FAN_OUT, HashAggregator.<E>newListQueue());
+		this.partial = true;
+	}
+
+	/**
+	 * Creates a new in-memory hash aggregator.
+	 *
+	 * @param input the input iteration to be aggregated.
+	 * @param getKey the function determining the group (key) of an element.
+	 * @param aggregate the aggregation function computing the aggregate of a
+	 *        group.
+	 * @param newResult a function that is invoked on the key and the
+	 *        aggregate of every group and returns the result.
+	 */
+	public HashAggregator(Iterator<? extends E> input, Function<? super E, ?> getKey, AggregationFunction<? super E, A> aggregate, Function<Object, ? extends R> newResult) {
+		this(input, getKey, aggregate, newResult, 1, Integer.MAX_VALUE, 1, DEFAULT_FAN_OUT, HashAggregator.<E>newListQueue());
+	}
+
+	/**
+	 * Returns a function creating an in-memory queue.
+	 *
+	 * @param <E> the type of the elements of the queue.
+	 * @return a function creating an in-memory queue.
+	 */
+	private static <E> Function<Function<?, Integer>, Queue<E>> newListQueue() {
+		return new AbstractFunction<Function<?, Integer>, Queue<E>>() {
+			public Queue<E> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<E>();
+			}
+		};
+	}
+
+	/**
+	 * Returns the partition of the given key on the given recursion level.
+	 * Every level uses a different hash function in order to split the
+	 * partitions of the level above.
+	 *
+	 * @param key the group key.
+	 * @param level the recursion level.
+	 * @return the partition of the key.
+	 */
+	protected int partition(Object key, int level) {
+		int hash = (key == null ? 0 : key.hashCode()) ^ (level+1)*0x9e3779b9;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return (hash & 0x7fffffff)%fanOut;
+	}
+
+	/**
+	 * Opens the hash aggregator, i.e., signals the cursor to reserve
+	 * resources, open the input iteration, etc. Multiple calls to
+	 * <code>open</code> do not have any effect.
+	 */
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+		passes.add(new Pass(input, 0));
+	}
+
+	/**
+	 * Closes the hash aggregator, i.e., signals the cursor to clean up
+	 * resources, close the input iteration and the spilled partitions, etc.
+	 * Multiple calls to <code>close</code> do not have any effect.
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		if (pass != null)
+			pass.close();
+		for (Pass pass : passes)
+			pass.close();
+		passes.clear();
+		input.close();
+	}
+
+	/**
+	 * Returns <code>true</code> if the iteration has more elements. (In other
+	 * words, returns <code>true</code> if <code>next</code> or
+	 * <code>peek</code> would return an element rather than throwing an
+	 * exception.)
+	 * 
+	 * @return <code>true</code> if the hash aggregator has more elements.
+	 */
+	protected boolean hasNextObject() {
+		while (true) {
+			if (pass == null) {
+				if (passes.isEmpty())
+					return false;
+				pass = passes.removeFirst();
+			}
+			if (pass.groups == null)
+				pass.aggregate();
+			if (pass.groups.hasNext()) {
+				Map.Entry<Object, A> group = pass.groups.next();
+				next = newResult.invoke(group.getKey(), group.getValue());
+				return true;
+			}
+			pass.groups = null;
+			pass.returned = 0;
+			resident = pass.table == null ? 0 : pass.table.size();
+			if (pass.finished()) {
+				pass.schedule();
+				pass = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the next element in the iteration.
+	 *
+	 * @return the next element in the iteration.
+	 */
+	protected R nextObject() {
+		return next;
+	}
+
+	/**
+	 * Returns the memory currently used by the hash table of the pass
+	 * processed currently and the groups that are returned currently.
+	 *
+	 * @return the current memory usage (in bytes).
+	 */
+	public int getCurrentMemUsage() {
+		return (int)Math.min((long)resident*entrySize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the memory passed to the constructor.
+	 *
+	 * @return the preferred memory (in bytes).
+	 */
+	public int getPreferredMemSize() {
+		return preferredMemSize;
+	}
+
+	/**
+	 * Returns the memory currently available for the hash table.
+	 *
+	 * @return the assigned memory (in bytes).
+	 */
+	public int getAssignedMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Changes the memory available for the hash table. The new limit is
+	 * respected as soon as the next group is inserted into the hash table.
+	 *
+	 * @param newMemSize the new memory available for the hash table (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if <code>newMemSize</code> is
+	 *         negative.
+	 */
+	public void assignMemSize(int newMemSize) throws IllegalArgumentException {
+		if (newMemSize < 0)
+			throw new IllegalArgumentException("newMemSize < 0");
+		memSize = newMemSize;
+	}
+
+	/**
+	 * Returns the size of a group in main memory.
+	 *
+	 * @return the size of a group (in bytes).
+	 */
+	public int getObjectSize() {
+		return entrySize;
+	}
+
+	/**
+	 * Returns the maximal memory used by the hash table so far.
+	 *
+	 * @return the peak memory usage (in bytes).
+	 */
+	public int getPeakMemUsage() {
+		return peakMemUsage;
+	}
+
+	/**
+	 * Returns the number of elements spilled so far.
+	 *
+	 * @return the number of spilled elements.
+	 */
+	public long getSpilledObjects() {
+		return spilledObjects;
+	}
+}
@@ -0,0 +1,874 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.joins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.cursors.unions.Sequentializer;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Constant;
+import xxl.core.functions.Function;
+import xxl.core.predicates.Predicate;
+import xxl.core.predicates.Predicates;
+import xxl.core.util.memory.SpillingMemoryManageable;
+
+/**
+ * A hybrid hash implementation of the equi-join operator. In contrast to the
+ * {@link NestedLoopsJoin nested-loops join} and the
+ * {@link SortMergeJoin sort-merge join}, neither quadratic comparisons nor
+ * sorted inputs are required: the elements of the two input iterations are
+ * joined if their keys, determined by the functions <code>key0</code> and
+ * <code>key1</code>, are equal (according to <code>equals</code> and
+ * <code>hashCode</code>) and an optional residual predicate is fulfilled.
+ * 
+ * <p><i>The algorithm works as follows:</i> The second input iteration
+ * (<code>input1</code>, the build input) is distributed over
+ * <code>fanOut</code> partitions by hashing the keys of its elements. Every
+ * partition is kept in a main memory hash table as long as the memory limit
+ * <code>memSize</code> is not exceeded. Otherwise the largest partition still
+ * resident in memory is spilled to a queue created by the function
+ * <code>newQueue</code> (e.g., a
+ * {@link xxl.core.collections.queues.io.BlockBasedQueue block-based queue})
+ * and further elements of it are written to this queue directly. After that
+ * the first input iteration (<code>input0</code>, the probe input) is
+ * traversed: elements of resident partitions are probed against the hash
+ * tables immediately, whereas elements of spilled partitions are spilled to
+ * queues, too. Finally every pair of spilled partitions is joined
+ * recursively in the same way using a different hash function, where the
+ * smaller one of the two partitions becomes the build input. This also
+ * repartitions skewed partitions that do not fit in memory. Partitions that
+ * still exceed the memory limit after {@link #MAX_LEVEL} recursive steps
+ * (i.e., when nearly all of their elements share the same key) are joined in
+ * memory.</p>
+ * 
+ * <p>So the input that is expected to be smaller should be passed as
+ * <code>input1</code>. In the best case it fits in memory and both inputs
+ * are read only once.</p>
+ * 
+ * <p>A hash join is {@link SpillingMemoryManageable memory manageable}, so it
+ * can be registered with a
+ * {@link xxl.core.util.memory.MemoryManager memory manager} that changes its
+ * memory at runtime. While a build input is partitioned, the memory limit is
+ * checked after every element, i.e., when memory is revoked the largest
+ * resident partitions are spilled immediately. The hash tables of a pass
+ * that already probes its probe input are kept until the pass is finished;
+ * the following passes use the new memory limit. The memory passed to the
+ * constructor is reported as the preferred memory.</p>
+ * 
+ * <p>Besides theta-, left, right and full outer joins this operator also
+ * supports semi and anti joins delivering the elements of
+ * <code>input0</code> having (respectively not having) a join partner in
+ * <code>input1</code>. The function <code>newResult</code> is always called
+ * with an element of <code>input0</code> as first argument and an element of
+ * <code>input1</code> as second argument; missing elements (outer, semi and
+ * anti joins) are given by the <code>null</code> value. The same holds for the
+ * residual predicate. Note that the order of the results is not specified.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   HashJoin&lt;Integer, Object[]&gt; join = new HashJoin&lt;Integer, Object[]&gt;(
+ *       Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10).iterator(),
+ *       Arrays.asList(2, 4, 6, 8, 10).iterator(),
+ *       Identity.DEFAULT_INSTANCE,
+ *       Identity.DEFAULT_INSTANCE,
+ *       Tuplify.DEFAULT_INSTANCE,
+ *       HashJoin.Type.LEFT_OUTER_JOIN
+ *   );
+ *   
+ *   join.open();
+ *   
+ *   while (join.hasNext())
+ *       System.out.println(Arrays.toString(join.next()));
+ *   
+ *   join.close();
+ * </pre></code></p>
+ *
+ * @param <I> the type of the elements consumed by this iteration.
+ * @param <E> the type of the elements returned by this join operation.
+ * @see xxl.core.cursors.joins.NestedLoopsJoin
+ * @see xxl.core.cursors.joins.SortMergeJoin
+ * @see xxl.core.relational.cursors.HashJoin
+ */
+public class HashJoin<I, E> extends AbstractCursor<E> implements SpillingMemoryManageable {
+
+	/**
+	 * An enumeration of constants specifying the join types supported by this
+	 * class.
+	 */
+	public static enum Type {
+		
+		/**
+		 * A constant specifying a theta-join. Only the tuples with equal keys
+		 * for which the specified predicate is <code>true</code> will be
+		 * returned.
+		 */
+		THETA_JOIN,
+		
+		/**
+		 * A constant specifying a left outer-join. The joining tuples as well
+		 * as all elements of <code>input0</code> without join partner will be
+		 * returned. The function <code>newResult</code> is called with an
+		 * element of <code>input0</code> and the <code>null</code> value.
+		 */
+		LEFT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a right outer-join. The joining tuples as well
+		 * as all elements of <code>input1</code> without join partner will be
+		 * returned. The function <code>newResult</code> is called with the
+		 * <code>null</code> value and an element of <code>input1</code>.
+		 */
+		RIGHT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a full outer-join. The joining tuples as well
+		 * as all tuples additionally returned by the left and right outer-join
+		 * will be returned.
+		 */
+		OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a semi-join. Every element of
+		 * <code>input0</code> having at least one join partner is returned
+		 * once. The function <code>newResult</code> is called with the element
+		 * and the <code>null</code> value.
+		 */
+		SEMI_JOIN,
+		
+		/**
+		 * A constant specifying an anti-join. Every element of
+		 * <code>input0</code> without join partner is returned. The function
+		 * <code>newResult</code> is called with the element and the
+		 * <code>null</code> value.
+		 */
+		ANTI_JOIN
+	};
+
+	/**
+	 * The default number of partitions the inputs are distributed over.
+	 */
+	public static final int DEFAULT_FAN_OUT = 32;
+
+	/**
+	 * The maximal number of recursive partitioning steps. Partitions that do
+	 * not fit in memory at this level are joined in memory.
+	 */
+	public static final int MAX_LEVEL = 8;
+
+	/**
+	 * An element of the build input stored in a hash table together with a
+	 * flag whether a join partner has been found.
+	 *
+	 * @param <I> the type of the element.
+	 */
+	protected static class Entry<I> {
+		
+		/**
+		 * The element of the build input.
+		 */
+		protected I element;
+		
+		/**
+		 * A flag determining whether a join partner of the element has been
+		 * found.
+		 */
+		protected boolean matched = false;
+
+		/**
+		 * Creates a new entry for the given element.
+		 *
+		 * @param element the element of the build input.
+		 */
+		protected Entry(I element) {
+			this.element = element;
+		}
+	}
+
+	/**
+	 * A single pass of the join: one build input is partitioned (keeping as
+	 * many partitions as possible in memory) and one probe input is probed
+	 * against it.
+	 */
+	protected class Pass {
+		
+		/**
+		 * The build input of this pass.
+		 */
+		protected Cursor<? extends I> build;
+		
+		/**
+		 * The probe input of this pass.
+		 */
+		protected Cursor<? extends I> probe;
+		
+		/**
+		 * The input (<tt>0</tt> or <tt>1</tt>) the build input belongs to.
+		 */
+		protected int buildSide;
+		
+		/**
+		 * The recursion level of this pass, used to choose the hash function.
+		 */
+		protected int level;
+		
+		/**
+		 * The hash tables of the resident partitions (<code>null</code> for
+		 * spilled partitions).
+		 */
+		protected HashMap<Object, List<Entry<I>>>[] tables;
+		
+		/**
+		 * The number of elements of the resident partitions.
+		 */
+		protected int[] sizes;
+		
+		/**
+		 * The spilled build partitions (<code>null</code> for resident
+		 * partitions).
+		 */
+		protected Queue<I>[] buildQueues;
+		
+		/**
+		 * The spilled probe partitions.
+		 */
+		protected Queue<I>[] probeQueues;
+		
+		/**
+		 * An iteration over the hash table buckets used to deliver the
+		 * unmatched (or matched) build elements after the probe input is
+		 * exhausted.
+		 */
+		protected Iterator<List<Entry<I>>> buckets = null;
+
+		/**
+		 * Creates a new pass.
+		 *
+		 * @param build the build input.
+		 * @param probe the probe input.
+		 * @param buildSide the input the build input belongs to.
+		 * @param level the recursion level.
+		 */
+		protected Pass(Cursor<? extends I> build, Cursor<? extends I> probe, int buildSide, int level) {
+			this.build = build;
+			this.probe = probe;
+			this.buildSide = buildSide;
+			this.level = level;
+		}
+
+		/**
+		 * Partitions the build input and keeps as many partitions as possible
+		 * in memory.
+		 */
+		protected void build() {
+			tables = new HashMap[fanOut];
+			sizes = new int[fanOut];
+			buildQueues = new Queue[fanOut];
+			probeQueues = new Queue[fanOut];
+			int spilled = 0;
+			
+			build.open();
+			while (build.hasNext()) {
+				I element = build.next();
+				Object key = key(buildSide, element);
+				int partition = partition(key, level);
+				if (buildQueues[partition] != null) {
+					buildQueues[partition].enqueue(element);
+					spilledObjects++;
+					continue;
+				}
+				if (tables[partition] == null)
+					tables[partition] = new HashMap<Object, List<Entry<I>>>();
+				List<Entry<I>> bucket = tables[partition].get(key);
+				if (bucket == null)
+					tables[partition].put(key, bucket = new ArrayList<Entry<I>>(2));
+				bucket.add(new Entry<I>(element));
+				sizes[partition]++;
+				resident++;
+				peakMemUsage = (int)Math.max(peakMemUsage, Math.min((long)resident*objectSize, Integer.MAX_VALUE));
+				// every spilled partition needs an output buffer (the memory
+				// limit is read again, it may be changed by a memory manager)
+				while (level < MAX_LEVEL && resident > memSize/objectSize-(long)spilled*blockSize/objectSize) {
+					int victim = -1;
+					for (int i = 0; i < fanOut; i++)
+						if (buildQueues[i] == null && sizes[i] > 0 && (victim == -1 || sizes[i] > sizes[victim]))
+							victim = i;
+					if (victim == -1)
+						break;
+					buildQueues[victim] = newQueue.invoke(bufferSize, bufferSize);
+					for (List<Entry<I>> entries : tables[victim].values())
+						for (Entry<I> entry : entries)
+							buildQueues[victim].enqueue(entry.element);
+					tables[victim] = null;
+					resident -= sizes[victim];
+					spilledObjects += sizes[victim];
+					sizes[victim] = 0;
+					spilled++;
+				}
+			}
+			build.close();
+			build = null;
+			probe.open();
+		}
+
+		/**
+		 * Probes the given element of the probe input against the resident
+		 * partitions or spills it, and stores the resulting tuples in the list
+		 * <code>results</code>.
+		 *
+		 * @param element the element of the probe input.
+		 */
+		protected void probe(I element) {
+			Object key = key(1-buildSide, element);
+			int partition = partition(key, level);
+			if (buildQueues[partition] != null) {
+				if (probeQueues[partition] == null)
+					probeQueues[partition] = newQueue.invoke(bufferSize, bufferSize);
+				probeQueues[partition].enqueue(element);
+				spilledObjects++;
+				return;
+			}
+			List<Entry<I>> bucket = tables[partition] == null ? null : tables[partition].get(key);
+			boolean matched = false;
+			if (bucket != null)
+				for (Entry<I> entry : bucket) {
+					I element0 = buildSide == 0 ? entry.element : element;
+					I element1 = buildSide == 0 ? element : entry.element;
+					if (predicate.invoke(element0, element1)) {
+						matched = true;
+						entry.matched = true;
+						if (type != Type.SEMI_JOIN && type != Type.ANTI_JOIN)
+							results.add(newResult.invoke(element0, element1));
+						else if (buildSide == 1)
+							break;
+					}
+				}
+			if (matched ? type == Type.SEMI_JOIN && buildSide == 1 : returnsUnmatched(1-buildSide))
+				results.add(buildSide == 1 ? newResult.invoke(element, null) : newResult.invoke(null, element));
+		}
+
+		/**
+		 * Stores the tuples resulting from the build elements of the given
+		 * bucket after the probe input is exhausted in the list
+		 * <code>results</code>.
+		 *
+		 * @param bucket a bucket of a hash table.
+		 */
+		protected void finish(List<Entry<I>> bucket) {
+			for (Entry<I> entry : bucket)
+				if (entry.matched ? type == Type.SEMI_JOIN && buildSide == 0 : returnsUnmatched(buildSide))
+					results.add(buildSide == 0 ? newResult.invoke(entry.element, null) : newResult.invoke(null, entry.element));
+		}
+
+		/**
+		 * Creates the passes joining the spilled partitions. The smaller
+		 * partition of each pair becomes the build input.
+		 */
+		protected void schedule() {
+			for (int i = fanOut-1; i >= 0; i--)
+				if (buildQueues[i] != null) {
+					int buildSize = buildQueues[i].size(), probeSize = probeQueues[i] == null ? 0 : probeQueues[i].size();
+					if (probeSize == 0 && !returnsUnmatched(buildSide)) {
+						buildQueues[i].close();
+						continue;
+					}
+					Cursor<I> buildCursor = new QueueCursor<I>(buildQueues[i]);
+					Cursor<I> probeCursor = probeSize == 0 ? new EmptyCursor<I>() : new QueueCursor<I>(probeQueues[i]);
+					if (probeSize < buildSize)
+						passes.addFirst(new Pass(probeCursor, buildCursor, 1-buildSide, level+1));
+					else
+						passes.addFirst(new Pass(buildCursor, probeCursor, buildSide, level+1));
+				}
+			buildQueues = probeQueues = null;
+		}
+
+		/**
+		 * Releases the resources of this pass.
+		 */
+		protected void close() {
+			if (build != null)
+				build.close();
+			probe.close();
+			if (buildQueues != null)
+				for (int i = 0; i < fanOut; i++) {
+					if (buildQueues[i] != null)
+						buildQueues[i].close();
+					if (probeQueues[i] != null)
+						probeQueues[i].close();
+				}
+			tables = null;
+			resident = 0;
+		}
+	}
+
+	/**
+	 * The first (or probe) input iteration of the join operator.
+	 */
+	protected Cursor<? extends I> input0;
+	
+	/**
+	 * The second (or build) input iteration of the join operator.
+	 */
+	protected Cursor<? extends I> input1;
+	
+	/**
+	 * The function determining the join key of an element of
+	 * <code>input0</code>.
+	 */
+	protected Function<? super I, ?> key0;
+	
+	/**
+	 * The function determining the join key of an element of
+	 * <code>input1</code>.
+	 */
+	protected Function<? super I, ?> key1;
+	
+	/**
+	 * A binary predicate that is additionally evaluated on the tuples with
+	 * equal keys. The first argument is always an element of
+	 * <code>input0</code>.
+	 */
+	protected Predicate<? super I> predicate;
+	
+	/**
+	 * A function that is invoked on each qualifying tuple before it is
+	 * returned to the caller concerning a call to the <code>next</code>
+	 * method. Be aware that this function possibly has to handle
+	 * <code>null</code> values in cases of outer, semi and anti joins.
+	 */
+	protected Function<? super I, ? extends E> newResult;
+	
+	/**
+	 * The type of this hash join operator.
+	 */
+	protected Type type;
+	
+	/**
+	 * The size of an object in main memory.
+	 */
+	protected int objectSize;
+	
+	/**
+	 * The memory available for the hash tables. It may be changed by a memory
+	 * manager while the join is running.
+	 */
+	protected volatile int memSize;
+	
+	/**
+	 * The memory passed to the constructor, reported as the preferred memory.
+	 */
+	protected int preferredMemSize;
+	
+	/**
+	 * The maximal memory used by the hash tables so far.
+	 */
+	protected volatile int peakMemUsage = 0;
+	
+	/**
+	 * The number of elements spilled so far.
+	 */
+	protected volatile long spilledObjects = 0;
+	
+	/**
+	 * The number of elements of all resident partitions of the pass that is
+	 * performed currently. It is maintained separately, because a memory
+	 * manager may ask for the memory usage concurrently.
+	 */
+	protected volatile int resident = 0;
+	
+	/**
+	 * The size of the buffer of a spilled partition.
+	 */
+	protected int blockSize;
+	
+	/**
+	 * The number of partitions the inputs are distributed over.
+	 */
+	protected int fanOut;
+	
+	/**
+	 * A function returning a new queue used for spilling a partition. The
+	 * function takes two parameterless functions returning the sizes of the
+	 * input and output buffers as parameters (like the function of the
+	 * {@link xxl.core.cursors.sorters.MergeSorter merge-sorter}).
+	 */
+	protected Function<Function<?, Integer>, ? extends Queue<I>> newQueue;
+	
+	/**
+	 * The parameterless function passed to <code>newQueue</code> returning
+	 * the buffer size.
+	 */
+	protected Function<?, Integer> bufferSize;
+	
+	/**
+	 * The passes that still have to be performed.
+	 */
+	protected LinkedList<Pass> passes = new LinkedList<Pass>();
+	
+	/**
+	 * The pass that is currently performed.
+	 */
+	protected Pass pass = null;
+	
+	/**
+	 * The precomputed results of the join operator.
+	 */
+	protected List<E> results = new ArrayList<E>();
+	
+	/**
+	 * The position of the next result to be returned in the list
+	 * <code>results</code>.
+	 */
+	protected int resultIndex = 0;
+
+	/**
+	 * Creates a new hash join operator backed on two input iterations. The
+	 * elements are joined when their keys are equal and the residual
+	 * predicate is fulfilled.
+	 *
+	 * @param input0 the first (or probe) input iteration.
+	 * @param input1 the second (or build) input iteration, which should be
+	 *        the smaller one.
+	 * @param key0 the function determining the join key of an element of
+	 *        <code>input0</code>.
+	 * @param key1 the function determining the join key of an element of
+	 *        <code>input1</code>.
+	 * @param predicate a binary predicate that is additionally evaluated on
+	 *        the tuples with equal keys.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the <code>next</code>
+	 *        method.
+	 * @param type the type of this join; use one of the public constants
+	 *        defined in this class.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param fanOut the number of partitions the inputs are distributed over.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 * @throws IllegalArgumentException if one of the sizes is not positive.
+	 */
+	public HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key0, Function<? super I, ?> key1, Predicate<? super I> predicate, Function<? super I, ? extends E> newResult, Type type, int objectSize, int memSize, final int blockSize, int fanOut, Function<Function<?, Integer>, ? extends Queue<I>> newQueue) throws IllegalArgumentException {
+		if (objectSize <= 0 || memSize <= 0 || blockSize <= 0 || fanOut <= 1)
+			throw new IllegalArgumentException("the sizes and the fan-out of a hash join have to be positive");
+		this.input0 = Cursors.wrap(input0);
+		this.input1 = Cursors.wrap(input1);
+		this.key0 = key0;
+		this.key1 = key1;
+		this.predicate = predicate;
+		this.newResult = newResult;
+		this.type = type;
+		this.objectSize = objectSize;
+		this.memSize = this.preferredMemSize = memSize;
+		this.blockSize = blockSize;
+		this.fanOut = fanOut;
+		this.newQueue = newQueue;
+		this.bufferSize = new Constant<Integer>(blockSize);
+	}
+
+	/**
+	 * Creates a new hash join operator backed on two input iterations using
+	 * {@link #DEFAULT_FAN_OUT} partitions. The elements are joined when their
+	 * keys are equal and the residual predicate is fulfilled.
+	 *
+	 * @param input0 the first (or probe) input iteration.
+	 * @param input1 the second (or build) input iteration, which should be
+	 *        the smaller one.
+	 * @param key0 the function determining the join key of an element of
+	 *        <code>input0</code>.
+	 * @param key1 the function determining the join key of an element of
+	 *        <code>input1</code>.
+	 * @param predicate a binary predicate that is additionally evaluated on
+	 *        the tuples with equal keys.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the <code>next</code>
+	 *        method.
+	 * @param type the type of this join; use one of the public constants
+	 *        defined in this class.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 */
+	public HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key0, Function<? super I, ?> key1, Predicate<? super I> predicate, Function<? super I, ? extends E> newResult, Type type, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<I>> newQueue) {
+		this(input0, input1, key0, key1, predicate, newResult, type, objectSize, memSize, blockSize, DEFAULT_FAN_OUT, newQueue);
+	}
+
+	/**
+	 * Creates a new in-memory hash join operator backed on two input
+	 * iterations. The elements are joined when their keys are equal.
+	 *
+	 * @param input0 the first (or probe) input iteration.
+	 * @param input1 the second (or build) input iteration, which should be
+	 *        the smaller one.
+	 * @param key0 the function determining the join key of an element of
+	 *        <code>input0</code>.
+	 * @param key1 the function determining the join key of an element of
+	 *        <code>input1</code>.
+	 * @param newResult a factory method (function) that takes two parameters
+	 *        as argument and is invoked on each qualifying tuple before it is
+	 *        returned to the caller concerning a call to the <code>next</code>
+	 *        method.
+	 * @param type the type of this join; use one of the public constants
+	 *        defined in this class.
+	 */
+	public HashJoin(Iterator<? extends I> input0, Iterator<? extends I> input1, Function<? super I, ?> key0, Function<? super I, ?> key1, Function<? super I, ? extends E> newResult, Type type) {
+		this(
+			input0,
+			input1,
+			key0,
+			key1,
+			Predicates.TRUE,
+			newResult,
+			type,
+			1,
+			Integer.MAX_VALUE,
+			1,
+			new AbstractFunction<Function<?, Integer>, Queue<I>>() {
+				public Queue<I> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+					return new ListQueue<I>();
+				}
+			}
+		);
+	}
+
+	/**
+	 * Returns the join key of the given element.
+	 *
+	 * @param side the input (<tt>0</tt> or <tt>1</tt>) the element belongs
+	 *        to.
+	 * @param element the element.
+	 * @return the join key of the element.
+	 */
+	protected Object key(int side, I element) {
+		return side == 0 ? key0.invoke(element) : key1.invoke(element);
+	}
+
+	/**
+	 * Returns the partition of the given key on the given recursion level.
+	 * Every level uses a different hash function in order to split the
+	 * partitions of the level above.
+	 *
+	 * @param key the join key.
+	 * @param level the recursion level.
+	 * @return the partition of the key.
+	 */
+	protected int partition(Object key, int level) {
+		int hash = (key == null ? 0 : key.hashCode()) ^ (level+1)*0x9e3779b9;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return (hash & 0x7fffffff)%fanOut;
+	}
+
+	/**
+	 * Returns whether the elements of the given input without join partner
+	 * belong to the result.
+	 *
+	 * @param side the input (<tt>0</tt> or <tt>1</tt>).
+	 * @return <code>true</code> if the elements of the given input without
+	 *         join partner are returned.
+	 */
+	protected boolean returnsUnmatched(int side) {
+		return type == Type.OUTER_JOIN || (side == 0 ?
+			type == Type.LEFT_OUTER_JOIN || type == Type.ANTI_JOIN :
+			type == Type.RIGHT_OUTER_JOIN);
+	}
+
+	/**
+	 * Opens the join operator, i.e., signals the cursor to reserve resources,
+	 * open the input iterations, etc. Before a cursor has been opened calls to
+	 * methods like <code>next</code> or <code>peek</code> are not guaranteed
+	 * to yield proper results. Therefore <code>open</code> must be called
+	 * before a cursor's data can be processed. Multiple calls to
+	 * <code>open</code> do not have any effect, i.e., if <code>open</code> was
+	 * called the cursor remains in the state <i>opened</i> until its
+	 * <code>close</code> method is called.
+	 */
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		passes.add(new Pass(input1, input0, 1, 0));
+	}
+
+	/**
+	 * Closes the join operator, i.e., signals the cursor to clean up
+	 * resources, close the input iterations and the spilled partitions, etc.
+	 * Multiple calls to <code>close</code> do not have any effect.
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		if (pass != null)
+			pass.close();
+		for (Pass pass : passes)
+			pass.close();
+		passes.clear();
+		input0.close();
+		input1.close();
+		results.clear();
+	}
+
+	/**
+	 * Returns <code>true</code> if the iteration has more elements. (In other
+	 * words, returns <code>true</code> if <code>next</code> or
+	 * <code>peek</code> would return an element rather than throwing an
+	 * exception.)
+	 * 
+	 * @return <code>true</code> if the join operator has more elements.
+	 */
+	protected boolean hasNextObject() {
+		while (resultIndex == results.size()) {
+			results.clear();
+			resultIndex = 0;
+			if (pass == null) {
+				if (passes.isEmpty())
+					return false;
+				(pass = passes.removeFirst()).build();
+			}
+			if (pass.buckets == null && pass.probe.hasNext())
+				pass.probe(pass.probe.next());
+			else {
+				if (pass.buckets == null) {
+					pass.probe.close();
+					List<Iterator<List<Entry<I>>>> buckets = new ArrayList<Iterator<List<Entry<I>>>>();
+					for (HashMap<Object, List<Entry<I>>> table : pass.tables)
+						if (table != null)
+							buckets.add(table.values().iterator());
+					pass.buckets = new Sequentializer<List<Entry<I>>>(buckets.iterator());
+				}
+				if (pass.buckets.hasNext())
+					pass.finish(pass.buckets.next());
+				else {
+					pass.tables = null;
+					resident = 0;
+					pass.schedule();
+					pass = null;
+				}
+			}
+		}
+		next = results.get(resultIndex++);
+		return true;
+	}
+
+	/**
+	 * Returns the next element in the iteration.
+	 *
+	 * @return the next element in the iteration.
+	 */
+	protected E nextObject() {
+		return next;
+	}
+
+	/**
+	 * Returns the memory currently used by the hash tables of the pass that
+	 * is performed currently.
+	 *
+	 * @return the current memory usage (in bytes).
+	 */
+	public int getCurrentMemUsage() {
+		return (int)Math.min((long)resident*objectSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the memory passed to the constructor.
+	 *
+	 * @return the preferred memory (in bytes).
+	 */
+	public int getPreferredMemSize() {
+		return preferredMemSize;
+	}
+
+	/**
+	 * Returns the memory currently available for the hash tables.
+	 *
+	 * @return the assigned memory (in bytes).
+	 */
+	public int getAssignedMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Changes the memory available for the hash tables. The new limit is
+	 * respected as soon as the next element of a build input is inserted.
+	 *
+	 * @param newMemSize the new memory available for the hash tables (in
+	 *        bytes).
+	 * @throws IllegalArgumentException if <code>newMemSize</code> is
+	 *         negative.
+	 */
+	public void assignMemSize(int newMemSize) throws IllegalArgumentException {
+		if (newMemSize < 0)
+			throw new IllegalArgumentException("newMemSize < 0");
+		memSize = newMemSize;
+	}
+
+	/**
+	 * Returns the size of an object in main memory.
+	 *
+	 * @return the size of an object (in bytes).
+	 */
+	public int getObjectSize() {
+		return objectSize;
+	}
+
+	/**
+	 * Returns the maximal memory used by the hash tables so far.
+	 *
+	 * @return the peak memory usage (in bytes).
+	 */
+	public int getPeakMemUsage() {
+		return peakMemUsage;
+	}
+
+	/**
+	 * Returns the number of elements of the build and probe inputs spilled
+	 * so far.
+	 *
+	 * @return the number of spilled elements.
+	 */
+	public long getSpilledObjects() {
+		return spilledObjects;
+	}
+}
@@ -506,6 +506,24 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 	 * A boolean flag to signal whether the open-phase is finished.
 	 */
 	protected boolean openPhaseFinished = false;
+
+	/**
+	 * An optional key normalizer. If it is set, the runs are created by
+	 * loading chunks of the input into main memory and sorting them with a
+	 * {@link NormalizedKeySorter normalized-key sort} instead of
+	 * replacement-selection. The comparator is then only used for elements
+	 * with equal normalized keys and during the merges.
+	 */
+	protected NormalizedKeySorter.KeyNormalizer<? super E> normalizer = null;
+
+	/**
+	 * An optional function creating the merger for an array of sorted
+	 * iterations, e.g., a
+	 * {@link xxl.core.cursors.unions.LoserTreeMerger loser-tree merger}. If it
+	 * is not set, a heap-based {@link Merger merger} using the comparator is
+	 * created.
+	 */
+	protected Function<Iterator<E>[], ? extends Cursor<E>> newMerger = null;
 	
 	/**
 	 * Creates a new merge-sorter.
@@ -855,6 +873,106 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 		);
 	}
 
+	/**
+	 * Creates a new merge-sorter that creates its runs by a
+	 * {@link NormalizedKeySorter normalized-key sort}. Every run contains
+	 * as many elements as fit into the memory available for the heap, where
+	 * every element additionally requires
+	 * {@link NormalizedKeySorter#BYTES_PER_ELEMENT} bytes for its normalized
+	 * key. The runs are usually shorter than runs created by
+	 * replacement-selection, but they are sorted considerably faster when the
+	 * normalized keys determine the order of most elements.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator used to compare elements with equal
+	 *        normalized keys and to merge the runs.
+	 * @param normalizer the key normalizer mapping the elements to
+	 *        normalized keys consistent with the comparator.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available to the merge-sorter during the
+	 *        open-phase.
+	 * @param finalMemSize the memory available to the merge-sorter during the
+	 *        next-phase.
+	 * @param newQueue the function <code>newQueue</code> should return a
+	 *        queue, which is used by the algorithm to materialize the internal
+	 *        runs. The function takes two parameterless functions
+	 *        <code>getInputBufferSize</code> and
+	 *        <code>getOutputBufferSize</code> as parameters.
+	 * @param verbose if the <code>verbose</code> flag set to <code>true</code>
+	 *        the merge-sorter displays how the memory was distributed
+	 *        internally. In addition, the number of merges is displayed.
+	 */
+	public MergeSorter(
+		Iterator<? extends E> input,
+		Comparator<? super E> comparator,
+		NormalizedKeySorter.KeyNormalizer<? super E> normalizer,
+		final int objectSize,
+		final int memSize,
+		int finalMemSize,
+		final Function<Function<?, Integer>, ? extends Queue<E>> newQueue,
+		boolean verbose
+	) {
+		this(
+			input,
+			comparator,
+			objectSize,
+			memSize,
+			finalMemSize,
+			newQueue,
+			verbose
+		);
+		this.normalizer = normalizer;
+	}
+
+	/**
+	 * Creates a new merge-sorter using the given merge strategy for the
+	 * intermediate and the final merges. Passing the function returned by
+	 * {@link xxl.core.cursors.unions.LoserTreeMerger#factory(Comparator)}
+	 * replaces the heap-based merger by a loser-tree merger, which needs
+	 * fewer comparisons for wide merges.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator used to compare the elements in the
+	 *        heap (replacement-selection).
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available to the merge-sorter during the
+	 *        open-phase.
+	 * @param finalMemSize the memory available to the merge-sorter during the
+	 *        next-phase.
+	 * @param newQueue the function <code>newQueue</code> should return a
+	 *        queue, which is used by the algorithm to materialize the internal
+	 *        runs. The function takes two parameterless functions
+	 *        <code>getInputBufferSize</code> and
+	 *        <code>getOutputBufferSize</code> as parameters.
+	 * @param newMerger the function returning a merger for an array of sorted
+	 *        iterations. The merger has to return the elements in the order of
+	 *        the comparator.
+	 * @param verbose if the <code>verbose</code> flag set to <code>true</code>
+	 *        the merge-sorter displays how the memory was distributed
+	 *        internally. In addition, the number of merges is displayed.
+	 */
+	public MergeSorter(
+		Iterator<? extends E> input,
+		Comparator<? super E> comparator,
+		final int objectSize,
+		final int memSize,
+		int finalMemSize,
+		final Function<Function<?, Integer>, ? extends Queue<E>> newQueue,
+		Function<Iterator<E>[], ? extends Cursor<E>> newMerger,
+		boolean verbose
+	) {
+		this(
+			input,
+			comparator,
+			objectSize,
+			memSize,
+			finalMemSize,
+			newQueue,
+			verbose
+		);
+		this.newMerger = newMerger;
+	}
+
 	/**
 	 * Creates a new merge-sorter. The parameters
 	 * <code>inputBufferRatio</code>, <code>finalInputBufferRatio</code>,
@@ -943,6 +1061,20 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 		);
 	}
 	
+	/**
+	 * Returns a merger for the given sorted iterations. The merger is created
+	 * by the function <code>newMerger</code> if it is set, otherwise a
+	 * heap-based merger using the comparator is returned.
+	 *
+	 * @param iterators the sorted iterations to be merged.
+	 * @return a merger for the given iterations.
+	 */
+	protected Cursor<E> newMerger(Iterator<E>[] iterators) {
+		return newMerger != null ?
+			newMerger.invoke(iterators) :
+			new Merger<E>(comparator, iterators);
+	}
+
 	/**
 	 * Opens the merge-sorter, i.e., signals the merge-sorter to reserve
 	 * resources, computing and merging the intermediate runs, etc. Before a
@@ -983,15 +1115,23 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 				},
 				// a grouper is an Iterator of Iterators, the inner Iterators are sorted
 				// (sorted with Replacement Selection) runs
-				new SortBasedGrouper<E>(
-					new ReplacementSelection<E>(input, heapSize, comparator),
-					//Function used by the Grouper to determine the beginning of a new group
-					new AbstractPredicate<E>() {
-						public boolean invoke(E previous, E current) {
-							return comparator.compare(previous, current) > 0;
+				// (or runs sorted by their normalized keys)
+				normalizer != null ?
+					NormalizedKeySorter.runs(
+						input,
+						Math.max(1, heapSize * objectSize / (objectSize + NormalizedKeySorter.BYTES_PER_ELEMENT)),
+						normalizer,
+						comparator
+					) :
+					new SortBasedGrouper<E>(
+						new ReplacementSelection<E>(input, heapSize, comparator),
+						//Function used by the Grouper to determine the beginning of a new group
+						new AbstractPredicate<E>() {
+							public boolean invoke(E previous, E current) {
+								return comparator.compare(previous, current) > 0;
+							}
 						}
-					}
-				)
+					)
 			),
 			queuesQueueComparator
 		);
@@ -1002,8 +1142,7 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 			//remove currentFanIn queues from queues and merge them to a cursor
 			if (verbose)
 				System.out.println("merge: fanIn: "+currentFanIn+"  queues.size(): "+queues.size()+" --> "+(queues.size()-currentFanIn+1) );
-			cursor = new Merger<E>(
-				comparator,
+			cursor = newMerger(
 				Queues.toArray(
 					queues,
 					(Iterator<E>[])new Iterator[currentFanIn]
@@ -1024,8 +1163,7 @@ public class MergeSorter<E> extends AbstractCursor<E> {
 		if (verbose)
 			System.out.println("final merge: fanIn: "+queues.size());
 
-		this.cursor = new Merger<E>(
-			comparator,
+		this.cursor = newMerger(
 			Queues.toArray(
 				queues,
 				(Iterator<E>[])new Iterator[currentFanIn = queues.size()]
@@ -0,0 +1,406 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.sorters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.sources.ArrayCursor;
+import xxl.core.functions.Function;
+import xxl.core.util.RadixSort;
+
+/**
+ * An in-memory sort operator based on normalized keys. Every element is
+ * mapped to a <code>long</code> prefix of its sort key by a
+ * {@link KeyNormalizer key normalizer}, such that the prefixes compared as
+ * <i>unsigned</i> numbers respect the order of the comparator: whenever the
+ * comparator considers an element <code>a</code> smaller than an element
+ * <code>b</code>, the prefix of <code>a</code> is not greater than the prefix
+ * of <code>b</code>. The (prefix, index) pairs are sorted in primitive arrays
+ * by the least-significant-digit {@link RadixSort radix sort}, that skips the
+ * bytes shared by all prefixes (e.g., the upper bytes of small integers). The comparator is only
+ * called for elements with equal prefixes. So for prefixes that determine the
+ * order completely (e.g., integer, long, double and date keys) no comparator
+ * call and no pointer dereferencing is necessary while sorting.
+ * 
+ * <p>Besides the use as a cursor sorting its whole input in main memory, the
+ * static method {@link #sort(Object[], int, int, KeyNormalizer, Comparator)}
+ * is used by the {@link MergeSorter merge-sorter} for creating its runs when
+ * a key normalizer is given. It can also replace the comparison sort of the
+ * chunks of a {@link ParallelMergeSorter parallel merge-sorter} by
+ * overriding its <code>sort</code> method. The method
+ * {@link #sort(Object[], int, int, KeyNormalizer, Comparator, int)} sorts the
+ * keys by parallel radix passes. Sorting requires
+ * {@link #BYTES_PER_ELEMENT} bytes of main memory per element in addition to
+ * the elements.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   NormalizedKeySorter&lt;Integer&gt; sorter = new NormalizedKeySorter&lt;Integer&gt;(
+ *       input,
+ *       NormalizedKeySorter.INTEGER_NORMALIZER,
+ *       null
+ *   );
+ * </pre></code>
+ * sorts an iteration of integers without comparisons. Tuples can be sorted by
+ * a column by combining a normalizer with a function extracting the column
+ * using {@link #normalizer(Function, KeyNormalizer)}.</p>
+ *
+ * @param <E> the type of the elements to be sorted.
+ * @see MergeSorter
+ */
+public class NormalizedKeySorter<E> extends AbstractCursor<E> {
+
+	/**
+	 * Maps an element to a <code>long</code> prefix of its sort key. The
+	 * prefixes are compared as unsigned numbers and have to be consistent
+	 * with the order of the elements, i.e., if <code>a</code> is smaller than
+	 * <code>b</code> the prefix of <code>a</code> must not be greater than the
+	 * prefix of <code>b</code>.
+	 *
+	 * @param <E> the type of the elements.
+	 */
+	public static interface KeyNormalizer<E> {
+		
+		/**
+		 * Returns the normalized key prefix of the given element.
+		 *
+		 * @param element the element.
+		 * @return the normalized key prefix, compared as unsigned number.
+		 */
+		public abstract long normalize(E element);
+	}
+
+	/**
+	 * A key normalizer for {@link Integer Integers} and other
+	 * {@link Number Numbers} whose order is given by their
+	 * <code>long</code> values (i.e., <code>Byte</code>, <code>Short</code>,
+	 * <code>Integer</code> and <code>Long</code>).
+	 */
+	public static final KeyNormalizer<Number> INTEGER_NORMALIZER = new KeyNormalizer<Number>() {
+		public long normalize(Number number) {
+			return number.longValue() ^ Long.MIN_VALUE;
+		}
+	};
+
+	/**
+	 * A key normalizer for {@link Long Longs}.
+	 */
+	public static final KeyNormalizer<Number> LONG_NORMALIZER = INTEGER_NORMALIZER;
+
+	/**
+	 * A key normalizer for {@link Double Doubles} and
+	 * {@link Float Floats} respecting the order of
+	 * {@link Double#compare(double, double)}.
+	 */
+	public static final KeyNormalizer<Number> DOUBLE_NORMALIZER = new KeyNormalizer<Number>() {
+		public long normalize(Number number) {
+			long bits = Double.doubleToLongBits(number.doubleValue());
+			return bits ^ (bits >> 63 | Long.MIN_VALUE);
+		}
+	};
+
+	/**
+	 * A key normalizer for {@link Date Dates} (including SQL dates and
+	 * timestamps).
+	 */
+	public static final KeyNormalizer<Date> DATE_NORMALIZER = new KeyNormalizer<Date>() {
+		public long normalize(Date date) {
+			return date.getTime() ^ Long.MIN_VALUE;
+		}
+	};
+
+	/**
+	 * A key normalizer for {@link String Strings} using their first four
+	 * characters as prefix. Strings sharing these characters are compared by
+	 * the comparator.
+	 */
+	public static final KeyNormalizer<CharSequence> STRING_NORMALIZER = new KeyNormalizer<CharSequence>() {
+		public long normalize(CharSequence string) {
+			long prefix = 0;
+			for (int i = 0; i < 4; i++)
+				prefix = prefix << 16 | (i < string.length() ? string.charAt(i) : 0);
+			return prefix;
+		}
+	};
+
+	/**
+	 * The number of bytes of main memory required per element for sorting
+	 * (two prefix arrays and two index arrays).
+	 */
+	public static final int BYTES_PER_ELEMENT = 24;
+
+	/**
+	 * Below this number of elements the comparator is used for sorting.
+	 */
+	protected static final int MIN_RADIX_SORT_SIZE = 32;
+
+	/**
+	 * Returns a key normalizer that applies the given normalizer on the key
+	 * of an element. <code>null</code> keys are sorted first.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param <K> the type of the keys.
+	 * @param getKey the function determining the key of an element, e.g.,
+	 *        a column of a tuple.
+	 * @param normalizer the key normalizer for the keys.
+	 * @return a key normalizer for the elements.
+	 */
+	public static <E, K> KeyNormalizer<E> normalizer(final Function<? super E, ? extends K> getKey, final KeyNormalizer<? super K> normalizer) {
+		return new KeyNormalizer<E>() {
+			public long normalize(E element) {
+				K key = getKey.invoke(element);
+				return key == null ? 0 : normalizer.normalize(key);
+			}
+		};
+	}
+
+	/**
+	 * Returns a key normalizer for the reverse order of the given normalizer.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param normalizer the key normalizer.
+	 * @return a key normalizer for the reverse order.
+	 */
+	public static <E> KeyNormalizer<E> reverse(final KeyNormalizer<E> normalizer) {
+		return new KeyNormalizer<E>() {
+			public long normalize(E element) {
+				return ~normalizer.normalize(element);
+			}
+		};
+	}
+
+	/**
+	 * Sorts the specified range of the given array. The elements are ordered
+	 * by their normalized keys; elements with equal keys are ordered by the
+	 * comparator (if given). The sort is not stable.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param array the array to be sorted.
+	 * @param from the index of the first element (inclusive).
+	 * @param to the index of the last element (exclusive).
+	 * @param normalizer the key normalizer.
+	 * @param comparator the comparator for elements with equal keys or
+	 *        <code>null</code> if the keys determine the order completely.
+	 */
+	public static <E> void sort(Object[] array, int from, int to, KeyNormalizer<? super E> normalizer, Comparator<? super E> comparator) {
+		sort(array, from, to, normalizer, comparator, 1);
+	}
+
+	/**
+	 * Sorts the specified range of the given array. The elements are ordered
+	 * by their normalized keys; elements with equal keys are ordered by the
+	 * comparator (if given). The keys are sorted by
+	 * {@link RadixSort#sortedPositions(long[], int)} using the given number
+	 * of threads. The sort is not stable.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param array the array to be sorted.
+	 * @param from the index of the first element (inclusive).
+	 * @param to the index of the last element (exclusive).
+	 * @param normalizer the key normalizer.
+	 * @param comparator the comparator for elements with equal keys or
+	 *        <code>null</code> if the keys determine the order completely.
+	 * @param threads the number of threads of the radix sort.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> void sort(Object[] array, int from, int to, KeyNormalizer<? super E> normalizer, Comparator<? super E> comparator, int threads) {
+		int size = to-from;
+		if (size < 2)
+			return;
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = normalizer.normalize((E)array[from+i]);
+		if (size < MIN_RADIX_SORT_SIZE) {
+			insertionSort(array, from, keys, comparator);
+			return;
+		}
+		// the radix sort orders the keys as signed numbers
+		for (int i = 0; i < size; i++)
+			keys[i] ^= Long.MIN_VALUE;
+		int[] indices = RadixSort.sortedPositions(keys, threads);
+		Object[] sorted = new Object[size];
+		for (int i = 0; i < size; i++)
+			sorted[i] = array[from+indices[i]];
+		System.arraycopy(sorted, 0, array, from, size);
+		if (comparator != null)
+			for (int i = 0, j; i < size; i = j) {
+				for (j = i+1; j < size && keys[j] == keys[i]; j++);
+				if (j-i > 1)
+					Arrays.sort(array, from+i, from+j, (Comparator<Object>)comparator);
+			}
+	}
+
+	/**
+	 * Sorts a small range of an array by insertion sort on the normalized
+	 * keys and the comparator.
+	 *
+	 * @param array the array to be sorted.
+	 * @param from the index of the first element.
+	 * @param keys the normalized keys of the elements of the range.
+	 * @param comparator the comparator for elements with equal keys or
+	 *        <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> void insertionSort(Object[] array, int from, long[] keys, Comparator<? super E> comparator) {
+		for (int i = 1; i < keys.length; i++) {
+			long key = keys[i];
+			Object element = array[from+i];
+			int j = i-1;
+			for (; j >= 0; j--) {
+				int compare = Long.compareUnsigned(keys[j], key);
+				if (compare < 0 || compare == 0 && (comparator == null || comparator.compare((E)array[from+j], (E)element) <= 0))
+					break;
+				keys[j+1] = keys[j];
+				array[from+j+1] = array[from+j];
+			}
+			keys[j+1] = key;
+			array[from+j+1] = element;
+		}
+	}
+
+	/**
+	 * Returns an iteration over sorted runs of the given input. Every run
+	 * contains <code>runSize</code> elements (except the last one) and is
+	 * sorted by {@link #sort(Object[], int, int, KeyNormalizer, Comparator)}.
+	 *
+	 * @param <E> the type of the elements.
+	 * @param input the input iteration.
+	 * @param runSize the number of elements of a run.
+	 * @param normalizer the key normalizer.
+	 * @param comparator the comparator for elements with equal keys or
+	 *        <code>null</code>.
+	 * @return an iteration over the sorted runs.
+	 */
+	public static <E> Iterator<Iterator<E>> runs(final Iterator<? extends E> input, final int runSize, final KeyNormalizer<? super E> normalizer, final Comparator<? super E> comparator) {
+		return new Iterator<Iterator<E>>() {
+			public boolean hasNext() {
+				return input.hasNext();
+			}
+			
+			@SuppressWarnings("unchecked")
+			public Iterator<E> next() {
+				if (!input.hasNext())
+					throw new NoSuchElementException();
+				List<E> run = new ArrayList<E>(runSize);
+				while (run.size() < runSize && input.hasNext())
+					run.add(input.next());
+				Object[] array = run.toArray();
+				sort(array, 0, array.length, normalizer, comparator);
+				return new ArrayCursor<E>((E[])array);
+			}
+			
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * The input iteration to be sorted.
+	 */
+	protected Cursor<? extends E> input;
+
+	/**
+	 * The key normalizer.
+	 */
+	protected KeyNormalizer<? super E> normalizer;
+
+	/**
+	 * The comparator for elements with equal normalized keys.
+	 */
+	protected Comparator<? super E> comparator;
+
+	/**
+	 * The sorted elements.
+	 */
+	protected Cursor<E> cursor = null;
+
+	/**
+	 * Creates a new sorter sorting the given input in main memory.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param normalizer the key normalizer.
+	 * @param comparator the comparator for elements with equal normalized
+	 *        keys or <code>null</code> if the keys determine the order
+	 *        completely.
+	 */
+	public NormalizedKeySorter(Iterator<? extends E> input, KeyNormalizer<? super E> normalizer, Comparator<? super E> comparator) {
+		this.input = Cursors.wrap(input);
+		this.normalizer = normalizer;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Opens the sorter, i.e., reads and sorts the whole input.
+	 */
+	@SuppressWarnings("unchecked")
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+		Object[] array = Cursors.toArray(input);
+		sort(array, 0, array.length, normalizer, comparator);
+		cursor = new ArrayCursor<E>((E[])array);
+	}
+
+	/**
+	 * Closes the sorter and its input.
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input.close();
+	}
+
+	/**
+	 * Returns <code>true</code> if the sorter has more elements.
+	 *
+	 * @return <code>true</code> if the sorter has more elements.
+	 */
+	protected boolean hasNextObject() {
+		return cursor.hasNext();
+	}
+
+	/**
+	 * Returns the next element of the sorter.
+	 *
+	 * @return the next element of the sorter.
+	 */
+	protected E nextObject() {
+		return cursor.next();
+	}
+}
@@ -0,0 +1,487 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.sorters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.sources.ArrayCursor;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.cursors.unions.Merger;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Constant;
+import xxl.core.functions.Function;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * A multi-threaded external merge-sort. Like the
+ * {@link MergeSorter merge-sorter} it creates sorted runs and merges them,
+ * but both phases are performed by <code>threads</code> worker threads:
+ * 
+ * <ul>
+ *     <li>
+ *         <i>Run creation:</i> The calling thread reads the input in chunks
+ *         of <code>memSize/(threads+1)</code> bytes, i.e., every worker owns a
+ *         memory share and one chunk is filled while the others are sorted.
+ *         A worker sorts its chunk in main memory and writes it to the
+ *         queues created by <code>newQueue</code>, while the calling thread
+ *         already reads the next chunk.
+ *     </li>
+ *     <li>
+ *         <i>Range partitioning:</i> Every run is split into
+ *         <code>threads</code> key ranges by splitters that are sampled from
+ *         the first chunk, so that the <code>i</code>-th range of every run
+ *         only contains elements smaller than those of the
+ *         <code>i+1</code>-th range.
+ *     </li>
+ *     <li>
+ *         <i>Merge:</i> The ranges are merged independently: the first range
+ *         is merged lazily while the elements are consumed, the others are
+ *         merged concurrently by the workers into queues which are read
+ *         afterwards. If there are more runs than the memory share of a
+ *         worker allows to merge at once, intermediate merges are performed.
+ *     </li>
+ * </ul>
+ * 
+ * <p>If the whole input fits in the first chunk, it is sorted in main memory
+ * without using any queue or worker. Because the splitters are sampled from
+ * the first chunk, the ranges can be unbalanced for inputs that are not
+ * randomly ordered (e.g., presorted inputs); this only reduces the
+ * parallelism of the merge phase. The order of equal elements is not
+ * preserved.</p>
+ * 
+ * <p>The function <code>newQueue</code> is invoked by the worker threads and
+ * every queue is written and read by different threads (one after the
+ * other). So queues that share a container (e.g.
+ * {@link xxl.core.collections.queues.io.BlockBasedQueue block-based queues})
+ * have to use a
+ * {@link xxl.core.collections.containers.SynchronizedContainer synchronized container}.</p>
+ * 
+ * <p>The workers are shut down when the sorter is closed.</p>
+ *
+ * @param <E> the type of the elements to be sorted.
+ * @see MergeSorter
+ */
+public class ParallelMergeSorter<E> extends AbstractCursor<E> {
+
+	/**
+	 * The number of samples taken from the first chunk for every range.
+	 */
+	public static final int OVERSAMPLING = 16;
+
+	/**
+	 * The input iteration to be sorted.
+	 */
+	protected Cursor<? extends E> input;
+
+	/**
+	 * The comparator defining the order of the elements.
+	 */
+	protected Comparator<? super E> comparator;
+
+	/**
+	 * The size of an object in main memory.
+	 */
+	protected int objectSize;
+
+	/**
+	 * The memory available to the sorter (shared by all workers).
+	 */
+	protected int memSize;
+
+	/**
+	 * The size of the buffers of a queue.
+	 */
+	protected int blockSize;
+
+	/**
+	 * The number of worker threads and key ranges.
+	 */
+	protected int threads;
+
+	/**
+	 * A function returning a new queue storing a range of a run or a merged
+	 * range. The function takes two parameterless functions returning the
+	 * sizes of the input and output buffers (like the function of the
+	 * {@link MergeSorter merge-sorter}).
+	 */
+	protected Function<Function<?, Integer>, ? extends Queue<E>> newQueue;
+
+	/**
+	 * The worker threads.
+	 */
+	protected ExecutorService service = null;
+
+	/**
+	 * The merged ranges computed by the workers. The first entry is
+	 * <code>null</code> because the first range is merged lazily; a range
+	 * without elements is given by a <code>null</code> queue.
+	 */
+	protected List<Future<Queue<E>>> ranges = new ArrayList<Future<Queue<E>>>();
+
+	/**
+	 * The index of the range that is actually returned.
+	 */
+	protected int range = 0;
+
+	/**
+	 * The cursor delivering the elements of the actual range.
+	 */
+	protected Cursor<E> cursor = null;
+
+	/**
+	 * Creates a new parallel merge-sorter.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator defining the order of the elements.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available to the sorter (shared by all
+	 *        workers).
+	 * @param blockSize the size of the buffers of a queue.
+	 * @param threads the number of worker threads.
+	 * @param newQueue a function returning a new queue. The function takes
+	 *        two parameterless functions returning the sizes of the input and
+	 *        output buffers.
+	 * @throws IllegalArgumentException if one of the sizes is not positive.
+	 */
+	public ParallelMergeSorter(Iterator<? extends E> input, Comparator<? super E> comparator, int objectSize, int memSize, int blockSize, int threads, Function<Function<?, Integer>, ? extends Queue<E>> newQueue) throws IllegalArgumentException {
+		if (objectSize <= 0 || memSize <= 0 || blockSize <= 0 || threads <= 0)
+			throw new IllegalArgumentException("the sizes and the number of threads of a parallel merge-sorter have to be positive");
+		this.input = Cursors.wrap(input);
+		this.comparator = comparator;
+		this.objectSize = objectSize;
+		this.memSize = memSize;
+		this.blockSize = blockSize;
+		this.threads = threads;
+		this.newQueue = newQueue;
+	}
+
+	/**
+	 * Creates a new parallel merge-sorter materializing the runs in main
+	 * memory ({@link ListQueue list-queues}).
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator defining the order of the elements.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available to the sorter (shared by all
+	 *        workers).
+	 * @param threads the number of worker threads.
+	 */
+	public ParallelMergeSorter(Iterator<? extends E> input, Comparator<? super E> comparator, int objectSize, int memSize, int threads) {
+		this(
+			input,
+			comparator,
+			objectSize,
+			memSize,
+			objectSize,
+			threads,
+			new AbstractFunction<Function<?, Integer>, Queue<E>>() {
+				public Queue<E> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+					return new ListQueue<E>();
+				}
+			}
+		);
+	}
+
+	/**
+	 * Waits for the result of a worker.
+	 *
+	 * @param future the result of a worker.
+	 * @return the result.
+	 */
+	protected static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WrappingRuntimeException(ie);
+		}
+		catch (ExecutionException ee) {
+			throw new WrappingRuntimeException(ee.getCause());
+		}
+	}
+
+	/**
+	 * Reads the next chunk of the input.
+	 *
+	 * @param size the maximal number of elements of the chunk.
+	 * @return the elements of the chunk.
+	 */
+	protected Object[] read(int size) {
+		Object[] chunk = new Object[size];
+		int length = 0;
+		while (length < size && input.hasNext())
+			chunk[length++] = input.next();
+		return length < size ? Arrays.copyOf(chunk, length) : chunk;
+	}
+
+	/**
+	 * Sorts the given chunk.
+	 *
+	 * @param chunk the chunk.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void sort(Object[] chunk) {
+		Arrays.sort(chunk, (Comparator<Object>)comparator);
+	}
+
+	/**
+	 * Writes the given sorted chunk as a run, split into the ranges defined
+	 * by the splitters.
+	 *
+	 * @param chunk the sorted chunk.
+	 * @param splitters the upper bounds of the ranges (except the last one).
+	 * @return the queues storing the ranges of the run (<code>null</code>
+	 *         for empty ranges).
+	 */
+	@SuppressWarnings("unchecked")
+	protected Queue<E>[] write(Object[] chunk, Object[] splitters) {
+		Queue<E>[] run = new Queue[threads];
+		Function<?, Integer> bufferSize = new Constant<Integer>(blockSize);
+		int from = 0;
+		for (int i = 0; i < threads; i++) {
+			int to = chunk.length;
+			if (i < splitters.length) {
+				// first position whose element is greater than the splitter
+				int low = from, high = chunk.length;
+				while (low < high) {
+					int middle = (low+high) >>> 1;
+					if (comparator.compare((E)chunk[middle], (E)splitters[i]) <= 0)
+						low = middle+1;
+					else
+						high = middle;
+				}
+				to = low;
+			}
+			if (from < to) {
+				run[i] = newQueue.invoke(bufferSize, bufferSize);
+				run[i].open();
+				for (int j = from; j < to; j++)
+					run[i].enqueue((E)chunk[j]);
+			}
+			from = to;
+		}
+		return run;
+	}
+
+	/**
+	 * Merges the given queues. As long as there are more queues than can be
+	 * merged at once with the memory share of a worker, intermediate merges
+	 * are performed.
+	 *
+	 * @param queues the sorted queues.
+	 * @return a cursor delivering the merged elements.
+	 */
+	@SuppressWarnings("unchecked")
+	protected Cursor<E> merge(List<Queue<E>> queues) {
+		int fanIn = Math.max(2, memSize/threads/(blockSize+objectSize));
+		Function<?, Integer> bufferSize = new Constant<Integer>(blockSize);
+		while (queues.size() > fanIn) {
+			List<Queue<E>> inputs = queues.subList(0, fanIn);
+			Iterator<E>[] cursors = new Iterator[fanIn];
+			for (int i = 0; i < fanIn; i++)
+				cursors[i] = new QueueCursor<E>(inputs.get(i));
+			Cursor<E> merger = new Merger<E>(comparator, cursors);
+			Queue<E> queue = newQueue.invoke(bufferSize, bufferSize);
+			queue.open();
+			while (merger.hasNext())
+				queue.enqueue(merger.next());
+			merger.close();
+			inputs.clear();
+			queues.add(queue);
+		}
+		if (queues.isEmpty())
+			return new EmptyCursor<E>();
+		if (queues.size() == 1)
+			return new QueueCursor<E>(queues.get(0));
+		Iterator<E>[] cursors = new Iterator[queues.size()];
+		for (int i = 0; i < cursors.length; i++)
+			cursors[i] = new QueueCursor<E>(queues.get(i));
+		return new Merger<E>(comparator, cursors);
+	}
+
+	/**
+	 * Opens the sorter, i.e., creates the runs in parallel and starts merging
+	 * the ranges. Multiple calls to <code>open</code> do not have any effect.
+	 */
+	@SuppressWarnings("unchecked")
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+		
+		int chunkSize = Math.max(1, memSize/objectSize/(threads+1));
+		Object[] first = read(chunkSize);
+		sort(first);
+		if (!input.hasNext()) {
+			// the input fits in main memory
+			cursor = new ArrayCursor<E>((E[])first);
+			return;
+		}
+		final Object[] splitters = new Object[threads-1];
+		for (int i = 1; i < threads; i++)
+			splitters[i-1] = first[(int)((long)first.length*i/threads)];
+		
+		service = Executors.newFixedThreadPool(
+			threads,
+			new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ParallelMergeSorter worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			}
+		);
+		// at most one chunk per worker is in memory besides the chunk that is read
+		final Semaphore chunks = new Semaphore(threads);
+		List<Future<Queue<E>[]>> runs = new ArrayList<Future<Queue<E>[]>>();
+		for (Object[] chunk = first; chunk.length > 0; chunk = read(chunkSize)) {
+			final Object[] sortChunk = chunk;
+			final boolean sorted = chunk == first;
+			try {
+				chunks.acquire();
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new WrappingRuntimeException(ie);
+			}
+			runs.add(service.submit(new Callable<Queue<E>[]>() {
+				public Queue<E>[] call() {
+					try {
+						if (!sorted)
+							sort(sortChunk);
+						return write(sortChunk, splitters);
+					}
+					finally {
+						chunks.release();
+					}
+				}
+			}));
+			first = null;
+		}
+		
+		final List<List<Queue<E>>> queues = new ArrayList<List<Queue<E>>>();
+		for (int i = 0; i < threads; i++)
+			queues.add(new ArrayList<Queue<E>>());
+		for (Future<Queue<E>[]> run : runs) {
+			Queue<E>[] ranges = await(run);
+			for (int i = 0; i < threads; i++)
+				if (ranges[i] != null)
+					queues.get(i).add(ranges[i]);
+		}
+		
+		ranges.add(null);
+		for (int i = 1; i < threads; i++) {
+			final List<Queue<E>> rangeQueues = queues.get(i);
+			ranges.add(service.submit(new Callable<Queue<E>>() {
+				public Queue<E> call() {
+					if (rangeQueues.size() <= 1)
+						// a single run need not be copied
+						return rangeQueues.isEmpty() ? null : rangeQueues.get(0);
+					Cursor<E> merger = merge(rangeQueues);
+					Function<?, Integer> bufferSize = new Constant<Integer>(blockSize);
+					Queue<E> queue = newQueue.invoke(bufferSize, bufferSize);
+					queue.open();
+					while (merger.hasNext())
+						queue.enqueue(merger.next());
+					merger.close();
+					return queue;
+				}
+			}));
+		}
+		cursor = merge(queues.get(0));
+	}
+
+	/**
+	 * Closes the sorter, i.e., closes the input, the queues and shuts the
+	 * workers down. Multiple calls to <code>close</code> do not have any
+	 * effect.
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		input.close();
+		if (cursor != null)
+			cursor.close();
+		for (int i = range+1; i < ranges.size(); i++)
+			try {
+				Queue<E> queue = await(ranges.get(i));
+				if (queue != null)
+					queue.close();
+			}
+			catch (RuntimeException re) {
+				// the range is not available, so there is nothing to close
+			}
+		if (service != null)
+			service.shutdown();
+	}
+
+	/**
+	 * Returns <code>true</code> if the sorter has more elements.
+	 *
+	 * @return <code>true</code> if the sorter has more elements.
+	 */
+	protected boolean hasNextObject() {
+		while (!cursor.hasNext()) {
+			cursor.close();
+			if (++range >= ranges.size()) {
+				cursor = new EmptyCursor<E>();
+				return false;
+			}
+			Queue<E> queue = await(ranges.get(range));
+			cursor = queue == null ? new EmptyCursor<E>() : new QueueCursor<E>(queue);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the next element of the sorter.
+	 *
+	 * @return the next element of the sorter.
+	 */
+	protected E nextObject() {
+		return cursor.next();
+	}
+}
@@ -0,0 +1,463 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.sorters;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import xxl.core.collections.queues.Heap;
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.comparators.InverseComparator;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.wrappers.QueueCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Constant;
+import xxl.core.functions.Function;
+import xxl.core.util.memory.SpillingMemoryManageable;
+
+/**
+ * A sort operator delivering only the first <code>k</code> elements of the
+ * sorted input, i.e., the result of a sort followed by a
+ * {@link xxl.core.cursors.filters.Taker taker}, without sorting the whole
+ * input. The top-k sorter keeps the smallest elements seen so far in a
+ * bounded {@link Heap heap} whose root is the largest of them, so every
+ * further element is rejected by a single comparison unless it is smaller
+ * than the root, which it replaces then. When the input is consumed, the
+ * heap is emptied into an array from the back, which results in the
+ * ascending order.
+ * 
+ * <p>If <code>k</code> elements do not fit into the available memory, the
+ * result is computed in several passes: every pass keeps as many elements
+ * as fit into memory in the heap and writes the elements that are rejected
+ * or replaced to a queue, which is the input of the next pass. Since the
+ * heap of a pass contains exactly the smallest elements of its input, the
+ * passes deliver consecutive parts of the result, and every pass only reads
+ * the elements that are not returned yet. The last pass, which has to
+ * deliver the remaining elements, does not write a queue at all. The
+ * number of passes is <code>k/(memSize/objectSize)</code> (rounded up), so
+ * the top-k sorter should only be used if <code>k</code> is not
+ * considerably larger than the memory; otherwise a
+ * {@link MergeSorter merge-sorter} is the better choice.</p>
+ * 
+ * <p>A top-k sorter is {@link SpillingMemoryManageable memory manageable},
+ * so it can be registered with a
+ * {@link xxl.core.util.memory.MemoryManager memory manager} that changes its
+ * memory at runtime. The size of the heap is determined at the beginning of
+ * every pass, i.e., a changed memory limit is respected by the next pass.
+ * The memory needed for <code>k</code> elements (but at most the memory
+ * passed to the constructor) is reported as the preferred memory.</p>
+ * 
+ * <p>The order of equal elements is not preserved. The input is not read
+ * before the first element is requested and not at all if <code>k</code>
+ * is zero.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   TopKSorter&lt;Integer&gt; sorter = new TopKSorter&lt;Integer&gt;(
+ *       new RandomIntegers(1000, 1000000),
+ *       ComparableComparator.INTEGER_COMPARATOR,
+ *       10
+ *   );
+ *   
+ *   while (sorter.hasNext())
+ *       System.out.println(sorter.next());
+ *   sorter.close();
+ * </pre></code>
+ * This example prints the ten smallest of a million random integers.</p>
+ *
+ * @param <E> the type of the elements to be sorted.
+ * @see MergeSorter
+ * @see xxl.core.cursors.filters.Taker
+ */
+public class TopKSorter<E> extends AbstractCursor<E> implements SpillingMemoryManageable {
+
+	/**
+	 * The input iteration to be sorted.
+	 */
+	protected Cursor<? extends E> input;
+
+	/**
+	 * The comparator defining the order of the elements.
+	 */
+	protected Comparator<? super E> comparator;
+
+	/**
+	 * The number of elements to be delivered.
+	 */
+	protected int k;
+
+	/**
+	 * The size of an object in main memory.
+	 */
+	protected int objectSize;
+
+	/**
+	 * The memory available to the heap of a pass. It may be changed by a
+	 * memory manager while the sorter is running.
+	 */
+	protected volatile int memSize;
+
+	/**
+	 * The memory reported as the preferred memory.
+	 */
+	protected int preferredMemSize;
+
+	/**
+	 * The maximal memory used by the heap so far.
+	 */
+	protected volatile int peakMemUsage = 0;
+
+	/**
+	 * The number of elements written to the inputs of further passes so
+	 * far.
+	 */
+	protected volatile long spilledObjects = 0;
+
+	/**
+	 * The number of elements held in main memory, i.e., the elements of the
+	 * heap and the elements of the current pass that are not delivered yet.
+	 * It is maintained separately, because a memory manager may ask for the
+	 * memory usage concurrently.
+	 */
+	protected volatile int resident = 0;
+
+	/**
+	 * The function creating the queues that store the input of the next
+	 * pass.
+	 */
+	protected Function<Function<?, Integer>, ? extends Queue<E>> newQueue;
+
+	/**
+	 * The size of the buffers of a queue.
+	 */
+	protected Function<?, Integer> bufferSize;
+
+	/**
+	 * The input of the current pass or <code>null</code> if there is no
+	 * further pass.
+	 */
+	protected Cursor<? extends E> pass;
+
+	/**
+	 * The heap that is reused by all passes.
+	 */
+	protected Heap<E> heap;
+
+	/**
+	 * The elements delivered by the last pass in ascending order.
+	 */
+	protected Object[] buffer;
+
+	/**
+	 * The number of elements delivered by the last pass.
+	 */
+	protected int size;
+
+	/**
+	 * The position of the next element of the buffer to be returned.
+	 */
+	protected int position;
+
+	/**
+	 * The number of elements that still have to be delivered by further
+	 * passes.
+	 */
+	protected int remaining;
+
+	/**
+	 * The number of passes performed so far.
+	 */
+	protected int passes;
+
+	/**
+	 * Creates a new top-k sorter.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator defining the order of the elements.
+	 * @param k the number of elements to be delivered.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available to the heap of a pass.
+	 * @param blockSize the size of the buffers of a queue.
+	 * @param newQueue the function <code>newQueue</code> should return a
+	 *        queue, which is used to store the input of the next pass. The
+	 *        function is invoked on two parameterless functions returning the
+	 *        sizes of the input and output buffers.
+	 * @throws IllegalArgumentException if <code>k</code> is negative or the
+	 *         memory does not suffice for a single object.
+	 */
+	public TopKSorter(Iterator<? extends E> input, Comparator<? super E> comparator, int k, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<E>> newQueue) throws IllegalArgumentException {
+		if (k < 0)
+			throw new IllegalArgumentException("the number of elements to be delivered must not be negative");
+		if (objectSize <= 0 || memSize < objectSize)
+			throw new IllegalArgumentException("the memory of a top-k sorter has to hold at least one object");
+		this.input = Cursors.wrap(input);
+		this.comparator = comparator;
+		this.k = k;
+		this.objectSize = objectSize;
+		this.memSize = memSize;
+		this.preferredMemSize = (int)Math.min((long)k*objectSize, memSize);
+		this.newQueue = newQueue;
+		this.bufferSize = new Constant<Integer>(blockSize);
+	}
+
+	/**
+	 * Creates a new top-k sorter whose passes store their rejected elements
+	 * in main memory.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator defining the order of the elements.
+	 * @param k the number of elements to be delivered.
+	 * @param objectSize the size of an object in main memory.
+	 * @param memSize the memory available to the heap of a pass.
+	 */
+	public TopKSorter(Iterator<? extends E> input, Comparator<? super E> comparator, int k, int objectSize, int memSize) {
+		this(input, comparator, k, objectSize, memSize, 1, TopKSorter.<E>newListQueue());
+	}
+
+	/**
+	 * Creates a new top-k sorter holding all <code>k</code> elements in main
+	 * memory, i.e., the result is computed in a single pass.
+	 *
+	 * @param input the input iteration to be sorted.
+	 * @param comparator the comparator defining the order of the elements.
+	 * @param k the number of elements to be delivered.
+	 */
+	public TopKSorter(Iterator<? extends E> input, Comparator<? super E> comparator, int k) {
+		this(input, comparator, k, 1, Math.max(k, 1));
+	}
+
+	/**
+	 * Returns a function creating an in-memory queue.
+	 *
+	 * @param <E> the type of the elements of the queue.
+	 * @return a function creating an in-memory queue.
+	 */
+	private static <E> Function<Function<?, Integer>, Queue<E>> newListQueue() {
+		return new AbstractFunction<Function<?, Integer>, Queue<E>>() {
+			public Queue<E> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<E>();
+			}
+		};
+	}
+
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		input.open();
+		pass = input;
+		remaining = k;
+		size = position = passes = resident = 0;
+	}
+
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		if (pass != null && pass != input)
+			pass.close();
+		input.close();
+		pass = null;
+		heap = null;
+		buffer = null;
+		resident = 0;
+	}
+
+	/**
+	 * Performs the next pass, i.e., determines the smallest elements of the
+	 * input of the pass and, unless it is the last pass, writes the other
+	 * elements to the input of the next pass.
+	 */
+	protected void pass() {
+		int bound = Math.min(Math.max(1, memSize/objectSize), remaining);
+		boolean last = bound == remaining;
+		if (heap == null || buffer.length < bound) {
+			heap = new Heap<E>(bound, new InverseComparator<E>(comparator));
+			buffer = new Object[bound];
+		}
+		heap.open();
+		Queue<E> queue = null;
+		while (pass.hasNext()) {
+			E element = pass.next();
+			if (heap.size() < bound) {
+				heap.enqueue(element);
+				resident = heap.size();
+			}
+			else if (comparator.compare(element, heap.peek()) < 0) {
+				E replaced = heap.replace(element);
+				if (!last) {
+					if (queue == null) {
+						queue = newQueue.invoke(bufferSize, bufferSize);
+						queue.open();
+					}
+					queue.enqueue(replaced);
+					spilledObjects++;
+				}
+			}
+			else if (!last) {
+				if (queue == null) {
+					queue = newQueue.invoke(bufferSize, bufferSize);
+					queue.open();
+				}
+				queue.enqueue(element);
+				spilledObjects++;
+			}
+		}
+		if (pass != input)
+			pass.close();
+		pass = queue == null ? null : new QueueCursor<E>(queue);
+		resident = size = heap.size();
+		peakMemUsage = (int)Math.max(peakMemUsage, Math.min((long)size*objectSize, Integer.MAX_VALUE));
+		for (int i = size; --i >= 0;)
+			buffer[i] = heap.dequeue();
+		position = 0;
+		remaining -= size;
+		passes++;
+	}
+
+	/**
+	 * Returns the number of passes performed so far.
+	 *
+	 * @return the number of passes.
+	 */
+	public int passes() {
+		return passes;
+	}
+
+	protected boolean hasNextObject() {
+		if (position < size)
+			return true;
+		if (remaining == 0 || pass == null)
+			return false;
+		pass();
+		return size > 0;
+	}
+
+	protected E nextObject() {
+		if (position >= size)
+			throw new NoSuchElementException();
+		E element = (E)buffer[position];
+		buffer[position++] = null;
+		resident = size-position;
+		return element;
+	}
+
+	/**
+	 * Resets the top-k sorter by resetting the input iteration. The result is
+	 * computed again when the next element is requested.
+	 *
+	 * @throws UnsupportedOperationException if the input iteration does not
+	 *         support the <code>reset</code> operation.
+	 */
+	public void reset() throws UnsupportedOperationException {
+		input.reset();
+		super.reset();
+		if (pass != null && pass != input)
+			pass.close();
+		pass = input;
+		remaining = k;
+		size = position = passes = resident = 0;
+	}
+
+	public boolean supportsReset() {
+		return input.supportsReset();
+	}
+
+	/**
+	 * Returns the memory currently used by the heap and the elements of the
+	 * current pass that are not delivered yet.
+	 *
+	 * @return the current memory usage (in bytes).
+	 */
+	public int getCurrentMemUsage() {
+		return (int)Math.min((long)resident*objectSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the memory needed to sort the <code>k</code> elements in a
+	 * single pass, but at most the memory passed to the constructor.
+	 *
+	 * @return the preferred memory (in bytes).
+	 */
+	public int getPreferredMemSize() {
+		return preferredMemSize;
+	}
+
+	/**
+	 * Returns the memory currently available to the heap of a pass.
+	 *
+	 * @return the assigned memory (in bytes).
+	 */
+	public int getAssignedMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Changes the memory available to the heap of a pass. The new limit is
+	 * respected by the next pass.
+	 *
+	 * @param newMemSize the new memory available to the heap (in bytes).
+	 * @throws IllegalArgumentException if <code>newMemSize</code> is
+	 *         negative.
+	 */
+	public void assignMemSize(int newMemSize) throws IllegalArgumentException {
+		if (newMemSize < 0)
+			throw new IllegalArgumentException("newMemSize < 0");
+		memSize = newMemSize;
+	}
+
+	/**
+	 * Returns the size of an object in main memory.
+	 *
+	 * @return the size of an object (in bytes).
+	 */
+	public int getObjectSize() {
+		return objectSize;
+	}
+
+	/**
+	 * Returns the maximal memory used by the heap so far.
+	 *
+	 * @return the peak memory usage (in bytes).
+	 */
+	public int getPeakMemUsage() {
+		return peakMemUsage;
+	}
+
+	/**
+	 * Returns the number of elements written to the inputs of further passes
+	 * so far.
+	 *
+	 * @return the number of spilled elements.
+	 */
+	public long getSpilledObjects() {
+		return spilledObjects;
+	}
+}
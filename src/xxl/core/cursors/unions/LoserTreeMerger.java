@@ -0,0 +1,399 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.cursors.unions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * A loser-tree merger merges sorted input iterations with respect to a given
+ * {@link java.util.Comparator comparator}. In contrast to the
+ * {@link Merger merger} using a {@link xxl.core.collections.queues.Heap heap}
+ * of cursors, the merger organizes its inputs in a tournament tree that
+ * stores the loser of every match in its inner nodes and caches the next
+ * element (head) of every input. Determining the next element of the merger
+ * replays the matches on the path from the leaf of the last winner to the
+ * root, i.e., it costs exactly <code>log(k)</code> comparisons of cached
+ * heads for <code>k</code> inputs and a single call to <code>peek</code> on
+ * the input delivering the winner. A heap requires up to
+ * <code>2*log(k)</code> comparisons, each of them calling <code>peek</code>
+ * on two inputs. Therefore the loser-tree merger is preferable for wide
+ * merges, e.g., the final merge of a
+ * {@link xxl.core.cursors.sorters.MergeSorter merge-sorter}.
+ * 
+ * <p>Elements that are considered equal by the comparator are returned in
+ * the order of their inputs, i.e., the merge is stable. The tree is replayed
+ * lazily when the merger is asked for its next element, so the last returned
+ * element can be removed or updated by the input it was delivered by.</p>
+ * 
+ * <p><b>Note:</b> When the given input iteration only implements the interface
+ * {@link java.util.Iterator} it is wrapped to a cursor by a call to the static
+ * method {@link xxl.core.cursors.Cursors#wrap(Iterator) wrap}.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   LoserTreeMerger&lt;Integer&gt; merger = new LoserTreeMerger&lt;Integer&gt;(
+ *       ComparableComparator.INTEGER_COMPARATOR,
+ *       new Enumerator(0, 10),
+ *       new Enumerator(5, 15),
+ *       new Enumerator(10, 20)
+ *   );
+ *   
+ *   merger.open();
+ *   
+ *   while (merger.hasNext())
+ *       System.out.print(merger.next() + "; ");
+ *   System.out.flush();
+ *   
+ *   merger.close();
+ * </pre></code></p>
+ *
+ * @param <E> the type of the elements returned by this iteration.
+ * @see Merger
+ * @see xxl.core.cursors.sorters.MergeSorter
+ */
+public class LoserTreeMerger<E> extends AbstractCursor<E> {
+
+	/**
+	 * Returns a function that creates a loser-tree merger for an array of
+	 * input iterations using the given comparator. The function can be
+	 * passed to a {@link xxl.core.cursors.sorters.MergeSorter merge-sorter}
+	 * as its merge strategy.
+	 *
+	 * @param <E> the type of the elements to be merged.
+	 * @param comparator the comparator used to compare the elements of the
+	 *        input iterations.
+	 * @return a function creating loser-tree mergers.
+	 */
+	public static <E> Function<Iterator<E>[], Cursor<E>> factory(final Comparator<? super E> comparator) {
+		return new AbstractFunction<Iterator<E>[], Cursor<E>>() {
+			public Cursor<E> invoke(Iterator<E>[] iterators) {
+				return new LoserTreeMerger<E>(comparator, iterators);
+			}
+		};
+	}
+
+	/**
+	 * The list containing the input iterations to be merged.
+	 */
+	protected List<Cursor<E>> cursors;
+
+	/**
+	 * The comparator used to compare the elements of the input iterations.
+	 */
+	protected Comparator<? super E> comparator;
+
+	/**
+	 * The tournament tree. The entry at index <code>0</code> contains the
+	 * index of the input holding the overall winner, the entries at the
+	 * indices <code>1,...,k-1</code> contain the indices of the inputs that
+	 * lost the match at the corresponding inner node. The leaf of input
+	 * <code>i</code> is located at index <code>k+i</code>.
+	 */
+	protected int[] tree;
+
+	/**
+	 * The cached next elements of the input iterations.
+	 */
+	protected Object[] heads;
+
+	/**
+	 * Flags indicating the input iterations that contain no further elements.
+	 */
+	protected boolean[] exhausted;
+
+	/**
+	 * The index of the input iteration that delivered the last element, whose
+	 * head has not been refreshed yet, or <code>-1</code>.
+	 */
+	protected int pending = -1;
+
+	/**
+	 * The input iteration that delivered the last element. Calls to
+	 * <code>remove</code> and <code>update</code> are redirected to it.
+	 */
+	protected Cursor<E> minCursor = null;
+
+	/**
+	 * Creates a new loser-tree merger backed on an input cursor list.
+	 *
+	 * @param comparator the comparator used to compare two elements of the
+	 *        input iterations.
+	 * @param cursors the list of cursors to be merged.
+	 */
+	public LoserTreeMerger(Comparator<? super E> comparator, List<Cursor<E>> cursors) {
+		this.comparator = comparator;
+		this.cursors = cursors;
+	}
+
+	/**
+	 * Creates a new loser-tree merger backed on an input iteration array.
+	 * Every iterator given to this constructor is wrapped to a cursor.
+	 *
+	 * @param comparator the comparator used to compare two elements of the
+	 *        input iterations.
+	 * @param iterators the input iterations to be merged.
+	 */
+	public LoserTreeMerger(Comparator<? super E> comparator, Iterator<E>... iterators) {
+		this(comparator, new ArrayList<Cursor<E>>(iterators.length));
+		for (Iterator<E> iterator : iterators)
+			cursors.add(Cursors.wrap(iterator));
+	}
+
+	/**
+	 * Returns <code>true</code> if the input with index <code>i</code> wins
+	 * the match against the input with index <code>j</code>. Exhausted inputs
+	 * lose every match, equal heads are won by the input with the smaller
+	 * index.
+	 *
+	 * @param i the index of the first input.
+	 * @param j the index of the second input.
+	 * @return <code>true</code> if input <code>i</code> beats input
+	 *         <code>j</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	protected boolean beats(int i, int j) {
+		if (exhausted[j])
+			return !exhausted[i] || i < j;
+		if (exhausted[i])
+			return false;
+		int compare = comparator.compare((E)heads[i], (E)heads[j]);
+		return compare < 0 || compare == 0 && i < j;
+	}
+
+	/**
+	 * Reads the head of the input with the given index into the cache.
+	 *
+	 * @param i the index of the input.
+	 */
+	protected void refresh(int i) {
+		Cursor<E> cursor = cursors.get(i);
+		if (exhausted[i] = !cursor.hasNext())
+			heads[i] = null;
+		else
+			heads[i] = cursor.peek();
+	}
+
+	/**
+	 * Builds the tournament tree by playing all matches bottom-up.
+	 */
+	protected void build() {
+		int k = cursors.size();
+		tree = new int[Math.max(k, 1)];
+		heads = new Object[k];
+		exhausted = new boolean[k];
+		pending = -1;
+		if (k == 0)
+			return;
+		for (int i = 0; i < k; i++)
+			refresh(i);
+		int[] winners = new int[2*k];
+		for (int i = 0; i < k; i++)
+			winners[k+i] = i;
+		for (int node = k-1; node > 0; node--) {
+			int left = winners[2*node], right = winners[2*node+1];
+			if (beats(left, right)) {
+				winners[node] = left;
+				tree[node] = right;
+			}
+			else {
+				winners[node] = right;
+				tree[node] = left;
+			}
+		}
+		tree[0] = k == 1 ? 0 : winners[1];
+	}
+
+	/**
+	 * Refreshes the head of the input that delivered the last element and
+	 * replays the matches on the path from its leaf to the root.
+	 */
+	protected void replay() {
+		int winner = pending;
+		pending = -1;
+		refresh(winner);
+		for (int node = (winner+tree.length)/2; node > 0; node /= 2)
+			if (beats(tree[node], winner)) {
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		tree[0] = winner;
+	}
+
+	/**
+	 * Opens the merger, i.e., opens the input iterations and builds the
+	 * tournament tree.
+	 */
+	public void open() {
+		if (isOpened)
+			return;
+		super.open();
+		for (Cursor<E> cursor : cursors)
+			cursor.open();
+		build();
+	}
+
+	/**
+	 * Closes the merger and its input iterations.
+	 */
+	public void close() {
+		if (isClosed)
+			return;
+		super.close();
+		for (Cursor<E> cursor : cursors)
+			cursor.close();
+	}
+
+	/**
+	 * Returns <code>true</code> if the iteration has more elements.
+	 * 
+	 * @return <code>true</code> if the merger has more elements.
+	 */
+	protected boolean hasNextObject() {
+		if (cursors.isEmpty())
+			return false;
+		if (pending >= 0)
+			replay();
+		return !exhausted[tree[0]];
+	}
+
+	/**
+	 * Returns the next element in the iteration, i.e., the head of the input
+	 * that won the tournament. The tree is replayed when the merger is asked
+	 * for its next element.
+	 * 
+	 * @return the next element in the iteration.
+	 */
+	protected E nextObject() {
+		pending = tree[0];
+		minCursor = cursors.get(pending);
+		return minCursor.next();
+	}
+
+	/**
+	 * Removes the last element returned by the merger from the input
+	 * iteration it was delivered by (optional operation).
+	 *
+	 * @throws IllegalStateException if the <code>next</code> or
+	 *         <code>peek</code> method has not yet been called, or the
+	 *         <code>remove</code> method has already been called after the
+	 *         last call to the <code>next</code> or <code>peek</code> method.
+	 * @throws UnsupportedOperationException if the <code>remove</code>
+	 *         operation is not supported by the input iteration.
+	 */
+	public void remove() throws IllegalStateException, UnsupportedOperationException {
+		super.remove();
+		if (minCursor == null)
+			throw new IllegalStateException();
+		minCursor.remove();
+		minCursor = null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the <code>remove</code> operation is
+	 * supported by the merger.
+	 * 
+	 * @return <code>true</code> if the <code>remove</code> operation is
+	 *         supported by the merger, otherwise <code>false</code>.
+	 */
+	public boolean supportsRemove() {
+		return minCursor != null ?
+			minCursor.supportsRemove() :
+			false;
+	}
+
+	/**
+	 * Replaces the last element returned by the merger in the input
+	 * iteration it was delivered by (optional operation).
+	 *
+	 * @param object the object that replaces the last element returned by the
+	 *        merger.
+	 * @throws IllegalStateException if the <code>next</code> or
+	 *         <code>peek</code> method has not yet been called, or the
+	 *         <code>update</code> method has already been called after the
+	 *         last call to the <code>next</code> or <code>peek</code> method.
+	 * @throws UnsupportedOperationException if the <code>update</code>
+	 *         operation is not supported by the input iteration.
+	 */
+	public void update(E object) throws IllegalStateException, UnsupportedOperationException {
+		super.update(object);
+		if (minCursor == null)
+			throw new IllegalStateException();
+		minCursor.update(object);
+		minCursor = null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the <code>update</code> operation is
+	 * supported by the merger.
+	 * 
+	 * @return <code>true</code> if the <code>update</code> operation is
+	 *         supported by the merger, otherwise <code>false</code>.
+	 */
+	public boolean supportsUpdate() {
+		return minCursor != null ?
+			minCursor.supportsUpdate() :
+			false;
+	}
+
+	/**
+	 * Resets the merger to its initial state by resetting the input
+	 * iterations and rebuilding the tournament tree (optional operation).
+	 *
+	 * @throws UnsupportedOperationException if the <code>reset</code>
+	 *         operation is not supported by the merger.
+	 */
+	public void reset() throws UnsupportedOperationException {
+		super.reset();
+		for (Cursor<E> cursor : cursors)
+			cursor.reset();
+		minCursor = null;
+		build();
+	}
+
+	/**
+	 * Returns <code>true</code> if the <code>reset</code> operation is
+	 * supported by the merger.
+	 *
+	 * @return <code>true</code> if the <code>reset</code> operation is
+	 *         supported by the merger, otherwise <code>false</code>.
+	 */
+	public boolean supportsReset() {
+		for (Cursor<E> cursor : cursors)
+			if (!cursor.supportsReset())
+				return false;
+		return true;
+	}
+}
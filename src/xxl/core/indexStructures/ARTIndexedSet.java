@@ -0,0 +1,318 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.cursors.Cursor;
+import xxl.core.indexStructures.builder.IndexBuilder;
+import xxl.core.indexStructures.builder.ART.ARTBuilder;
+import xxl.core.indexStructures.builder.ART.ARTConfiguration;
+
+/**
+ * An implementation of the {@link IndexedSet} super class to use in-memory sets which are indexed
+ * by an {@link AdaptiveRadixTree}. The values are mapped to binary-comparable keys by the
+ * {@link ARTConfiguration}, so the natural order of the values is the order of the set and
+ * {@link #comparator()} returns <b>null</b>. Readers (e.g. {@link #contains(Object)} and
+ * iterators) never lock; an iterator works on the content of the set when it was created. <br/>
+ * <br/>
+ * The sets returned by {@link #subSet(Object, Object)}, {@link #headSet(Object)} and
+ * {@link #tailSet(Object)} are views backed by the same tree. Adding a value outside of the range
+ * of a view throws an <code>IllegalArgumentException</code>.
+ * 
+ * @param <E> The data type which should be managed
+ */
+public class ARTIndexedSet<E> extends IndexedSet<AdaptiveRadixTree<E>, E> {
+
+  /*
+   * The keys bounding this view (inclusive lower, exclusive upper) or null if unbounded
+   */
+  private final byte[] mFrom;
+  private final byte[] mTo;
+
+  /*
+   * The configuration mapping values to keys
+   */
+  private final ARTConfiguration mConfiguration;
+
+  /**
+   * Sets up a new instance of <code>ARTIndexedSet</code> with an adaptive radix tree and it's
+   * builder object.
+   * 
+   * @param tree The tree containing the values
+   * @param creator The {@link ARTBuilder} which created <code>tree</code>
+   */
+  public ARTIndexedSet(AdaptiveRadixTree<E> tree, ARTBuilder creator) {
+    this(tree, creator, null, null);
+  }
+
+  /*
+   * Creates a view of the tree between the given keys
+   */
+  private ARTIndexedSet(AdaptiveRadixTree<E> tree, IndexBuilder creator,
+      byte[] from, byte[] to) {
+    super(tree, creator);
+    mConfiguration = (ARTConfiguration) creator.getIndexConfiguration();
+    mFrom = from;
+    mTo = to;
+  }
+
+  /*
+   * Returns the key of a value or null if the value does not match the type of the set
+   */
+  private byte[] keyOrNull(Object o) {
+    try {
+      return o == null ? null : mConfiguration.getKey(o);
+    } catch (ClassCastException e) {
+      return null;
+    }
+  }
+
+  /*
+   * Returns whether the key is inside the range of this view
+   */
+  private boolean inRange(byte[] key) {
+    return (mFrom == null || AdaptiveRadixTree.compare(key, mFrom) >= 0)
+        && (mTo == null || AdaptiveRadixTree.compare(key, mTo) < 0);
+  }
+
+  /*
+   * Returns whether this set is a view of a part of the tree
+   */
+  private boolean isView() {
+    return mFrom != null || mTo != null;
+  }
+
+  @Override
+  public boolean add(E e) {
+    byte[] key = keyOrNull(e);
+    if (key == null)
+      throw new IllegalArgumentException("Item to add does not match the type of the set (" + e + ")");
+    if (!inRange(key))
+      throw new IllegalArgumentException("Item to add is outside the range of the view (" + e + ")");
+    return mTree.put(key, e) == null;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    boolean setChanged = false;
+    for (E item : c)
+      setChanged |= add(item);
+    return setChanged;
+  }
+
+  @Override
+  public void clear() {
+    if (!isView())
+      mTree.clear();
+    else
+      for (Iterator<E> it = iterator(); it.hasNext();)
+        remove(it.next());
+  }
+
+  @Override
+  public Comparator<? super E> comparator() {
+    return null;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    byte[] key = keyOrNull(o);
+    return key != null && inRange(key) && mTree.containsKey(key);
+  }
+
+  @Override
+  public boolean containsAll(Collection<?> c) {
+    for (Object item : c)
+      if (!contains(item)) return false;
+    return true;
+  }
+
+  @Override
+  public E first() {
+    if (!isView()) return mTree.firstValue();
+    Iterator<E> it = iterator();
+    if (!it.hasNext()) throw new NoSuchElementException();
+    return it.next();
+  }
+
+  @Override
+  public SortedSet<E> headSet(E toElement) {
+    return view(null, toElement);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return isView() ? !iterator().hasNext() : mTree.isEmpty();
+  }
+
+  @Override
+  public Cursor<E> iterator() {
+    return mTree.rangeQuery(mFrom, true, mTo, false);
+  }
+
+  @Override
+  public E last() {
+    if (!isView()) return mTree.lastValue();
+    E last = null;
+    for (Iterator<E> it = iterator(); it.hasNext();)
+      last = it.next();
+    if (last == null) throw new NoSuchElementException();
+    return last;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    byte[] key = keyOrNull(o);
+    return key != null && inRange(key) && mTree.remove(key) != null;
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    boolean setChanged = false;
+    for (Object o : c)
+      setChanged |= remove(o);
+    return setChanged;
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    boolean setChanged = false;
+    for (Iterator<E> it = iterator(); it.hasNext();) {
+      E item = it.next();
+      if (!c.contains(item)) setChanged |= remove(item);
+    }
+    return setChanged;
+  }
+
+  /**
+   * Writes a snapshot of the whole set to the given container of blocks. The set can be restored
+   * with {@link ARTConfiguration#restoreFrom(Container, Object)}.
+   * 
+   * @param container The container storing the blocks of the snapshot
+   * @return The id of the snapshot
+   */
+  public Object saveSnapshot(Container container) {
+    return mTree.save(container, mConfiguration.getDataConverter(),
+        mConfiguration.getBlockSize());
+  }
+
+  /*
+   * Replaces the snapshot of the last save() by a snapshot of the current content and writes the
+   * meta data file if the set is stored at the file system.
+   */
+  @Override
+  protected void saveIndexStructureMetaData() throws IOException {
+    Container container = mConfiguration.getBufferedContainer();
+    if (mConfiguration.getSnapshotContainer() == container)
+      AdaptiveRadixTree.release(container, mConfiguration.getSnapshotId());
+    mConfiguration.restoreFrom(container, saveSnapshot(container));
+    if (mConfiguration.storeAtFileSystem())
+      ((ARTBuilder) mCreator).storeMetaData();
+  }
+
+  @Override
+  public int size() {
+    if (!isView()) return mTree.size();
+    int size = 0;
+    for (Iterator<E> it = iterator(); it.hasNext(); it.next())
+      size++;
+    return size;
+  }
+
+  @Override
+  public BigInteger sizeBigInteger() {
+    return BigInteger.valueOf(size());
+  }
+
+  /**
+   * Returns the view of this set containing the values between <code>fromElement</code>
+   * (inclusive) and <code>toElement</code> (exclusive).
+   */
+  @Override
+  public SortedSet<E> subSet(E fromElement, E toElement) {
+    if (AdaptiveRadixTree.compare(mConfiguration.getKey(fromElement),
+        mConfiguration.getKey(toElement)) > 0)
+      throw new IllegalArgumentException("Predicate from " + fromElement
+          + " > to " + toElement + " is illegal");
+    return view(fromElement, toElement);
+  }
+
+  @Override
+  public SortedSet<E> tailSet(E fromElement) {
+    return view(fromElement, null);
+  }
+
+  /*
+   * Returns the view of the intersection of this view and the given range (null is unbounded)
+   */
+  private SortedSet<E> view(E fromElement, E toElement) {
+    byte[] from = mFrom, to = mTo;
+    if (fromElement != null) {
+      byte[] key = mConfiguration.getKey(fromElement);
+      if (from == null || AdaptiveRadixTree.compare(key, from) > 0) from = key;
+    }
+    if (toElement != null) {
+      byte[] key = mConfiguration.getKey(toElement);
+      if (to == null || AdaptiveRadixTree.compare(key, to) < 0) to = key;
+    }
+    return new ARTIndexedSet<E>(mTree, mCreator, from, to);
+  }
+
+  @Override
+  public Object[] toArray() {
+    return toList().toArray();
+  }
+
+  @Override
+  public <T> T[] toArray(T[] a) {
+    return toList().toArray(a);
+  }
+
+  /*
+   * Returns the content of this set as list
+   */
+  private List<E> toList() {
+    List<E> result = new ArrayList<>();
+    for (Iterator<E> it = iterator(); it.hasNext();)
+      result.add(it.next());
+    return result;
+  }
+
+  public String toString() {
+    return java.util.Arrays.toString(toArray());
+  }
+
+}
@@ -0,0 +1,1028 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.mappers.Mapper;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.io.Block;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.FixedSizeConverter;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * An in-memory adaptive radix tree (ART) mapping binary-comparable keys 
+ * (<tt>byte</tt> arrays compared unsigned and lexicographically) to values 
+ * (V. Leis, A. Kemper, T. Neumann: "The Adaptive Radix Tree: ARTful Indexing for 
+ * Main-Memory Databases", ICDE 2013). An inner node consumes one byte of the key 
+ * and adapts its representation to the number of its children: up to 16 children 
+ * are kept in sorted arrays, up to 48 children in an array indexed by a 256 byte 
+ * table and more children in an array of 256 slots. Chains of inner nodes with a 
+ * single child are compressed into the prefix of the next node. Lookups need 
+ * O(key length) steps independently of the number of keys.
+ * <p>
+ * The nodes are immutable: an update copies the nodes on the path to the modified 
+ * leaf and publishes the new root together with the number of keys by a single 
+ * volatile write. So readers never 
+ * lock; a lookup or a cursor works on the version of the tree that was current 
+ * when it started. Updates are serialized by the tree. A {@link #snapshot() snapshot} 
+ * shares all nodes with the tree and costs O(1).
+ * <p>
+ * The keys have to be prefix-free, i.e., no key may be a proper prefix of another 
+ * key (e.g., keys of a fixed length). A snapshot can be written to a 
+ * {@link Container} of {@link Block blocks} and read again.
+ * 
+ * @param <V> the type of the values
+ */
+public class AdaptiveRadixTree<V> {
+
+	/** The current version of the tree, i.e., its root and its number of keys.
+	 */
+	protected volatile Version version = Version.EMPTY;
+
+	/** The value replaced or removed by the last update.
+	 */
+	private Object previous;
+
+	/** Creates an empty tree.
+	 */
+	public AdaptiveRadixTree () {
+	}
+
+	/** Creates a tree with the given root.
+	 * 
+	 * @param root the root
+	 * @param size the number of keys
+	 */
+	protected AdaptiveRadixTree (Node root, int size) {
+		this.version = new Version(root, size);
+	}
+
+	/** Compares two keys unsigned and lexicographically.
+	 * 
+	 * @param key1 the first key
+	 * @param key2 the second key
+	 * @return a negative number, zero or a positive number if the first key is less, equal or greater
+	 */
+	public static int compare (byte [] key1, byte [] key2) {
+		for (int i=0, length=Math.min(key1.length, key2.length); i<length; i++)
+			if (key1[i] != key2[i])
+				return (key1[i] & 0xff)-(key2[i] & 0xff);
+		return key1.length-key2.length;
+	}
+
+	/** A node of the tree.
+	 */
+	protected static abstract class Node {
+	}
+
+	/** A leaf storing a complete key and its value.
+	 */
+	protected static final class Leaf extends Node {
+
+		/** The key.
+		 */
+		protected final byte [] key;
+
+		/** The value.
+		 */
+		protected final Object value;
+
+		/** Creates a new leaf.
+		 * 
+		 * @param key the key
+		 * @param value the value
+		 */
+		protected Leaf (byte [] key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/** An immutable version of the tree: a root and the number of its keys. 
+	 * Both are published together, so a reader never sees the root of one 
+	 * version with the size of another one.
+	 */
+	protected static final class Version {
+
+		/** The version of the empty tree.
+		 */
+		protected static final Version EMPTY = new Version(null, 0);
+
+		/** The root of the tree or <tt>null</tt> if the tree is empty.
+		 */
+		protected final Node root;
+
+		/** The number of keys of the root.
+		 */
+		protected final int size;
+
+		/** Creates a new version.
+		 * 
+		 * @param root the root
+		 * @param size the number of keys
+		 */
+		protected Version (Node root, int size) {
+			this.root = root;
+			this.size = size;
+		}
+	}
+
+	/** An inner node. Its children are addressed by the byte following the prefix.
+	 */
+	protected static abstract class Inner extends Node {
+
+		/** The compressed path, i.e., the bytes shared by all keys of the subtree 
+		 * at the depth of the node.
+		 */
+		protected final byte [] prefix;
+
+		/** The number of children.
+		 */
+		protected final int count;
+
+		/** Creates a new inner node.
+		 * 
+		 * @param prefix the compressed path
+		 * @param count the number of children
+		 */
+		protected Inner (byte [] prefix, int count) {
+			this.prefix = prefix;
+			this.count = count;
+		}
+
+		/** Returns the child of the given byte.
+		 * 
+		 * @param b the byte (0 to 255)
+		 * @return the child or <tt>null</tt>
+		 */
+		protected abstract Node child (int b);
+
+		/** Returns the smallest byte greater than or equal to <tt>b</tt> with a child.
+		 * 
+		 * @param b the byte (0 to 256)
+		 * @return the byte or -1 if there is no such child
+		 */
+		protected abstract int next (int b);
+
+		/** Returns the greatest byte less than or equal to <tt>b</tt> with a child.
+		 * 
+		 * @param b the byte (-1 to 255)
+		 * @return the byte or -1 if there is no such child
+		 */
+		protected abstract int previous (int b);
+
+		/** Returns a copy of this node whose child of the given byte is replaced or added.
+		 * 
+		 * @param b the byte
+		 * @param child the new child
+		 * @return the new node
+		 */
+		protected abstract Inner with (int b, Node child);
+
+		/** Returns a copy of this node without the child of the given byte.
+		 * 
+		 * @param b the byte
+		 * @return the new node
+		 */
+		protected abstract Inner without (int b);
+
+		/** Returns a copy of this node with another prefix.
+		 * 
+		 * @param prefix the new prefix
+		 * @return the new node
+		 */
+		protected abstract Inner withPrefix (byte [] prefix);
+	}
+
+	/** A node with up to 16 children whose bytes are kept in a sorted array.
+	 */
+	protected static final class SortedNode extends Inner {
+
+		/** The maximum number of children.
+		 */
+		protected static final int CAPACITY = 16;
+
+		/** The sorted bytes of the children.
+		 */
+		protected final byte [] keys;
+
+		/** The children.
+		 */
+		protected final Node [] children;
+
+		/** Creates a new node.
+		 * 
+		 * @param prefix the compressed path
+		 * @param keys the sorted bytes
+		 * @param children the children
+		 */
+		protected SortedNode (byte [] prefix, byte [] keys, Node [] children) {
+			super(prefix, keys.length);
+			this.keys = keys;
+			this.children = children;
+		}
+
+		/** Creates a node with two children.
+		 * 
+		 * @param prefix the compressed path
+		 * @param b1 the byte of the first child
+		 * @param child1 the first child
+		 * @param b2 the byte of the second child
+		 * @param child2 the second child
+		 * @return the new node
+		 */
+		protected static SortedNode of (byte [] prefix, int b1, Node child1, int b2, Node child2) {
+			return b1 < b2?
+				new SortedNode(prefix, new byte [] {(byte)b1, (byte)b2}, new Node [] {child1, child2}):
+				new SortedNode(prefix, new byte [] {(byte)b2, (byte)b1}, new Node [] {child2, child1});
+		}
+
+		/** Returns the position of the byte or the negative insertion point minus one.
+		 * 
+		 * @param b the byte
+		 * @return the position
+		 */
+		protected int indexOf (int b) {
+			int i = 0;
+			while (i < count && (keys[i] & 0xff) < b)
+				i++;
+			return i < count && (keys[i] & 0xff) == b? i: -i-1;
+		}
+
+		protected Node child (int b) {
+			for (int i=0; i<count; i++)
+				if ((keys[i] & 0xff) == b)
+					return children[i];
+			return null;
+		}
+
+		protected int next (int b) {
+			for (int i=0; i<count; i++)
+				if ((keys[i] & 0xff) >= b)
+					return keys[i] & 0xff;
+			return -1;
+		}
+
+		protected int previous (int b) {
+			for (int i=count-1; i>=0; i--)
+				if ((keys[i] & 0xff) <= b)
+					return keys[i] & 0xff;
+			return -1;
+		}
+
+		protected Inner with (int b, Node child) {
+			int i = indexOf(b);
+			if (i >= 0) {
+				Node [] newChildren = children.clone();
+				newChildren[i] = child;
+				return new SortedNode(prefix, keys, newChildren);
+			}
+			if (count == CAPACITY)
+				return new IndexedNode(this).with(b, child);
+			i = -i-1;
+			byte [] newKeys = new byte[count+1];
+			Node [] newChildren = new Node[count+1];
+			System.arraycopy(keys, 0, newKeys, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			newKeys[i] = (byte)b;
+			newChildren[i] = child;
+			System.arraycopy(keys, i, newKeys, i+1, count-i);
+			System.arraycopy(children, i, newChildren, i+1, count-i);
+			return new SortedNode(prefix, newKeys, newChildren);
+		}
+
+		protected Inner without (int b) {
+			int i = indexOf(b);
+			if (i < 0)
+				return this;
+			byte [] newKeys = new byte[count-1];
+			Node [] newChildren = new Node[count-1];
+			System.arraycopy(keys, 0, newKeys, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			System.arraycopy(keys, i+1, newKeys, i, count-i-1);
+			System.arraycopy(children, i+1, newChildren, i, count-i-1);
+			return new SortedNode(prefix, newKeys, newChildren);
+		}
+
+		protected Inner withPrefix (byte [] prefix) {
+			return new SortedNode(prefix, keys, children);
+		}
+	}
+
+	/** A node with up to 48 children addressed by a table of 256 bytes.
+	 */
+	protected static final class IndexedNode extends Inner {
+
+		/** The maximum number of children.
+		 */
+		protected static final int CAPACITY = 48;
+
+		/** The number of children below which the node is turned into a {@link SortedNode}.
+		 */
+		protected static final int SHRINK = 12;
+
+		/** The slot of the child of every byte plus one (0 if there is no child).
+		 */
+		protected final byte [] index;
+
+		/** The children.
+		 */
+		protected final Node [] children;
+
+		/** Creates a new node.
+		 * 
+		 * @param prefix the compressed path
+		 * @param count the number of children
+		 * @param index the slots of the bytes
+		 * @param children the children
+		 */
+		protected IndexedNode (byte [] prefix, int count, byte [] index, Node [] children) {
+			super(prefix, count);
+			this.index = index;
+			this.children = children;
+		}
+
+		/** Creates a node with the children of a full sorted node.
+		 * 
+		 * @param node the sorted node
+		 */
+		protected IndexedNode (SortedNode node) {
+			this(node.prefix, node.count, new byte[256], new Node[CAPACITY]);
+			for (int i=0; i<count; i++) {
+				index[node.keys[i] & 0xff] = (byte)(i+1);
+				children[i] = node.children[i];
+			}
+		}
+
+		protected Node child (int b) {
+			int slot = index[b] & 0xff;
+			return slot == 0? null: children[slot-1];
+		}
+
+		protected int next (int b) {
+			for (; b<256; b++)
+				if (index[b] != 0)
+					return b;
+			return -1;
+		}
+
+		protected int previous (int b) {
+			for (; b>=0; b--)
+				if (index[b] != 0)
+					return b;
+			return -1;
+		}
+
+		protected Inner with (int b, Node child) {
+			int slot = index[b] & 0xff;
+			Node [] newChildren = children.clone();
+			if (slot != 0) {
+				newChildren[slot-1] = child;
+				return new IndexedNode(prefix, count, index, newChildren);
+			}
+			if (count == CAPACITY)
+				return new FullNode(this).with(b, child);
+			slot = 0;
+			while (newChildren[slot] != null)
+				slot++;
+			newChildren[slot] = child;
+			byte [] newIndex = index.clone();
+			newIndex[b] = (byte)(slot+1);
+			return new IndexedNode(prefix, count+1, newIndex, newChildren);
+		}
+
+		protected Inner without (int b) {
+			int slot = index[b] & 0xff;
+			if (slot == 0)
+				return this;
+			if (count-1 <= SHRINK) {
+				byte [] keys = new byte[count-1];
+				Node [] sorted = new Node[count-1];
+				for (int k=next(0), i=0; k>=0; k=next(k+1))
+					if (k != b) {
+						keys[i] = (byte)k;
+						sorted[i++] = child(k);
+					}
+				return new SortedNode(prefix, keys, sorted);
+			}
+			byte [] newIndex = index.clone();
+			Node [] newChildren = children.clone();
+			newIndex[b] = 0;
+			newChildren[slot-1] = null;
+			return new IndexedNode(prefix, count-1, newIndex, newChildren);
+		}
+
+		protected Inner withPrefix (byte [] prefix) {
+			return new IndexedNode(prefix, count, index, children);
+		}
+	}
+
+	/** A node with an array of 256 children.
+	 */
+	protected static final class FullNode extends Inner {
+
+		/** The number of children below which the node is turned into an {@link IndexedNode}.
+		 */
+		protected static final int SHRINK = 37;
+
+		/** The children.
+		 */
+		protected final Node [] children;
+
+		/** Creates a new node.
+		 * 
+		 * @param prefix the compressed path
+		 * @param count the number of children
+		 * @param children the children
+		 */
+		protected FullNode (byte [] prefix, int count, Node [] children) {
+			super(prefix, count);
+			this.children = children;
+		}
+
+		/** Creates a node with the children of a full indexed node.
+		 * 
+		 * @param node the indexed node
+		 */
+		protected FullNode (IndexedNode node) {
+			this(node.prefix, node.count, new Node[256]);
+			for (int b=0; b<256; b++)
+				children[b] = node.child(b);
+		}
+
+		protected Node child (int b) {
+			return children[b];
+		}
+
+		protected int next (int b) {
+			for (; b<256; b++)
+				if (children[b] != null)
+					return b;
+			return -1;
+		}
+
+		protected int previous (int b) {
+			for (; b>=0; b--)
+				if (children[b] != null)
+					return b;
+			return -1;
+		}
+
+		protected Inner with (int b, Node child) {
+			Node [] newChildren = children.clone();
+			newChildren[b] = child;
+			return new FullNode(prefix, children[b] == null? count+1: count, newChildren);
+		}
+
+		protected Inner without (int b) {
+			if (children[b] == null)
+				return this;
+			if (count-1 <= SHRINK) {
+				byte [] index = new byte[256];
+				Node [] indexed = new Node[IndexedNode.CAPACITY];
+				for (int k=0, slot=0; k<256; k++)
+					if (k != b && children[k] != null) {
+						indexed[slot] = children[k];
+						index[k] = (byte)++slot;
+					}
+				return new IndexedNode(prefix, count-1, index, indexed);
+			}
+			Node [] newChildren = children.clone();
+			newChildren[b] = null;
+			return new FullNode(prefix, count-1, newChildren);
+		}
+
+		protected Inner withPrefix (byte [] prefix) {
+			return new FullNode(prefix, count, children);
+		}
+	}
+
+	/** Returns the number of bytes of the prefix matching the key at the given depth.
+	 * 
+	 * @param prefix the prefix
+	 * @param key the key
+	 * @param depth the depth
+	 * @return the length of the common part
+	 */
+	protected static int match (byte [] prefix, byte [] key, int depth) {
+		int i = 0;
+		while (i < prefix.length && depth+i < key.length && prefix[i] == key[depth+i])
+			i++;
+		return i;
+	}
+
+	/** Returns the value of the given key.
+	 * 
+	 * @param key the key
+	 * @return the value or <tt>null</tt> if the key is not contained
+	 */
+	public V get (byte [] key) {
+		Node node = version.root;
+		for (int depth=0; node instanceof Inner; depth++) {
+			Inner inner = (Inner)node;
+			if (match(inner.prefix, key, depth) < inner.prefix.length)
+				return null;
+			depth += inner.prefix.length;
+			if (depth >= key.length)
+				return null;
+			node = inner.child(key[depth] & 0xff);
+		}
+		return node != null && Arrays.equals(((Leaf)node).key, key)? (V)((Leaf)node).value: null;
+	}
+
+	/** Returns whether the tree contains the given key.
+	 * 
+	 * @param key the key
+	 * @return <tt>true</tt> if the key is contained
+	 */
+	public boolean containsKey (byte [] key) {
+		return get(key) != null;
+	}
+
+	/** Inserts the key with the given value. An existing value of the key is replaced.
+	 * 
+	 * @param key the key
+	 * @param value the value (not <tt>null</tt>)
+	 * @return the replaced value or <tt>null</tt>
+	 * @throws IllegalArgumentException if the key and a contained key are prefixes of each other
+	 */
+	public synchronized V put (byte [] key, V value) throws IllegalArgumentException {
+		if (value == null)
+			throw new NullPointerException("The values of the tree must not be null.");
+		Version current = version;
+		previous = null;
+		Node newRoot = insert(current.root, key, 0, value);
+		V replaced = (V)previous;
+		previous = null;
+		version = new Version(newRoot, replaced == null? current.size+1: current.size);
+		return replaced;
+	}
+
+	/** Inserts the key into the subtree of the given node.
+	 * 
+	 * @param node the root of the subtree or <tt>null</tt>
+	 * @param key the key
+	 * @param depth the depth of the node
+	 * @param value the value
+	 * @return the new root of the subtree
+	 */
+	protected Node insert (Node node, byte [] key, int depth, Object value) {
+		if (node == null)
+			return new Leaf(key, value);
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf)node;
+			if (Arrays.equals(leaf.key, key)) {
+				previous = leaf.value;
+				return new Leaf(key, value);
+			}
+			int i = depth;
+			while (i < key.length && i < leaf.key.length && key[i] == leaf.key[i])
+				i++;
+			if (i == key.length || i == leaf.key.length)
+				throw new IllegalArgumentException("The keys of the tree have to be prefix-free.");
+			return SortedNode.of(Arrays.copyOfRange(key, depth, i), leaf.key[i] & 0xff, leaf, key[i] & 0xff, new Leaf(key, value));
+		}
+		Inner inner = (Inner)node;
+		int matched = match(inner.prefix, key, depth);
+		if (matched < inner.prefix.length) {
+			if (depth+matched == key.length)
+				throw new IllegalArgumentException("The keys of the tree have to be prefix-free.");
+			return SortedNode.of(
+				Arrays.copyOf(inner.prefix, matched),
+				inner.prefix[matched] & 0xff, inner.withPrefix(Arrays.copyOfRange(inner.prefix, matched+1, inner.prefix.length)),
+				key[depth+matched] & 0xff, new Leaf(key, value)
+			);
+		}
+		depth += inner.prefix.length;
+		if (depth == key.length)
+			throw new IllegalArgumentException("The keys of the tree have to be prefix-free.");
+		int b = key[depth] & 0xff;
+		return inner.with(b, insert(inner.child(b), key, depth+1, value));
+	}
+
+	/** Removes the given key.
+	 * 
+	 * @param key the key
+	 * @return the value of the removed key or <tt>null</tt> if the key was not contained
+	 */
+	public synchronized V remove (byte [] key) {
+		Version current = version;
+		previous = null;
+		Node newRoot = remove(current.root, key, 0);
+		V removed = (V)previous;
+		previous = null;
+		if (removed != null)
+			version = new Version(newRoot, current.size-1);
+		return removed;
+	}
+
+	/** Removes the key from the subtree of the given node.
+	 * 
+	 * @param node the root of the subtree or <tt>null</tt>
+	 * @param key the key
+	 * @param depth the depth of the node
+	 * @return the new root of the subtree
+	 */
+	protected Node remove (Node node, byte [] key, int depth) {
+		if (node == null)
+			return null;
+		if (node instanceof Leaf) {
+			if (!Arrays.equals(((Leaf)node).key, key))
+				return node;
+			previous = ((Leaf)node).value;
+			return null;
+		}
+		Inner inner = (Inner)node;
+		if (match(inner.prefix, key, depth) < inner.prefix.length || depth+inner.prefix.length >= key.length)
+			return node;
+		depth += inner.prefix.length;
+		int b = key[depth] & 0xff;
+		Node child = inner.child(b);
+		if (child == null)
+			return node;
+		Node newChild = remove(child, key, depth+1);
+		if (newChild == child)
+			return node;
+		if (newChild != null)
+			return inner.with(b, newChild);
+		if (inner.count == 2) {
+			// collapses the node into its remaining child
+			int other = inner.next(0) == b? inner.next(b+1): inner.next(0);
+			Node remaining = inner.child(other);
+			if (remaining instanceof Leaf)
+				return remaining;
+			byte [] remainingPrefix = ((Inner)remaining).prefix;
+			byte [] prefix = Arrays.copyOf(inner.prefix, inner.prefix.length+1+remainingPrefix.length);
+			prefix[inner.prefix.length] = (byte)other;
+			System.arraycopy(remainingPrefix, 0, prefix, inner.prefix.length+1, remainingPrefix.length);
+			return ((Inner)remaining).withPrefix(prefix);
+		}
+		return inner.without(b);
+	}
+
+	/** Removes all keys.
+	 */
+	public synchronized void clear () {
+		version = Version.EMPTY;
+	}
+
+	/** Returns the number of keys.
+	 * 
+	 * @return the number of keys
+	 */
+	public int size () {
+		return version.size;
+	}
+
+	/** Returns whether the tree is empty.
+	 * 
+	 * @return <tt>true</tt> if the tree contains no keys
+	 */
+	public boolean isEmpty () {
+		return version.root == null;
+	}
+
+	/** Returns the leaf with the smallest or greatest key of the given subtree.
+	 * 
+	 * @param node the root of the subtree
+	 * @param greatest <tt>true</tt> for the greatest key
+	 * @return the leaf or <tt>null</tt> if the subtree is empty
+	 */
+	protected static Leaf extreme (Node node, boolean greatest) {
+		while (node instanceof Inner) {
+			Inner inner = (Inner)node;
+			node = inner.child(greatest? inner.previous(255): inner.next(0));
+		}
+		return (Leaf)node;
+	}
+
+	/** Returns the value of the smallest key.
+	 * 
+	 * @return the value of the smallest key
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public V firstValue () throws NoSuchElementException {
+		Leaf leaf = extreme(version.root, false);
+		if (leaf == null)
+			throw new NoSuchElementException();
+		return (V)leaf.value;
+	}
+
+	/** Returns the value of the greatest key.
+	 * 
+	 * @return the value of the greatest key
+	 * @throws NoSuchElementException if the tree is empty
+	 */
+	public V lastValue () throws NoSuchElementException {
+		Leaf leaf = extreme(version.root, true);
+		if (leaf == null)
+			throw new NoSuchElementException();
+		return (V)leaf.value;
+	}
+
+	/** Returns a lazy cursor over the leaves of the keys in the given range in 
+	 * ascending order of the keys. The cursor works on the current version of 
+	 * the tree.
+	 * 
+	 * @param from the lower bound or <tt>null</tt> if the range is not bounded below
+	 * @param fromInclusive <tt>true</tt> if the lower bound belongs to the range
+	 * @param to the upper bound or <tt>null</tt> if the range is not bounded above
+	 * @param toInclusive <tt>true</tt> if the upper bound belongs to the range
+	 * @return a cursor over the leaves of the range
+	 */
+	protected Cursor<Leaf> leaves (final byte [] from, final boolean fromInclusive, final byte [] to, final boolean toInclusive) {
+		final Node start = version.root;
+		return new AbstractCursor<Leaf>() {
+			// the inner nodes of the current path and the next byte to visit per node
+			Inner [] nodes = new Inner[8];
+			int [] bytes = new int[8];
+			int height = 0;
+			Leaf pending = null;
+			boolean initialized = false;
+
+			protected void push (Inner inner, int b) {
+				if (height == nodes.length) {
+					nodes = Arrays.copyOf(nodes, 2*height);
+					bytes = Arrays.copyOf(bytes, 2*height);
+				}
+				nodes[height] = inner;
+				bytes[height++] = b;
+			}
+
+			protected void seek () {
+				Node node = start;
+				for (int depth=0; node != null;) {
+					if (node instanceof Leaf) {
+						pending = (Leaf)node;
+						return;
+					}
+					Inner inner = (Inner)node;
+					if (from == null) {
+						push(inner, 0);
+						return;
+					}
+					int matched = match(inner.prefix, from, depth);
+					if (matched < inner.prefix.length) {
+						// all keys of the subtree are greater or all of them are less than the bound
+						if (depth+matched == from.length || (inner.prefix[matched] & 0xff) > (from[depth+matched] & 0xff))
+							push(inner, 0);
+						return;
+					}
+					depth += inner.prefix.length;
+					if (depth >= from.length) {
+						push(inner, 0);
+						return;
+					}
+					int b = from[depth] & 0xff;
+					push(inner, b+1);
+					node = inner.child(b);
+					depth++;
+				}
+			}
+
+			protected Leaf nextLeaf () {
+				if (pending != null) {
+					Leaf leaf = pending;
+					pending = null;
+					return leaf;
+				}
+				while (height > 0) {
+					Inner inner = nodes[height-1];
+					int b = bytes[height-1] > 255? -1: inner.next(bytes[height-1]);
+					if (b < 0) {
+						nodes[--height] = null;
+						continue;
+					}
+					bytes[height-1] = b+1;
+					Node child = inner.child(b);
+					if (child instanceof Leaf)
+						return (Leaf)child;
+					push((Inner)child, 0);
+				}
+				return null;
+			}
+
+			public boolean hasNextObject () {
+				if (!initialized) {
+					initialized = true;
+					seek();
+				}
+				for (Leaf leaf; (leaf = nextLeaf()) != null;) {
+					if (from != null) {
+						int c = compare(leaf.key, from);
+						if (c < 0 || c == 0 && !fromInclusive)
+							continue;
+					}
+					if (to != null) {
+						int c = compare(leaf.key, to);
+						if (c > 0 || c == 0 && !toInclusive) {
+							height = 0;
+							return false;
+						}
+					}
+					pending = leaf;
+					return true;
+				}
+				return false;
+			}
+
+			public Leaf nextObject () {
+				Leaf leaf = pending;
+				pending = null;
+				return leaf;
+			}
+		};
+	}
+
+	/** Returns a lazy cursor over the values of the keys in the given range in 
+	 * ascending order of the keys. The cursor works on the current version of 
+	 * the tree; later updates are not visible.
+	 * 
+	 * @param from the lower bound or <tt>null</tt> if the range is not bounded below
+	 * @param fromInclusive <tt>true</tt> if the lower bound belongs to the range
+	 * @param to the upper bound or <tt>null</tt> if the range is not bounded above
+	 * @param toInclusive <tt>true</tt> if the upper bound belongs to the range
+	 * @return a cursor over the values of the range
+	 */
+	public Cursor<V> rangeQuery (byte [] from, boolean fromInclusive, byte [] to, boolean toInclusive) {
+		return new Mapper<Leaf, V>(
+			new AbstractFunction<Leaf, V>() {
+				public V invoke (Leaf leaf) {
+					return (V)leaf.value;
+				}
+			},
+			leaves(from, fromInclusive, to, toInclusive)
+		);
+	}
+
+	/** Returns a lazy cursor over all values in ascending order of their keys.
+	 * 
+	 * @return a cursor over all values
+	 */
+	public Cursor<V> values () {
+		return rangeQuery(null, true, null, true);
+	}
+
+	/** Returns a snapshot of the tree. The snapshot shares the nodes with this 
+	 * tree; later updates of the tree or the snapshot are not visible in the other one. 
+	 * Like a lookup, it does not lock the tree.
+	 * 
+	 * @return a snapshot of the tree
+	 */
+	public AdaptiveRadixTree<V> snapshot () {
+		Version current = version;
+		return new AdaptiveRadixTree<V>(current.root, current.size);
+	}
+
+	/** Writes the keys and values of the tree in ascending order of the keys to 
+	 * a chain of blocks of the given container. Every block starts with a flag 
+	 * and the id of the next block (if the flag is set), followed by the number 
+	 * of records and the records (length of the key, key, value). 
+	 * 
+	 * @param container the container storing the blocks
+	 * @param valueConverter the converter of the values
+	 * @param blockSize the size of the blocks
+	 * @return the id of the first block
+	 * @throws IllegalArgumentException if a record does not fit into a block
+	 */
+	public Object save (Container container, Converter<? super V> valueConverter, int blockSize) throws IllegalArgumentException {
+		FixedSizeConverter idConverter = container.objectIdConverter();
+		int header = 1+idConverter.getSerializedSize()+4;
+		List<byte []> pages = new ArrayList<byte []>();
+		List<Integer> counts = new ArrayList<Integer>();
+		try {
+			ByteArrayOutputStream page = new ByteArrayOutputStream(), record = new ByteArrayOutputStream();
+			DataOutputStream recordOutput = new DataOutputStream(record);
+			int count = 0;
+			for (Cursor<Leaf> leaves = leaves(null, true, null, true); leaves.hasNext();) {
+				Leaf leaf = leaves.next();
+				record.reset();
+				recordOutput.writeInt(leaf.key.length);
+				recordOutput.write(leaf.key);
+				valueConverter.write(recordOutput, (V)leaf.value);
+				recordOutput.flush();
+				if (header+record.size() > blockSize)
+					throw new IllegalArgumentException("A record of "+record.size()+" bytes does not fit into a block.");
+				if (header+page.size()+record.size() > blockSize) {
+					pages.add(page.toByteArray());
+					counts.add(count);
+					page.reset();
+					count = 0;
+				}
+				record.writeTo(page);
+				count++;
+			}
+			pages.add(page.toByteArray());
+			counts.add(count);
+			Object next = null;
+			for (int i=pages.size()-1; i>=0; i--) {
+				Block block = new Block(blockSize);
+				DataOutputStream output = new DataOutputStream(block.outputStream(0, blockSize));
+				output.writeBoolean(next != null);
+				if (next != null)
+					idConverter.write(output, next);
+				else
+					output.write(new byte[idConverter.getSerializedSize()]);
+				output.writeInt(counts.get(i));
+				output.write(pages.get(i));
+				output.flush();
+				next = container.insert(block);
+			}
+			return next;
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/** Removes the blocks written by {@link #save(Container, Converter, int)} from the container.
+	 * 
+	 * @param container the container storing the blocks
+	 * @param id the id of the first block
+	 */
+	public static void release (Container container, Object id) {
+		FixedSizeConverter idConverter = container.objectIdConverter();
+		try {
+			while (id != null) {
+				Block block = (Block)container.get(id);
+				DataInputStream input = new DataInputStream(new ByteArrayInputStream(block.array, block.offset, block.size));
+				Object next = input.readBoolean()? idConverter.read(input): null;
+				container.remove(id);
+				id = next;
+			}
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+	}
+
+	/** Reads a tree written by {@link #save(Container, Converter, int)}.
+	 * 
+	 * @param <V> the type of the values
+	 * @param container the container storing the blocks
+	 * @param id the id of the first block
+	 * @param valueConverter the converter of the values
+	 * @return the tree
+	 */
+	public static <V> AdaptiveRadixTree<V> load (Container container, Object id, Converter<V> valueConverter) {
+		AdaptiveRadixTree<V> tree = new AdaptiveRadixTree<V>();
+		FixedSizeConverter idConverter = container.objectIdConverter();
+		try {
+			while (id != null) {
+				Block block = (Block)container.get(id);
+				DataInputStream input = new DataInputStream(new ByteArrayInputStream(block.array, block.offset, block.size));
+				Object next = null;
+				if (input.readBoolean())
+					next = idConverter.read(input);
+				else
+					input.skipBytes(idConverter.getSerializedSize());
+				for (int count = input.readInt(); count>0; count--) {
+					byte [] key = new byte[input.readInt()];
+					input.readFully(key);
+					tree.put(key, valueConverter.read(input));
+				}
+				id = next;
+			}
+		}
+		catch (IOException ie) {
+			throw new WrappingRuntimeException(ie);
+		}
+		return tree;
+	}
+}
@@ -0,0 +1,507 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Stack;
+
+import xxl.core.collections.MapEntry;
+import xxl.core.functions.Function;
+import xxl.core.io.converters.DoubleConverter;
+import xxl.core.io.converters.LongConverter;
+
+/**
+ * {@link MVBT} whose index entries are augmented by the aggregate (count, sum, minimum and maximum) 
+ * of a numerical measure of the data objects stored in their subtrees.  
+ * 
+ * The aggregate of an index entry is valid for the whole lifespan of the entry. Whenever an update operation 
+ * changes the aggregate of a subtree, the index entry pointing to the subtree is copied: the old entry is deleted 
+ * at the current version and the copy carrying the new aggregate is inserted at the current version. If the entry 
+ * has been inserted at the current version, its aggregate is changed in place. The index entries created by version splits, 
+ * key splits and merges get the aggregates of their new nodes. The overflows caused by the copies are treated 
+ * by the usual version splits. Therefore, each update operation inserts one index entry into every index node on its path.  
+ * 
+ * The range-aggregate query {@link #aggregate(Comparable, Comparable, Version)} only descends into the index entries 
+ * overlapping a bound of the key range. The subtrees covered by the key range contribute the aggregates of their index entries.
+ * 
+ * @see MVBT
+ */
+public class AggregateMVBT extends MVBT {
+	
+	/**
+	 * Function mapping a data object to its measure (a <tt>Number</tt>)
+	 */
+	protected Function measure;
+	
+	/**
+	 * ID of the node which was inserted into the container at last
+	 */
+	protected Object insertedNodeId; 
+	
+	/**
+	 * aggregate of the node which was inserted into the container at last. 
+	 * It is assigned to the index entry initialized with the ID of the node.  
+	 */
+	protected Aggregate insertedNodeAggregate;
+	
+	/**Creates a new <tt>AggregateMVBT</tt>.
+	 * @param blockSize the block size of the underlaying <tt>Container</tt>.
+	 * @param minCapRatio the minimal capacity ratio of the tree's nodes.
+	 * @param e the epsilon of the <tt>strong version condition</tt>.
+	 * @param keyDomainMinValue the minimal key of the key domain
+	 * @param measure function mapping a data object to its measure (a <tt>Number</tt>)
+	 */
+	public AggregateMVBT(int blockSize, float minCapRatio, float e, Comparable keyDomainMinValue, Function measure) {
+		super(blockSize, minCapRatio, e, keyDomainMinValue);
+		this.measure = measure;
+	}
+	
+	/** Creates a new <tt>Node</tt>.
+	 * @return the new created <tt>Node</tt>.
+	 */		
+	public Tree.Node createNode(int level) {
+		return new Node(level);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see xxl.core.indexStructures.BPlusTree#createIndexEntry(int)
+	 */
+	public Tree.IndexEntry createIndexEntry(int parentLevel) {
+		return new IndexEntry(parentLevel);
+	}
+	
+	/** Creates a new <tt>NodeConverter</tt>.
+	 * @return the new created <tt>NodeConverter</tt>.
+	 */
+	protected BPlusTree.NodeConverter createNodeConverter() {
+		return new NodeConverter();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see xxl.core.indexStructures.MVBTree#copyEntry(java.lang.Object)
+	 */
+	protected Object copyEntry(Object entry) {
+		Object cpy = super.copyEntry(entry);
+		if (entry instanceof IndexEntry)
+			((IndexEntry)cpy).aggregate = ((IndexEntry)entry).aggregate;
+		return cpy;
+	}
+	
+	/**
+	 * Returns the measure of the given data object.
+	 * 
+	 * @param data a data object
+	 * @return the measure of the data object
+	 */
+	protected double measure(Object data) {
+		return ((Number)measure.invoke(data)).doubleValue();
+	}
+	
+	/**
+	 * Repairs the tree bottom-up after an update operation. Additionally to the treatment of overflows and underflows, 
+	 * the aggregates of the index entries on the path are refreshed.   
+	 * 
+	 * @param path the path from the root to the changed node
+	 */
+	protected void post(Stack path) {
+		while (!path.isEmpty()) {
+			Collection newIndexEntries = ((Node)node(path)).redressOverflow(path, new LinkedList(), false);
+			if (path.size() > 1 && newIndexEntries.isEmpty()) 
+				refreshAggregate(path);
+			update(path);
+			up(path);
+		}
+	}
+	
+	/**
+	 * Refreshes the aggregate of the index entry pointing to the node on the top of the path. If the aggregate 
+	 * has changed and the entry has been inserted before the current version, the entry is deleted and 
+	 * a copy with the new aggregate is inserted into the parent node.   
+	 * 
+	 * @param path the path from the root to the changed node
+	 */
+	protected void refreshAggregate(Stack path) {
+		IndexEntry indexEntry = (IndexEntry)indexEntry(path);
+		Aggregate aggregate = ((Node)node(path)).aggregate();
+		if (aggregate.equals(indexEntry.aggregate))
+			return;
+		MVSeparator separator = (MVSeparator)indexEntry.separator();
+		if (separator.insertVersion().compareTo(currentVersion()) == 0) {
+			indexEntry.aggregate = aggregate;
+			return;
+		}
+		MapEntry pathEntry = (MapEntry)path.pop();
+		Node parentNode = (Node)node(path);
+		IndexEntry cpy = (IndexEntry)copyEntry(indexEntry);
+		((MVSeparator)cpy.separator()).setInsertVersion(currentVersion());
+		cpy.aggregate = aggregate;
+		parentNode.removeFromLiveList(indexEntry);
+		separator.delete(currentVersion());
+		parentNode.grow(indexEntry, new Stack());
+		parentNode.grow(cpy, new Stack());
+		path.push(pathEntry);
+	}
+	
+	/**
+	 * Computes the aggregate of all data objects which are alive in the current version of the tree and 
+	 * whose keys lie in the key range <tt>[min, max]</tt>.  
+	 * 
+	 * @param min the minimal bound of the key range of the query.
+	 * @param max the maximal bound of the key range of the query.
+	 * @return the aggregate of the query responses
+	 */
+	public Aggregate aggregate(Comparable min, Comparable max) {
+		return aggregate(min, max, currentVersion());
+	}
+	
+	/**
+	 * Computes the aggregate of all data objects which are alive in the given version and whose keys 
+	 * lie in the key range <tt>[min, max]</tt>.  
+	 * 
+	 * @param min the minimal bound of the key range of the query.
+	 * @param max the maximal bound of the key range of the query.
+	 * @param version the <tt>Version</tt> in which the query is to execute.
+	 * @return the aggregate of the query responses
+	 */
+	public Aggregate aggregate(Comparable min, Comparable max, Version version) {
+		Aggregate aggregate = new Aggregate();
+		if (rootEntry == null)
+			return aggregate;
+		IndexEntry indexEntry = (IndexEntry)determineRootEntry(version);
+		if (indexEntry != null)
+			aggregate(indexEntry, keyDomainMinValue, null, min, max, version, aggregate);
+		return aggregate;
+	}
+	
+	/**
+	 * Adds the data objects of the subtree alive in the given version and whose keys lie in 
+	 * the key range <tt>[min, max]</tt> to the aggregate. 
+	 * 
+	 * @param indexEntry the index entry pointing to the subtree
+	 * @param low the minimal key of the subtree or <tt>null</tt> if it is unknown
+	 * @param high the key bounding the keys of the subtree from above (exclusive) or <tt>null</tt> if it is unknown 
+	 * @param min the minimal bound of the key range of the query.
+	 * @param max the maximal bound of the key range of the query.
+	 * @param version the <tt>Version</tt> of the query
+	 * @param aggregate the aggregate of the query responses
+	 */
+	protected void aggregate(IndexEntry indexEntry, Comparable low, Comparable high, Comparable min, Comparable max, Version version, Aggregate aggregate) {
+		Node node = (Node)indexEntry.get(true);
+		Iterator entries = node.iterator();
+		if (node.level() == 0) {
+			while (entries.hasNext()) {
+				LeafEntry leafEntry = (LeafEntry)entries.next();
+				Comparable key = leafEntry.getKey();
+				if (leafEntry.getLifespan().contains(version) && key.compareTo(min) >= 0 && key.compareTo(max) <= 0)
+					aggregate.add(measure(leafEntry.data()));
+			}
+			return;
+		}
+		List alive = new ArrayList();
+		while (entries.hasNext()) {
+			IndexEntry entry = (IndexEntry)entries.next();
+			if (((MVSeparator)entry.separator()).lifespan().contains(version))
+				alive.add(entry);
+		}
+		Collections.sort(alive, liveIndexEntryComparator);
+		for (int i = 0; i < alive.size(); i++) {
+			IndexEntry entry = (IndexEntry)alive.get(i);
+			Comparable begin = i == 0 ? low : entry.separator().sepValue();
+			Comparable end = i < alive.size()-1 ? ((IndexEntry)alive.get(i+1)).separator().sepValue() : high;
+			if (end != null && end.compareTo(min) <= 0)
+				continue;
+			if (begin != null && begin.compareTo(max) > 0)
+				break;
+			if (begin != null && begin.compareTo(min) >= 0 && end != null && end.compareTo(max) <= 0)
+				aggregate.add(entry.aggregate);
+			else
+				aggregate(entry, begin, end, min, max, version, aggregate);
+		}
+	}
+	
+	/**
+	 * The aggregate of the measures of a set of data objects, i.e. their number, sum, minimum and maximum. 
+	 */
+	public static class Aggregate {
+		
+		/**
+		 * number of bytes needed to serialize an aggregate
+		 */
+		public static final int SIZE = LongConverter.SIZE + 3*DoubleConverter.SIZE;
+		
+		/**
+		 * number of data objects 
+		 */
+		protected long count;
+		
+		/**
+		 * sum of the measures
+		 */
+		protected double sum;
+		
+		/**
+		 * minimal measure
+		 */
+		protected double min = Double.POSITIVE_INFINITY;
+		
+		/**
+		 * maximal measure
+		 */
+		protected double max = Double.NEGATIVE_INFINITY;
+		
+		/**
+		 * Creates the aggregate of an empty set.
+		 */
+		public Aggregate() {
+		}
+		
+		/**
+		 * Creates an aggregate.
+		 * 
+		 * @param count number of data objects
+		 * @param sum sum of the measures
+		 * @param min minimal measure
+		 * @param max maximal measure
+		 */
+		public Aggregate(long count, double sum, double min, double max) {
+			this.count = count;
+			this.sum = sum;
+			this.min = min;
+			this.max = max;
+		}
+		
+		/**
+		 * Adds a measure to this aggregate.
+		 * 
+		 * @param value a measure
+		 */
+		public void add(double value) {
+			count++;
+			sum += value;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		
+		/**
+		 * Adds an aggregate of a disjoint set of data objects to this aggregate.
+		 * 
+		 * @param aggregate an aggregate
+		 */
+		public void add(Aggregate aggregate) {
+			count += aggregate.count;
+			sum += aggregate.sum;
+			min = Math.min(min, aggregate.min);
+			max = Math.max(max, aggregate.max);
+		}
+		
+		/**
+		 * @return the number of data objects
+		 */
+		public long count() {
+			return count;
+		}
+		
+		/**
+		 * @return the sum of the measures
+		 */
+		public double sum() {
+			return sum;
+		}
+		
+		/**
+		 * @return the minimal measure or {@link Double#POSITIVE_INFINITY} if the aggregate is empty
+		 */
+		public double min() {
+			return min;
+		}
+		
+		/**
+		 * @return the maximal measure or {@link Double#NEGATIVE_INFINITY} if the aggregate is empty
+		 */
+		public double max() {
+			return max;
+		}
+		
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Aggregate))
+				return false;
+			Aggregate aggregate = (Aggregate)object;
+			return count == aggregate.count && sum == aggregate.sum && min == aggregate.min && max == aggregate.max;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (int)count ^ Double.valueOf(sum).hashCode();
+		}
+		
+		@Override
+		public String toString() {
+			return "Aggregate [count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max + "]";
+		}
+	}
+	
+	/**
+	 * Index entry which stores the aggregate of its subtree. 
+	 */
+	public class IndexEntry extends BPlusTree.IndexEntry {
+		
+		/**
+		 * aggregate of the subtree which is valid during the lifespan of the entry
+		 */
+		protected Aggregate aggregate = new Aggregate();
+		
+		/**
+		 * Creates a new <tt>IndexEntry</tt>.
+		 * 
+		 * @param parentLevel the level of the node containing the entry
+		 */
+		public IndexEntry(int parentLevel) {
+			super(parentLevel);
+		}
+		
+		/**
+		 * Initializes the entry by the ID of a node. If the node has just been inserted into the container, 
+		 * the entry gets the aggregate of the node.  
+		 * 
+		 * @param id the ID of the node
+		 * @return the index entry itself
+		 */
+		public Tree.IndexEntry initialize(Object id) {
+			if (id != null && id.equals(insertedNodeId)) {
+				aggregate = insertedNodeAggregate;
+				insertedNodeId = null;
+				insertedNodeAggregate = null;
+			}
+			return super.initialize(id);
+		}
+		
+		/**
+		 * @return the aggregate of the subtree
+		 */
+		public Aggregate aggregate() {
+			return aggregate;
+		}
+		
+		@Override
+		public String toString() {
+			return super.toString() + " " + aggregate;
+		}
+	}
+	
+	/**
+	 * Node which computes its aggregate when it is inserted into the container. 
+	 */
+	public class Node extends MVBT.Node {
+		
+		/**Creates a new <tt>Node</tt>.
+		 * @param level the level of the <tt>Node</tt>.
+		 */		
+		public Node(int level) {
+			super(level);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.MVBTree.Node#onInsert(java.lang.Object)
+		 */
+		public void onInsert(Object id) {
+			insertedNodeId = id;
+			insertedNodeAggregate = aggregate();
+		}
+		
+		/**
+		 * Computes the aggregate of the data objects alive in the subtree of this node.
+		 * 
+		 * @return the aggregate of the alive entries
+		 */
+		public Aggregate aggregate() {
+			Aggregate aggregate = new Aggregate();
+			if (level() == 0) {
+				Iterator entries = getCurrentEntries();
+				while (entries.hasNext())
+					aggregate.add(measure(((LeafEntry)entries.next()).data()));
+			}
+			else
+				for (Object entry : liveEntries)
+					aggregate.add(((IndexEntry)entry).aggregate);
+			return aggregate;
+		}
+	}
+	
+	/** 
+	 * Converter which serializes the aggregates of the index entries additionally. 
+	 */
+	@SuppressWarnings("serial")
+	public class NodeConverter extends MVBT.NodeConverter {
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.MVBT.NodeConverter#readIndexEntry(java.io.DataInput, int)
+		 */
+		protected BPlusTree.IndexEntry readIndexEntry(DataInput input, int parentLevel) throws IOException {
+			IndexEntry indexEntry = (IndexEntry)super.readIndexEntry(input, parentLevel);
+			indexEntry.aggregate = new Aggregate(LongConverter.DEFAULT_INSTANCE.readLong(input), 
+					DoubleConverter.DEFAULT_INSTANCE.readDouble(input), 
+					DoubleConverter.DEFAULT_INSTANCE.readDouble(input), 
+					DoubleConverter.DEFAULT_INSTANCE.readDouble(input));
+			return indexEntry;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.MVBT.NodeConverter#writeIndexEntry(java.io.DataOutput, xxl.core.indexStructures.BPlusTree.IndexEntry)
+		 */
+		protected void writeIndexEntry(DataOutput output, BPlusTree.IndexEntry entry) throws IOException {
+			super.writeIndexEntry(output, entry);
+			Aggregate aggregate = ((IndexEntry)entry).aggregate;
+			LongConverter.DEFAULT_INSTANCE.writeLong(output, aggregate.count);
+			DoubleConverter.DEFAULT_INSTANCE.writeDouble(output, aggregate.sum);
+			DoubleConverter.DEFAULT_INSTANCE.writeDouble(output, aggregate.min);
+			DoubleConverter.DEFAULT_INSTANCE.writeDouble(output, aggregate.max);
+		}
+		
+		@Override
+		protected int indexEntrySize() {
+			return super.indexEntrySize() + Aggregate.SIZE;
+		}
+		
+		@Override
+		protected int predecessorsSize() {
+			return super.predecessorsSize() + 2*Aggregate.SIZE;
+		}
+	}
+}
@@ -23,6 +23,7 @@ package xxl.core.indexStructures;
 import static xxl.core.util.ConvertUtils.autoCast;
 import static xxl.core.util.ConvertUtils.autoComparable;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -35,6 +36,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
 
@@ -89,6 +91,12 @@ public class BPlusIndexedSet<E> extends IndexedSet<BPlusTree, E> {
    */
   public static final String META_FILE_EXTENSION = ".meta";
 
+  /*
+   * File extension for the counting Bloom filter over the keys which is written if the tree uses a
+   * filter (see BPlusConfiguration.Creator#setFilter)
+   */
+  public static final String FILTER_FILE_EXTENSION = ".bloom";
+
   /*
    * The count of items inside the indexed set
    */
@@ -182,6 +190,11 @@ public class BPlusIndexedSet<E> extends IndexedSet<BPlusTree, E> {
     return mSize.equals(BigInteger.ZERO);
   }
 
+  @Override
+  public Iterator<E> iterator() {
+    return mTree.query();
+  }
+
   @Override
   public E last() {
     return (E) ((KeyRange) mTree.rootDescriptor()).maxBound();
@@ -258,6 +271,17 @@ public class BPlusIndexedSet<E> extends IndexedSet<BPlusTree, E> {
   @Override
   protected void saveIndexStructureMetaData() throws IOException {
 
+    /*
+     * Key filter (if any) which is read again when the set is reloaded
+     */
+    if (mTree.getFilter() != null) {
+      DataOutputStream filterOut =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+              this.getFilePath() + FILTER_FILE_EXTENSION)));
+      mTree.getFilter().write(filterOut);
+      filterOut.close();
+    }
+
     /*
      * BPlusTree required meta file (see BPlusTree documentation)
      */
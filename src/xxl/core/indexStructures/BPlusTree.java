@@ -25,8 +25,10 @@ License along with this library;  If not, see <http://www.gnu.org/licenses/>.
 
 package xxl.core.indexStructures;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -51,6 +53,8 @@ import xxl.core.io.converters.IntegerConverter;
 import xxl.core.io.converters.MeasuredConverter;
 import xxl.core.predicates.AbstractPredicate;
 import xxl.core.predicates.Predicate;
+import xxl.core.util.CountingBloomFilter;
+import xxl.core.util.WrappingRuntimeException;
 
 /**
  * This class implements a B+Tree. 
@@ -158,6 +162,14 @@ public class BPlusTree extends Tree {
      * Indicates whether a B+Tree can contain Duplicates or not.
      */
     protected boolean  duplicate; 
+    /**
+     * An optional approximate-membership filter over the keys of the data
+     * objects. If set, exact match queries skip the descent into the tree
+     * when the filter reports the key as missing.
+     * 
+     * @see #enableFilter(int, double)
+     */
+    protected CountingBloomFilter filter;
     /**
      * Creates a new <tt>BPlusTree</tt>. With a default setting of duplicates = false 
      * 
@@ -639,6 +651,115 @@ public class BPlusTree extends Tree {
     public boolean isDuplicatesEnabled(){
     	return this.duplicate;
     } 
+    /**
+     * Attaches a new {@link CountingBloomFilter} to the tree which is
+     * dimensioned for the given number of keys and filled with the keys of
+     * the data objects already stored in the tree. Afterwards the filter is
+     * maintained by {@link #insert(Object)}, the remove methods, {@link #clear()}
+     * and {@link BPlusTreeBulkLoading}, and {@link #exactMatchQuery(Comparable)},
+     * {@link #aloneKeyQuery(Comparable)} and {@link #contains(Object)} answer
+     * queries for missing keys without reading a node.
+     * <p>
+     * NOTE: Entries removed directly through a query cursor are not removed
+     * from the filter. This only increases the false positive rate.
+     * 
+     * @param expectedKeys
+     *            the expected number of keys
+     * @param falsePositiveRate
+     *            the probability that a query for a missing key has to
+     *            descend into the tree
+     * @return the new filter
+     * @see #setFilter(CountingBloomFilter)
+     */
+    public CountingBloomFilter enableFilter(int expectedKeys, double falsePositiveRate) {
+    	CountingBloomFilter newFilter = new CountingBloomFilter(expectedKeys, falsePositiveRate);
+    	if (rootEntry() != null) {
+    		Cursor objects = query();
+    		while (objects.hasNext())
+    			newFilter.add(filterHash(key(objects.next())));
+    		objects.close();
+    	}
+    	filter = newFilter;
+    	return filter;
+    }
+    /**
+     * Attaches the given filter to the tree without filling it, e.g., a
+     * filter which was written together with the tree and is read again. The
+     * filter has to contain the keys of all data objects of the tree.
+     * <tt>null</tt> detaches the current filter.
+     * 
+     * @param filter
+     *            the filter or <tt>null</tt>
+     * @see #enableFilter(int, double)
+     */
+    public void setFilter(CountingBloomFilter filter) {
+    	this.filter = filter;
+    }
+    /**
+     * Returns the filter attached to the tree.
+     * 
+     * @return the filter or <tt>null</tt> if no filter is used
+     */
+    public CountingBloomFilter getFilter() {
+    	return filter;
+    }
+    /**
+     * Computes the hash value of a key used by the filter. The key is
+     * serialized by the key converter of the tree, so keys which are equal
+     * with respect to the tree get the same hash value.
+     * 
+     * @param key
+     *            the key
+     * @return the hash value of the serialized key
+     */
+    protected long filterHash(Comparable key) {
+    	try {
+    		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    		DataOutputStream output = new DataOutputStream(bytes);
+    		keyConverter.write(output, key);
+    		output.flush();
+    		byte[] array = bytes.toByteArray();
+    		return CountingBloomFilter.hash(array, 0, array.length);
+    	}
+    	catch (IOException ie) {
+    		throw new WrappingRuntimeException(ie);
+    	}
+    }
+    /**
+     * Checks whether the filter excludes the given key.
+     * 
+     * @param key
+     *            the key
+     * @return <tt>true</tt> if a filter is used and the key is definitely
+     *         not stored in the tree
+     */
+    protected boolean filterExcludes(Comparable key) {
+    	return filter != null && !filter.mightContain(filterHash(key));
+    }
+    /**
+     * Checks whether the given data object is stored in the tree. If a
+     * filter is used and excludes the key of the object, no node is read.
+     * 
+     * @param data
+     *            the data object
+     * @return <tt>true</tt> if the tree contains the object
+     * @see Tree#contains(Object)
+     */
+    public boolean contains(Object data) {
+    	if (filterExcludes(key(data)))
+    		return false;
+    	return super.contains(data);
+    }
+    /**
+     * Removes all data objects from the tree and clears the filter.
+     * 
+     * @see Tree#clear()
+     */
+    public void clear() {
+    	super.clear();
+    	if (filter != null)
+    		filter.clear();
+    }
     /**
      * Creates a new node on a given level.
      * @param level the level of the new Node
@@ -859,6 +980,8 @@ public class BPlusTree extends Tree {
 			}
 		}
 		objects.close();
+		if (retValue != null && targetLevel == 0 && filter != null)
+			filter.remove(filterHash(key(retValue)));
 		return retValue;
 	}
     /**
@@ -876,6 +999,8 @@ public class BPlusTree extends Tree {
      *            suitable leaf node)
      */
     protected void insert(Object data, Descriptor descriptor, int targetLevel) {
+        if (targetLevel == 0 && filter != null)
+        	filter.add(filterHash(key(data)));
         if (rootEntry() == null) {
             Comparable key = ((Separator) descriptor).sepValue();
             rootDescriptor = createKeyRange(key, key);
@@ -979,6 +1104,8 @@ public class BPlusTree extends Tree {
     		throw new UnsupportedOperationException("B+Tree does not support duplicates!!! Please run " +
     				"exactMatchQuery(Comparable key) method ");
     	} 
+    	if (filterExcludes(key))
+    		return new EmptyCursor();
         KeyRange range = createKeyRange(key, key);
         return query(range, 0);
     }
@@ -1021,6 +1148,8 @@ public class BPlusTree extends Tree {
      *         no such object could be found
      */
     protected Object exactMatchQuery(Comparable key, Predicate test) {
+    	if (filterExcludes(key))
+    		return null;
     	KeyRange range = createKeyRange(key, key);
         Cursor results = query(range, 0);
         Object result = null;
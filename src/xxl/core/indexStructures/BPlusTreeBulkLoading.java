@@ -136,12 +136,17 @@ public class BPlusTreeBulkLoading {
     	// new code 
     	this.descending = order;
     	
+    	// the tree is rebuilt from the objects, so is its filter
+    	if (tree.filter != null)
+    		tree.filter.clear();
     	// insert all objects
 		while (objects.hasNext()) {
 			Object obj = objects.next();
 			if (first == null) first = obj;
 			last = obj;
 			insertBulk(obj, 0);
+			if (tree.filter != null)
+				tree.filter.add(tree.filterHash(tree.key(obj)));
 		}		
 		// at this point we have a getpath which contains the right flank.
 		// write unsaved nodes
@@ -0,0 +1,530 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.util.Map;
+import java.util.Stack;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.SynchronizedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.io.converters.Converter;
+
+/**
+ * This class extends the <tt>MVBTree</tt> by a concurrency mode with a
+ * single writer and an arbitrary number of readers. All update operations
+ * (insertions, deletions, updates and the purging of old versions) are
+ * serialized by a lock. Readers never take this lock: every query is pinned
+ * to a <tt>Version</tt> that has already been published by the writer and
+ * traverses dead and live nodes without latches. This works because the
+ * MVBTree never changes the part of a node which is visible in an older
+ * <tt>Version</tt>: a writer operating at a newer <tt>Version</tt> only
+ * appends entries, closes lifespans and creates new nodes.
+ * 
+ * <p>To guarantee this, the following rules apply:
+ * <ul>
+ * <li>Every update operation has to use a <tt>Version</tt> which is strictly
+ * greater than the <tt>Version</tt> of the previous operation. When the
+ * operation returns, its <tt>Version</tt> is published and becomes the
+ * {@link #currentVersion() current version} of all readers.</li>
+ * <li>The <tt>Container</tt> of the nodes has to return a private copy of a
+ * node on every call of <tt>get</tt> and has to be thread-safe. A
+ * <tt>ConverterContainer</tt> on top of a <tt>SynchronizedContainer</tt>
+ * fulfills both requirements, see {@link #snapshotContainer(Container, Converter)}.
+ * An object buffer must not be placed above the <tt>ConverterContainer</tt>.
+ * If the nodes of {@link #rootsTree()} are stored in the same block container,
+ * both trees have to share the same <tt>SynchronizedContainer</tt>.</li>
+ * </ul>
+ * 
+ * <p>The roots of older versions are stored in the <tt>BPlusTree</tt>
+ * {@link #rootsTree()} which is modified by the writer. Readers look them up
+ * in a concurrent copy of this tree instead, which is refreshed by the writer
+ * whenever the root of the live tree changes.
+ * 
+ * <p>Blocks of dead nodes are only removed from the container when no
+ * {@link Snapshot} is pinned to a <tt>Version</tt> in which they are still
+ * visible. Readers that query old versions while the cutoff version is
+ * advanced should therefore open a <tt>Snapshot</tt>.
+ * 
+ * @see MVBTree
+ */
+public class ConcurrentMVBTree extends MVBTree {
+	
+	/**
+	 * The state of the tree as seen by the readers. An instance is never
+	 * changed after it has been published.
+	 */
+	protected static class Published {
+		/** The last completed version. */
+		protected final Version version;
+		/** A copy of the live root entry, or <tt>null</tt> if the tree is empty. */
+		protected final IndexEntry rootEntry;
+		/** A copy of the descriptor of the live root. */
+		protected final MVRegion rootDescriptor;
+		
+		protected Published(Version version, IndexEntry rootEntry, MVRegion rootDescriptor) {
+			this.version = version;
+			this.rootEntry = rootEntry;
+			this.rootDescriptor = rootDescriptor;
+		}
+		
+		protected Version rootVersion() {
+			return ((MVSeparator)rootEntry.separator()).insertVersion();
+		}
+	}
+	
+	/** Serializes the update operations. */
+	protected final ReentrantLock writeLock = new ReentrantLock();
+	
+	/** The state published by the last completed update operation. */
+	protected volatile Published published;
+	
+	/** 
+	 * The historical roots of the tree keyed by the begin of their lifespans.
+	 * This is the readers' view of {@link MVBTree#roots}.
+	 */
+	protected final ConcurrentSkipListMap<Version, IndexEntry> rootHistory = new ConcurrentSkipListMap<Version, IndexEntry>();
+	
+	/** 
+	 * The versions of all open snapshots together with their number. This map
+	 * is also the monitor guarding the cutoff version.
+	 */
+	protected final TreeMap<Version, Integer> pins = new TreeMap<Version, Integer>();
+	
+	/** The cutoff version requested by the writer. The effective cutoff version may lag behind it. */
+	protected Version requestedCutoffVersion;
+	
+	/**Creates a new <tt>ConcurrentMVBTree</tt>.
+	 * @param blockSize the block size of the underlaying <tt>Container</tt>.
+	 * @param minCapRatio the minimal capacity ratio of the tree's nodes.
+	 * @param e the epsilon of the <tt>strong version condition</tt>.
+	 */
+	public ConcurrentMVBTree(int blockSize, float minCapRatio, float e) {
+		super(blockSize, minCapRatio, e);
+	}
+	
+	/**Creates a new <tt>ConcurrentMVBTree</tt>. The minimal capacity ratio of the tree's nodes is set ot 50%.
+	 * @param blockSize the block size of the underlaying <tt>Container</tt>.
+	 * @param e the epsilon of the <tt>strong version condition</tt>.
+	 */
+	public ConcurrentMVBTree(int blockSize, float e) {
+		super(blockSize, e);
+	}
+	
+	/**Creates a new <tt>ConcurrentMVBTree</tt>.
+	 * @param blockSize the block size of the underlaying <tt>Container</tt>.
+	 * @param minCapRatio the minimal capacity ratio of the tree's nodes.
+	 * @param e the epsilon of the <tt>strong version condition</tt>.
+	 * @param keyDomainMinValue the minimal value of the key domain.
+	 */
+	public ConcurrentMVBTree(int blockSize, float minCapRatio, float e, Comparable keyDomainMinValue) {
+		super(blockSize, minCapRatio, e, keyDomainMinValue);
+	}
+	
+	/**
+	 * Creates a node container which can be used by a <tt>ConcurrentMVBTree</tt>:
+	 * the given block container is synchronized unless it already is a
+	 * <tt>SynchronizedContainer</tt>, and every access deserializes a private
+	 * copy of the node.
+	 * 
+	 * @param blockContainer the container storing the serialized nodes.
+	 * @param nodeConverter the converter of the nodes, e.g. {@link BPlusTree#nodeConverter()}.
+	 * @return a container suitable for concurrent readers.
+	 */
+	public static Container snapshotContainer(Container blockContainer, Converter nodeConverter) {
+		return new ConverterContainer(blockContainer instanceof SynchronizedContainer ? 
+			blockContainer : new SynchronizedContainer(blockContainer), nodeConverter);
+	}
+	
+	/**
+	 * Checks whether the calling thread is the writer, i.e. whether it
+	 * currently executes an update operation.
+	 * 
+	 * @return <tt>true</tt> if the calling thread holds the write lock.
+	 */
+	protected boolean isWriter() {
+		return writeLock.isHeldByCurrentThread();
+	}
+	
+	/**
+	 * Acquires the write lock and checks that the given version is newer
+	 * than the last published version.
+	 * 
+	 * @param version the version of the update operation.
+	 */
+	protected void beginWrite(Version version) {
+		writeLock.lock();
+		if (currentVersion != null && version.compareTo(currentVersion) <= 0) {
+			writeLock.unlock();
+			throw new UnsupportedOperationException("Update operations of a ConcurrentMVBTree " +
+														"require strictly increasing versions.");
+		}
+	}
+	
+	/**
+	 * Publishes the state of the tree, applies a pending cutoff version and
+	 * releases the write lock.
+	 */
+	protected void endWrite() {
+		try {
+			publish();
+			applyCutoffVersion();
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Makes the current state of the tree visible to the readers. The
+	 * concurrent root history is refreshed when the live root has been
+	 * replaced since the last call. Has to be called by the writer.
+	 */
+	protected void publish() {
+		IndexEntry root = (IndexEntry)rootEntry;
+		Version version = currentVersion == null ? null : (Version)currentVersion.clone();
+		if (root == null) {
+			published = new Published(version, null, null);
+			return;
+		}
+		Published last = published;
+		IndexEntry rootCopy = (IndexEntry)copyEntry(root);
+		if (last == null || last.rootEntry == null || !last.rootEntry.id().equals(rootCopy.id())
+				|| last.rootVersion().compareTo(((MVSeparator)rootCopy.separator()).insertVersion()) != 0)
+			refreshRootHistory();
+		MVRegion descriptor = (MVRegion)rootDescriptor;
+		published = new Published(version, rootCopy, 
+			createMVRegion(descriptor.beginVersion(), descriptor.endVersion(), descriptor.minBound(), descriptor.maxBound()));
+	}
+	
+	/**
+	 * Copies all roots of {@link MVBTree#roots} which are not yet known to
+	 * the readers into the concurrent root history.
+	 */
+	protected void refreshRootHistory() {
+		if (roots.rootEntry() == null)
+			return;
+		Cursor cursor = roots.query();
+		while (cursor.hasNext()) {
+			Root root = (Root)cursor.next();
+			if (!rootHistory.containsKey(root.lifespan().beginVersion()))
+				rootHistory.put((Version)root.lifespan().beginVersion().clone(), root.toIndexEntry());
+		}
+		cursor.close();
+	}
+	
+	/**
+	 * Returns the state published by the last update operation.
+	 * 
+	 * @return the published state of the tree.
+	 */
+	protected Published published() {
+		Published p = published;
+		if (p == null) {
+			writeLock.lock();
+			try {
+				if (published == null)
+					publish();
+				p = published;
+			}
+			finally {
+				writeLock.unlock();
+			}
+		}
+		return p;
+	}
+	
+	/**
+	 * Returns the current version of the tree. Readers obtain the last
+	 * published version, the writer obtains the version of the operation it
+	 * currently executes.
+	 * 
+	 * @return the current <tt>Version</tt> of the <tt>MVBTree</tt>.
+	 */
+	public Version currentVersion() {
+		return isWriter() ? currentVersion : published().version;
+	}
+	
+	/**
+	 * Determines the root which is appropriate to the given <tt>Version</tt>.
+	 * Readers use the published root and the concurrent root history
+	 * instead of the live root and the <tt>BPlusTree</tt> of the roots.
+	 * 
+	 * @param version the <tt>Version</tt> whose <tt>Root</tt> is required.
+	 * @return an <tt>IndexEntry</tt> pointing to the appropriate <tt>root Node</tt>.
+	 */
+	public IndexEntry determineRootEntry(Version version) {
+		if (isWriter())
+			return super.determineRootEntry(version);
+		Published p = published();
+		if (p.rootEntry == null)
+			return null;
+		if (version == null || version.compareTo(p.rootVersion()) >= 0)
+			return p.rootEntry;
+		Map.Entry<Version, IndexEntry> root = rootHistory.floorEntry(version);
+		return root == null ? null : root.getValue();
+	}
+	
+	/** Computes the region of the subtree pointed by the given entry.
+	 * Readers use the published descriptor of the root.
+	 * @param entry the root of the subtree.
+	 * @param path the path from the root to the <tt>Node</tt> in which the given entry is stored.
+	 * @return the region of the subtree pointed by the given entry.
+	 */
+	protected MVRegion computeRegion(IndexEntry entry, Stack path) {
+		if (!path.isEmpty() || isWriter())
+			return super.computeRegion(entry, path);
+		MVRegion region = toMVRegion((MVSeparator)entry.separator());
+		region.union(published().rootDescriptor, false);
+		return region;
+	}
+	
+	/**
+	 * Checks that a reader does not query a version which has not been
+	 * published yet.
+	 * 
+	 * @param version the version of the query.
+	 */
+	protected void checkPublished(Version version) {
+		if (isWriter() || version == null)
+			return;
+		Version last = published().version;
+		if (last == null || version.compareTo(last) > 0)
+			throw new IllegalArgumentException("Version "+version+" has not been published yet.");
+	}
+	
+	public void insert(Version insertVersion, Object data) {
+		beginWrite(insertVersion);
+		try {
+			super.insert(insertVersion, data);
+		}
+		finally {
+			endWrite();
+		}
+	}
+	
+	public void update(Version updateVersion, Object oldData, Object newData) {
+		beginWrite(updateVersion);
+		try {
+			super.update(updateVersion, oldData, newData);
+		}
+		finally {
+			endWrite();
+		}
+	}
+	
+	public Object remove(Version removeVersion, Object data) {
+		beginWrite(removeVersion);
+		try {
+			return super.remove(removeVersion, data);
+		}
+		finally {
+			endWrite();
+		}
+	}
+	
+	/**
+	 * Sets the cutoff version. The blocks which died before the cutoff
+	 * version are purged as soon as no {@link Snapshot} is pinned to an
+	 * older version.
+	 * 
+	 * @param version cutoff version
+	 */
+	public void setCutoffVersion(Version version) {
+		writeLock.lock();
+		try {
+			if (version == null)
+				throw new IllegalArgumentException();
+			if (requestedCutoffVersion != null && version.compareTo(requestedCutoffVersion) < 0)
+				throw new IllegalArgumentException("New cutoff version must be greater than or equal to the old cutoff version.");
+			if (version.compareTo(currentVersion) > 0)
+				throw new IllegalArgumentException("Cutoff version must be smaller than or equal to the current version.");
+			requestedCutoffVersion = (Version)version.clone();
+			applyCutoffVersion();
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Advances the effective cutoff version to the requested cutoff version
+	 * or to the oldest pinned version if that is older, and purges the blocks
+	 * which are no longer visible. Has to be called by the writer.
+	 */
+	protected void applyCutoffVersion() {
+		if (requestedCutoffVersion == null)
+			return;
+		synchronized (pins) {
+			Version cutoff = requestedCutoffVersion;
+			if (!pins.isEmpty() && pins.firstKey().compareTo(cutoff) < 0)
+				cutoff = pins.firstKey();
+			if (cutoffVersion == null || cutoff.compareTo(cutoffVersion) > 0)
+				super.setCutoffVersion(cutoff);
+		}
+	}
+	
+	public Object exactMatchQuery(Comparable key, Version version) {
+		checkPublished(version);
+		if (!isWriter() && published().rootEntry == null)
+			return null;
+		return super.exactMatchQuery(key, version);
+	}
+	
+	public Cursor rangePeriodQuery(Comparable min, Comparable max, Version beginVersion, Version endVersion) {
+		checkPublished(endVersion);
+		if (!isWriter() && published().rootEntry == null)
+			return new EmptyCursor();
+		return super.rangePeriodQuery(min, max, beginVersion, endVersion);
+	}
+	
+	/**
+	 * Opens a snapshot of the last published version.
+	 * 
+	 * @return a new snapshot which has to be closed after use.
+	 */
+	public Snapshot snapshot() {
+		return snapshot(published().version);
+	}
+	
+	/**
+	 * Opens a snapshot of the given version. The version must not be
+	 * newer than the last published version and not be older than the
+	 * cutoff version.
+	 * 
+	 * @param version the version of the snapshot.
+	 * @return a new snapshot which has to be closed after use.
+	 */
+	public Snapshot snapshot(Version version) {
+		if (version == null)
+			throw new IllegalStateException("The tree does not contain any version yet.");
+		checkPublished(version);
+		synchronized (pins) {
+			if (cutoffVersion != null && version.compareTo(cutoffVersion) < 0)
+				throw new IllegalArgumentException("Cannot pin versions before cutoff version.");
+			Integer count = pins.get(version);
+			pins.put(version, count == null ? 1 : count+1);
+		}
+		return new Snapshot(version);
+	}
+	
+	/**
+	 * A read-only view of the tree pinned to a single version. Blocks which
+	 * are visible in this version are not purged before the snapshot has been
+	 * closed. A snapshot may be used by any number of threads.
+	 */
+	public class Snapshot {
+		
+		/** The version of this snapshot. */
+		protected final Version version;
+		
+		/** Indicates whether this snapshot has been closed. */
+		protected volatile boolean closed = false;
+		
+		protected Snapshot(Version version) {
+			this.version = version;
+		}
+		
+		/**
+		 * Returns the version this snapshot is pinned to.
+		 * 
+		 * @return the version of this snapshot.
+		 */
+		public Version version() {
+			return version;
+		}
+		
+		/**
+		 * Searches the data object with the given key.
+		 * 
+		 * @param key the key of the element which is to search.
+		 * @return the found object if the search is successful and null otherwise.
+		 * @see MVBTree#exactMatchQuery(Comparable, Version)
+		 */
+		public Object exactMatchQuery(Comparable key) {
+			checkOpen();
+			return ConcurrentMVBTree.this.exactMatchQuery(key, version);
+		}
+		
+		/**
+		 * Searches all elements whose keys lie in the key range <tt>[min, max]</tt>.
+		 * 
+		 * @param min the minimal bound of the key range of the query.
+		 * @param max the maximal bound of the key range of the query.
+		 * @return a lazy <tt>Cursor</tt> pointing to all query responses.
+		 * @see MVBTree#keyRangeQuery(Comparable, Comparable, Version)
+		 */
+		public Cursor keyRangeQuery(Comparable min, Comparable max) {
+			checkOpen();
+			return ConcurrentMVBTree.this.keyRangeQuery(min, max, version);
+		}
+		
+		/**
+		 * Searches all elements whose keys lie in the key range <tt>[min, max]</tt>
+		 * and which are valid in the version range from <tt>beginVersion</tt> up to
+		 * the version of this snapshot.
+		 * 
+		 * @param min the minimal bound of the key range of the query.
+		 * @param max the maximal bound of the key range of the query.
+		 * @param beginVersion the begin of the version range of the query.
+		 * @return a lazy <tt>Cursor</tt> pointing to all query responses.
+		 * @see MVBTree#rangePeriodQuery(Comparable, Comparable, Version, Version)
+		 */
+		public Cursor rangePeriodQuery(Comparable min, Comparable max, Version beginVersion) {
+			checkOpen();
+			if (beginVersion.compareTo(version) > 0)
+				throw new IllegalArgumentException("The version range exceeds the snapshot.");
+			return ConcurrentMVBTree.this.rangePeriodQuery(min, max, beginVersion, version);
+		}
+		
+		protected void checkOpen() {
+			if (closed)
+				throw new IllegalStateException("The snapshot has been closed.");
+		}
+		
+		/**
+		 * Releases this snapshot. Cursors obtained from it must not be used
+		 * afterwards.
+		 */
+		public void close() {
+			if (closed)
+				return;
+			closed = true;
+			synchronized (pins) {
+				Integer count = pins.get(version);
+				if (count == 1)
+					pins.remove(version);
+				else
+					pins.put(version, count-1);
+			}
+		}
+	}
+}
@@ -29,11 +29,13 @@ import java.util.Iterator;
 import java.util.List;
 
 import xxl.core.collections.containers.Container;
+import xxl.core.cursors.sources.ArrayCursor;
 import xxl.core.functions.Function;
 import xxl.core.indexStructures.BPlusTree.IndexEntry;
 import xxl.core.indexStructures.BPlusTree.Node;
 import xxl.core.predicates.Predicate;
 import xxl.core.spatial.rectangles.Rectangle;
+import xxl.core.util.RadixSort;
 /**
  * This class provides functionality to bulk-load a <tt>HilbertRTree</tt>.
  * The tree is created bottom-up.  
@@ -76,6 +78,44 @@ public class HilbertRTreeBulkLoading extends BPlusTreeBulkLoading {
      	this(tree,  objects,  determineContainer, tree.overflows , order);
      }
 	
+	/**
+	 * Bulk loads the given <tt>tree</tt> with the given unsorted <tt>objects</tt>. 
+	 * The objects are sorted in ascending order of the given <tt>keys</tt> 
+	 * (see {@link #sortByKeys(Object[], long[], int)}). The keys have to be 
+	 * the Hilbert values computed by the key function of the tree, e.g., 
+	 * by a {@link xxl.core.spatial.SpaceFillingCurveEncoder}.
+	 * 
+	 * @param tree
+	 * @param objects the unsorted data objects
+	 * @param keys the Hilbert values of the data objects (sorted by this constructor)
+	 * @param threads the number of threads sorting the keys
+	 */
+	public HilbertRTreeBulkLoading(HilbertRTree tree, Object[] objects, long[] keys, int threads){
+		this(tree, sortByKeys(objects, keys, threads), HilbertRTreeBulkLoading.ASCENDING_BULKLOAD);
+	}
+	
+	/**
+	 * Sorts the given objects in ascending order of their keys by a parallel 
+	 * radix sort on the primitive keys and returns an iterator over the sorted 
+	 * objects. The array of keys is sorted, too; the array of objects remains 
+	 * unchanged.
+	 * 
+	 * @see RadixSort
+	 * @param objects the data objects
+	 * @param keys the keys of the data objects, <tt>keys[i]</tt> belongs to <tt>objects[i]</tt>
+	 * @param threads the number of threads
+	 * @return an iterator over the objects in ascending order of their keys
+	 */
+	public static Iterator sortByKeys(Object[] objects, long[] keys, int threads){
+		if (objects.length != keys.length)
+			throw new IllegalArgumentException("The number of objects and keys differ.");
+		int[] positions = RadixSort.sortedPositions(keys, threads);
+		Object[] sorted = new Object[objects.length];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = objects[positions[i]];
+		return new ArrayCursor<Object>(sorted);
+	}
+	
 	public HilbertRTreeBulkLoading(HilbertRTree tree, Iterator objects, Function<Node, Container> determineContainer, Predicate overflows, boolean order) {
 		super(tree, objects, determineContainer, overflows, order);
 		Node node = (Node)btree.rootEntry.get();
@@ -22,7 +22,6 @@ package xxl.core.indexStructures;
 
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Iterator;
 import java.util.SortedSet;
 
 import xxl.core.collections.containers.io.BufferedContainer;
@@ -36,10 +35,10 @@ import xxl.core.indexStructures.builder.IndexBuilder;
  * 
  * @author Marcus Pinnecke (pinnecke@mathematik.uni-marburg.de)
  * 
- * @param <IndexStructure> The underlying implementation of a tree index structure
+ * @param <IndexStructure> The underlying implementation of an index structure, e.g. a tree
  * @param <E> The data type which should be managed
  */
-public abstract class IndexedSet<IndexStructure extends Tree, E>
+public abstract class IndexedSet<IndexStructure, E>
     implements
       SortedSet<E> {
 
@@ -104,11 +103,6 @@ public abstract class IndexedSet<IndexStructure extends Tree, E>
     return mTree;
   }
 
-  @Override
-  public Iterator<E> iterator() {
-    return mTree.query();
-  }
-
   /**
    * Stores the content of this set to hard drive. <i>Please note</i>: Depending on the underlying
    * index structure this method only <i>flushes</i> buffers. It is possible that <i>unsaved</i>
@@ -0,0 +1,829 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.distincts.SortBasedDistinct;
+import xxl.core.cursors.filters.Filter;
+import xxl.core.cursors.mappers.Mapper;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.cursors.unions.Merger;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.io.converters.BooleanConverter;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredConverter;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * A write-optimized index following the log-structured merge (LSM) approach.
+ * Inserted and removed objects are collected in a sorted in-memory buffer.
+ * When the buffer is full, it is written as an immutable <i>run</i>, i.e., a
+ * {@link BPlusTree} which is created by {@link BPlusTreeBulkLoading} in a
+ * single sequential pass, so an insertion never reads or rewrites a leaf
+ * of a large tree.
+ * <p>
+ * The runs are organized in levels (tiering): new runs are added to level 0
+ * and as soon as a level contains <tt>fanout</tt> runs, they are merged by a
+ * {@link Merger} into a single run of the next level. Every run has a
+ * {@link xxl.core.util.CountingBloomFilter} over its keys (see
+ * {@link BPlusTree#enableFilter(int, double)}), so an exact match query
+ * reads nodes only of the runs which may contain the key. Runs are written
+ * and compacted by the inserting thread or, after
+ * {@link #enableBackgroundCompaction()}, by a background thread.
+ * <p>
+ * The index stores at most one object per key; inserting an object replaces
+ * the object with the same key. Removals are recorded as <i>tombstones</i>
+ * which hide older objects until they are dropped by a compaction into the
+ * last level. Every insertion and removal gets a sequence number, so the
+ * newest version of a key wins when runs are merged.
+ * <p>
+ * Queries do not block writers: a query works on the runs which existed when
+ * it started and copies the part of the buffer it needs. Runs which are
+ * replaced by a compaction are released (their container is cleared and
+ * closed) after the last cursor reading them is closed, so cursors returned
+ * by {@link #rangeQuery(Comparable, Comparable)} and {@link #query()} should
+ * always be closed.
+ * <p>
+ * Example: <code><pre>
+ * LSMTree lsm = new LSMTree(4096, 100000, 4).initialize(
+ *     getKey, keyConverter, dataConverter,
+ *     IntegerSeparator.FACTORY_FUNCTION, IntegerKeyRange.FACTORY_FUNCTION,
+ *     new AbstractFunction&lt;BPlusTree, Container&gt;() {
+ *         public Container invoke(BPlusTree run) {
+ *             return new ConverterContainer(new BlockFileContainer(nextFileName(), 4096), run.nodeConverter());
+ *         }
+ *     });
+ * </pre></code>
+ *
+ * @see BPlusTree
+ * @see BPlusTreeBulkLoading
+ */
+public class LSMTree {
+
+	/**
+	 * A version of a key: either a data object or a tombstone.
+	 */
+	public static class Record {
+
+		/**
+		 * The key of the record.
+		 */
+		protected Comparable key;
+
+		/**
+		 * The data object or <tt>null</tt> if the record is a tombstone.
+		 */
+		protected Object data;
+
+		/**
+		 * The sequence number of the insertion or removal.
+		 */
+		protected long sequence;
+
+		/**
+		 * Creates a new record.
+		 *
+		 * @param key the key
+		 * @param data the data object or <tt>null</tt> for a tombstone
+		 * @param sequence the sequence number
+		 */
+		public Record(Comparable key, Object data, long sequence) {
+			this.key = key;
+			this.data = data;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * Returns <tt>true</tt> if this record marks a removal.
+		 *
+		 * @return <tt>true</tt> if this record is a tombstone
+		 */
+		public boolean isTombstone() {
+			return data == null;
+		}
+
+		/**
+		 * Returns the data object of this record.
+		 *
+		 * @return the data object or <tt>null</tt> if this record is a tombstone
+		 */
+		public Object data() {
+			return data;
+		}
+
+		/**
+		 * Returns the key of this record.
+		 *
+		 * @return the key
+		 */
+		public Comparable key() {
+			return key;
+		}
+
+		public String toString() {
+			return (data == null ? "tombstone " + key : data.toString()) + " #" + sequence;
+		}
+	}
+
+	/**
+	 * A run, i.e., an immutable B+ tree holding records.
+	 */
+	protected class Run {
+
+		/**
+		 * The tree of the run.
+		 */
+		protected BPlusTree tree;
+
+		/**
+		 * The container storing the nodes of the tree.
+		 */
+		protected Container container;
+
+		/**
+		 * The number of records of the run.
+		 */
+		protected int size;
+
+		/**
+		 * The number of references, i.e., one for the level holding the run
+		 * and one for every query reading it.
+		 */
+		protected int references = 1;
+
+		/**
+		 * Acquires a reference to the run.
+		 *
+		 * @return <tt>false</tt> if the run has already been released
+		 */
+		protected synchronized boolean acquire() {
+			if (references == 0)
+				return false;
+			references++;
+			return true;
+		}
+
+		/**
+		 * Releases a reference to the run. The container of the run is
+		 * cleared and closed after the last reference has been released.
+		 */
+		protected synchronized void release() {
+			if (--references == 0) {
+				container.clear();
+				container.close();
+			}
+		}
+	}
+
+	/**
+	 * Orders records by their keys and records with the same key by
+	 * descending sequence numbers, i.e., the newest version first.
+	 */
+	protected static final Comparator<Record> RECORD_COMPARATOR = new Comparator<Record>() {
+		public int compare(Record r1, Record r2) {
+			int result = r1.key.compareTo(r2.key);
+			return result != 0 ? result : Long.compare(r2.sequence, r1.sequence);
+		}
+	};
+
+	/**
+	 * The block size of the runs.
+	 */
+	protected int blockSize;
+
+	/**
+	 * The number of keys the in-memory buffer holds before it is written as
+	 * a run.
+	 */
+	protected int bufferCapacity;
+
+	/**
+	 * The number of runs of a level which are merged into a run of the next
+	 * level.
+	 */
+	protected int fanout;
+
+	/**
+	 * The false positive rate of the filters of the runs.
+	 */
+	protected double falsePositiveRate = 0.01;
+
+	/**
+	 * The function computing the key of a data object.
+	 */
+	protected Function getKey;
+
+	/**
+	 * The converter for keys.
+	 */
+	protected MeasuredConverter keyConverter;
+
+	/**
+	 * The converter for records used by the runs.
+	 */
+	protected MeasuredConverter<Record> recordConverter;
+
+	/**
+	 * Factory functions for the separators and key ranges of the runs.
+	 */
+	protected Function createSeparator, createKeyRange;
+
+	/**
+	 * Returns the container of a new run. It is invoked with the (not yet
+	 * initialized) tree of the run, e.g., to get its node converter.
+	 */
+	protected Function<BPlusTree, Container> createRunContainer;
+
+	/**
+	 * The buffer receiving insertions and removals.
+	 */
+	protected TreeMap<Comparable, Record> buffer = new TreeMap<Comparable, Record>();
+
+	/**
+	 * The buffer which is currently written as a run or <tt>null</tt>. It is
+	 * not modified anymore.
+	 */
+	protected TreeMap<Comparable, Record> flushingBuffer;
+
+	/**
+	 * Guards {@link #buffer} and {@link #flushingBuffer}.
+	 */
+	protected final Object bufferLock = new Object();
+
+	/**
+	 * The levels of runs. The list and its elements are never modified but
+	 * replaced, the runs of a level are ordered from the newest to the oldest.
+	 */
+	protected volatile List<List<Run>> levels = Collections.emptyList();
+
+	/**
+	 * The next sequence number.
+	 */
+	protected long sequence = 0;
+
+	/**
+	 * Serializes the compactions. Flushes do not wait for it.
+	 */
+	protected final Object compactionLock = new Object();
+
+	/**
+	 * Serializes the replacements of {@link #levels}.
+	 */
+	protected final Object levelsLock = new Object();
+
+	/**
+	 * The thread doing the compactions or <tt>null</tt> if the inserting
+	 * thread compacts.
+	 */
+	protected ExecutorService compactor;
+
+	/**
+	 * The last compaction submitted to the background thread.
+	 */
+	protected Future<?> pendingCompaction;
+
+	/**
+	 * Creates a new LSM tree.
+	 *
+	 * @param blockSize the block size of the runs
+	 * @param bufferCapacity the number of keys buffered in memory
+	 * @param fanout the number of runs of a level which are merged into
+	 *        a run of the next level
+	 */
+	public LSMTree(int blockSize, int bufferCapacity, int fanout) {
+		if (bufferCapacity <= 0 || fanout < 2)
+			throw new IllegalArgumentException("Illegal buffer capacity ("+bufferCapacity+") or fanout ("+fanout+").");
+		this.blockSize = blockSize;
+		this.bufferCapacity = bufferCapacity;
+		this.fanout = fanout;
+	}
+
+	/**
+	 * Initializes the LSM tree.
+	 *
+	 * @param getKey the <tt>Function</tt> to get the key of a data object
+	 * @param keyConverter the <tt>Converter</tt> for the keys
+	 * @param dataConverter the <tt>Converter</tt> for the data objects
+	 * @param createSeparator a factory <tt>Function</tt> to create
+	 *        <tt>Separators</tt> for the runs
+	 * @param createKeyRange a factory <tt>Function</tt> to create
+	 *        <tt>KeyRanges</tt> for the runs
+	 * @param createRunContainer returns the container storing the nodes of
+	 *        a new run; it is invoked with the tree of the run
+	 * @return the initialized LSM tree itself
+	 */
+	public LSMTree initialize(final Function getKey, final MeasuredConverter keyConverter, final MeasuredConverter dataConverter, Function createSeparator, Function createKeyRange, Function<BPlusTree, Container> createRunContainer) {
+		this.getKey = getKey;
+		this.keyConverter = keyConverter;
+		this.createSeparator = createSeparator;
+		this.createKeyRange = createKeyRange;
+		this.createRunContainer = createRunContainer;
+		this.recordConverter = new MeasuredConverter<Record>() {
+			public int getMaxObjectSize() {
+				return BooleanConverter.SIZE+LongConverter.SIZE+Math.max(keyConverter.getMaxObjectSize(), dataConverter.getMaxObjectSize());
+			}
+
+			public Record read(DataInput dataInput, Record object) throws IOException {
+				boolean tombstone = dataInput.readBoolean();
+				long sequence = dataInput.readLong();
+				if (tombstone)
+					return new Record((Comparable)keyConverter.read(dataInput), null, sequence);
+				Object data = dataConverter.read(dataInput);
+				return new Record((Comparable)getKey.invoke(data), data, sequence);
+			}
+
+			public void write(DataOutput dataOutput, Record record) throws IOException {
+				dataOutput.writeBoolean(record.isTombstone());
+				dataOutput.writeLong(record.sequence);
+				if (record.isTombstone())
+					keyConverter.write(dataOutput, record.key);
+				else
+					dataConverter.write(dataOutput, record.data);
+			}
+		};
+		return this;
+	}
+
+	/**
+	 * Sets the false positive rate of the filters of new runs.
+	 *
+	 * @param falsePositiveRate the false positive rate
+	 * @return the LSM tree itself
+	 */
+	public LSMTree setFalsePositiveRate(double falsePositiveRate) {
+		this.falsePositiveRate = falsePositiveRate;
+		return this;
+	}
+
+	/**
+	 * Lets a background thread write the flushed buffers as runs and merge
+	 * the runs, so insertions only wait if the previous buffer has not been
+	 * written yet.
+	 *
+	 * @return the LSM tree itself
+	 */
+	public synchronized LSMTree enableBackgroundCompaction() {
+		if (compactor == null)
+			compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "LSMTree compaction");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return this;
+	}
+
+	/**
+	 * Inserts a data object. An object with the same key is replaced.
+	 *
+	 * @param data the data object
+	 */
+	public synchronized void insert(Object data) {
+		Comparable key = (Comparable)getKey.invoke(data);
+		put(new Record(key, data, sequence++));
+	}
+
+	/**
+	 * Removes the data object with the given key (if any).
+	 *
+	 * @param key the key
+	 */
+	public synchronized void remove(Comparable key) {
+		put(new Record(key, null, sequence++));
+	}
+
+	/**
+	 * Puts a record into the buffer and flushes the buffer if it is full.
+	 *
+	 * @param record the record
+	 */
+	protected void put(Record record) {
+		int size;
+		synchronized (bufferLock) {
+			buffer.put(record.key, record);
+			size = buffer.size();
+		}
+		if (size >= bufferCapacity)
+			flush();
+	}
+
+	/**
+	 * Writes the buffer as a new run of level 0 and compacts the levels.
+	 * If the background compaction is enabled, the run is written by the
+	 * background thread, so the buffer can be refilled in the meantime; a
+	 * further flush waits until the previous buffer has been written.
+	 */
+	public synchronized void flush() {
+		if (bufferedKeys() == 0)
+			return;
+		while (flushingBuffer != null)
+			try {
+				wait();
+			}
+			catch (InterruptedException ie) {
+				throw new WrappingRuntimeException(ie);
+			}
+		final TreeMap<Comparable, Record> records;
+		synchronized (bufferLock) {
+			records = buffer;
+			flushingBuffer = records;
+			buffer = new TreeMap<Comparable, Record>();
+		}
+		if (compactor == null) {
+			writeRun(records);
+			compact();
+		}
+		else
+			pendingCompaction = compactor.submit(new Runnable() {
+				public void run() {
+					writeRun(records);
+					compact();
+				}
+			});
+	}
+
+	/**
+	 * Writes the records of the flushed buffer as a run, adds it to level 0
+	 * and wakes up a waiting flush.
+	 *
+	 * @param records the flushed buffer
+	 */
+	protected void writeRun(TreeMap<Comparable, Record> records) {
+		try {
+			Run run = createRun(records.values().iterator(), records.size());
+			synchronized (levelsLock) {
+				List<List<Run>> newLevels = new ArrayList<List<Run>>(levels);
+				List<Run> level = new ArrayList<Run>();
+				level.add(run);
+				if (newLevels.isEmpty())
+					newLevels.add(Collections.unmodifiableList(level));
+				else {
+					level.addAll(newLevels.get(0));
+					newLevels.set(0, Collections.unmodifiableList(level));
+				}
+				levels = Collections.unmodifiableList(newLevels);
+			}
+		}
+		finally {
+			synchronized (bufferLock) {
+				flushingBuffer = null;
+			}
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Creates a run from the given records.
+	 *
+	 * @param records the records sorted by their keys, one per key
+	 * @param expectedSize the (maximal) number of records
+	 * @return the run or <tt>null</tt> if there are no records
+	 */
+	protected Run createRun(Iterator<Record> records, int expectedSize) {
+		if (!records.hasNext())
+			return null;
+		Run run = new Run();
+		run.tree = new BPlusTree(blockSize);
+		run.container = createRunContainer.invoke(run.tree);
+		run.tree.initialize(
+			new AbstractFunction<Record, Comparable>() {
+				public Comparable invoke(Record record) {
+					return record.key;
+				}
+			},
+			run.container, keyConverter, recordConverter, createSeparator, createKeyRange
+		);
+		run.tree.enableFilter(Math.max(1, expectedSize), falsePositiveRate);
+		final int[] size = new int[1];
+		new BPlusTreeBulkLoading(run.tree, new Mapper<Record, Record>(
+			new AbstractFunction<Record, Record>() {
+				public Record invoke(Record record) {
+					size[0]++;
+					return record;
+				}
+			},
+			records
+		));
+		run.size = size[0];
+		return run;
+	}
+
+	/**
+	 * Merges the runs of every level holding at least <tt>fanout</tt> runs
+	 * into a run of the next level. Tombstones are dropped when the merged
+	 * run becomes the oldest run.
+	 */
+	public void compact() {
+		synchronized (compactionLock) {
+			for (int i = 0; i < levels.size(); i++) {
+				List<Run> level = levels.get(i);
+				if (level.size() < fanout)
+					continue;
+				boolean lastLevel = true;
+				for (int j = i+1; j < levels.size(); j++)
+					lastLevel &= levels.get(j).isEmpty();
+
+				List<Cursor<Record>> inputs = new ArrayList<Cursor<Record>>();
+				int expectedSize = 0;
+				for (Run run : level) {
+					inputs.add(run.tree.query());
+					expectedSize += run.size;
+				}
+				Cursor<Record> merged = newest(new Merger<Record>(RECORD_COMPARATOR, inputs));
+				if (lastLevel)
+					merged = withoutTombstones(merged);
+				Run run = createRun(merged, expectedSize);
+				merged.close();
+
+				// flushes may have added runs to level 0 in the meantime
+				synchronized (levelsLock) {
+					List<List<Run>> newLevels = new ArrayList<List<Run>>(levels);
+					List<Run> remaining = new ArrayList<Run>(levels.get(i));
+					remaining.removeAll(level);
+					newLevels.set(i, Collections.unmodifiableList(remaining));
+					if (run != null) {
+						if (newLevels.size() == i+1)
+							newLevels.add(Collections.<Run>emptyList());
+						List<Run> next = new ArrayList<Run>();
+						next.add(run);
+						next.addAll(newLevels.get(i+1));
+						newLevels.set(i+1, Collections.unmodifiableList(next));
+					}
+					levels = Collections.unmodifiableList(newLevels);
+				}
+				for (Run old : level)
+					old.release();
+			}
+		}
+	}
+
+	/**
+	 * Waits until the background compaction (if any) has finished.
+	 */
+	public void awaitCompaction() {
+		Future<?> pending;
+		synchronized (this) {
+			pending = pendingCompaction;
+		}
+		if (pending != null)
+			try {
+				pending.get();
+			}
+			catch (Exception e) {
+				throw new WrappingRuntimeException(e);
+			}
+	}
+
+	/**
+	 * Returns the newest record of every key of the given records sorted by
+	 * {@link #RECORD_COMPARATOR}.
+	 */
+	protected static Cursor<Record> newest(Iterator<Record> records) {
+		return new SortBasedDistinct<Record>(records, new AbstractPredicate<Record>() {
+			public boolean invoke(Record r1, Record r2) {
+				return r1.key.compareTo(r2.key) == 0;
+			}
+		});
+	}
+
+	/**
+	 * Drops the tombstones of the given records.
+	 */
+	protected static Cursor<Record> withoutTombstones(Iterator<Record> records) {
+		return new Filter<Record>(records, new AbstractPredicate<Record>() {
+			public boolean invoke(Record record) {
+				return !record.isTombstone();
+			}
+		});
+	}
+
+	/**
+	 * Acquires all runs of the current levels.
+	 *
+	 * @return the runs from the newest to the oldest
+	 */
+	protected List<Run> acquireRuns() {
+		retry: while (true) {
+			List<Run> runs = new ArrayList<Run>();
+			for (List<Run> level : levels)
+				for (Run run : level) {
+					if (!run.acquire()) {
+						release(runs);
+						continue retry;
+					}
+					runs.add(run);
+				}
+			return runs;
+		}
+	}
+
+	/**
+	 * Releases the given runs.
+	 */
+	protected static void release(List<Run> runs) {
+		for (Run run : runs)
+			run.release();
+	}
+
+	/**
+	 * Searches the data object with the given key. The buffers and the runs
+	 * are searched from the newest to the oldest; the filter of a run skips
+	 * the run if it does not contain the key.
+	 *
+	 * @param key the key
+	 * @return the data object or <tt>null</tt> if there is no object with the
+	 *         given key
+	 */
+	public Object exactMatchQuery(Comparable key) {
+		Record record;
+		synchronized (bufferLock) {
+			record = buffer.get(key);
+			if (record == null && flushingBuffer != null)
+				record = flushingBuffer.get(key);
+		}
+		if (record == null) {
+			List<Run> runs = acquireRuns();
+			try {
+				for (Run run : runs)
+					if ((record = (Record)run.tree.exactMatchQuery(key)) != null)
+						break;
+			}
+			finally {
+				release(runs);
+			}
+		}
+		return record == null ? null : record.data;
+	}
+
+	/**
+	 * Returns the data objects whose keys lie in the given range
+	 * [minKey, maxKey] sorted by their keys. The records of the buffers and
+	 * runs are merged by a {@link Merger}. The cursor should be closed to
+	 * release the runs.
+	 *
+	 * @param minKey the minimal key
+	 * @param maxKey the maximal key
+	 * @return a cursor delivering the data objects
+	 */
+	public Cursor rangeQuery(final Comparable minKey, final Comparable maxKey) {
+		return query(new AbstractFunction<Object, Iterator<Record>>() {
+			public Iterator<Record> invoke(Object source) {
+				if (source instanceof NavigableMap)
+					return ((NavigableMap<Comparable, Record>)source).subMap(minKey, true, maxKey, true).values().iterator();
+				return ((BPlusTree)source).rangeQuery(minKey, maxKey);
+			}
+		});
+	}
+
+	/**
+	 * Returns all data objects sorted by their keys. The cursor should be
+	 * closed to release the runs.
+	 *
+	 * @return a cursor delivering the data objects
+	 */
+	public Cursor query() {
+		return query(new AbstractFunction<Object, Iterator<Record>>() {
+			public Iterator<Record> invoke(Object source) {
+				if (source instanceof NavigableMap)
+					return ((NavigableMap<Comparable, Record>)source).values().iterator();
+				BPlusTree tree = (BPlusTree)source;
+				return tree.rootEntry() == null ? new EmptyCursor<Record>() : tree.query();
+			}
+		});
+	}
+
+	/**
+	 * Merges the records the given function returns for the buffers and the
+	 * runs.
+	 */
+	protected Cursor query(Function<Object, Iterator<Record>> records) {
+		List<Record> current = new ArrayList<Record>();
+		NavigableMap<Comparable, Record> flushing;
+		synchronized (bufferLock) {
+			for (Iterator<Record> it = records.invoke(buffer); it.hasNext();)
+				current.add(it.next());
+			flushing = flushingBuffer;
+		}
+		final List<Run> runs = acquireRuns();
+		List<Cursor<Record>> inputs = new ArrayList<Cursor<Record>>();
+		inputs.add(Cursors.wrap(current.iterator()));
+		if (flushing != null)
+			inputs.add(Cursors.wrap(records.invoke(flushing)));
+		for (Run run : runs)
+			inputs.add(Cursors.wrap(records.invoke(run.tree)));
+		return new Mapper<Record, Object>(
+			new AbstractFunction<Record, Object>() {
+				public Object invoke(Record record) {
+					return record.data;
+				}
+			},
+			withoutTombstones(newest(new Merger<Record>(RECORD_COMPARATOR, inputs)))
+		) {
+			public void close() {
+				if (!isClosed)
+					release(runs);
+				super.close();
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of levels.
+	 *
+	 * @return the number of levels
+	 */
+	public int levels() {
+		return levels.size();
+	}
+
+	/**
+	 * Returns the number of runs of the given level.
+	 *
+	 * @param level the level
+	 * @return the number of runs
+	 */
+	public int runs(int level) {
+		List<List<Run>> current = levels;
+		return level < current.size() ? current.get(level).size() : 0;
+	}
+
+	/**
+	 * Returns the number of keys buffered in memory.
+	 *
+	 * @return the number of buffered keys
+	 */
+	public int bufferedKeys() {
+		synchronized (bufferLock) {
+			return buffer.size();
+		}
+	}
+
+	/**
+	 * Writes the buffer as a run, waits for the background compaction and
+	 * stops the background thread.
+	 */
+	public void close() {
+		flush();
+		awaitCompaction();
+		ExecutorService executor;
+		synchronized (this) {
+			executor = compactor;
+			compactor = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
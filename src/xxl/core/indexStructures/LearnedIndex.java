@@ -0,0 +1,422 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.sources.ArrayCursor;
+import xxl.core.cursors.sources.EmptyCursor;
+import xxl.core.cursors.sources.Enumerator;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * A read-only learned index for sorted data. The data objects are packed
+ * into an array sorted by their keys and the position of a key is predicted
+ * by a piecewise-linear model with a bounded error <tt>epsilon</tt> (in the
+ * style of the PGM index): every segment predicts the position of each key it
+ * covers with an error of at most <tt>epsilon</tt>. The segments are indexed
+ * by further piecewise-linear levels until a single segment remains.
+ * <p>
+ * A lookup starts at the single segment of the top level and descends level
+ * by level, each time searching only the <tt>2 epsilon + 1</tt> positions
+ * around the predicted one. So an exact match query costs one model
+ * evaluation per level plus a binary search over a few array entries,
+ * instead of several node fetches of a {@link BPlusTree}. The model works on
+ * numbers: keys are mapped to <tt>double</tt> values by a monotone function
+ * (by default for {@link Number Numbers} and {@link Date Dates}). Keys which
+ * are mapped to the same value (e.g. large <tt>long</tt> values) are handled
+ * correctly by extending the search beyond the error bound if necessary.
+ * <p>
+ * The index is immutable; for changing data it has to be rebuilt from a
+ * sorted iteration or from the leaf level of a {@link BPlusTree}.
+ *
+ * @see BPlusTree
+ */
+public class LearnedIndex {
+
+	/**
+	 * Maps {@link Number Numbers} and {@link Date Dates} to their
+	 * <tt>double</tt> values.
+	 */
+	public static final Function<Object, Double> DEFAULT_KEY_MAPPING = new AbstractFunction<Object, Double>() {
+		public Double invoke(Object key) {
+			if (key instanceof Number)
+				return ((Number)key).doubleValue();
+			if (key instanceof Date)
+				return (double)((Date)key).getTime();
+			throw new IllegalArgumentException("No numeric value for key "+key+". Please specify a key mapping.");
+		}
+	};
+
+	/**
+	 * The segments of one level of the model.
+	 */
+	protected static class Segments {
+
+		/**
+		 * The (mapped) first key of every segment.
+		 */
+		protected double[] firstKeys;
+
+		/**
+		 * The position of the first key of every segment.
+		 */
+		protected int[] firstPositions;
+
+		/**
+		 * The slope of every segment.
+		 */
+		protected double[] slopes;
+
+		/**
+		 * The number of segments.
+		 */
+		protected int size;
+
+		/**
+		 * Predicts the position of the given key by the given segment.
+		 *
+		 * @param segment the segment
+		 * @param key the mapped key
+		 * @return the predicted position
+		 */
+		protected int predict(int segment, double key) {
+			double position = firstPositions[segment]+slopes[segment]*(key-firstKeys[segment]);
+			return position <= Integer.MIN_VALUE ? Integer.MIN_VALUE : position >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)position;
+		}
+	}
+
+	/**
+	 * The data objects sorted by their keys.
+	 */
+	protected Object[] data;
+
+	/**
+	 * The keys of the data objects.
+	 */
+	protected Comparable[] keys;
+
+	/**
+	 * The mapped keys of the data objects.
+	 */
+	protected double[] mappedKeys;
+
+	/**
+	 * The number of data objects.
+	 */
+	protected int size;
+
+	/**
+	 * The maximal error of a prediction.
+	 */
+	protected int epsilon;
+
+	/**
+	 * The levels of the model; level 0 predicts positions in the data array,
+	 * level <tt>i+1</tt> predicts segments of level <tt>i</tt>. The last level
+	 * consists of a single segment.
+	 */
+	protected Segments[] levels;
+
+	/**
+	 * The function mapping keys to numbers.
+	 */
+	protected Function<Object, ? extends Number> keyMapping;
+
+	/**
+	 * Creates a learned index for the data objects of the given iteration.
+	 *
+	 * @param sortedData the data objects sorted by their keys
+	 * @param getKey the <tt>Function</tt> to get the key of a data object
+	 * @param keyMapping a monotone <tt>Function</tt> mapping keys to numbers
+	 * @param epsilon the maximal error of a prediction
+	 * @throws IllegalArgumentException if the data is not sorted or
+	 *         <tt>epsilon</tt> is not positive
+	 */
+	public LearnedIndex(Iterator sortedData, Function getKey, Function<Object, ? extends Number> keyMapping, int epsilon) throws IllegalArgumentException {
+		if (epsilon <= 0)
+			throw new IllegalArgumentException("The error bound has to be positive.");
+		this.epsilon = epsilon;
+		this.keyMapping = keyMapping;
+		List<Object> list = new ArrayList<Object>();
+		while (sortedData.hasNext())
+			list.add(sortedData.next());
+		size = list.size();
+		data = list.toArray();
+		keys = new Comparable[size];
+		mappedKeys = new double[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = (Comparable)getKey.invoke(data[i]);
+			mappedKeys[i] = keyMapping.invoke(keys[i]).doubleValue();
+			if (i > 0 && (keys[i-1].compareTo(keys[i]) > 0 || mappedKeys[i-1] > mappedKeys[i]))
+				throw new IllegalArgumentException("The data is not sorted or the key mapping is not monotone at position "+i+".");
+		}
+		List<Segments> levels = new ArrayList<Segments>();
+		Segments segments = fit(mappedKeys, size, epsilon);
+		levels.add(segments);
+		while (segments.size > 1)
+			levels.add(segments = fit(segments.firstKeys, segments.size, epsilon));
+		this.levels = levels.toArray(new Segments[levels.size()]);
+	}
+
+	/**
+	 * Creates a learned index for the data objects of the given iteration
+	 * whose keys are {@link Number Numbers} or {@link Date Dates}.
+	 *
+	 * @param sortedData the data objects sorted by their keys
+	 * @param getKey the <tt>Function</tt> to get the key of a data object
+	 * @param epsilon the maximal error of a prediction
+	 */
+	public LearnedIndex(Iterator sortedData, Function getKey, int epsilon) {
+		this(sortedData, getKey, DEFAULT_KEY_MAPPING, epsilon);
+	}
+
+	/**
+	 * Creates a learned index for the data objects of the given tree by
+	 * scanning its leaves. The tree must not contain duplicates.
+	 *
+	 * @param tree the tree
+	 * @param keyMapping a monotone <tt>Function</tt> mapping keys to numbers
+	 * @param epsilon the maximal error of a prediction
+	 */
+	public LearnedIndex(final BPlusTree tree, Function<Object, ? extends Number> keyMapping, int epsilon) {
+		this(
+			tree.rootEntry() == null ? new EmptyCursor() : tree.query(),
+			new AbstractFunction<Object, Comparable>() {
+				public Comparable invoke(Object data) {
+					return tree.key(data);
+				}
+			},
+			keyMapping,
+			epsilon
+		);
+	}
+
+	/**
+	 * Creates a learned index for the data objects of the given tree whose
+	 * keys are {@link Number Numbers} or {@link Date Dates}.
+	 *
+	 * @param tree the tree
+	 * @param epsilon the maximal error of a prediction
+	 */
+	public LearnedIndex(BPlusTree tree, int epsilon) {
+		this(tree, DEFAULT_KEY_MAPPING, epsilon);
+	}
+
+	/**
+	 * Computes segments for the given sorted keys, so that every segment
+	 * predicts the positions of its keys with an error of at most
+	 * <tt>epsilon</tt>. A segment is extended as long as there is a slope
+	 * meeting the error bound for all of its keys (shrinking cone).
+	 *
+	 * @param keys the sorted keys
+	 * @param n the number of keys
+	 * @param epsilon the error bound
+	 * @return the segments
+	 */
+	protected static Segments fit(double[] keys, int n, int epsilon) {
+		Segments segments = new Segments();
+		int capacity = 16;
+		segments.firstKeys = new double[capacity];
+		segments.firstPositions = new int[capacity];
+		segments.slopes = new double[capacity];
+		for (int i = 0; i < n;) {
+			double firstKey = keys[i], minSlope = 0, maxSlope = Double.POSITIVE_INFINITY;
+			int j = i+1;
+			for (; j < n; j++) {
+				double dx = keys[j]-firstKey;
+				if (dx == 0) {
+					if (j-i > epsilon)
+						break;
+					continue;
+				}
+				double low = Math.max(minSlope, (j-epsilon-i)/dx), high = Math.min(maxSlope, (j+epsilon-i)/dx);
+				if (low > high)
+					break;
+				minSlope = low;
+				maxSlope = high;
+			}
+			if (segments.size == capacity) {
+				capacity *= 2;
+				segments.firstKeys = Arrays.copyOf(segments.firstKeys, capacity);
+				segments.firstPositions = Arrays.copyOf(segments.firstPositions, capacity);
+				segments.slopes = Arrays.copyOf(segments.slopes, capacity);
+			}
+			segments.firstKeys[segments.size] = firstKey;
+			segments.firstPositions[segments.size] = i;
+			segments.slopes[segments.size] = maxSlope == Double.POSITIVE_INFINITY ? 0 : (minSlope+maxSlope)/2;
+			segments.size++;
+			i = j;
+		}
+		if (segments.size == 0) {
+			segments.firstKeys = new double[] {0};
+			segments.firstPositions = new int[] {0};
+			segments.slopes = new double[] {0};
+			segments.size = 1;
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the first position in <tt>[0, n]</tt> whose key is greater
+	 * than (or equal to, if <tt>strict</tt> is <tt>false</tt>) the given key.
+	 * The search starts in the window of <tt>epsilon</tt> positions around
+	 * the predicted position and is extended exponentially if the key lies
+	 * outside. The window always holds a position, so that the extension
+	 * never reads before the first key even for predictions far below 0.
+	 */
+	private int search(double[] sortedKeys, int n, double key, boolean strict, int predicted) {
+		int low = Math.max(0, Math.min(n, predicted-epsilon)), high = Math.max(Math.min(n, 1), Math.min(n, predicted+epsilon+2));
+		for (int step = epsilon+1; low > 0 && (strict ? sortedKeys[low-1] > key : sortedKeys[low-1] >= key); step *= 2)
+			low = Math.max(0, low-step);
+		for (int step = epsilon+1; high < n && (strict ? sortedKeys[high-1] <= key : sortedKeys[high-1] < key); step *= 2)
+			high = Math.min(n, high+step);
+		while (low < high) {
+			int middle = (low+high)>>>1;
+			if (strict ? sortedKeys[middle] <= key : sortedKeys[middle] < key)
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Like {@link #search(double[], int, double, boolean, int)} for the keys
+	 * of the data objects.
+	 */
+	private int search(Comparable key, boolean strict, int predicted) {
+		int low = Math.max(0, Math.min(size, predicted-epsilon)), high = Math.max(Math.min(size, 1), Math.min(size, predicted+epsilon+2));
+		for (int step = epsilon+1; low > 0 && keys[low-1].compareTo(key) >= (strict ? 1 : 0); step *= 2)
+			low = Math.max(0, low-step);
+		for (int step = epsilon+1; high < size && keys[high-1].compareTo(key) < (strict ? 1 : 0); step *= 2)
+			high = Math.min(size, high+step);
+		while (low < high) {
+			int middle = (low+high)>>>1;
+			if (keys[middle].compareTo(key) < (strict ? 1 : 0))
+				low = middle+1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the position of the first data object whose key is greater
+	 * than (or equal to, if <tt>strict</tt> is <tt>false</tt>) the given key.
+	 *
+	 * @param key the key
+	 * @param strict <tt>true</tt> to skip the data objects with the given key
+	 * @return the position in <tt>[0, size()]</tt>
+	 */
+	protected int position(Comparable key, boolean strict) {
+		double mappedKey = keyMapping.invoke(key).doubleValue();
+		int segment = 0;
+		for (int level = levels.length-1; level > 0; level--) {
+			Segments below = levels[level-1];
+			int next = search(below.firstKeys, below.size, mappedKey, true, levels[level].predict(segment, mappedKey));
+			segment = Math.max(0, next-1);
+		}
+		return search(key, strict, levels[0].predict(segment, mappedKey));
+	}
+
+	/**
+	 * Searches the data object with the given key.
+	 *
+	 * @param key the key
+	 * @return the (first) data object with the given key or <tt>null</tt> if
+	 *         there is no such object
+	 */
+	public Object exactMatchQuery(Comparable key) {
+		int position = position(key, false);
+		return position < size && keys[position].compareTo(key) == 0 ? data[position] : null;
+	}
+
+	/**
+	 * Returns the data objects whose keys lie in the given range
+	 * [minKey, maxKey] sorted by their keys.
+	 *
+	 * @param minKey the minimal key
+	 * @param maxKey the maximal key
+	 * @return a cursor delivering the data objects
+	 */
+	public Cursor rangeQuery(Comparable minKey, Comparable maxKey) {
+		int from = position(minKey, false), to = Math.max(from, position(maxKey, true));
+		return new ArrayCursor(new Enumerator(from, to), data);
+	}
+
+	/**
+	 * Returns all data objects sorted by their keys.
+	 *
+	 * @return a cursor delivering the data objects
+	 */
+	public Cursor query() {
+		return new ArrayCursor(new Enumerator(size), data);
+	}
+
+	/**
+	 * Returns the number of data objects.
+	 *
+	 * @return the number of data objects
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the error bound of the model.
+	 *
+	 * @return the error bound
+	 */
+	public int epsilon() {
+		return epsilon;
+	}
+
+	/**
+	 * Returns the number of levels of the model.
+	 *
+	 * @return the number of levels
+	 */
+	public int height() {
+		return levels.length;
+	}
+
+	/**
+	 * Returns the number of segments of the given level of the model.
+	 *
+	 * @param level the level (0 is the level predicting data positions)
+	 * @return the number of segments
+	 */
+	public int segments(int level) {
+		return levels[level].size;
+	}
+}
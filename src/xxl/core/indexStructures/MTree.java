@@ -67,6 +67,10 @@ import xxl.core.util.Distance;
  * "M-tree: An Efficient Access Method for Similarity Search in Metric Spaces",
  * VLDB (1997) 426-435.
  * 
+ * If the descriptors are {@link PivotSphere}s created by a {@link PivotTable}, 
+ * the distances to a global set of pivots filter the entries before the 
+ * distance function is called.
+ * 
  * @see Tree
  * @see ORTree
  * @see SlimTree 
@@ -694,6 +698,8 @@ public class MTree extends ORTree {
 	/*********************************************************************/
 
 	/** This class acts as a converter to serialize the tree's leaf-entries.
+	 * The distances to the pivots of {@link PivotSphere} descriptors are stored 
+	 * with the entries, so they are not recomputed when a leaf is read.
 	 */
 	public class LeafEntryConverter extends Converter {
 		
@@ -717,6 +723,8 @@ public class MTree extends ORTree {
 			leafEntry.data = objectConverter.read(dataInput, null);
 			leafEntry.descriptor = (Sphere)getDescriptor.invoke(leafEntry.data);
 			leafEntry.descriptor.setDistanceToParent(DoubleConverter.DEFAULT_INSTANCE.readDouble(dataInput));
+			if (leafEntry.descriptor instanceof PivotSphere)
+				((PivotSphere)leafEntry.descriptor).readPivotDistances(dataInput);
 			return leafEntry;
 		}
 
@@ -727,6 +735,8 @@ public class MTree extends ORTree {
 			LeafEntry leafEntry = (LeafEntry)object;
 			objectConverter.write(dataOutput, leafEntry.data);
 			DoubleConverter.DEFAULT_INSTANCE.writeDouble(dataOutput, leafEntry.descriptor.getDistanceToParent());
+			if (leafEntry.descriptor instanceof PivotSphere)
+				((PivotSphere)leafEntry.descriptor).writePivotDistances(dataOutput);
 		}
 	}
 
@@ -0,0 +1,535 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.functions.Function;
+
+/** This class bulk-loads an <tt>MTree</tt> or a <tt>SlimTree</tt> in parallel.
+ * 
+ * The tree is created bottom-up. The entries of a level are partitioned 
+ * recursively: a random sample of seeds is drawn, every entry is assigned to 
+ * its nearest seed and clusters with less than the minimum capacity are 
+ * dissolved into the remaining clusters (see P. Ciaccia, M. Patella: "Bulk 
+ * loading the M-tree", ADC 1998). The clusters are partitioned further until 
+ * they fit into a node. Each cluster becomes a node whose descriptor 
+ * (center, covering radius and the distances to the parent of its entries) 
+ * is computed by {@link MTree#computeDescriptor(java.util.Collection)}, and the 
+ * index entries of the nodes are the entries of the next level. The result is 
+ * a balanced tree whose nodes (except the root) satisfy the given capacities.
+ * 
+ * The clusters are partitioned, the entries are assigned to their seeds and the 
+ * nodes are created by the tasks of a fork/join pool. Only the insertion of the 
+ * nodes into their container is serialized. The seeds are drawn from random number 
+ * generators derived from a fixed seed, so the tree does not depend on the number 
+ * of threads.
+ * 
+ * The leaves of a <tt>SlimTree</tt> are slimmed down before they are saved 
+ * (see C. Traina Jr. et al.: "Slim-trees: High Performance Metric Trees Minimizing 
+ * Overlap Between Nodes", EDBT 2000): the farthest entry of a leaf is moved into a 
+ * sibling leaf covering it, if the sibling has space left. The slim-down runs 
+ * in parallel for the leaves of different parents.
+ * 
+ * @see MTree
+ * @see SlimTree
+ * @see SortBasedBulkLoading
+ */
+public class MTreeBulkLoading {
+
+	/** Number of entries above which the entries are assigned to their seeds by several tasks.
+	 */
+	public static final int PARALLEL_ASSIGNMENT_THRESHOLD = 4096;
+	
+	/** Maximum number of rounds of the slim-down of the leaves of a parent node.
+	 */
+	public static final int SLIM_DOWN_ROUNDS = 8;
+
+	/** The tree which is bulk-loaded.
+	 */
+	protected MTree tree;
+	
+	/** A Function determining into which container a node is saved.
+	 */
+	protected Function determineContainer;	// Node -> Container
+	
+	/** The minimum number of entries of a node.
+	 */
+	protected int minCapacity;
+	
+	/** The maximum number of entries of a node.
+	 */
+	protected int maxCapacity;
+	
+	/** A flag indicating if the leaves are slimmed down.
+	 */
+	protected boolean slimDown;
+	
+	/** The pool executing the tasks of the bulk loading.
+	 */
+	protected ForkJoinPool pool;
+
+	/** A cluster of entries which becomes a node of the tree.
+	 */
+	protected class Cluster {
+		
+		/** The entries of the cluster.
+		 */
+		protected List entries;
+		
+		/** The descriptor of the cluster.
+		 */
+		protected Sphere descriptor;
+		
+		/** The index entry of the saved node.
+		 */
+		protected ORTree.IndexEntry indexEntry;
+		
+		/** Creates a new cluster and computes its descriptor.
+		 * 
+		 * @param entries the entries of the cluster
+		 */
+		protected Cluster (List entries) {
+			this.entries = entries;
+			this.descriptor = (Sphere)tree.computeDescriptor(entries);
+		}
+	}
+
+	/** Creates a new <tt>MTreeBulkLoading</tt> and bulk loads the given empty <tt>tree</tt>
+	 * with the given <tt>objects</tt>. 
+	 * 
+	 * @param tree the empty <tt>MTree</tt> to bulk-load
+	 * @param objects iterator of the objects to be loaded into the tree
+	 * @param determineContainer a function determining into which container nodes are saved
+	 * @param minCapacity the minimum number of entries of a node
+	 * @param maxCapacity the maximum number of entries of a node
+	 * @param slimDown a flag indicating if the leaves are slimmed down
+	 * @param threads the number of threads
+	 * @param seed the seed of the random number generators drawing the seeds of the clusters
+	 */
+	public MTreeBulkLoading (MTree tree, Iterator objects, Function determineContainer, int minCapacity, int maxCapacity, boolean slimDown, int threads, long seed) {
+		if (minCapacity < 1 || 2*minCapacity > maxCapacity)
+			throw new IllegalArgumentException("The capacities have to satisfy 0 < 2*minCapacity <= maxCapacity.");
+		this.tree = tree;
+		this.determineContainer = determineContainer;
+		this.minCapacity = minCapacity;
+		this.maxCapacity = maxCapacity;
+		this.slimDown = slimDown;
+		this.pool = new ForkJoinPool(threads);
+		try {
+			List entries = new ArrayList();
+			while (objects.hasNext())
+				entries.add(tree.new LeafEntry(objects.next()));
+			if (!entries.isEmpty())
+				load(entries, seed);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Creates a new <tt>MTreeBulkLoading</tt> and bulk loads the given empty <tt>tree</tt>
+	 * with the given <tt>objects</tt>. The leaves are slimmed down if the tree is 
+	 * a <tt>SlimTree</tt>.
+	 * 
+	 * @param tree the empty <tt>MTree</tt> to bulk-load
+	 * @param objects iterator of the objects to be loaded into the tree
+	 * @param determineContainer a function determining into which container nodes are saved
+	 * @param minCapacity the minimum number of entries of a node
+	 * @param maxCapacity the maximum number of entries of a node
+	 * @param threads the number of threads
+	 */
+	public MTreeBulkLoading (MTree tree, Iterator objects, Function determineContainer, int minCapacity, int maxCapacity, int threads) {
+		this(tree, objects, determineContainer, minCapacity, maxCapacity, tree instanceof SlimTree, threads, 42);
+	}
+	
+	/** Creates the levels of the tree bottom-up.
+	 * 
+	 * @param entries the leaf entries
+	 * @param seed the seed of the random number generators 
+	 */
+	protected void load (List entries, long seed) {
+		Random random = new Random(seed);
+		List clusters = clusters(Collections.singletonList(entries), 0, random);
+		for (int level = 0;; level++) {
+			if (clusters.size() == 1) {
+				Cluster root = (Cluster)clusters.get(0);
+				save(root, level);
+				tree.rootEntry = root.indexEntry;
+				tree.rootDescriptor = root.descriptor;
+				return;
+			}
+			List parents = pool.invoke(new Partition(clusters, random.nextLong()));
+			if (level == 0 && slimDown)
+				pool.invoke(new SlimDown(parents));
+			saveAll(clusters, level);
+			List parentEntries = new ArrayList(parents.size());
+			for (int i = 0; i < parents.size(); i++) {
+				List children = (List)parents.get(i), indexEntries = new ArrayList(children.size());
+				for (int j = 0; j < children.size(); j++)
+					indexEntries.add(((Cluster)children.get(j)).indexEntry);
+				parentEntries.add(indexEntries);
+			}
+			clusters = clusters(parentEntries, level+1, random);
+		}
+	}
+	
+	/** Partitions the entries of the given lists into lists fitting into a node 
+	 * and creates the clusters of these lists in parallel.
+	 * 
+	 * @param lists lists of entries of the same level
+	 * @param level the level of the entries
+	 * @param random the random number generator deriving the seeds of the partitioning tasks
+	 * @return the clusters of the level
+	 */
+	protected List clusters (final List lists, int level, Random random) {
+		final List partitions = new ArrayList();
+		for (int i = 0; i < lists.size(); i++) {
+			List list = (List)lists.get(i);
+			// the index entries of a parent are partitioned already
+			if (level > 0)
+				partitions.add(list);
+			else
+				partitions.addAll(pool.invoke(new Partition(list, random.nextLong())));
+		}
+		final Cluster[] clusters = new Cluster[partitions.size()];
+		pool.invoke(new RecursiveAction() {
+			protected void compute () {
+				List tasks = new ArrayList(clusters.length);
+				for (int i = 0; i < clusters.length; i++) {
+					final int index = i;
+					tasks.add(new RecursiveAction() {
+						protected void compute () {
+							clusters[index] = new Cluster((List)partitions.get(index));
+						}
+					});
+				}
+				invokeAll(tasks);
+			}
+		});
+		List result = new ArrayList(clusters.length);
+		Collections.addAll(result, clusters);
+		return result;
+	}
+	
+	/** Saves the nodes of the given clusters in parallel.
+	 * 
+	 * @param clusters the clusters of a level
+	 * @param level the level of the clusters
+	 */
+	protected void saveAll (final List clusters, final int level) {
+		pool.invoke(new RecursiveAction() {
+			protected void compute () {
+				List tasks = new ArrayList(clusters.size());
+				for (int i = 0; i < clusters.size(); i++) {
+					final Cluster cluster = (Cluster)clusters.get(i);
+					tasks.add(new RecursiveAction() {
+						protected void compute () {
+							save(cluster, level);
+						}
+					});
+				}
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/** Saves the node of a cluster to external memory. If the entries have been 
+	 * changed by the slim-down, the radius of the cluster and the distances of the 
+	 * entries to the center are recomputed (the center is kept).
+	 * 
+	 * @param cluster the cluster to save
+	 * @param level the level of the node
+	 */
+	protected void save (Cluster cluster, int level) {
+		ORTree.Node node = (ORTree.Node)tree.createNode(level);
+		node.entries.addAll(cluster.entries);
+		if (slimDown && level == 0) {
+			double radius = 0;
+			for (int i = 0; i < cluster.entries.size(); i++) {
+				Sphere sphere = sphere(cluster.entries.get(i));
+				sphere.setDistanceToParent(cluster.descriptor.centerDistance(sphere));
+				radius = Math.max(radius, sphere.getDistanceToParent() + sphere.radius());
+			}
+			cluster.descriptor.radius = radius;
+		}
+		Container container = (Container)determineContainer.invoke(node);
+		Object id;
+		synchronized (container) {
+			id = container.insert(node);
+		}
+		cluster.indexEntry = (ORTree.IndexEntry)((ORTree.IndexEntry)tree.createIndexEntry(level+1)).initialize(cluster.descriptor).initialize(container, id);
+	}
+	
+	/** Returns the sphere of an entry or of a cluster. 
+	 * 
+	 * @param entry an entry or a cluster
+	 * @return the sphere of the entry or the descriptor of the cluster
+	 */
+	protected Sphere sphere (Object entry) {
+		return entry instanceof Cluster ? ((Cluster)entry).descriptor : tree.sphere(entry);
+	}
+	
+	/** Returns the index of the seed nearest to the given entry.
+	 * 
+	 * @param entry an entry or a cluster
+	 * @param seeds the spheres of the seeds
+	 * @return the index of the nearest seed
+	 */
+	protected int nearestSeed (Object entry, List seeds) {
+		Sphere sphere = sphere(entry);
+		int nearest = 0;
+		double minDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < seeds.size(); i++) {
+			Sphere seed = (Sphere)seeds.get(i);
+			if (seed == null)
+				continue;
+			double distance = sphere.centerDistance(seed);
+			if (distance < minDistance) {
+				minDistance = distance;
+				nearest = i;
+			}
+		}
+		return nearest;
+	}
+
+	/** A task partitioning a list of entries (or clusters) recursively into 
+	 * lists containing at least <tt>minCapacity</tt> and at most 
+	 * <tt>maxCapacity</tt> entries (unless the whole list is smaller).
+	 */
+	protected class Partition extends RecursiveTask<List> {
+		
+		/** The entries to partition.
+		 */
+		protected List entries;
+		
+		/** The seed of the random number generator of this task.
+		 */
+		protected long seed;
+		
+		/** Creates a new task partitioning the given entries.
+		 * 
+		 * @param entries the entries to partition
+		 * @param seed the seed of the random number generator of this task
+		 */
+		protected Partition (List entries, long seed) {
+			this.entries = entries;
+			this.seed = seed;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		protected List compute () {
+			List result = new ArrayList();
+			int size = entries.size();
+			if (size <= maxCapacity) {
+				result.add(entries);
+				return result;
+			}
+			Random random = new Random(seed);
+			int number = Math.max(2, Math.min(maxCapacity, (size+maxCapacity-1)/maxCapacity));
+			Set sample = new HashSet(number);
+			while (sample.size() < number)
+				sample.add(Integer.valueOf(random.nextInt(size)));
+			List seeds = new ArrayList(number);
+			for (Iterator indices = sample.iterator(); indices.hasNext();)
+				seeds.add(sphere(entries.get(((Integer)indices.next()).intValue())));
+			List[] clusters = assign(entries, seeds);
+			// dissolve the clusters below the minimum capacity
+			for (;;) {
+				int smallest = -1, remaining = 0;
+				for (int i = 0; i < clusters.length; i++)
+					if (clusters[i] != null) {
+						remaining++;
+						if (clusters[i].size() < minCapacity && (smallest == -1 || clusters[i].size() < clusters[smallest].size()))
+							smallest = i;
+					}
+				if (smallest == -1 || remaining == 1)
+					break;
+				List dissolved = clusters[smallest];
+				clusters[smallest] = null;
+				seeds.set(smallest, null);
+				for (Iterator entries = dissolved.iterator(); entries.hasNext();) {
+					Object entry = entries.next();
+					clusters[nearestSeed(entry, seeds)].add(entry);
+				}
+			}
+			List parts = new ArrayList();
+			for (int i = 0; i < clusters.length; i++)
+				if (clusters[i] != null)
+					parts.add(clusters[i]);
+			// the seeds do not separate the entries (e.g. duplicates): split into equal parts
+			if (parts.size() == 1) {
+				parts.clear();
+				number = (size+maxCapacity-1)/maxCapacity;
+				for (int i = 0; i < number; i++)
+					parts.add(new ArrayList(entries.subList(i*size/number, (i+1)*size/number)));
+			}
+			List tasks = new ArrayList(parts.size());
+			for (int i = 0; i < parts.size(); i++)
+				tasks.add(new Partition((List)parts.get(i), random.nextLong()));
+			invokeAll(tasks);
+			for (int i = 0; i < tasks.size(); i++)
+				result.addAll(((Partition)tasks.get(i)).join());
+			return result;
+		}
+		
+		/** Assigns the entries to their nearest seeds. Large lists are 
+		 * assigned by several tasks.
+		 * 
+		 * @param entries the entries to assign
+		 * @param seeds the spheres of the seeds
+		 * @return the clusters of the seeds
+		 */
+		protected List[] assign (final List entries, final List seeds) {
+			final int[] assignment = new int[entries.size()];
+			if (entries.size() <= PARALLEL_ASSIGNMENT_THRESHOLD)
+				for (int i = 0; i < assignment.length; i++)
+					assignment[i] = nearestSeed(entries.get(i), seeds);
+			else {
+				List tasks = new ArrayList();
+				for (int from = 0; from < assignment.length; from += PARALLEL_ASSIGNMENT_THRESHOLD) {
+					final int begin = from, end = Math.min(assignment.length, from + PARALLEL_ASSIGNMENT_THRESHOLD);
+					tasks.add(new RecursiveAction() {
+						protected void compute () {
+							for (int i = begin; i < end; i++)
+								assignment[i] = nearestSeed(entries.get(i), seeds);
+						}
+					});
+				}
+				invokeAll(tasks);
+			}
+			List[] clusters = new List[seeds.size()];
+			for (int i = 0; i < clusters.length; i++)
+				clusters[i] = new ArrayList();
+			for (int i = 0; i < assignment.length; i++)
+				clusters[assignment[i]].add(entries.get(i));
+			for (int i = 0; i < clusters.length; i++)
+				if (clusters[i].isEmpty()) {
+					clusters[i] = null;
+					seeds.set(i, null);
+				}
+			return clusters;
+		}
+	}
+
+	/** A task slimming down the leaves of the given parents. The leaves of 
+	 * every parent are slimmed down by a separate task.
+	 */
+	protected class SlimDown extends RecursiveAction {
+		
+		/** The parents, i.e., lists of clusters of leaves.
+		 */
+		protected List parents;
+		
+		/** Creates a new task slimming down the leaves of the given parents.
+		 * 
+		 * @param parents lists of clusters of leaves
+		 */
+		protected SlimDown (List parents) {
+			this.parents = parents;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute () {
+			if (parents.size() > 1) {
+				List tasks = new ArrayList(parents.size());
+				for (int i = 0; i < parents.size(); i++)
+					tasks.add(new SlimDown(Collections.singletonList(parents.get(i))));
+				invokeAll(tasks);
+			}
+			else
+				slimDown((List)parents.get(0));
+		}
+		
+		/** Returns the index of the entry of a cluster farthest from the center of the cluster.
+		 * 
+		 * @param cluster a cluster
+		 * @return the index of the farthest entry
+		 */
+		protected int farthest (Cluster cluster) {
+			int farthest = -1;
+			double maxDistance = -1;
+			for (int i = 0; i < cluster.entries.size(); i++) {
+				Sphere sphere = sphere(cluster.entries.get(i));
+				double distance = cluster.descriptor.centerDistance(sphere) + sphere.radius();
+				if (distance > maxDistance) {
+					maxDistance = distance;
+					farthest = i;
+				}
+			}
+			return farthest;
+		}
+		
+		/** Moves the farthest entries of the given clusters into sibling 
+		 * clusters covering them, until no entry can be moved.
+		 * 
+		 * @param clusters the clusters of the leaves of a parent
+		 */
+		protected void slimDown (List clusters) {
+			boolean moved = true;
+			for (int round = 0; moved && round < SLIM_DOWN_ROUNDS; round++) {
+				moved = false;
+				for (int i = 0; i < clusters.size(); i++) {
+					Cluster cluster = (Cluster)clusters.get(i);
+					if (cluster.entries.size() <= minCapacity)
+						continue;
+					int farthest = farthest(cluster);
+					Object entry = cluster.entries.get(farthest);
+					Sphere sphere = sphere(entry);
+					// the center of the cluster is never moved
+					if (cluster.descriptor.centerDistance(sphere) == 0)
+						continue;
+					for (int j = 0; j < clusters.size(); j++) {
+						Cluster sibling = (Cluster)clusters.get(j);
+						if (j != i && sibling.entries.size() < maxCapacity && sibling.descriptor.centerDistance(sphere) + sphere.radius() <= sibling.descriptor.radius()) {
+							cluster.entries.remove(farthest);
+							sibling.entries.add(entry);
+							// the radius of the cluster shrinks to its new farthest entry 
+							Sphere newFarthest = sphere(cluster.entries.get(farthest(cluster)));
+							cluster.descriptor.radius = cluster.descriptor.centerDistance(newFarthest) + newFarthest.radius();
+							moved = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -597,7 +597,7 @@ public class MVBT extends MVBTree {
 		 */
 		@SuppressWarnings({ "rawtypes", "unchecked" })
 		public Iterator query(final Lifespan lifespan) {
-			return new Filter(	new Sequentializer(iterator(), liveEntries.iterator()),
+			return new Filter(	iterator(),
 								new AbstractPredicate() {
 									public boolean invoke(Object entry) {									 	
 										return ((MVSeparator)separator(entry)).lifespan().overlaps(lifespan);
@@ -643,7 +643,7 @@ public class MVBT extends MVBTree {
 		 */
 		@SuppressWarnings({ "unchecked", "rawtypes", "serial" })
 		public Iterator getCurrentEntries() {
-			return new Filter( new Sequentializer(iterator(), liveEntries.iterator()),
+			return new Filter( iterator(),
 								new AbstractPredicate() {
 									public boolean invoke(Object entry) {
 										return ((MVSeparator)separator(entry)).isAlive();
@@ -36,17 +36,27 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.SynchronizedContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
 import xxl.core.collections.queues.Queue;
 import xxl.core.collections.queues.io.BlockBasedQueue;
 import xxl.core.collections.queues.io.QueueBuffer;
+import xxl.core.cursors.Cursor;
 import xxl.core.cursors.filters.Filter;
 import xxl.core.cursors.unions.Merger;
 import xxl.core.cursors.unions.Sequentializer;
@@ -403,6 +413,32 @@ public class MVBTPlus extends MVBT {
 	 * auxiliary set, is used to mark buffer overflows
 	 */
 	protected Set<Long> markSet; 
+	/**
+	 * first versions of the partitions loaded by {@link #parallelBulkLoad(Iterator, Container, int, UnaryFunction, int, int)} except the first one
+	 */
+	protected List<LongVersion> partitionVersions = new ArrayList<LongVersion>();
+	/**
+	 * converter for the partition versions of a tree loaded by {@link #parallelBulkLoad(Iterator, Container, int, UnaryFunction, int, int)}. 
+	 * The partition versions are not stored in the containers of the tree, they have to be saved together with the root entries of the tree. 
+	 */
+	public static final Converter<List<LongVersion>> PARTITION_VERSIONS_CONVERTER = new Converter<List<LongVersion>>(){
+		@Override
+		public List<LongVersion> read(DataInput dataInput, List<LongVersion> object)
+				throws IOException {
+			int size = IntegerConverter.DEFAULT_INSTANCE.readInt(dataInput);
+			List<LongVersion> versions = new ArrayList<LongVersion>(size);
+			for(int i = 0; i < size; i++)
+				versions.add(LongVersion.VERSION_CONVERTER.read(dataInput));
+			return versions;
+		}
+		@Override
+		public void write(DataOutput dataOutput, List<LongVersion> object)
+				throws IOException {
+			IntegerConverter.DEFAULT_INSTANCE.writeInt(dataOutput, object.size());
+			for(LongVersion version : object)
+				LongVersion.VERSION_CONVERTER.write(dataOutput, version);
+		}
+	};
 	
 	
 	/**
@@ -749,11 +785,251 @@ public class MVBTPlus extends MVBT {
 //			 Root newOldRoot= new Root(mvreg, idxEntry.id(), idxEntry.parentLevel());
 //			 roots.insert(newOldRoot);
 //		}
-		((Lifespan)roots.rootDescriptor()).updateMinBound(minVersion);
-		((Lifespan)roots.rootDescriptor()).updateMaxBound(currentRoot.getInsertVersion());
+		if (roots.rootDescriptor() != null){ // no historical roots if the root was never reorganized
+			((Lifespan)roots.rootDescriptor()).updateMinBound(minVersion);
+			((Lifespan)roots.rootDescriptor()).updateMaxBound(currentRoot.getInsertVersion());
+		}
 		loadState = LoadState.PUSH_ALL;
 	}
 	
+	/**
+	 * Builds MVBTPlus from scratch by loading time partitions of the update stream concurrently.
+	 * 
+	 * The input is cut into partitions of at least <tt>partitionSize</tt> elements. A cut is only made 
+	 * between two different versions. Every partition is loaded into a separate version tree by 
+	 * {@link #bulkLoad(Iterator, NullaryFunction, int)}. The partition that starts at version <tt>t</tt> is seeded with 
+	 * all elements alive at version <tt>t-1</tt>, each with the version of its last insertion or update. Therefore, the tree of a partition 
+	 * answers all queries for versions of its partition. The nodes of all partitions are stored in the container of this tree. Finally, 
+	 * the roots of the partitions are stitched into the roots tree: the roots of a partition that starts at version <tt>t</tt> are only 
+	 * valid from version <tt>t</tt> on and the live root of a partition that ends before version <tt>t'</tt> becomes a historical root 
+	 * which is valid up to version <tt>t'-1</tt>. The live root of the last partition becomes the live root of this tree. 
+	 * 
+	 * Note: 
+	 * 1. The node container of this tree has to be a {@link ConverterContainer} over the given block container. The partitions 
+	 * write their nodes concurrently through a {@link SynchronizedContainer} over the block container, therefore, 
+	 * an object buffer must not be placed above the converter container of the nodes. 
+	 * 2. Each partition gets its own queue factory. Partitions are spooled on the calling thread and loaded on one thread each, therefore, 
+	 * factories of different partitions must not share a non thread-safe buffer.
+	 * 3. The elements alive at the current partition border are held in main memory while spooling the input. 
+	 * 4. The versions of the partition borders are needed by {@link #rangePeriodQuery(Comparable, Comparable, Version, Version)}. 
+	 * They are not stored in the containers of this tree: save them by {@link #PARTITION_VERSIONS_CONVERTER} together with the root entries 
+	 * and restore them by {@link #setPartitionVersions(List)} after the tree is reopened. Without them queries over several partitions are incomplete. 
+	 * 
+	 * @param data is an iterator of #Element objects ordered by their version.
+	 * @param blockContainer the container storing the serialized nodes of this tree
+	 * @param partitionSize the minimal number of elements of a partition (without its seed)
+	 * @param factoryQueueFunctions returns the factory function for the queues of the partition with the given number.
+	 * @param memoryCapacity is given by the number of entries; each concurrently loaded partition gets an equal share. 
+	 * @param threads the number of partitions loaded concurrently
+	 */
+	public void parallelBulkLoad(Iterator<Element> data, Container blockContainer, int partitionSize, 
+			UnaryFunction<Integer, NullaryFunction<Queue<Element>>> factoryQueueFunctions, int memoryCapacity, int threads){
+		if(rootDescriptor != null || rootEntry != null){
+			throw new RuntimeException("The tree is not empty! Please execute bulkInsert method!");
+		}
+		// spool partitions
+		List<Queue<Element>> partitions = new ArrayList<Queue<Element>>();
+		List<LongVersion> borders = new ArrayList<LongVersion>();
+		// alive elements in the order of their versions 
+		LinkedHashMap<Comparable, Element> alive = new LinkedHashMap<Comparable, Element>(); 
+		Queue<Element> partition = factoryQueueFunctions.invoke(0).invoke();
+		partitions.add(partition);
+		int size = 0;
+		LongVersion lastVersion = null;
+		while(data.hasNext()){
+			Element element = data.next();
+			LongVersion version = element.getElement2();
+			if(size >= partitionSize && version.compareTo(lastVersion) > 0){
+				borders.add(version);
+				partition = factoryQueueFunctions.invoke(partitions.size()).invoke();
+				partitions.add(partition);
+				for(Element seed : alive.values())
+					partition.enqueue(seed);
+				size = 0;
+			}
+			partition.enqueue(element);
+			Comparable key = getKeyFromElement(element);
+			alive.remove(key);
+			if(element.getElement3() != OperationType.DELETE)
+				alive.put(key, new Element(element.getElement1(), version, OperationType.INSERT));
+			size++;
+			lastVersion = version;
+		}
+		alive = null;
+		if (lastVersion == null) 
+			return;
+		// load partitions
+		final Container blocks = new SynchronizedContainer(blockContainer);
+		final int partitionMemory = memoryCapacity / Math.min(threads, partitions.size());
+		ExecutorService service = Executors.newFixedThreadPool(threads);
+		List<Future<MVBTPlus>> futures = new ArrayList<Future<MVBTPlus>>();
+		for(int i = 0; i < partitions.size(); i++){
+			final Queue<Element> queue = partitions.get(i);
+			final NullaryFunction<Queue<Element>> factoryQueueFunction = factoryQueueFunctions.invoke(i);
+			futures.add(service.submit(new Callable<MVBTPlus>() {
+				@Override
+				public MVBTPlus call() {
+					MVBTPlus tree = createPartitionTree(blocks);
+					tree.bulkLoad(new Iterator<Element>() {
+						@Override
+						public boolean hasNext() {
+							return !queue.isEmpty();
+						}
+						@Override
+						public Element next() {
+							return queue.dequeue();
+						}
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					}, factoryQueueFunction, partitionMemory);
+					queue.close();
+					return tree;
+				}
+			}));
+		}
+		List<MVBTPlus> trees = new ArrayList<MVBTPlus>();
+		try{
+			for(Future<MVBTPlus> future : futures)
+				trees.add(future.get());
+		}catch(InterruptedException e){
+			throw new RuntimeException(e);
+		}catch(ExecutionException e){
+			throw new RuntimeException(e.getCause());
+		}finally{
+			service.shutdown();
+		}
+		stitchPartitions(trees, borders);
+		currentVersion = lastVersion;
+		loadState = LoadState.PUSH_ALL;
+	}
+	
+	/**
+	 * creates an empty tree with the parameters of this tree which stores its serialized nodes in the given container. 
+	 * The roots tree is kept in main memory. 
+	 * 
+	 * @param blockContainer
+	 * @return
+	 */
+	protected MVBTPlus createPartitionTree(Container blockContainer){
+		MVBTPlus tree = new MVBTPlus(BLOCK_SIZE, (float)minCapacityRatio, EPSILON, keyDomainMinValue);
+		tree.initialize(null, null, null, null, getKey, new MapContainer(), new ConverterContainer(blockContainer, tree.nodeConverter()), versionConverter, 
+				keyConverter, dataConverter, createSeparator, createKeyRange, parameter_A);
+		return tree;
+	}
+	
+	/**
+	 * stitches the roots of the partition trees into this tree
+	 * 
+	 * @param trees the partition trees ordered by time
+	 * @param borders the first version of every partition except the first one
+	 */
+	protected void stitchPartitions(List<MVBTPlus> trees, List<LongVersion> borders){
+		MVRegion descriptor = null;
+		for(int i = 0; i < trees.size(); i++){
+			MVBTPlus tree = trees.get(i);
+			LongVersion begin = i == 0 ? null : borders.get(i-1);
+			MVRegion treeDescriptor = (MVRegion)tree.rootDescriptor;
+			if (descriptor == null)
+				descriptor = createMVRegion(treeDescriptor.beginVersion(), null, treeDescriptor.minBound(), treeDescriptor.maxBound());
+			else
+				descriptor.union(treeDescriptor, false);
+			if (tree.roots.rootEntry() != null){
+				Cursor cursor = tree.roots.query();
+				while(cursor.hasNext()){
+					Root root = (Root)cursor.next();
+					MVRegion region = root.getRegion();
+					if (begin != null && region.endVersion().compareTo(begin) < 0)
+						continue; // root of the seed
+					if (begin != null && region.beginVersion().compareTo(begin) < 0)
+						region.updateBeginVersion(begin);
+					roots.insert(new Root(region, root.rootNodeId(), root.parentLevel()));
+				}
+				cursor.close();
+			}
+			IndexEntry liveRoot = (IndexEntry)copyEntry(tree.rootEntry);
+			if (begin != null && liveRoot.getInsertVersion().compareTo(begin) < 0)
+				((MVSeparator)liveRoot.separator()).setInsertVersion(begin);
+			if (i < trees.size()-1){ // the live root of the partition becomes historical
+				MVRegion region = toMVRegion((MVSeparator)liveRoot.separator());
+				region.updateEndVersion(new LongVersion(borders.get(i).version-1));
+				region.updateMaxBound(treeDescriptor.maxBound());
+				roots.insert(new Root(region, liveRoot.id(), liveRoot.parentLevel()));
+			}
+			else 
+				rootEntry = liveRoot;
+		}
+		rootDescriptor = descriptor;
+		if (roots.rootDescriptor() != null){
+			((Lifespan)roots.rootDescriptor()).updateMinBound(descriptor.beginVersion());
+			((Lifespan)roots.rootDescriptor()).updateMaxBound(((IndexEntry)rootEntry).getInsertVersion());
+		}
+		partitionVersions = new ArrayList<LongVersion>(borders);
+	}
+	
+	/**
+	 * Returns the first versions of the partitions created by {@link #parallelBulkLoad(Iterator, Container, int, UnaryFunction, int, int)}
+	 * except the first one. The list is empty if the tree was loaded as a whole.  
+	 * 
+	 * @return the partition borders
+	 */
+	public List<LongVersion> partitionVersions(){
+		return partitionVersions;
+	}
+	
+	/**
+	 * Sets the partition borders of a tree loaded by {@link #parallelBulkLoad(Iterator, Container, int, UnaryFunction, int, int)}. 
+	 * This has to be called after the tree is reopened by one of the initialize methods, the borders can be saved and 
+	 * read by {@link #PARTITION_VERSIONS_CONVERTER}. 
+	 * 
+	 * @param partitionVersions the partition borders
+	 */
+	public void setPartitionVersions(List<LongVersion> partitionVersions){
+		this.partitionVersions = new ArrayList<LongVersion>(partitionVersions);
+	}
+	
+	/**
+	 * Searches all elements which are valid in the version range <tt>[beginVersion, endVersion]</tt> and whose keys lie in the key range <tt>[min, max]</tt>.
+	 * If the tree was loaded in partitions the query is executed on each partition overlapping the version range. 
+	 * An element alive at the end of a partition is reported by the following partition, which stores it as part of its seed. 
+	 * 
+	 * @param min the minimal bound of the key range of the query.
+	 * @param max the maximal bound of the key range of the query.
+	 * @param beginVersion the begin of the version range of the query.
+	 * @param endVersion the end of the version range of the query.
+	 * @return a lazy <tt>Cursor</tt> pointing to all query responses.
+	 */
+	@Override
+	public Cursor rangePeriodQuery(Comparable min, Comparable max, Version beginVersion, Version endVersion) {
+		if (partitionVersions.isEmpty())
+			return super.rangePeriodQuery(min, max, beginVersion, endVersion);
+		List<Cursor> cursors = new ArrayList<Cursor>();
+		for(int i = 0; i <= partitionVersions.size(); i++){
+			LongVersion low = i == 0 ? null : partitionVersions.get(i-1); 
+			LongVersion high = i == partitionVersions.size() ? null : partitionVersions.get(i);
+			if ((high != null && beginVersion.compareTo(high) >= 0) || (low != null && endVersion != null && endVersion.compareTo(low) < 0))
+				continue;
+			Version begin = beginVersion; 
+			if (low != null && begin.compareTo(low) < 0) // the seed contains the elements of the previous partition alive at its end
+				begin = new LongVersion(low.version-1);
+			Version end = endVersion; 
+			boolean continues = high != null && (end == null || end.compareTo(high) >= 0);
+			if (continues)
+				end = new LongVersion(high.version-1);
+			Cursor cursor = super.rangePeriodQuery(min, max, begin, end);
+			if (continues) 
+				cursor = new Filter(cursor, new AbstractPredicate() {
+					@Override
+					public boolean invoke(Object object) {
+						return !((LeafEntry)object).getLifespan().isAlive();
+					}
+				});
+			cursors.add(cursor);
+		}
+		return new Sequentializer(cursors.iterator());
+	}
+	
 	/**
 	 * this method is called for emptying all buffers after the input iterator is completely consumed.
 	 * 
@@ -509,10 +509,17 @@ public class MVBTree extends BPlusTree {
 		IndexEntry indexEntry = null;
 		Root root = null;
 		Cursor rootsCursor = roots.rangeQuery(version, lastRootSplitVersion);
-		if(rootsCursor.hasNext()){
+		// the roots are keyed by their (right-closed) end version: a root ending 
+		// exactly at the given version is only used if no successor contains it
+		while(rootsCursor.hasNext()){
 			 root = (Root) rootsCursor.next();
+			 if(indexEntry!=null && root.lifespan().beginVersion().compareTo(version)>0)
+				 break;
 			 indexEntry = root.toIndexEntry();
+			 if(root.lifespan().endVersion().compareTo(version)>0)
+				 break;
 		}
+		rootsCursor.close();
 		// old code 
 		//	((Root)roots.exactMatchQuery(version)).toIndexEntry();
 		return indexEntry;
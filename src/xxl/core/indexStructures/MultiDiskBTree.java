@@ -27,11 +27,24 @@ package xxl.core.indexStructures;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import xxl.core.collections.ReversedList;
 import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.DecoratorContainer;
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
 import xxl.core.cursors.Cursors;
 import xxl.core.cursors.filters.Taker;
 import xxl.core.cursors.mappers.Mapper;
@@ -40,8 +53,17 @@ import xxl.core.cursors.sources.Inductor;
 import xxl.core.cursors.unions.Sequentializer;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
+import xxl.core.util.WrappingRuntimeException;
 
 /** This class implements a {@link BTree} which stores its leaf-nodes on multiple disks.
+ * <p>
+ * In the parallel I/O mode (see {@link #enableParallelIO(int)}) every leaf 
+ * container is driven by an I/O worker of its own. Range queries 
+ * ({@link #parallelQuery(Descriptor, int)}) issue the reads of the leaves to the 
+ * workers of their disks, so the leaves of different disks are read concurrently, 
+ * and return the results in key order. Updated leaves are collected in a write 
+ * queue per disk; the queues are written by the workers of all disks at once 
+ * when a queue is full, before a query and on {@link #flushWriteQueues()}.
  */
 public class MultiDiskBTree extends BTree {
 
@@ -49,6 +71,20 @@ public class MultiDiskBTree extends BTree {
 	 */
 	protected Container [] leafContainers;
 
+	/** The leaf containers passed to the tree, i.e., without write queues, 
+	 * or <tt>null</tt> if the parallel I/O mode is disabled. 
+	 */
+	protected Container [] unqueuedLeafContainers;
+
+	/** The I/O workers of the leaf containers (one single-threaded executor per disk)  
+	 * or <tt>null</tt> if the parallel I/O mode is disabled. 
+	 */
+	protected ExecutorService [] ioWorkers;
+
+	/** The maximum number of leaves in a write queue.
+	 */
+	protected int writeQueueCapacity;
+
 	/** Function returning the container of a leaf if invoked with an <tt>Level1IndexEntry</tt>.  
 	 */
 	protected Function multiDiskGetContainer = new AbstractFunction() {
@@ -196,6 +232,271 @@ public class MultiDiskBTree extends BTree {
 		return this;
 	}
 
+	/** Enables the parallel I/O mode. Every leaf container gets an I/O worker 
+	 * and a write queue of its own. The containers must not share an 
+	 * unsynchronized buffer, because the workers access them concurrently.
+	 * 
+	 * @param writeQueueCapacity the maximum number of leaves in a write queue
+	 * @return this tree
+	 */
+	public synchronized MultiDiskBTree enableParallelIO (int writeQueueCapacity) {
+		if (writeQueueCapacity < 1)
+			throw new IllegalArgumentException("The capacity of the write queues has to be positive.");
+		this.writeQueueCapacity = writeQueueCapacity;
+		if (ioWorkers == null) {
+			unqueuedLeafContainers = leafContainers;
+			leafContainers = new Container[unqueuedLeafContainers.length];
+			ioWorkers = new ExecutorService[leafContainers.length];
+			for (int i=0; i<leafContainers.length; i++) {
+				leafContainers[i] = new WriteQueue(unqueuedLeafContainers[i]);
+				ioWorkers[i] = Executors.newSingleThreadExecutor(
+					new ThreadFactory() {
+						public Thread newThread (Runnable runnable) {
+							Thread thread = new Thread(runnable, "MultiDiskBTree I/O worker");
+							thread.setDaemon(true);
+							return thread;
+						}
+					}
+				);
+			}
+		}
+		return this;
+	}
+
+	/** Writes the write queues and disables the parallel I/O mode. 
+	 */
+	public synchronized void disableParallelIO () {
+		if (ioWorkers != null) {
+			flushWriteQueues();
+			for (int i=0; i<ioWorkers.length; i++)
+				ioWorkers[i].shutdown();
+			ioWorkers = null;
+			leafContainers = unqueuedLeafContainers;
+			unqueuedLeafContainers = null;
+		}
+	}
+
+	/** Returns whether the parallel I/O mode is enabled.
+	 * 
+	 * @return <tt>true</tt> if the parallel I/O mode is enabled
+	 */
+	public boolean isParallelIOEnabled () {
+		return ioWorkers != null;
+	}
+
+	/** Writes the leaves of all write queues. The I/O workers of the disks 
+	 * write their queues concurrently; the method returns when all queues 
+	 * are written.
+	 */
+	public void flushWriteQueues () {
+		if (ioWorkers == null)
+			return;
+		List futures = new ArrayList();
+		for (int i=0; i<leafContainers.length; i++) {
+			final WriteQueue writeQueue = (WriteQueue)leafContainers[i];
+			if (!writeQueue.pending.isEmpty())
+				futures.add(ioWorkers[i].submit(
+					new Callable() {
+						public Object call () {
+							writeQueue.write();
+							return null;
+						}
+					}
+				));
+		}
+		for (Iterator it = futures.iterator(); it.hasNext();)
+			await((Future)it.next());
+	}
+
+	/** Waits for the result of an I/O worker.
+	 * 
+	 * @param future the result of an I/O worker
+	 * @return the result
+	 */
+	protected static Object await (Future future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WrappingRuntimeException(ie);
+		}
+		catch (ExecutionException ee) {
+			throw new WrappingRuntimeException(ee.getCause());
+		}
+	}
+
+	/** Performs a range query reading the leaves in parallel. The index entries 
+	 * of the leaves overlapping the query are determined in key order. The reads 
+	 * of the next <tt>prefetch</tt> leaves are issued to the I/O workers of their 
+	 * disks, so that the disks are read concurrently. The entries of the leaves 
+	 * are returned in key order. If the parallel I/O mode is disabled, the 
+	 * result of {@link ORTree#query(Descriptor, int) query(queryDescriptor, 0)} 
+	 * is returned.
+	 * <p>
+	 * The tree must not be modified while the returned cursor is used.
+	 * 
+	 * @param queryDescriptor the query interval
+	 * @param prefetch the maximum number of leaves read ahead
+	 * @return a lazy cursor pointing to the entries of the leaves overlapping the query
+	 */
+	public Cursor parallelQuery (final Descriptor queryDescriptor, final int prefetch) {
+		if (ioWorkers == null || height() == 0)
+			return query(queryDescriptor, 0);
+		flushWriteQueues();
+		final Cursor leafEntries = query(queryDescriptor, 1);
+		final ExecutorService [] workers = ioWorkers;
+		return new AbstractCursor() {
+			LinkedList reads = new LinkedList();
+			Iterator results = null;
+
+			public boolean hasNextObject () {
+				while (results == null || !results.hasNext()) {
+					while (reads.size() < Math.max(prefetch, 1) && leafEntries.hasNext())
+						reads.add(read((IndexEntry)leafEntries.next()));
+					if (reads.isEmpty())
+						return false;
+					results = ((List)await((Future)reads.removeFirst())).iterator();
+				}
+				return true;
+			}
+
+			public Object nextObject () {
+				return results.next();
+			}
+
+			protected Future read (final IndexEntry indexEntry) {
+				return workers[((Level1IndexEntry)indexEntry).containersIndex].submit(
+					new Callable() {
+						public Object call () {
+							Tree.Node node = indexEntry.get(true);
+							List entries = new ArrayList();
+							Cursors.toList(
+								queryDescriptor.contains(indexEntry.descriptor())?
+									node.entries():
+									node.query(queryDescriptor),
+								entries
+							);
+							return entries;
+						}
+					}
+				);
+			}
+
+			public void close () {
+				for (Iterator it = reads.iterator(); it.hasNext();)
+					((Future)it.next()).cancel(false);
+				reads.clear();
+				leafEntries.close();
+				super.close();
+			}
+		};
+	}
+
+	/** Performs a range query reading the leaves in parallel. Two leaves per 
+	 * disk are read ahead.
+	 * 
+	 * @param queryDescriptor the query interval
+	 * @return a lazy cursor pointing to the entries of the leaves overlapping the query
+	 * @see #parallelQuery(Descriptor, int)
+	 */
+	public Cursor parallelQuery (Descriptor queryDescriptor) {
+		return parallelQuery(queryDescriptor, 2*leafContainers.length);
+	}
+
+	/** A write queue of a leaf container. Updated leaves are kept in the queue 
+	 * until they are written by the I/O worker of the container (see 
+	 * {@link MultiDiskBTree#flushWriteQueues()}); reads of queued leaves are 
+	 * answered by the queue.
+	 */
+	protected class WriteQueue extends DecoratorContainer {
+
+		/** The queued leaves and their unfix flags.
+		 */
+		protected Map pending = new LinkedHashMap();
+
+		/** Creates a new write queue of the given container.
+		 * 
+		 * @param container the leaf container
+		 */
+		public WriteQueue (Container container) {
+			super(container);
+		}
+
+		/** Writes the queued leaves to the container.
+		 */
+		protected void write () {
+			for (Iterator it = pending.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry)it.next();
+				Object [] leaf = (Object [])entry.getValue();
+				container.update(entry.getKey(), leaf[0], ((Boolean)leaf[1]).booleanValue());
+			}
+			pending.clear();
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#get(java.lang.Object, boolean)
+		 */
+		public Object get (Object id, boolean unfix) {
+			Object [] leaf = (Object [])pending.get(id);
+			return leaf != null? leaf[0]: container.get(id, unfix);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#get(java.lang.Object)
+		 */
+		public Object get (Object id) {
+			return get(id, true);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#update(java.lang.Object, java.lang.Object, boolean)
+		 */
+		public void update (Object id, Object object, boolean unfix) {
+			pending.put(id, new Object [] {object, Boolean.valueOf(unfix)});
+			if (pending.size() >= writeQueueCapacity)
+				flushWriteQueues();
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#update(java.lang.Object, java.lang.Object)
+		 */
+		public void update (Object id, Object object) {
+			update(id, object, true);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#remove(java.lang.Object)
+		 */
+		public void remove (Object id) {
+			pending.remove(id);
+			container.remove(id);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#batchInsert(java.lang.Object[])
+		 */
+		public Object [] batchInsert (Object [] blocks) {
+			return container.batchInsert(blocks);
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#flush()
+		 */
+		public void flush () {
+			write();
+			container.flush();
+		}
+
+		/* (non-Javadoc)
+		 * @see xxl.core.collections.containers.Container#close()
+		 */
+		public void close () {
+			write();
+			container.close();
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see xxl.core.indexStructures.Tree#createIndexEntry(int)
 	 */
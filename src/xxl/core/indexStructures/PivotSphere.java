@@ -0,0 +1,203 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DoubleConverter;
+
+/** 
+ * A {@link Sphere} which additionally stores the distances of its center to the 
+ * pivots of a global {@link PivotTable}. 
+ * 
+ * Due to the triangle inequality, the largest difference of the pivot distances 
+ * of two centers is a lower bound of their distance. The tests {@link #overlapsPD(Descriptor)} 
+ * and {@link #containsPD(Descriptor)} use this bound (like the distance to the parent) as 
+ * a filter before the distance of the centers is computed. Since the pivot distances 
+ * of a query sphere are computed once per query and the pivot distances of the 
+ * entries are stored in the nodes, the filter does not need any distance computations.
+ * 
+ * The pivot distances of a new sphere are computed lazily, because the 
+ * leaf entries of an {@link MTree} read from a container restore them from 
+ * the stored data. 
+ * 
+ * @see PivotTable
+ * @see MTree
+ */
+public class PivotSphere extends Sphere {
+	
+	/** The pivot table whose pivots are used.
+	 */
+	protected PivotTable pivotTable;
+	
+	/** The distances of the center to the pivots of the pivot table 
+	 * (<tt>null</tt> if they are not computed yet).
+	 */
+	protected double[] pivotDistances;
+	
+	/** Creates a new sphere.
+	 * 
+	 * @param center the new {@link Sphere#center}
+	 * @param radius the new {@link Sphere#radius}
+	 * @param centerConverter the new {@link Sphere#centerConverter}
+	 * @param distanceToParent the new {@link Sphere#distanceToParent}
+	 * @param pivotTable the pivot table whose pivots are used
+	 * @param pivotDistances the distances of the center to the pivots or <tt>null</tt>
+	 * 		if they have to be computed
+	 */
+	public PivotSphere (Object center, double radius, Converter centerConverter, double distanceToParent, PivotTable pivotTable, double[] pivotDistances) {
+		super(center, radius, centerConverter, distanceToParent, pivotTable.pointDistance(), DEFAULT_SPHERE_DISTANCE);
+		this.pivotTable = pivotTable;
+		this.pivotDistances = pivotDistances;
+	}
+	
+	/** Creates a new sphere whose pivot distances are computed when they are needed.
+	 * 
+	 * @param center the new {@link Sphere#center}
+	 * @param radius the new {@link Sphere#radius}
+	 * @param centerConverter the new {@link Sphere#centerConverter}
+	 * @param pivotTable the pivot table whose pivots are used
+	 */
+	public PivotSphere (Object center, double radius, Converter centerConverter, PivotTable pivotTable) {
+		this(center, radius, centerConverter, DEFAULT_DISTANCE_TO_PARENT, pivotTable, null);
+	}
+	
+	/** Returns the distances of the center of this sphere to the pivots.
+	 * 
+	 * @return the distances of the center of this sphere to the pivots
+	 */
+	public double[] pivotDistances () {
+		if (pivotDistances == null)
+			pivotDistances = pivotTable.distances(center);
+		return pivotDistances;
+	}
+	
+	/** Returns a lower bound of the distance between the center of this and 
+	 * the center of the specified sphere. The bound is the largest difference 
+	 * of the distances of the centers to a pivot.
+	 * 
+	 * @param sphere the sphere to whichs center the distance should be bounded
+	 * @return a lower bound of the distance of the centers
+	 */
+	public double pivotLowerBound (PivotSphere sphere) {
+		double[] distances = pivotDistances(), sphereDistances = sphere.pivotDistances();
+		double bound = 0;
+		for (int i = 0; i < distances.length; i++)
+			bound = Math.max(bound, Math.abs(distances[i] - sphereDistances[i]));
+		return bound;
+	}
+	
+	/** Returns <tt>true</tt> if this sphere overlaps the specified sphere.
+	 * In addition to the distances to the parent, this implementation 
+	 * filters with the lower bound given by the pivot distances.
+	 * 
+	 * @param descriptor the sphere to check
+	 * @return <tt>true</tt> if this sphere overlaps the specified sphere
+	 */
+	public boolean overlapsPD (Descriptor descriptor) {
+		Sphere sphere = (Sphere)descriptor;
+		if (sphere.distanceToParent != -1 && distanceToParent != -1)
+			if (Math.abs(sphere.distanceToParent - distanceToParent) > (sphere.radius + radius))
+				return false;
+		if (sphere instanceof PivotSphere && pivotLowerBound((PivotSphere)sphere) > sphere.radius + radius)
+			return false;
+		return overlaps(sphere);
+	}
+	
+	/** Returns <tt>true</tt> if this sphere contains the specified sphere.
+	 * In addition to the distances to the parent, this implementation 
+	 * filters with the lower bound given by the pivot distances.
+	 * 
+	 * @param descriptor the sphere to check
+	 * @return <tt>true</tt> if this sphere contains the specified sphere
+	 */
+	public boolean containsPD (Descriptor descriptor) {
+		Sphere sphere = (Sphere)descriptor;
+		if (sphere.distanceToParent != -1 && distanceToParent != -1)
+			if (Math.abs(sphere.distanceToParent - distanceToParent) > (sphere.radius + radius))
+				return false;
+		if (sphere instanceof PivotSphere && pivotLowerBound((PivotSphere)sphere) + sphere.radius > radius)
+			return false;
+		return contains(sphere);
+	}
+	
+	/** Writes the distances of the center to the pivots.
+	 * 
+	 * @param dataOutput the output the pivot distances are written to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writePivotDistances (DataOutput dataOutput) throws IOException {
+		double[] distances = pivotDistances();
+		for (int i = 0; i < distances.length; i++)
+			DoubleConverter.DEFAULT_INSTANCE.writeDouble(dataOutput, distances[i]);
+	}
+	
+	/** Reads the distances of the center to the pivots.
+	 * 
+	 * @param dataInput the input the pivot distances are read from
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void readPivotDistances (DataInput dataInput) throws IOException {
+		pivotDistances = new double[pivotTable.size()];
+		for (int i = 0; i < pivotDistances.length; i++)
+			pivotDistances[i] = DoubleConverter.DEFAULT_INSTANCE.readDouble(dataInput);
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.io.Convertable#write(java.io.DataOutput)
+	 */
+	public void write (DataOutput dataOutput) throws IOException {
+		super.write(dataOutput);
+		writePivotDistances(dataOutput);
+	}
+
+	/* (non-Javadoc)
+	 * @see xxl.core.io.Convertable#read(java.io.DataInput)
+	 */
+	public void read (DataInput dataInput) throws IOException {
+		super.read(dataInput);
+		readPivotDistances(dataInput);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#clone()
+	 */
+	public Object clone () {
+		return new PivotSphere(center, radius, centerConverter, distanceToParent, pivotTable, pivotDistances);
+	}
+	
+	/** Returns the pivot table whose pivots are used by this sphere.
+	 * 
+	 * @return the pivot table whose pivots are used by this sphere
+	 */
+	public PivotTable getPivotTable() {
+		return pivotTable;
+	}
+
+} // end of class PivotSphere
@@ -0,0 +1,191 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.DoubleConverter;
+import xxl.core.util.Distance;
+
+/** 
+ * A small global set of pivots (reference objects) of a metric space. 
+ * 
+ * The descriptors of the entries of an {@link MTree} or {@link SlimTree} created 
+ * by the factory function of a pivot table are {@link PivotSphere}s storing the 
+ * distances of their centers to the pivots. These distances give a lower bound of 
+ * the distance between two centers (triangle inequality), which is used to filter 
+ * entries before the (possibly expensive) distance function is called. 
+ * Query spheres have to be created by {@link #createSphere(Object, double, Converter)}.
+ * 
+ * Usage example (1).
+ * <pre>
+ *     CountingDistance distance = new CountingDistance(LpMetric.EUCLIDEAN);
+ *     PivotTable pivotTable = new PivotTable(PivotTable.selectPivots(sample, 8, distance), distance);
+ *     MTree mTree = new MTree(distance);
+ *     mTree.initialize(pivotTable.getFactoryFunction(centerConverter), container, minCapacity, maxCapacity);
+ *     ...
+ *     Cursor results = mTree.query(pivotTable.createSphere(queryPoint, epsilon, centerConverter));
+ * </pre>
+ * 
+ * Each pivot costs one distance computation per inserted object and per query as well as 
+ * <tt>8</tt> bytes per entry, so only a few pivots should be used.
+ * 
+ * @see PivotSphere
+ * @see MTree
+ */
+public class PivotTable {
+
+	/** The pivots.
+	 */
+	protected Object[] pivots;
+	
+	/** The metric distance function for points.
+	 */
+	protected Distance pointDistance;
+	
+	/** Creates a new pivot table.
+	 * 
+	 * @param pivots the pivots
+	 * @param pointDistance the metric distance function for points
+	 */
+	public PivotTable (Object[] pivots, Distance pointDistance) {
+		this.pivots = pivots;
+		this.pointDistance = pointDistance;
+	}
+	
+	/** Selects pivots from a sample of points by the farthest-first traversal: 
+	 * the first pivot is the first point of the sample and every further pivot 
+	 * is the point of the sample with the largest distance to its nearest pivot. 
+	 * Pivots far away from each other give tight lower bounds. 
+	 * 
+	 * @param sample a sample of the points 
+	 * @param number the number of pivots
+	 * @param pointDistance the metric distance function for points
+	 * @return the selected pivots (less than <tt>number</tt> if the sample is too small)
+	 */
+	public static Object[] selectPivots (Iterator sample, int number, Distance pointDistance) {
+		List points = new ArrayList();
+		while (sample.hasNext())
+			points.add(sample.next());
+		List pivots = new ArrayList(number);
+		if (points.isEmpty() || number <= 0)
+			return pivots.toArray();
+		double[] nearest = new double[points.size()];
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+		int next = 0;
+		while (pivots.size() < number) {
+			Object pivot = points.get(next);
+			pivots.add(pivot);
+			double farthest = 0;
+			for (int i = 0; i < nearest.length; i++) {
+				nearest[i] = Math.min(nearest[i], pointDistance.distance(points.get(i), pivot));
+				if (nearest[i] > farthest) {
+					farthest = nearest[i];
+					next = i;
+				}
+			}
+			if (farthest == 0)
+				break;
+		}
+		return pivots.toArray();
+	}
+
+	/** Returns the distances of the given point to the pivots.
+	 * 
+	 * @param point a point
+	 * @return the distances of the point to the pivots
+	 */
+	public double[] distances (Object point) {
+		double[] distances = new double[pivots.length];
+		for (int i = 0; i < pivots.length; i++)
+			distances[i] = pointDistance.distance(point, pivots[i]);
+		return distances;
+	}
+	
+	/** Creates a new sphere storing the distances of its center to the pivots.
+	 * Query spheres have to be created by this method to use the pivot filter.
+	 * 
+	 * @param center the center of the sphere
+	 * @param radius the radius of the sphere
+	 * @param centerConverter a suitable converter for the center
+	 * @return a new sphere
+	 */
+	public PivotSphere createSphere (Object center, double radius, Converter centerConverter) {
+		return new PivotSphere(center, radius, centerConverter, this);
+	}
+	
+	/** Returns a function, which constructs the spheres of the data points (with radius 0). 
+	 * It is used as the descriptor factory function of an <tt>MTree</tt>. 
+	 * 
+	 * @param dataPointConverter converter for data points in the constructed spheres.
+	 * @return function for creating spheres
+	 */
+	public Function getFactoryFunction (final Converter dataPointConverter) {
+		return new AbstractFunction() {
+			public Object invoke (Object pointToStore) {
+				return createSphere(pointToStore, 0.0, dataPointConverter);
+			}
+		};
+	}
+	
+	/** Returns the number of pivots.
+	 * 
+	 * @return the number of pivots
+	 */
+	public int size () {
+		return pivots.length;
+	}
+	
+	/** Returns the number of bytes needed to store the pivot distances of an entry. 
+	 * 
+	 * @return the number of bytes needed to store the pivot distances of an entry
+	 */
+	public int pivotDistancesSize () {
+		return pivots.length*DoubleConverter.SIZE;
+	}
+	
+	/** Returns the pivots.
+	 * 
+	 * @return the pivots
+	 */
+	public Object[] pivots () {
+		return pivots;
+	}
+	
+	/** Returns the metric distance function for points.
+	 * 
+	 * @return the metric distance function for points
+	 */
+	public Distance pointDistance () {
+		return pointDistance;
+	}
+}
@@ -0,0 +1,122 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.builder.ART;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import xxl.core.indexStructures.AdaptiveRadixTree;
+import xxl.core.indexStructures.ARTIndexedSet;
+import xxl.core.indexStructures.builder.IndexBuilder;
+import xxl.core.io.propertyList.Property;
+import xxl.core.io.propertyList.PropertyList;
+import xxl.core.io.propertyList.json.JSONPrinter;
+
+/**
+ * A builder which creates an {@link ARTIndexedSet} according to an {@link ARTConfiguration}. If
+ * the configuration names a snapshot the set is restored from it, otherwise an empty set is
+ * created.
+ * 
+ * @see ARTConfiguration Setting up the requirements for the set
+ * @see AdaptiveRadixTree The underlying index structure
+ * 
+ * @param <E> The data type which should be managed
+ */
+public class ARTBuilder<E> extends IndexBuilder<ARTBuilder, ARTConfiguration> {
+
+  /*
+   * File extension of the meta data written by ARTIndexedSet.save()
+   */
+  public static final String META_DATA_FILE_EXTENSION = "ARTMeta.json";
+
+  /*
+   * The property names of the meta data
+   */
+  public static final String PROPERTY_INDEX_TYPE = "Index type";
+  public static final String PROPERTY_INDEX_TYPE_ART = "ART";
+  public static final String PROPERTY_TABLE_NAME = "Table name";
+  public static final String PROPERTY_CONTENT_TYPE = "Content type";
+  public static final String PROPERTY_BLOCK_SIZE = "Block size";
+  public static final String PROPERTY_SNAPSHOT_ID = "Snapshot id";
+
+  /**
+   * Constructs a builder with the given configuration.
+   * 
+   * @param configuration The configuration
+   */
+  public ARTBuilder(ARTConfiguration configuration) {
+    super(configuration);
+  }
+
+  @Override
+  public ARTIndexedSet<E> create() {
+    ARTConfiguration configuration = (ARTConfiguration) mIndexConfiguration;
+    AdaptiveRadixTree<E> tree =
+        configuration.getSnapshotContainer() == null
+            ? new AdaptiveRadixTree<E>()
+            : AdaptiveRadixTree.load(configuration.getSnapshotContainer(),
+                configuration.getSnapshotId(), configuration.getDataConverter());
+    return new ARTIndexedSet<E>(tree, this);
+  }
+
+  @Override
+  public PropertyList serialize(ARTConfiguration config) throws Exception {
+    PropertyList info = new PropertyList();
+    info.add(new Property(PROPERTY_INDEX_TYPE, PROPERTY_INDEX_TYPE_ART));
+    info.add(new Property(PROPERTY_TABLE_NAME, config.getManagedType()
+        .getTableName()));
+    info.add(new Property(PROPERTY_CONTENT_TYPE, config.getManagedType()
+        .getContentType()));
+    info.add(new Property(PROPERTY_BLOCK_SIZE, config.getBlockSize()));
+    info.add(new Property(PROPERTY_SNAPSHOT_ID, String.valueOf(config
+        .getSnapshotId())));
+    return info;
+  }
+
+  /**
+   * Writes the meta data of the configuration next to the block file of the snapshots.
+   * 
+   * @throws IOException If the file can not be written
+   */
+  public void storeMetaData() throws IOException {
+    ARTConfiguration configuration = (ARTConfiguration) mIndexConfiguration;
+    File metaDataFile =
+        new File(configuration.getFileSystemFilePath()
+            + META_DATA_FILE_EXTENSION);
+    try (FileOutputStream output = new FileOutputStream(metaDataFile)) {
+      new JSONPrinter(serialize(configuration)).print(output);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  public String toString() {
+    return mIndexConfiguration.toString();
+  }
+}
@@ -0,0 +1,331 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.builder.ART;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.rmi.NoSuchObjectException;
+import java.util.Arrays;
+import java.util.List;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.io.BlockFileContainer;
+import xxl.core.indexStructures.AdaptiveRadixTree;
+import xxl.core.indexStructures.ARTIndexedSet;
+import xxl.core.indexStructures.builder.IndexConfiguration;
+import xxl.core.indexStructures.builder.BPlusTree.PrimitiveType;
+import xxl.core.io.converters.Converter;
+import xxl.core.io.converters.MeasuredPrimitiveConverter;
+import xxl.core.io.propertyList.PropertyList;
+import xxl.core.io.propertyList.json.JSONReader;
+import xxl.core.relational.JavaType;
+import xxl.core.util.ConvertUtils;
+
+/**
+ * This implementation of {@link IndexConfiguration} sets up an {@link ARTIndexedSet}, i.e., a set
+ * of primitive values (numbers, booleans, dates, times and timestamps) which is indexed by an
+ * in-memory {@link AdaptiveRadixTree}. The values are mapped to binary-comparable keys of a fixed
+ * length, so lookups need O(key length) steps and readers never lock. <br/>
+ * <br/>
+ * The set lives in main memory. Calling {@link ARTIndexedSet#save()} writes a snapshot of its
+ * content to the container of this configuration (a block file if {@link #storeAt(String)} was
+ * called) from which it can be reloaded with {@link Loader}. A snapshot can also be written to
+ * any other container with {@link ARTIndexedSet#saveSnapshot(Container)} and restored with
+ * {@link #restoreFrom(Container, Object)}. <br/>
+ * <br/>
+ * <b>Example</b> <code><pre>
+ * ARTIndexedSet&lt;Long&gt; set = Builders.createART.Long("MyTable").getBuilder().create();
+ * </pre></code>
+ * 
+ * @see ARTBuilder The builder of the set
+ * @see IndexConfiguration The base class for all index configurations
+ */
+public class ARTConfiguration extends IndexConfiguration {
+
+  /*
+   * The primitive type of the values of the set
+   */
+  protected PrimitiveType mManagedType;
+
+  /*
+   * The container and the id of a snapshot to restore or null if an empty set is created
+   */
+  protected Container mSnapshotContainer;
+  protected Object mSnapshotId;
+
+  /**
+   * Constructs a new configuration for a set of the given primitive type.
+   * 
+   * @param primitiveType The type of the values and the table name
+   * @throws IllegalArgumentException If there is no binary-comparable key for the type
+   */
+  public ARTConfiguration(PrimitiveType primitiveType) {
+    if (!isSupported(primitiveType.getContentClassSubType()))
+      throw new IllegalArgumentException("The type \""
+          + primitiveType.getContentClassSubType()
+          + "\" is not supported by adaptive radix trees.");
+    mManagedType = primitiveType;
+  }
+
+  /**
+   * Returns whether the values of the given type can be indexed by an adaptive radix tree.
+   * 
+   * @param type The type
+   * @return <b>true</b> if there is a binary-comparable key for the type
+   */
+  public static boolean isSupported(JavaType type) {
+    switch (type) {
+      case BOOLEAN:
+      case SHORT:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public ARTBuilder getBuilder() {
+    return new ARTBuilder(this);
+  }
+
+  /**
+   * Returns the converter of the values which is used for writing snapshots.
+   * 
+   * @return The converter
+   */
+  public Converter getDataConverter() {
+    return new MeasuredPrimitiveConverter(mManagedType.getContentClassSubType());
+  }
+
+  /**
+   * Returns the binary-comparable key of a value, i.e., the unsigned lexicographical order of the
+   * keys is the natural order of the values. Numbers are written big-endian with a flipped sign
+   * bit, floating point numbers additionally flip the other bits of negative numbers, dates, times
+   * and timestamps are mapped to their milliseconds.
+   * 
+   * @param value A value of the type of the set
+   * @return The key of the value
+   * @throws ClassCastException If the value does not match the type
+   */
+  public byte[] getKey(Object value) throws ClassCastException {
+    switch (mManagedType.getContentClassSubType()) {
+      case BOOLEAN:
+        return new byte[] {(byte) (((Boolean) value).booleanValue() ? 1 : 0)};
+      case SHORT:
+        return bytes(((Number) value).shortValue() ^ Short.MIN_VALUE, 2);
+      case INT:
+        return bytes(((Number) value).intValue() ^ Integer.MIN_VALUE, 4);
+      case LONG:
+        return bytes(((Number) value).longValue() ^ Long.MIN_VALUE, 8);
+      case FLOAT: {
+        int bits = Float.floatToIntBits(((Number) value).floatValue());
+        return bytes(bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE, 4);
+      }
+      case DOUBLE: {
+        long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+        return bytes(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE, 8);
+      }
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+        return bytes(((value instanceof java.util.Date) ? ((java.util.Date) value)
+            .getTime() : ((Number) value).longValue()) ^ Long.MIN_VALUE, 8);
+      default:
+        throw new UnsupportedOperationException("Unsupported type \""
+            + mManagedType.getContentClassSubType() + "\"");
+    }
+  }
+
+  /*
+   * Writes the lowest bytes of the given value big-endian
+   */
+  private static byte[] bytes(long value, int length) {
+    byte[] key = new byte[length];
+    for (int i = length - 1; i >= 0; i--, value >>>= 8)
+      key[i] = (byte) value;
+    return key;
+  }
+
+  /**
+   * Returns the primitive type of the values of the set.
+   * 
+   * @return The type information
+   */
+  public PrimitiveType getManagedType() {
+    return mManagedType;
+  }
+
+  /**
+   * Returns the container of the snapshot to restore or <b>null</b> if an empty set is created.
+   * After {@link ARTIndexedSet#save()} this is the container of the set.
+   * 
+   * @return The container of the snapshot
+   */
+  public Container getSnapshotContainer() {
+    return mSnapshotContainer;
+  }
+
+  /**
+   * Returns the id of the first block of the snapshot to restore. After {@link ARTIndexedSet#save()}
+   * this is the snapshot written by the last call.
+   * 
+   * @return The id of the snapshot or <b>null</b>
+   */
+  public Object getSnapshotId() {
+    return mSnapshotId;
+  }
+
+  /**
+   * Restores the set from a snapshot written by {@link ARTIndexedSet#saveSnapshot(Container)}.
+   * 
+   * @param container The container storing the snapshot
+   * @param snapshotId The id returned by {@link ARTIndexedSet#saveSnapshot(Container)}
+   * @return The current configuration
+   */
+  public ARTConfiguration restoreFrom(Container container, Object snapshotId) {
+    mSnapshotContainer = container;
+    mSnapshotId = snapshotId;
+    return this;
+  }
+
+  /**
+   * Sets the block size of the snapshots.
+   * 
+   * @param blockSize The block size in Byte
+   * @return The current configuration
+   */
+  public ARTConfiguration setBlockSize(int blockSize) {
+    mBlockSize = blockSize;
+    return this;
+  }
+
+  /**
+   * Stores the snapshots of the set in a block file in the given directory. The file name is
+   * taken from the table name.
+   * 
+   * @param storeDir A valid and accessible directory
+   * @return The current configuration
+   */
+  public ARTConfiguration storeAt(String storeDir) {
+    if (!new File(storeDir).isDirectory())
+      throw new IllegalArgumentException(
+          "Given path to store ART data to hard drive is not a directory (\""
+              + storeDir + "\")");
+    if (storeDir.charAt(storeDir.length() - 1) != '/') storeDir += '/';
+    mLocation = Location.LOCATION_FILESYSTEM;
+    mFileSystemFilePath = storeDir + mManagedType.getTableName();
+    mConverterContainer =
+        new BlockFileContainer(mFileSystemFilePath, mBlockSize);
+    updateBufferContainer();
+    return this;
+  }
+
+  public String toString() {
+    return "ARTConfiguration: \n\tBlockSize: " + mBlockSize + "\n\tFilePath: "
+        + mFileSystemFilePath + "\n\tLocation: " + mLocation
+        + "\n\tContent Type: " + mManagedType.getContentType()
+        + "\n\tTable Name: " + mManagedType.getTableName();
+  }
+
+  /**
+   * This class is used to reload an {@link ARTIndexedSet} saved to the file system in a previous
+   * session.
+   * 
+   * <b>Example</b> <code><pre>
+   * ARTIndexedSet&lt;Long&gt; set = new ARTConfiguration.Loader("myStorage/MyTableARTMeta.json").getBuilder().create();
+   * </pre></code>
+   */
+  public static class Loader {
+
+    /*
+     * The restored builder
+     */
+    ARTBuilder mBuilder;
+
+    /**
+     * Reads the meta data file written by {@link ARTIndexedSet#save()}.
+     * 
+     * @param fullMetaFilenamePath The path of the meta data file
+     * @throws FileNotFoundException If there is no such file
+     * @throws NoSuchObjectException If the file does not describe an adaptive radix tree
+     */
+    public Loader(String fullMetaFilenamePath) throws FileNotFoundException,
+        NoSuchObjectException {
+      File file = new File(fullMetaFilenamePath);
+      if (!file.isFile())
+        throw new FileNotFoundException("File \"" + file.getAbsolutePath()
+            + "\" not found!");
+      PropertyList meta = new JSONReader().read(new FileInputStream(file));
+      List<String> properties =
+          Arrays.asList(ARTBuilder.PROPERTY_INDEX_TYPE,
+              ARTBuilder.PROPERTY_TABLE_NAME, ARTBuilder.PROPERTY_CONTENT_TYPE,
+              ARTBuilder.PROPERTY_BLOCK_SIZE, ARTBuilder.PROPERTY_SNAPSHOT_ID);
+      if (!meta.containsAllProperties(properties)
+          || !ARTBuilder.PROPERTY_INDEX_TYPE_ART.equals(meta
+              .getProperty(ARTBuilder.PROPERTY_INDEX_TYPE)))
+        throw new NoSuchObjectException("Given file does not describe an ART ("
+            + file.getAbsolutePath() + ")");
+
+      JavaType type =
+          ConvertUtils.toJavaType(((String) meta
+              .getProperty(ARTBuilder.PROPERTY_CONTENT_TYPE))
+              .substring(PrimitiveType.TYPE_PREFIX.length()));
+      String tableName = (String) meta.getProperty(ARTBuilder.PROPERTY_TABLE_NAME);
+      ARTConfiguration configuration =
+          new ARTConfiguration(new PrimitiveType(type, tableName));
+      configuration.mBlockSize =
+          (int) meta.getProperty(ARTBuilder.PROPERTY_BLOCK_SIZE);
+      configuration.mLocation = Location.LOCATION_FILESYSTEM;
+      configuration.mFileSystemFilePath =
+          file.getAbsolutePath().substring(0,
+              file.getAbsolutePath().length()
+                  - ARTBuilder.META_DATA_FILE_EXTENSION.length());
+      configuration.mConverterContainer =
+          new BlockFileContainer(configuration.mFileSystemFilePath);
+      configuration.updateBufferContainer();
+      configuration.restoreFrom(configuration.getBufferedContainer(), Long
+          .valueOf((String) meta.getProperty(ARTBuilder.PROPERTY_SNAPSHOT_ID)));
+      mBuilder = configuration.getBuilder();
+    }
+
+    /**
+     * Returns the builder which restores the set.
+     * 
+     * @return The builder
+     */
+    public ARTBuilder getBuilder() {
+      return mBuilder;
+    }
+  }
+}
@@ -48,6 +48,7 @@ import xxl.core.io.propertyList.json.JSONReader;
 import xxl.core.relational.JavaType;
 import xxl.core.relational.metaData.TupleMetaData;
 import xxl.core.util.ConvertUtils;
+import xxl.core.util.CountingBloomFilter;
 import xxl.core.util.FileUtils;
 
 /**
@@ -333,6 +334,27 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
       return this;
     }
 
+    /**
+     * Attaches a counting Bloom filter over the keys to the BPlus tree. Lookups for keys which are
+     * not contained in the set (e.g. {@link BPlusIndexedSet#contains(Object)}) are then answered
+     * without reading a node in most cases. The filter is written beside the tree files when the
+     * set is saved and is read again when the set is reloaded.
+     * 
+     * @param expectedKeys The expected number of keys
+     * @param falsePositiveRate The probability that a lookup for a missing key has to read nodes
+     * 
+     * @return The current <code>BPlusTreeConfiguration</code> instance including the effect of this
+     *         method call.
+     * 
+     * @see BPlusTree#enableFilter(int, double)
+     */
+    public Creator setFilter(int expectedKeys, double falsePositiveRate) {
+      CountingBloomFilter.optimalSize(expectedKeys, falsePositiveRate);
+      mFilterExpectedKeys = expectedKeys;
+      mFilterFalsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
     /**
      * If you want to store the BPlus tree on a persistent storage instead of the default main
      * memory usage you have to set a directory path in which the BPlus tree stores it's files.
@@ -585,6 +607,13 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
    */
   Container mFileContainer = null;
 
+  /*
+   * The expected number of keys and the false positive rate of the key filter (no filter is used
+   * if the number of keys is zero)
+   */
+  int mFilterExpectedKeys = 0;
+  double mFilterFalsePositiveRate;
+
   /*
    * The data type descriptor which contains type specific functions (e.g. StringConverter for a
    * String type)
@@ -608,6 +637,20 @@ public abstract class BPlusConfiguration extends IndexConfiguration {
     return mManagedType.getDataConverter();
   }
 
+  /*
+   * Returns the expected number of keys of the key filter or zero if no filter is used
+   */
+  int getFilterExpectedKeys() {
+    return mFilterExpectedKeys;
+  }
+
+  /*
+   * Returns the false positive rate of the key filter
+   */
+  double getFilterFalsePositiveRate() {
+    return mFilterFalsePositiveRate;
+  }
+
   /**
    * Returns the file container if the BPlus tree is stored on a storage medium or throws an
    * <code>IllegalArgumentException</code> if the location is the main memory. <br/>
@@ -100,6 +100,7 @@ import xxl.core.relational.metaData.TupleMetaData;
 import xxl.core.relational.tuples.ColumnComparableArrayTuple;
 import xxl.core.util.Pair;
 import xxl.core.util.ConvertUtils;
+import xxl.core.util.CountingBloomFilter;
 import xxl.core.util.FileUtils;
 
 /**
@@ -606,6 +607,28 @@ public class BPlusTreeBuilder<E>
           .getKeyFunctionFactory().getKeyRangeFunction(1));
     }
 
+    /*
+     * Reads the key filter written beside the tree files or attaches a new one
+     */
+    File filterFile =
+        mReload ? new File(configuration.getFileSystemFilePath()
+            + File.separatorChar + configuration.getManagedType().getTableName()
+            + BPlusIndexedSet.FILTER_FILE_EXTENSION) : null;
+    if (filterFile != null && filterFile.isFile()) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(
+              filterFile)))) {
+        CountingBloomFilter filter = new CountingBloomFilter();
+        filter.read(in);
+        retval.setFilter(filter);
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to read the key filter \""
+            + filterFile + "\": " + e.getMessage());
+      }
+    } else if (configuration.getFilterExpectedKeys() > 0)
+      retval.enableFilter(configuration.getFilterExpectedKeys(),
+          configuration.getFilterFalsePositiveRate());
+
     return new BPlusIndexedSet(retval, this);
   }
 
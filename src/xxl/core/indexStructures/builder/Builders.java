@@ -25,6 +25,8 @@ import java.io.FileNotFoundException;
 import java.rmi.NoSuchObjectException;
 import java.sql.SQLException;
 
+import xxl.core.indexStructures.builder.ART.ARTBuilder;
+import xxl.core.indexStructures.builder.ART.ARTConfiguration;
 import xxl.core.indexStructures.builder.BPlusTree.BPlusConfiguration;
 import xxl.core.indexStructures.builder.BPlusTree.PrimitiveType;
 import xxl.core.indexStructures.builder.BPlusTree.TupleType;
@@ -204,8 +206,139 @@ public class Builders {
 
   }
 
+  /**
+   * This class simplifies the creation of in-memory indexes based on an adaptive radix tree for
+   * various primitive data types. The creation process is encapsulated.
+   * 
+   */
+  public static class ARTCreatorFacade {
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive boolean types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Boolean(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.BOOLEAN, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive date types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Date(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.DATE, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive double types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Double(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.DOUBLE, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive float types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Float(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.FLOAT, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive integer types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Integer(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.INT, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive long types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Long(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.LONG, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive short types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Short(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.SHORT, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive time types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Time(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.TIME, tableName));
+    }
+
+    /**
+     * Creates a new adaptive radix tree index which handles primitive timestamp types.
+     * 
+     * @param tableName The table name for this index
+     * @return A ready-to-use ART configuration
+     */
+    public static ARTConfiguration Timestamp(String tableName) {
+      return new ARTConfiguration(new PrimitiveType(JavaType.TIMESTAMP, tableName));
+    }
+
+  }
+
+  /**
+   * This is a helper class to provide a static <code>from</code> method which is for
+   * ARTConfiguration loading. Mostly it's for syntactic sugar within the <i>Builders</i> class.
+   * 
+   */
+  public static class ARTLoaderFacade {
+
+    /**
+     * Loads an adaptive radix tree index from the snapshot stored at <code>path</code>. The string
+     * <code>tableName</code> indicates the index which should be loaded and is equal to the table
+     * name which was set when creating the index in the last session. The information needed is
+     * stored in a file which ends with "ARTMeta.json".
+     * 
+     * @param path File system path to a directory which contains the snapshot files
+     * @param tableName The table name
+     * @return Setups a ARTConfiguration.Loader instance which can reconstruct the index
+     * 
+     * @throws NoSuchObjectException Is thrown if the file is not well formed or if it is invalid
+     * @throws FileNotFoundException If there is no file for <code>tableName</code>
+     */
+    public static ARTConfiguration.Loader from(String path, String tableName)
+        throws NoSuchObjectException, FileNotFoundException {
+      return new ARTConfiguration.Loader(path + File.separatorChar
+          + tableName + ARTBuilder.META_DATA_FILE_EXTENSION);
+    }
+
+  }
+
   // TODO: Comment
   public static BPlusCreatorFacade createBPlusTree;
 
   public static BPlusLoaderFacade loadBPlusTree;
+
+  public static ARTCreatorFacade createART;
+
+  public static ARTLoaderFacade loadART;
 }
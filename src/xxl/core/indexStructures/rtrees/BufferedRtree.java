@@ -1,5 +1,8 @@
 package xxl.core.indexStructures.rtrees;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -7,12 +10,14 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.Stack;
 
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.containers.Container;
 import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursor;
 import xxl.core.cursors.filters.Filter;
 import xxl.core.cursors.sources.EmptyCursor;
 import xxl.core.cursors.sources.SingleObjectCursor;
@@ -38,6 +43,10 @@ import xxl.core.util.Triple;
  * 
  * Bulk-loading is conducted by calling the {@link #bulkLoad(Iterator, NullaryFunction, int)} function. 
  * 
+ * After loading, the buffers can be kept for continuous updates by calling {@link #enableBufferedUpdates(NullaryFunction, int)}. 
+ * Then {@link #insertBuffered(Object)} and {@link #removeBuffered(Object)} are parked as {@link Update}s in the node buffers 
+ * and processed in batches, range queries empty only the buffers along their paths. 
+ * 
  * For bulk-loading we provide a factory function for creating a buffers (queues). These are attached to the buffer nodes. 
  * In this implementation the linkage of buffer nodes to their buffers (queues) is managed by a map. This map is memory resident. 
  * 
@@ -151,6 +160,128 @@ public class BufferedRtree<E> extends RTree{
 		}
 	}
 	
+	/**
+	 * Typedef for an entry of a node buffer: the object and a flag which marks removals. 
+	 *
+	 * @param <E> type of the objects
+	 */
+	@SuppressWarnings("serial")
+	public static class Update<E> extends Pair<E, Boolean>{
+		
+		/**
+		 * 
+		 * @param object inserted or removed object
+		 * @param removal <tt>true</tt> for a removal
+		 */
+		public Update(E object, boolean removal){
+			super(object, Boolean.valueOf(removal));
+		}
+		
+		/**
+		 * 
+		 * @return inserted or removed object
+		 */
+		public E getObject(){
+			return getElement1(); 
+		}
+		
+		/**
+		 * 
+		 * @return <tt>true</tt> for a removal
+		 */
+		public boolean isRemoval(){
+			return getElement2().booleanValue(); 
+		}
+	}
+	
+	/**
+	 * Returns a converter for the entries of the node buffers in the buffered update mode, e.g., for 
+	 * {@link xxl.core.collections.queues.io.BlockBasedQueue}s. An entry is serialized as a flag 
+	 * followed by the object, so it needs one byte more than the object. 
+	 * 
+	 * @param dataConverter converter for data objects
+	 * @return converter for updates
+	 */
+	public static <E> Converter<Update<E>> getUpdateConverter(final Converter<E> dataConverter){
+		return new Converter<Update<E>>() {
+			
+			@Override
+			public Update<E> read(DataInput dataInput, Update<E> object) throws IOException {
+				boolean removal = dataInput.readBoolean(); 
+				return new Update<E>(dataConverter.read(dataInput), removal);
+			}
+			
+			@Override
+			public void write(DataOutput dataOutput, Update<E> object) throws IOException {
+				dataOutput.writeBoolean(object.isRemoval());
+				dataConverter.write(dataOutput, object.getObject());
+			}
+		};
+	}
+	
+	/**
+	 * Adapts a queue of data objects to a buffer holding only inserts. It is used for the buffers of the 
+	 * bulk-loading. 
+	 *
+	 * @param <E>
+	 */
+	protected static class InsertQueue<E> implements Queue<Update<E>>{
+		/**
+		 * 
+		 */
+		protected Queue<E> queue;
+		
+		/**
+		 * 
+		 * @param queue queue of data objects
+		 */
+		public InsertQueue(Queue<E> queue) {
+			this.queue = queue; 
+		}
+		
+		@Override
+		public void open() {
+			queue.open();
+		}
+		
+		@Override
+		public void close() {
+			queue.close();
+		}
+		
+		@Override
+		public void enqueue(Update<E> object) throws IllegalStateException {
+			if(object.isRemoval())
+				throw new IllegalStateException("bulk-loading buffers only hold inserts");
+			queue.enqueue(object.getObject());
+		}
+		
+		@Override
+		public Update<E> peek() throws IllegalStateException, NoSuchElementException {
+			return new Update<E>(queue.peek(), false);
+		}
+		
+		@Override
+		public Update<E> dequeue() throws IllegalStateException, NoSuchElementException {
+			return new Update<E>(queue.dequeue(), false);
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return queue.isEmpty();
+		}
+		
+		@Override
+		public int size() {
+			return queue.size();
+		}
+		
+		@Override
+		public void clear() {
+			queue.clear();
+		}
+	}
+	
 	/**
 	 * marks leaf level 
 	 */
@@ -169,17 +300,17 @@ public class BufferedRtree<E> extends RTree{
 	/**
 	 * stores index entry buffer information
 	 */
-	protected Map<Long,Queue<E>> bufferMap; 
+	protected Map<Long,Queue<Update<E>>> bufferMap; 
 	
 	/**
 	 * factory function for queue creation
 	 */
-	protected NullaryFunction<Queue<E>> factoryBufferFunction;  
+	protected NullaryFunction<Queue<Update<E>>> factoryBufferFunction;  
 	
 	/**
 	 * root queue  
 	 */
-	protected Queue<E> rootQueue;
+	protected Queue<Update<E>> rootQueue;
 	
 	/**
 	 * M/4 entries
@@ -206,6 +337,11 @@ public class BufferedRtree<E> extends RTree{
 	 */
 	protected int B_INDEX; 
 	
+	/**
+	 * <tt>true</tt> if the buffered update mode is enabled 
+	 */
+	protected boolean bufferedUpdateMode; 
+	
 	/**
 	 * extracts id from an index entry
 	 */
@@ -240,9 +376,9 @@ public class BufferedRtree<E> extends RTree{
 	 * @param factoryBufferFunction
 	 * @return
 	 */
-	protected BufferedRtree initForLoading(NullaryFunction<Queue<E>> factoryBufferFunction, int memory){
+	protected BufferedRtree initForLoading(NullaryFunction<Queue<Update<E>>> factoryBufferFunction, int memory){
 		this.factoryBufferFunction = factoryBufferFunction;
-		bufferMap = new HashMap<Long, Queue<E>>();
+		bufferMap = new HashMap<Long, Queue<Update<E>>>();
 		this.reducedMemory = memory/4;
 		double logLevel = Math.floor(Math.log(reducedMemory/B_INDEX) / Math.log(B_INDEX)); 
 		firstBufferLevel = (int) Math.max(logLevel, 1.0); 
@@ -258,49 +394,229 @@ public class BufferedRtree<E> extends RTree{
 	 * @param factoryBufferFunction factory function that creates new queues. These queues are attached to the buffer nodes.
 	 * @param memory
 	 */
-	public void bulkLoad(Iterator<E> dataToInsert, NullaryFunction<Queue<E>> factoryBufferFunction, int memory){
-		initForLoading(factoryBufferFunction, memory);
+	public void bulkLoad(Iterator<E> dataToInsert, final NullaryFunction<Queue<E>> factoryBufferFunction, int memory){
+		initForLoading(new NullaryFunction<Queue<Update<E>>>() {
+			
+			@Override
+			public Queue<Update<E>> invoke() {
+				return new InsertQueue<E>(factoryBufferFunction.invoke());
+			}
+		}, memory);
 		// create first node
-		for(E entry = null; dataToInsert.hasNext();){
-			entry = dataToInsert.next();
-			DoublePointRectangle rectangle = (DoublePointRectangle) this.descriptor(entry); 
-			rootQueue.enqueue(entry);
-			if(rootQueue.size() >= reducedMemory){
-				if(rootEntry.level() > firstBufferLevel ){
-					E entryFromQueue = null; 
-					Stack<IndexEntry> workStack = new WorkStack<IndexEntry, Long>(getId);
-					for(int i = 0; i < reducedMemory; i++){
-						entryFromQueue = rootQueue.dequeue();
-						((IndexEntry)rootEntry).descriptor().union(rectangle); 
-						Stack<PathEntry> path =  pushDownEntry(entryFromQueue, (IndexEntry)rootEntry, workStack); 
-						updatePath(path); 
-					}
-					processWorkStack(workStack, false); // process
-				}else{
-					clearLowestBuffer((ORTree.IndexEntry)rootEntry, rootQueue);
+		while(dataToInsert.hasNext())
+			appendToRootBuffer(new Update<E>(dataToInsert.next(), false));
+		emptyRootBuffer();
+		clearAllBuffers((IndexEntry)rootEntry); // clear all 
+	}
+	
+	/**
+	 * Appends an insert or a removal to the root buffer. If the root buffer is full, a portion of 
+	 * it is pushed down to the buffers of the first buffer level (or directly to the leaves).  
+	 * The first insert creates the root node, a removal from an empty tree is dropped. 
+	 * 
+	 * @param entry update to append
+	 */
+	protected void appendToRootBuffer(Update<E> entry){
+		if(entry.isRemoval() && rootEntry == null)
+			return; 
+		DoublePointRectangle rectangle = (DoublePointRectangle) this.descriptor(entry.getObject()); 
+		rootQueue.enqueue(entry);
+		if(rootQueue.size() >= reducedMemory){
+			if(rootEntry.level() > firstBufferLevel ){
+				Update<E> entryFromQueue = null; 
+				Stack<IndexEntry> workStack = new WorkStack<IndexEntry, Long>(getId);
+				for(int i = 0; i < reducedMemory; i++){
+					entryFromQueue = rootQueue.dequeue();
+					pushDown(entryFromQueue, (IndexEntry)rootEntry, workStack); 
 				}
+				processWorkStack(workStack, false); // process
+			}else{
+				clearLowestBuffer((ORTree.IndexEntry)rootEntry, rootQueue);
 			}
-			if(rootDescriptor == null && rootEntry == null){
-				rootDescriptor = new DoublePointRectangle(rectangle); 
-				rootEntry = (IndexEntry) createIndexEntry(LEAF_LEVEL+1); 
-				Node firstNode = (Node) createNode(LEAF_LEVEL); 
-				Object id = getContainer().reserve(new Constant<Node>(firstNode));
-				((ORTree.IndexEntry)(rootEntry).initialize( getContainer(), id)).initialize(new DoublePointRectangle(rectangle)); 
-				rootEntry.update(firstNode); 
-			}
-			// update root descriptor
-			rootDescriptor.union(rectangle); 		
 		}
+		if(rootDescriptor == null && rootEntry == null){
+			rootDescriptor = new DoublePointRectangle(rectangle); 
+			rootEntry = (IndexEntry) createIndexEntry(LEAF_LEVEL+1); 
+			Node firstNode = (Node) createNode(LEAF_LEVEL); 
+			Object id = getContainer().reserve(new Constant<Node>(firstNode));
+			((ORTree.IndexEntry)(rootEntry).initialize( getContainer(), id)).initialize(new DoublePointRectangle(rectangle)); 
+			rootEntry.update(firstNode); 
+		}
+		// update root descriptor
+		if(!entry.isRemoval()){
+			rootDescriptor.union(rectangle); 
+			((IndexEntry)rootEntry).descriptor().union(rectangle); 
+		}
+	}
+	
+	/**
+	 * Pushes all objects of the root buffer down to the buffers of the first buffer level 
+	 * (or directly to the leaves). 
+	 */
+	protected void emptyRootBuffer(){
 		Stack<IndexEntry> workStack = new WorkStack<IndexEntry, Long>(getId);
-		for(E entry = null; !rootQueue.isEmpty();){
+		for(Update<E> entry = null; !rootQueue.isEmpty();){
 			entry = rootQueue.dequeue();
-			Stack<PathEntry> path =  pushDownEntry(entry, (IndexEntry)rootEntry, workStack); 
-			updatePath(path); 
+			pushDown(entry, (IndexEntry)rootEntry, workStack); 
 		}
 		processWorkStack(workStack, false); // process
-		clearAllBuffers((IndexEntry)rootEntry); // clear all 
 	}
 	
+	/**
+	 * Pushes an update from a buffer node (or the root) down to the buffers of the next buffer level 
+	 * (or directly to the leaves) and writes the modified nodes.  
+	 * 
+	 * @param record update to push down
+	 * @param currentRoot buffer node 
+	 * @param workStack collects the buffer nodes whose buffers overflow
+	 */
+	protected void pushDown(Update<E> record, IndexEntry currentRoot, Stack<IndexEntry> workStack){
+		if(record.isRemoval())
+			pushDownRemoval(record, currentRoot, workStack);
+		else
+			updatePath(pushDownEntry(record, currentRoot, workStack)); 
+	}
+	
+	/**
+	 * Switches the tree to the buffered update mode. In this mode  
+	 * {@link #insertBuffered(Object)} and {@link #removeBuffered(Object)} do not descend 
+	 * to the leaves. Both are parked as {@link Update}s in the root buffer and in the buffers of the buffer nodes 
+	 * and are pushed down lazily in batches of <tt>memory/4</tt> entries 
+	 * when a buffer overflows (the buffer tree technique of Arge et al.). The buffers are kept 
+	 * between the operations. 
+	 * 
+	 * An insert is routed to one child like in the bulk-loading. A removal is routed to all children 
+	 * whose descriptors contain the descriptor of the object, since the object may be stored in any of them.  
+	 * Below the lowest buffer level, it removes an equal object from the first leaf containing one;  
+	 * a removal of an object which is not stored is dropped. The buffers are processed in FIFO order, 
+	 * so an update only affects the updates which were issued before it. If equal objects are stored 
+	 * in the subtrees of several buffer nodes, one of them is removed per subtree reached.  
+	 * Leaves are not merged after removals, only empty nodes below the lowest buffer level are released.  
+	 *  
+	 * Range queries {@link #query(Descriptor, int)} empty only the buffers of the nodes overlapping  
+	 * the query. All other queries empty all buffers first. 
+	 * 
+	 * The mode can be enabled on an empty tree, on a tree loaded by 
+	 * {@link #bulkLoad(Iterator, NullaryFunction, int)} or on a tree reopened from its container. 
+	 * 
+	 * @param factoryBufferFunction factory function that creates new queues, e.g.,   
+	 * {@link xxl.core.collections.queues.io.BlockBasedQueue}s with the converter of {@link #getUpdateConverter(Converter)}.  
+	 * @param memory number of entries which can be kept in memory
+	 */
+	public void enableBufferedUpdates(NullaryFunction<Queue<Update<E>>> factoryBufferFunction, int memory){
+		initForLoading(factoryBufferFunction, memory);
+		bufferedUpdateMode = true; 
+	}
+	
+	/**
+	 * Empties all buffers and leaves the buffered update mode.  
+	 */
+	public void disableBufferedUpdates(){
+		flushBuffers();
+		bufferedUpdateMode = false; 
+	}
+	
+	/**
+	 * Returns <tt>true</tt> if the buffered update mode is enabled.
+	 * 
+	 * @return <tt>true</tt> if the buffered update mode is enabled
+	 */
+	public boolean isBufferedUpdateMode(){
+		return bufferedUpdateMode; 
+	}
+	
+	/**
+	 * Inserts an object in the buffered update mode.  
+	 * 
+	 * @param entry object to insert
+	 */
+	public void insertBuffered(E entry){
+		checkBufferedUpdateMode();
+		appendToRootBuffer(new Update<E>(entry, false));
+	}
+	
+	/**
+	 * Removes an object in the buffered update mode. The removal becomes visible to 
+	 * range queries immediately, it is pushed down with the inserts and applied when it reaches the leaves.
+	 * 
+	 * @param entry object to remove
+	 */
+	public void removeBuffered(E entry){
+		checkBufferedUpdateMode();
+		appendToRootBuffer(new Update<E>(entry, true));
+	}
+	
+	/**
+	 * Empties all buffers.  
+	 */
+	public void flushBuffers(){
+		checkBufferedUpdateMode();
+		if(rootEntry != null){
+			emptyRootBuffer(); 
+			clearAllBuffers((IndexEntry)rootEntry);
+		}
+	}
+	
+	/**
+	 * Empties the buffers of all buffer nodes overlapping the given descriptor. 
+	 * Since the descriptor of a buffer node covers the objects in its buffer, 
+	 * the other buffers cannot contain objects overlapping the descriptor. 
+	 * 
+	 * @param queryDescriptor descriptor of the query
+	 */
+	protected void flushBuffers(Descriptor queryDescriptor){
+		if(rootEntry == null)
+			return; 
+		emptyRootBuffer(); 
+		java.util.Queue<IndexEntry> levelsOfBUfferEntries = computeDownLevelQueues((IndexEntry)rootEntry, queryDescriptor);
+		for(IndexEntry downEntry = null; !levelsOfBUfferEntries.isEmpty(); ){
+			downEntry = levelsOfBUfferEntries.poll(); 
+			Queue<Update<E>> currentRootBuffer = getBuffer(downEntry);
+			if(currentRootBuffer != null && !currentRootBuffer.isEmpty()){
+				for(IndexEntry topEntry: clearBuffer(downEntry, currentRootBuffer, true)){
+					currentRootBuffer = getBuffer(topEntry); 
+					if(currentRootBuffer != null && !currentRootBuffer.isEmpty() && topEntry.descriptor().overlaps(queryDescriptor)){
+						levelsOfBUfferEntries.offer(topEntry); 
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 */
+	private void checkBufferedUpdateMode(){
+		if(!isBufferedUpdateMode())
+			throw new IllegalStateException("buffered update mode is not enabled");
+	}
+	
+	/**
+	 * In the buffered update mode the buffers of the nodes overlapping the query are emptied 
+	 * before the query is evaluated. The other buffers cannot hold updates of objects overlapping 
+	 * the query, since inserts enlarge and removals are only routed to the nodes covering their objects. 
+	 * 
+	 * @see xxl.core.indexStructures.ORTree#query(xxl.core.indexStructures.Descriptor, int)
+	 */
+	@Override
+	public Cursor query(Descriptor queryDescriptor, int targetLevel) {
+		if(isBufferedUpdateMode())
+			flushBuffers(queryDescriptor);
+		return super.query(queryDescriptor, targetLevel);
+	}
+	
+	/**
+	 * In the buffered update mode all buffers are emptied and all pending removals are applied 
+	 * before the query is evaluated.  
+	 * 
+	 * @see xxl.core.indexStructures.Tree#query(xxl.core.collections.queues.Queue, int)
+	 */
+	@Override
+	public Iterator query(xxl.core.collections.queues.Queue queue, int level) {
+		if(isBufferedUpdateMode())
+			flushBuffers();
+		return super.query(queue, level);
+	}
 	
 	/*
 	 * (non-Javadoc)
@@ -321,7 +637,7 @@ public class BufferedRtree<E> extends RTree{
 		java.util.Queue<IndexEntry> levelsOfBUfferEntries = computeAllDownLevelQueues((IndexEntry)rootEntry);		
 		for(IndexEntry downEntry = null; !levelsOfBUfferEntries.isEmpty(); ){
 			downEntry = levelsOfBUfferEntries.poll(); 
-			Queue<E> currentRootBuffer = getBuffer(downEntry);
+			Queue<Update<E>> currentRootBuffer = getBuffer(downEntry);
 			if(!currentRootBuffer.isEmpty()){
 				List<IndexEntry> indexBufferList =  clearBuffer(downEntry, currentRootBuffer, true);
 				for(IndexEntry topEntry: indexBufferList){
@@ -341,6 +657,17 @@ public class BufferedRtree<E> extends RTree{
 	 * @return
 	 */
 	private java.util.Queue<IndexEntry> computeAllDownLevelQueues(IndexEntry rEntry){
+		return computeDownLevelQueues(rEntry, null); 
+	}
+	
+	/**
+	 * computes the buffer nodes for emptying whose descriptors overlap the given descriptor
+	 * 
+	 * @param rEntry
+	 * @param queryDescriptor descriptor restricting the buffer nodes or <tt>null</tt> for all buffer nodes
+	 * @return
+	 */
+	private java.util.Queue<IndexEntry> computeDownLevelQueues(IndexEntry rEntry, Descriptor queryDescriptor){
 		java.util.Queue<IndexEntry> queue = new LinkedList<>();
 		queue.offer(rEntry); 
 		int currentLevel = -1; 
@@ -351,6 +678,8 @@ public class BufferedRtree<E> extends RTree{
 				Node node = (Node) rootEntry.get(true);// 
 				for(Iterator currentEntries = node.entries(); currentEntries.hasNext(); ){
 					IndexEntry entry = (IndexEntry)currentEntries.next();
+					if(queryDescriptor != null && !entry.descriptor().overlaps(queryDescriptor))
+						continue; 
 					queue.offer(entry); 
 					if(isBufferEntry(entry) && bufferMap.containsKey((Long)entry.id())){	// put to level list// level changes 
 							bufferEntryList.offer(entry);
@@ -371,7 +700,7 @@ public class BufferedRtree<E> extends RTree{
 		List<IndexEntry> reorganizedBufferEntry = new ArrayList<>(); 
 		for(IndexEntry entry = null; !workStack.isEmpty() ;){
 			entry = workStack.pop();
-			Queue<E> currentRootBuffer = getBuffer(entry); 
+			Queue<Update<E>> currentRootBuffer = getBuffer(entry); 
 			reorganizedBufferEntry.addAll(clearBuffer(entry, currentRootBuffer, clearQueueFully));  
 		}
 		return reorganizedBufferEntry; 
@@ -383,7 +712,7 @@ public class BufferedRtree<E> extends RTree{
 	 * @param currentRoot
 	 * @param all if true buffer is emptied completely otherwise only a portion
 	 */
-	protected List<IndexEntry> clearBuffer(IndexEntry currentRoot, Queue<E> currentRootBuffer, boolean all){
+	protected List<IndexEntry> clearBuffer(IndexEntry currentRoot, Queue<Update<E>> currentRootBuffer, boolean all){
 		if(isLowestBufferEntry(currentRoot)){
 			return clearLowestBuffer(currentRoot, currentRootBuffer); 
 		}
@@ -391,16 +720,14 @@ public class BufferedRtree<E> extends RTree{
 		Stack<IndexEntry> workStack = new WorkStack<IndexEntry, Long>(getId); 
 		int minPushSize = Math.min(reducedMemory, currentRootBuffer.size());  
 		for(int i = 0; i < minPushSize; i++){
-			E record = currentRootBuffer.dequeue(); 
-			Stack<PathEntry> path = pushDownEntry(record, currentRoot, workStack); 
-			updatePath(path); 
+			Update<E> record = currentRootBuffer.dequeue(); 
+			pushDown(record, currentRoot, workStack); 
 		}
 		reorganizedBufferEntry.addAll(processWorkStack(workStack, false)); 
 		if(all){
-			for( E record = null; !currentRootBuffer.isEmpty(); ){
+			for( Update<E> record = null; !currentRootBuffer.isEmpty(); ){
 				record = currentRootBuffer.dequeue(); 
-				Stack<PathEntry> path = pushDownEntry(record, currentRoot, workStack); 
-				updatePath(path); 
+				pushDown(record, currentRoot, workStack); 
 			}
 			reorganizedBufferEntry.addAll(processWorkStack(workStack, false));
 		}
@@ -431,14 +758,18 @@ public class BufferedRtree<E> extends RTree{
 	 * @param currentRoot
 	 */
 	@SuppressWarnings("unchecked")
-	protected List<IndexEntry> clearLowestBuffer(IndexEntry cRoot, Queue<E> currentRootBuffer){
+	protected List<IndexEntry> clearLowestBuffer(IndexEntry cRoot, Queue<Update<E>> currentRootBuffer){
 		Stack<IndexEntry> workStack = new WorkStack<IndexEntry, Long>(getId);
 		IndexEntry currentRoot = cRoot; 
 		// union descriptor
 		List<IndexEntry> reorganizedBufferEntries = new ArrayList<>(); 
 		for( ;!currentRootBuffer.isEmpty(); ){
-			E record = currentRootBuffer.dequeue(); 
-			DoublePointRectangle rectangle = (DoublePointRectangle) this.descriptor(record); 
+			Update<E> record = currentRootBuffer.dequeue(); 
+			if(record.isRemoval()){
+				pushDownRemoval(record, currentRoot, workStack); 
+				continue; 
+			}
+			DoublePointRectangle rectangle = (DoublePointRectangle) this.descriptor(record.getObject()); 
 			currentRoot.descriptor().union(rectangle); 
 			Stack<PathEntry> path = pushDownEntry(record, currentRoot, workStack);
 //			if (DEBUG){
@@ -600,17 +931,24 @@ public class BufferedRtree<E> extends RTree{
 	@SuppressWarnings("unchecked")
 	protected void redistributeBuffer(PathEntry entryOld, PathEntry entryNew){
 		// take the buffer from the lod node
-		Queue<E> oldBuffer = getBuffer(entryOld.getElement1()); 
+		Queue<Update<E>> oldBuffer = getBuffer(entryOld.getElement1()); 
 		if(oldBuffer != null){ // the buffer can be empty in last phase in case of all buffers are emptied in top down level wise manner
 		//create mocked node 
 			Node node = (Node) createNode(entryOld.getElement2().level()+1); 
 			node.grow(entryOld.getElement1());
 			node.grow(entryNew.getElement1());
-			Queue<E> newBufferOld = factoryBufferFunction.invoke();
-			Queue<E> newBufferNew = factoryBufferFunction.invoke(); 
-			for(E entry= null; !oldBuffer.isEmpty(); ){
+			Queue<Update<E>> newBufferOld = factoryBufferFunction.invoke();
+			Queue<Update<E>> newBufferNew = factoryBufferFunction.invoke(); 
+			for(Update<E> entry= null; !oldBuffer.isEmpty(); ){
 				entry = oldBuffer.dequeue(); 
-				DoublePointRectangle descriptor = (DoublePointRectangle) descriptor(entry); 
+				DoublePointRectangle descriptor = (DoublePointRectangle) descriptor(entry.getObject()); 
+				if(entry.isRemoval()){ // the object may be stored below both nodes
+					if(entryOld.getElement1().descriptor().contains(descriptor))
+						newBufferOld.enqueue(entry);
+					if(entryNew.getElement1().descriptor().contains(descriptor))
+						newBufferNew.enqueue(entry);
+					continue; 
+				}
 				Pair<IndexEntry, Boolean> pair = node.chooseSubtree(descriptor); 
 				if(pair.getElement1().id().equals(entryOld.getElement1().id())){
 					// old one
@@ -628,7 +966,7 @@ public class BufferedRtree<E> extends RTree{
 	}
 	
 	/**
-	 * transports from buffer to buffer level or from the 
+	 * transports an insert from buffer to buffer level or from the 
 	 * lowest buffer level to leaf nodes
 	 *  
 	 * @param record
@@ -638,16 +976,16 @@ public class BufferedRtree<E> extends RTree{
 	 * 
 	 */
 	@SuppressWarnings("unchecked")
-	protected Stack<PathEntry> pushDownEntry(E record, IndexEntry currentRoot, Stack<IndexEntry> workStack){
+	protected Stack<PathEntry> pushDownEntry(Update<E> record, IndexEntry currentRoot, Stack<IndexEntry> workStack){
 		IndexEntry currentEntry = currentRoot;
 		Node currentNode = (Node) currentEntry.get(true); // parenmt node may be also buffer node
-		DoublePointRectangle dpr = (DoublePointRectangle) descriptor(record); // XXX descriptors are double point rectangles
+		DoublePointRectangle dpr = (DoublePointRectangle) descriptor(record.getObject()); // XXX descriptors are double point rectangles
 		Stack<PathEntry> pathBufferToBuffer = new Stack<>();
 		pathBufferToBuffer.push(new PathEntry(currentEntry, currentNode, Boolean.valueOf(false))); 
 		if (isLeafEntry(currentEntry)){
 			currentNode = (Node) currentEntry.get(true);
 			pathBufferToBuffer.peek().setElement3( Boolean.valueOf(true));
-			currentNode.grow(record); // insert into leaf node
+			currentNode.grow(record.getObject()); // insert into leaf node
 		}else{
 			Pair<ORTree.IndexEntry, Boolean> currentEntryPair = null;
 			do{
@@ -664,7 +1002,7 @@ public class BufferedRtree<E> extends RTree{
 			if (isLeafEntry(currentEntry)){
 				currentNode = (Node) currentEntry.get(true);
 				pathBufferToBuffer.peek().setElement3( Boolean.valueOf(true));
-				currentNode.grow(record); // insert into leaf node
+				currentNode.grow(record.getObject()); // insert into leaf node
 			}else { // append to buffer  if(currentRoot != rootEntry && isBufferEntry(currentEntry)
 				appendToBuffer(record, currentEntry); 
 				if (isBufferFull(currentEntry)){
@@ -676,6 +1014,66 @@ public class BufferedRtree<E> extends RTree{
 		return pathBufferToBuffer;
 	}
 	
+	/**
+	 * transports a removal from buffer to buffer level or from the lowest buffer level 
+	 * to leaf nodes. The removal is routed to all entries whose descriptors contain the 
+	 * descriptor of the object. Below the lowest buffer level the search stops at the first 
+	 * leaf containing an equal object. 
+	 * 
+	 * @param record removal
+	 * @param currentRoot buffer node or root
+	 * @param workStack collects the buffer nodes whose buffers overflow
+	 * @return <tt>true</tt> if an object was removed from a leaf
+	 */
+	protected boolean pushDownRemoval(Update<E> record, IndexEntry currentRoot, Stack<IndexEntry> workStack){
+		Node currentNode = (Node) currentRoot.get(true);
+		if(!removeFromSubtree(record, currentNode, workStack))
+			return false; 
+		currentRoot.update(currentNode, true); 
+		return true; 
+	}
+	
+	/**
+	 * removes an object below the given node, see {@link #pushDownRemoval(Update, IndexEntry, Stack)}. 
+	 * Descriptors of the modified nodes are adjusted, empty nodes are removed. 
+	 * 
+	 * @param record removal
+	 * @param node node whose subtree is searched
+	 * @param workStack collects the buffer nodes whose buffers overflow
+	 * @return <tt>true</tt> if an object was removed from a leaf
+	 */
+	@SuppressWarnings("rawtypes")
+	protected boolean removeFromSubtree(Update<E> record, Node node, Stack<IndexEntry> workStack){
+		if(node.level() == LEAF_LEVEL)
+			return node.removeObject(record.getObject()); 
+		Descriptor descriptor = descriptor(record.getObject()); 
+		for(Iterator entries = node.entries(); entries.hasNext(); ){
+			IndexEntry entry = (IndexEntry)entries.next();
+			if(!entry.descriptor().contains(descriptor))
+				continue; 
+			if(isBufferEntry(entry)){ 
+				// the buffer nodes of a level are not searched, each one gets the removal
+				appendToBuffer(record, entry);
+				if (isBufferFull(entry))
+					workStack.push(entry); 
+			}else{
+				Node child = (Node) entry.get(true);
+				if(removeFromSubtree(record, child, workStack)){
+					Descriptor childDescriptor = child.computeDescriptor(); 
+					if(childDescriptor == null){
+						entries.remove(); 
+						entry.remove(); 
+					}else{
+						entry.initialize(childDescriptor); 
+						entry.update(child, true); 
+					}
+					return true; 
+				}
+			}
+		}
+		return false; 
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -689,8 +1087,8 @@ public class BufferedRtree<E> extends RTree{
 	 * Appends to queue if queue not exists allocates new queue 
 	 * @param rootEntry
 	 */
-	protected void appendToBuffer(E record, IndexEntry rootEntry) {
-		Queue<E> buffer = bufferMap.get((Long)rootEntry.id());
+	protected void appendToBuffer(Update<E> record, IndexEntry rootEntry) {
+		Queue<Update<E>> buffer = bufferMap.get((Long)rootEntry.id());
 		if(buffer == null){
 			buffer = factoryBufferFunction.invoke();
 			bufferMap.put((Long)rootEntry.id(), buffer);
@@ -707,7 +1105,7 @@ public class BufferedRtree<E> extends RTree{
 	 * @param entry
 	 * @return
 	 */
-	protected Queue<E> getBuffer(IndexEntry entry){
+	protected Queue<Update<E>> getBuffer(IndexEntry entry){
 		return this.bufferMap.get(entry.id()); 
 	}
 	
@@ -716,7 +1114,7 @@ public class BufferedRtree<E> extends RTree{
 	 */
 	protected void assignBuffer(IndexEntry entry){
 		Long id = (Long)entry.id();	
-		Queue<E> buffer = this.factoryBufferFunction.invoke();
+		Queue<Update<E>> buffer = this.factoryBufferFunction.invoke();
 		bufferMap.put(id, buffer);
 	}
 	
@@ -771,7 +1169,7 @@ public class BufferedRtree<E> extends RTree{
 	 */
 	protected boolean isBufferFull(IndexEntry currentEntry) {
 		if(bufferMap.containsKey((Long)currentEntry.id())){
-			Queue<E> buffer = bufferMap.get((Long)currentEntry.id());
+			Queue<Update<E>> buffer = bufferMap.get((Long)currentEntry.id());
 			return buffer.size() > reducedMemory;
 		}	
 		return false;
@@ -831,6 +1229,28 @@ public class BufferedRtree<E> extends RTree{
 		protected void grow (Object data) {
 			super.grow(data, null);
 		}
+		/**
+		 * removes an object equal to the given one from this leaf
+		 * 
+		 * @param data object to remove
+		 * @return <tt>true</tt> if an object was removed
+		 */
+		@SuppressWarnings("rawtypes")
+		protected boolean removeObject (Object data) {
+			for(Iterator iterator = entries(); iterator.hasNext(); )
+				if(iterator.next().equals(data)){
+					iterator.remove(); 
+					return true; 
+				}
+			return false; 
+		}
+		/**
+		 * 
+		 * @return union of the descriptors of the entries or <tt>null</tt> if the node is empty
+		 */
+		protected Descriptor computeDescriptor () {
+			return BufferedRtree.this.computeDescriptor(entries);
+		}
 		/*
 		 * (non-Javadoc)
 		 * @see xxl.core.indexStructures.Tree.Node#overflows()
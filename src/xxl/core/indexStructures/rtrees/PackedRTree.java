@@ -0,0 +1,572 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.rtrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.cursors.AbstractCursor;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.ORTree;
+import xxl.core.indexStructures.Tree;
+import xxl.core.spatial.points.Point;
+import xxl.core.spatial.rectangles.Rectangle;
+
+/**
+ * A read-only, memory resident R-tree whose nodes are flattened into
+ * primitive arrays (structure of arrays layout).
+ * <p>
+ * The tree is stored level by level. Level <tt>0</tt> contains the data
+ * entries, every higher level contains the index entries pointing to a
+ * contiguous range of entries one level below. For each level the lower and
+ * upper coordinates of the bounding rectangles are kept in one
+ * <tt>double</tt> array per dimension, so that an intersection test of a
+ * query window against all entries of a node is a tight loop over
+ * consecutive array cells without any pointer dereferencing. The entries of
+ * the highest level form the root node.
+ * <p>
+ * A packed tree is built either as a snapshot of an existing {@link ORTree}
+ * with rectangular descriptors (e.g., an {@link xxl.core.indexStructures.RTree}
+ * loaded by the {@link STRBulkLoader}) using {@link #snapshot(ORTree)}, or
+ * directly from an iterator of data objects using the in-memory STR packing
+ * of {@link #pack(Iterator, Function, int, int)}. Updates are not supported;
+ * the structure has to be rebuilt instead.
+ * 
+ * <pre>
+ * 	PackedRTree packed = PackedRTree.snapshot(rtree);
+ * 	Cursor results = packed.query(queryRectangle);
+ * </pre>
+ * 
+ * @see xxl.core.indexStructures.RTree
+ * @see STRBulkLoader
+ */
+public class PackedRTree {
+
+	/**
+	 * The number of dimensions of the stored rectangles.
+	 */
+	protected final int dimensions;
+
+	/**
+	 * Lower coordinates: <tt>low[level][dimension][entry]</tt>.
+	 */
+	protected final double[][][] low;
+
+	/**
+	 * Upper coordinates: <tt>high[level][dimension][entry]</tt>.
+	 */
+	protected final double[][][] high;
+
+	/**
+	 * Child ranges of the index levels: the children of entry <tt>i</tt> at
+	 * level <tt>l&gt;0</tt> are the entries
+	 * <tt>[children[l][i], children[l][i+1])</tt> of level <tt>l-1</tt>.
+	 * <tt>children[0]</tt> is <tt>null</tt>.
+	 */
+	protected final int[][] children;
+
+	/**
+	 * The data objects stored in the leaves, aligned with level <tt>0</tt>.
+	 */
+	protected final Object[] data;
+
+	/**
+	 * The maximum number of entries of a node, i.e., the size of the hit
+	 * mask of a query. It is determined once when the tree is packed.
+	 */
+	protected final int maxFanout;
+
+	/**
+	 * Creates a packed tree from its flattened representation. Use the
+	 * factory methods {@link #snapshot(ORTree)} and
+	 * {@link #pack(Iterator, Function, int, int)} instead of calling this
+	 * constructor directly.
+	 * 
+	 * @param dimensions the number of dimensions
+	 * @param low the lower coordinates per level and dimension
+	 * @param high the upper coordinates per level and dimension
+	 * @param children the child offsets per index level
+	 * @param data the data objects of level <tt>0</tt>
+	 */
+	protected PackedRTree(int dimensions, double[][][] low, double[][][] high, int[][] children, Object[] data) {
+		this.dimensions = dimensions;
+		this.low = low;
+		this.high = high;
+		this.children = children;
+		this.data = data;
+		int max = low.length == 0 ? 0 : low[low.length - 1][0].length;
+		for (int l = 1; l < children.length; l++)
+			for (int i = 0; i + 1 < children[l].length; i++)
+				max = Math.max(max, children[l][i + 1] - children[l][i]);
+		this.maxFanout = max;
+	}
+
+	/**
+	 * Returns the number of dimensions of the stored rectangles.
+	 * 
+	 * @return the number of dimensions
+	 */
+	public int dimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * Returns the number of stored data objects.
+	 * 
+	 * @return the number of data objects
+	 */
+	public int size() {
+		return data.length;
+	}
+
+	/**
+	 * Returns the number of levels including the data level, i.e., the
+	 * height of the corresponding R-tree.
+	 * 
+	 * @return the number of levels
+	 */
+	public int height() {
+		return low.length;
+	}
+
+	/**
+	 * Returns the data object at the given position of the leaf level.
+	 * 
+	 * @param index the position of the data object
+	 * @return the data object
+	 */
+	public Object get(int index) {
+		return data[index];
+	}
+
+	/**
+	 * Returns the bounding rectangle of all stored data objects as
+	 * <tt>{low, high}</tt> coordinate arrays, or <tt>null</tt> if the tree
+	 * is empty.
+	 * 
+	 * @return the root bounding box
+	 */
+	public double[][] rootBounds() {
+		if (data.length == 0)
+			return null;
+		int top = low.length - 1;
+		double[][] bounds = new double[2][dimensions];
+		for (int d = 0; d < dimensions; d++) {
+			double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < low[top][d].length; i++) {
+				lo = Math.min(lo, low[top][d][i]);
+				hi = Math.max(hi, high[top][d][i]);
+			}
+			bounds[0][d] = lo;
+			bounds[1][d] = hi;
+		}
+		return bounds;
+	}
+
+	/**
+	 * Marks all entries in <tt>[from, to)</tt> of the given level whose
+	 * rectangles intersect the query window. The dimensions are processed one
+	 * after another so that the inner loop runs over consecutive cells of one
+	 * coordinate array.
+	 * 
+	 * @param level the level of the entries
+	 * @param from the first entry (inclusive)
+	 * @param to the last entry (exclusive)
+	 * @param qlow the lower corner of the query window
+	 * @param qhigh the upper corner of the query window
+	 * @param hits buffer receiving the flags, index <tt>0</tt> corresponds to <tt>from</tt>
+	 */
+	protected void intersect(int level, int from, int to, double[] qlow, double[] qhigh, boolean[] hits) {
+		int n = to - from;
+		Arrays.fill(hits, 0, n, true);
+		for (int d = 0; d < dimensions; d++) {
+			final double[] l = low[level][d], h = high[level][d];
+			final double ql = qlow[d], qh = qhigh[d];
+			for (int i = 0; i < n; i++)
+				hits[i] &= l[from + i] <= qh & h[from + i] >= ql;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of entries of a node of this tree.
+	 * 
+	 * @return the maximum fanout
+	 */
+	protected int maxFanout() {
+		return maxFanout;
+	}
+
+	/**
+	 * Counts the data objects whose rectangles intersect the given query
+	 * window without creating any objects per visited node.
+	 * 
+	 * @param qlow the lower corner of the query window
+	 * @param qhigh the upper corner of the query window
+	 * @return the number of intersecting data objects
+	 */
+	public int count(double[] qlow, double[] qhigh) {
+		RangeQuery query = new RangeQuery(qlow, qhigh);
+		int count = 0;
+		while (query.advance())
+			count++;
+		return count;
+	}
+
+	/**
+	 * Returns a lazy cursor over all data objects whose rectangles intersect
+	 * the given query window.
+	 * 
+	 * @param qlow the lower corner of the query window
+	 * @param qhigh the upper corner of the query window
+	 * @return a cursor delivering the intersecting data objects
+	 */
+	public Cursor query(double[] qlow, double[] qhigh) {
+		final RangeQuery query = new RangeQuery(qlow, qhigh);
+		return new AbstractCursor() {
+			@Override
+			protected boolean hasNextObject() {
+				return query.advance();
+			}
+
+			@Override
+			protected Object nextObject() {
+				return data[query.current];
+			}
+		};
+	}
+
+	/**
+	 * Returns a lazy cursor over all data objects whose rectangles intersect
+	 * the given query rectangle.
+	 * 
+	 * @param queryRectangle the query rectangle
+	 * @return a cursor delivering the intersecting data objects
+	 */
+	public Cursor query(Rectangle queryRectangle) {
+		double[][] corners = corners(queryRectangle, dimensions);
+		return query(corners[0], corners[1]);
+	}
+
+	/**
+	 * The iterative depth-first traversal underlying {@link #query(double[], double[])}
+	 * and {@link #count(double[], double[])}. Pending node ranges are kept on
+	 * an explicit <tt>int</tt> stack, hits of the current leaf are kept in a
+	 * reusable flag buffer.
+	 */
+	protected class RangeQuery {
+
+		/**
+		 * The query window.
+		 */
+		protected final double[] qlow, qhigh;
+
+		/**
+		 * Stack of pending ranges stored as <tt>(level, from, to)</tt> triples.
+		 */
+		protected int[] stack = new int[48];
+
+		/**
+		 * Current stack size in <tt>int</tt> cells.
+		 */
+		protected int top = 0;
+
+		/**
+		 * Hit flags of the range currently processed.
+		 */
+		protected final boolean[] hits;
+
+		/**
+		 * The leaf range currently enumerated and the position in it.
+		 */
+		protected int leafFrom, leafTo = 0, leafPosition = 0;
+
+		/**
+		 * The index of the data object delivered last.
+		 */
+		protected int current = -1;
+
+		/**
+		 * Creates a new traversal for the given query window.
+		 * 
+		 * @param qlow the lower corner of the query window
+		 * @param qhigh the upper corner of the query window
+		 */
+		protected RangeQuery(double[] qlow, double[] qhigh) {
+			if (qlow.length != dimensions || qhigh.length != dimensions)
+				throw new IllegalArgumentException("query window has wrong dimensionality");
+			this.qlow = qlow;
+			this.qhigh = qhigh;
+			this.hits = new boolean[maxFanout];
+			if (data.length > 0)
+				push(low.length - 1, 0, low[low.length - 1][0].length);
+		}
+
+		/**
+		 * Pushes a range onto the stack.
+		 * 
+		 * @param level the level of the range
+		 * @param from the first entry
+		 * @param to the end of the range (exclusive)
+		 */
+		protected void push(int level, int from, int to) {
+			if (top + 3 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			stack[top++] = level;
+			stack[top++] = from;
+			stack[top++] = to;
+		}
+
+		/**
+		 * Moves to the next intersecting data object.
+		 * 
+		 * @return <tt>true</tt> if a further object has been found, its index is
+		 *         stored in {@link #current}
+		 */
+		protected boolean advance() {
+			while (true) {
+				while (leafPosition < leafTo)
+					if (hits[leafPosition++ - leafFrom]) {
+						current = leafPosition - 1;
+						return true;
+					}
+				if (top == 0)
+					return false;
+				int to = stack[--top], from = stack[--top], level = stack[--top];
+				intersect(level, from, to, qlow, qhigh, hits);
+				if (level == 0) {
+					leafFrom = leafPosition = from;
+					leafTo = to;
+				}
+				else
+					for (int i = to - 1; i >= from; i--)
+						if (hits[i - from])
+							push(level - 1, children[level][i], children[level][i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Extracts the corners of a rectangle into coordinate arrays.
+	 * 
+	 * @param rectangle the rectangle
+	 * @param dimensions the number of dimensions
+	 * @return <tt>{low, high}</tt>
+	 */
+	protected static double[][] corners(Rectangle rectangle, int dimensions) {
+		Point l = rectangle.getCorner(false), h = rectangle.getCorner(true);
+		double[][] corners = new double[2][dimensions];
+		for (int d = 0; d < dimensions; d++) {
+			corners[0][d] = l.getValue(d);
+			corners[1][d] = h.getValue(d);
+		}
+		return corners;
+	}
+
+	/**
+	 * Copies the rectangle of entry <tt>i</tt> into the coordinate arrays of a
+	 * level.
+	 */
+	private static void store(Rectangle rectangle, int i, double[][] low, double[][] high) {
+		Point l = rectangle.getCorner(false), h = rectangle.getCorner(true);
+		for (int d = 0; d < low.length; d++) {
+			low[d][i] = l.getValue(d);
+			high[d][i] = h.getValue(d);
+		}
+	}
+
+	/**
+	 * Creates a read-only packed snapshot of the given tree. The tree is
+	 * traversed breadth first, so the children of every node are stored
+	 * contiguously. The descriptors of the tree have to be
+	 * {@link Rectangle rectangles}. Later modifications of the tree are not
+	 * reflected by the snapshot.
+	 * 
+	 * @param tree an initialized tree with rectangular descriptors
+	 * @return the packed snapshot
+	 */
+	public static PackedRTree snapshot(ORTree tree) {
+		if (tree.rootEntry() == null)
+			return new PackedRTree(tree.rootDescriptor() == null ? 0 : ((Rectangle)tree.rootDescriptor()).dimensions(),
+				new double[0][][], new double[0][][], new int[0][], new Object[0]);
+		int dimensions = ((Rectangle)tree.rootDescriptor()).dimensions();
+		int height = tree.height();
+		double[][][] low = new double[height][][];
+		double[][][] high = new double[height][][];
+		int[][] children = new int[height][];
+		Object[] data = null;
+
+		// the entries of the root node form the highest level
+		List current = new ArrayList();
+		for (Iterator entries = tree.rootEntry().get(true).entries(); entries.hasNext();)
+			current.add(entries.next());
+		for (int level = height - 1; level >= 0; level--) {
+			low[level] = new double[dimensions][current.size()];
+			high[level] = new double[dimensions][current.size()];
+			for (int i = 0; i < current.size(); i++)
+				store((Rectangle)tree.descriptor(current.get(i)), i, low[level], high[level]);
+			if (level == 0) {
+				data = current.toArray();
+				break;
+			}
+			List next = new ArrayList();
+			children[level] = new int[current.size() + 1];
+			for (int i = 0; i < current.size(); i++) {
+				children[level][i] = next.size();
+				Tree.Node node = ((Tree.IndexEntry)current.get(i)).get(true);
+				for (Iterator entries = node.entries(); entries.hasNext();)
+					next.add(entries.next());
+			}
+			children[level][current.size()] = next.size();
+			current = next;
+		}
+		return new PackedRTree(dimensions, low, high, children, data);
+	}
+
+	/**
+	 * Builds a packed tree in main memory using sort-tile-recursive packing.
+	 * The data objects are tiled recursively by the centers of their
+	 * rectangles, dimension after dimension, and then grouped into nodes of
+	 * <tt>fanout</tt> entries. The upper levels group consecutive nodes of
+	 * the level below, which preserves the spatial locality of the tiling.
+	 * 
+	 * @param data the data objects
+	 * @param getDescriptor function mapping a data object to its {@link Rectangle}
+	 * @param dimensions the number of dimensions
+	 * @param fanout the maximum number of entries per node (at least <tt>2</tt>)
+	 * @return the packed tree
+	 */
+	public static PackedRTree pack(Iterator data, Function getDescriptor, int dimensions, int fanout) {
+		if (fanout < 2)
+			throw new IllegalArgumentException("fanout has to be at least 2");
+		List objects = new ArrayList();
+		List lows = new ArrayList(), highs = new ArrayList();
+		while (data.hasNext()) {
+			Object object = data.next();
+			double[][] corners = corners((Rectangle)getDescriptor.invoke(object), dimensions);
+			objects.add(object);
+			lows.add(corners[0]);
+			highs.add(corners[1]);
+		}
+		int n = objects.size();
+		if (n == 0)
+			return new PackedRTree(dimensions, new double[0][][], new double[0][][], new int[0][], new Object[0]);
+
+		// row-wise rectangles of the level currently built, in packing order
+		double[][] rowLow = (double[][])lows.toArray(new double[n][]);
+		double[][] rowHigh = (double[][])highs.toArray(new double[n][]);
+		Integer[] order = strOrder(rowLow, rowHigh, dimensions, fanout);
+		Object[] packedData = new Object[n];
+		for (int i = 0; i < n; i++)
+			packedData[i] = objects.get(order[i]);
+
+		List levelLows = new ArrayList(), levelHighs = new ArrayList(), levelChildren = new ArrayList();
+		levelChildren.add(null);
+		while (true) {
+			int size = rowLow.length;
+			double[][] l = new double[dimensions][size], h = new double[dimensions][size];
+			double[][] sortedLow = new double[size][], sortedHigh = new double[size][];
+			for (int i = 0; i < size; i++) {
+				sortedLow[i] = rowLow[order[i]];
+				sortedHigh[i] = rowHigh[order[i]];
+				for (int d = 0; d < dimensions; d++) {
+					l[d][i] = sortedLow[i][d];
+					h[d][i] = sortedHigh[i][d];
+				}
+			}
+			levelLows.add(l);
+			levelHighs.add(h);
+			if (size <= fanout)
+				break;
+			// group consecutive entries into nodes and compute their bounding rectangles
+			int nodes = (size + fanout - 1) / fanout;
+			int[] offsets = new int[nodes + 1];
+			rowLow = new double[nodes][];
+			rowHigh = new double[nodes][];
+			for (int k = 0; k < nodes; k++) {
+				int from = k * fanout, to = Math.min(size, from + fanout);
+				offsets[k] = from;
+				rowLow[k] = sortedLow[from].clone();
+				rowHigh[k] = sortedHigh[from].clone();
+				for (int i = from + 1; i < to; i++)
+					for (int d = 0; d < dimensions; d++) {
+						rowLow[k][d] = Math.min(rowLow[k][d], sortedLow[i][d]);
+						rowHigh[k][d] = Math.max(rowHigh[k][d], sortedHigh[i][d]);
+					}
+			}
+			offsets[nodes] = size;
+			// node rectangles keep the order of their children, so the offsets stay valid
+			order = new Integer[nodes];
+			for (int k = 0; k < nodes; k++)
+				order[k] = k;
+			levelChildren.add(offsets);
+		}
+		int height = levelLows.size();
+		return new PackedRTree(dimensions,
+			(double[][][])levelLows.toArray(new double[height][][]),
+			(double[][][])levelHighs.toArray(new double[height][][]),
+			(int[][])levelChildren.toArray(new int[height][]),
+			packedData);
+	}
+
+	/**
+	 * Computes the sort-tile-recursive order of the given rectangles.
+	 * 
+	 * @param low the lower corners
+	 * @param high the upper corners
+	 * @param dimensions the number of dimensions
+	 * @param fanout the node capacity
+	 * @return a permutation of the positions of the rectangles
+	 */
+	protected static Integer[] strOrder(double[][] low, double[][] high, int dimensions, int fanout) {
+		Integer[] order = new Integer[low.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		tile(order, 0, order.length, 0, low, high, dimensions, fanout);
+		return order;
+	}
+
+	/**
+	 * Sorts <tt>order[from, to)</tt> by the center in dimension <tt>dim</tt>
+	 * and recursively tiles the resulting slabs by the next dimension.
+	 */
+	private static void tile(Integer[] order, int from, int to, final int dim, final double[][] low, final double[][] high, int dimensions, int fanout) {
+		Arrays.sort(order, from, to, new java.util.Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(low[a][dim] + high[a][dim], low[b][dim] + high[b][dim]);
+			}
+		});
+		if (dim + 1 >= dimensions)
+			return;
+		int nodes = (to - from + fanout - 1) / fanout;
+		int slabs = (int)Math.ceil(Math.pow(nodes, 1.0 / (dimensions - dim)));
+		int slabSize = fanout * (int)Math.ceil((double)nodes / slabs);
+		for (int start = from; start < to; start += slabSize)
+			tile(order, start, Math.min(to, start + slabSize), dim + 1, low, high, dimensions, fanout);
+	}
+}
@@ -26,6 +26,7 @@ License along with this library;  If not, see <http://www.gnu.org/licenses/>.
 
 package xxl.core.indexStructures.rtrees;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -34,9 +35,16 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.SynchronizedContainer;
 import xxl.core.collections.containers.io.BlockFileContainer;
 import xxl.core.collections.queues.Queue;
 import xxl.core.collections.queues.io.BlockBasedQueue;
@@ -339,4 +347,180 @@ public class STRBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 		return  new FileInputCursor<MapEntry<Long,DoublePointRectangle>>(mapEntryConverter, file);
 	}
 		
+
+	/**
+	 * Parallel variant of the STR loader. After the data of a level has been
+	 * sorted by the first dimension, the slabs are independent of each other:
+	 * they are sorted by the remaining dimensions and packed into nodes
+	 * concurrently by a fixed pool of worker threads. Every slab writes the
+	 * index entries of its nodes into a private buffer; the buffers are
+	 * appended to the level storage in slab order, so the resulting tree is
+	 * the same as the one built by the sequential loader.
+	 * <p>
+	 * The sort memory {@link #SORT_BUFFER_SIZE} is shared among the workers.
+	 * Since the {@link MergeSorter merge-sorter} is not stable and its runs
+	 * depend on the memory, rectangles whose centers are equal in the sorted
+	 * dimension may be packed in a different order than by the sequential
+	 * loader.
+	 * The loader shuts its thread pool down after
+	 * {@link #buildRTree(Iterator)} and cannot be reused afterwards.
+	 * 
+	 * @param <T>
+	 */
+	public static class ParallelSTRBulkLoader<T> extends STRBulkLoader<T> {
+		
+		/**
+		 * workers sorting and packing the slabs
+		 */
+		protected ExecutorService service;
+		/**
+		 * number of workers
+		 */
+		protected int threads;
+		/**
+		 * per slab buffer for the index entries, <tt>null</tt> for the calling thread 
+		 */
+		protected ThreadLocal<DataOutputStream> slabOutput = new ThreadLocal<DataOutputStream>();
+		/**
+		 * generates unique names for the temporary sort containers
+		 */
+		protected AtomicInteger sortFiles = new AtomicInteger();
+		
+		/**
+		 * 
+		 * @param rtree
+		 * @param path
+		 * @param dimension
+		 * @param blockSize
+		 * @param ratio
+		 * @param nodeUtil
+		 * @param sortingFunction
+		 * @param threads number of worker threads
+		 */
+		public ParallelSTRBulkLoader(RTree rtree, 
+				String path, 
+				int dimension,
+				int blockSize, 
+				double ratio, 
+				double nodeUtil,
+				int[] sortingFunction, 
+				int threads) {
+			super(rtree, path, dimension, blockSize, ratio, nodeUtil, sortingFunction);
+			this.threads = threads;
+			// slab queues are filled by the calling thread and consumed by the workers
+			queueContainer = new SynchronizedContainer(queueContainer);
+			service = Executors.newFixedThreadPool(threads);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.rtrees.STRBulkLoader#buildRTree(java.util.Iterator)
+		 */
+		@Override
+		public void buildRTree(Iterator rectangles) throws IOException {
+			try {
+				super.buildRTree(rectangles);
+			}
+			finally {
+				service.shutdown();
+			}
+		}
+		
+		/**
+		 * Sorts the level by the first dimension and hands the slabs over to
+		 * the workers. Recursive calls for the remaining dimensions are
+		 * processed sequentially by the worker owning the slab.
+		 */
+		@Override
+		public int sortSTRData(Iterator data, int number, final int level, int dim, final int depth) throws IOException {
+			int numberOfBlocks = number / ((level== 0) ? (B_Leaf) : B_Index); 
+			if (depth != dimension || depth <= 1 || numberOfBlocks <= 1)
+				return super.sortSTRData(data, number, level, dim, depth);
+			int splitsProDim = (int) Math.pow(numberOfBlocks, 1.0 / dimension);
+			Iterator sorter = sort(data, dim, level);
+			List<Future<byte[]>> slabs = new ArrayList<Future<byte[]>>();
+			final int[] written = new int[splitsProDim+1];
+			for(int i = 0; i < splitsProDim+1 && sorter.hasNext(); i++){
+				final BlockBasedQueue queue = new BlockBasedQueue(queueContainer, 
+						blockSize, 
+						(level> 0)? mapEntryConverter: dataConverter, 
+						new Constant(0),
+						new Constant(0));
+				int j = 0;
+				for(j = 0 ; sorter.hasNext() && j < (number /splitsProDim); j++  )
+					queue.enqueue(sorter.next());
+				final int slab = i, size = j;
+				slabs.add(service.submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException {
+						ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+						slabOutput.set(new DataOutputStream(bytes));
+						try {
+							written[slab] = sortSTRData(new QueueCursor(queue), size, level, sortingFunction[1], depth-1);
+						}
+						finally {
+							slabOutput.remove();
+						}
+						return bytes.toByteArray();
+					}
+				}));
+			}
+			int sum = 0;
+			for (int i = 0; i < slabs.size(); i++) {
+				try {
+					out.write(slabs.get(i).get());
+				}
+				catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				catch (ExecutionException e) {
+					throw new IOException(e.getCause());
+				}
+				sum += written[i];
+			}
+			return sum;
+		}
+		
+		/**
+		 * Uses a separate sort container per call and the share of the sort
+		 * memory of a single worker.
+		 */
+		@Override
+		protected Iterator sort(Iterator data, int dim, int level) throws IOException{
+			final Converter converter = (level > 0 ) ? mapEntryConverter: dataConverter;
+			int objectSize = (level > 0 ) ? dimension *  16 : dataSize; 
+			int memory = Math.max(SORT_BUFFER_SIZE / threads, 64 * blockSize);
+			final Container queueContainer = new BlockFileContainer(path  + "tmpsortqueue.tmp" + dim  + level + "_" + sortFiles.getAndIncrement(), blockSize);
+			final Function<Function<?, Integer>, Queue<?>> queueFunction =
+				new AbstractFunction<Function<?, Integer>, Queue<?>>() {
+				public Queue<?> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+					return new BlockBasedQueue(queueContainer, blockSize, converter,
+							function1, function2);
+				}
+			};
+			return  new MergeSorter(data, 
+					getDimensionComparator(dim, level), objectSize , memory, memory, queueFunction, false);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.rtrees.AbstractIterativeRtreeBulkloader#writeNode(java.util.List, int, xxl.core.indexStructures.RTree, xxl.core.collections.containers.Container)
+		 */
+		@Override
+		public MapEntry<Long,DoublePointRectangle> writeNode(List<?> entries, int level, RTree rtree, Container treeContainer) {
+			synchronized (treeContainer) {
+				return super.writeNode(entries, level, rtree, treeContainer);
+			}
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.rtrees.STRBulkLoader#storeTempIndexEntry(xxl.core.collections.MapEntry)
+		 */
+		@Override
+		protected void storeTempIndexEntry(MapEntry<Long,DoublePointRectangle> entry) throws IOException{
+			DataOutputStream slab = slabOutput.get();
+			mapEntryConverter.write(slab != null ? slab : out, entry);
+		}
+	}
 }
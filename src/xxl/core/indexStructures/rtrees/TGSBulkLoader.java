@@ -1,5 +1,6 @@
 package xxl.core.indexStructures.rtrees;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
@@ -11,6 +12,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import xxl.core.collections.MapEntry;
 import xxl.core.collections.containers.Container;
@@ -520,4 +525,317 @@ public class TGSBulkLoader<T> extends AbstractIterativeRtreeBulkloader<T>{
 	
 
 
+	/**
+	 * Parallel variant of the TGS loader. The greedy split of a partition is
+	 * determined by evaluating all dimensions concurrently: every dimension
+	 * sorts its own copy of the partition and computes the forward and
+	 * backward bounding rectangles in two parallel tasks. Afterwards the two
+	 * halves of the chosen split are tiled recursively in parallel. Nodes are
+	 * written to the tree container under its monitor, their index entries are
+	 * buffered per partition and emitted in the order of the sequential
+	 * algorithm.
+	 * <p>
+	 * The loader builds the same tree as the sequential one. The sequential
+	 * loader sorts a partition in place by one dimension after the other, so
+	 * elements with equal centers in a dimension keep the order of the
+	 * previous dimensions. This is reproduced by comparing the dimensions in
+	 * the same cascade (see {@link #getCascadeComparator(int[], int)}) with a
+	 * stable sort. Partitions that the sequential loader sorts externally
+	 * ({@link #ESORT}) are sorted externally, too; each of these sorts uses
+	 * {@link #SORT_BUFFER_SIZE} bytes, so up to <tt>threads</tt> times of
+	 * this memory is allocated concurrently.
+	 * <p>
+	 * The loader shuts its pool down after {@link #buildRTree(Iterator)} and
+	 * cannot be reused afterwards.
+	 * 
+	 * @param <T>
+	 */
+	public static class ParallelTGSBulkLoader<T> extends TGSBulkLoader<T> {
+		
+		/**
+		 * pool executing the split evaluation and the recursive tiling
+		 */
+		protected ForkJoinPool pool;
+		
+		/**
+		 * generates unique names for the containers of the external sorts
+		 */
+		protected AtomicInteger sortFiles = new AtomicInteger();
+		
+		/**
+		 * 
+		 * @param rtree
+		 * @param path
+		 * @param dimension
+		 * @param blockSize
+		 * @param ratio
+		 * @param nodeUtil
+		 * @param universe
+		 * @param averageQuerySideLength
+		 * @param threads parallelism of the loader
+		 */
+		public ParallelTGSBulkLoader(RTree rtree, 
+				String path, 
+				int dimension,
+				int blockSize, 
+				double ratio, 
+				double nodeUtil, DoublePointRectangle universe, 
+				double[] averageQuerySideLength, 
+				int threads) {
+			super(rtree, path, dimension, blockSize, ratio, nodeUtil, universe, averageQuerySideLength);
+			pool = new ForkJoinPool(threads);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.rtrees.TGSBulkLoader#buildRTree(java.util.Iterator)
+		 */
+		@Override
+		public void buildRTree(Iterator<T> rectangles) throws IOException{
+			try {
+				super.buildRTree(rectangles);
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.rtrees.TGSBulkLoader#writeNode(java.util.List, int)
+		 */
+		@Override
+		public MapEntry<Long, DoublePointRectangle> writeNode(List entries, int level) {
+			synchronized (treeContainer) {
+				return super.writeNode(entries, level);
+			}
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see xxl.core.indexStructures.rtrees.TGSBulkLoader#tileData(java.util.List, int, int, java.io.DataOutput)
+		 */
+		@Override
+		public int tileData(List dataF, int number, int level, DataOutput out) throws IOException{
+			TileTask task;
+			try {
+				task = pool.invoke(new TileTask(new ArrayList(dataF), level));
+			}
+			catch (RuntimeException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException)e.getCause();
+				throw e;
+			}
+			out.write(task.entries.toByteArray());
+			return task.written;
+		}
+		
+		/**
+		 * Sorts the partition externally like the sequential loader, but
+		 * uses a separate container for every sort, because several sorts
+		 * run concurrently. The container is deleted afterwards.
+		 */
+		@Override
+		protected List sort(List data, Comparator comp, int level) throws IOException{
+			final Converter converter = (level > 0 ) ? mapEntryConverter: dataConverter;
+			int objectSize = (level > 0 ) ? dimension *  16 : dimension * 16  + 8; 
+			final BlockFileContainer queueContainer = new BlockFileContainer(path  + "tmpsortqueue.tmp_" + sortFiles.getAndIncrement(), blockSize);
+			final Function<Function<?, Integer>, Queue<?>> queueFunction =
+				new AbstractFunction<Function<?, Integer>, Queue<?>>() {
+				public Queue<?> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+					return new BlockBasedQueue(queueContainer, blockSize, converter,
+							function1, function2);
+				}
+			};
+			Iterator sorteddata = new MergeSorter(data.iterator(), 
+					comp, objectSize ,  SORT_BUFFER_SIZE, SORT_BUFFER_SIZE, queueFunction, false);
+			List list = new ArrayList(data.size());
+			while(sorteddata.hasNext()){
+				list.add(sorteddata.next());
+			}
+			queueContainer.delete();
+			return list; 
+		}
+		
+		/**
+		 * Returns a comparator comparing the centers in the given dimensions
+		 * one after the other. This is the order established by stable sorts
+		 * by the dimensions in reverse order, i.e., the order of the in place
+		 * sorts of the sequential loader.
+		 * 
+		 * @param dims the dimensions to be compared
+		 * @param level
+		 * @return
+		 */
+		@SuppressWarnings("unchecked")
+		protected Comparator getCascadeComparator(int[] dims, int level){
+			final Comparator[] comparators = new Comparator[dims.length];
+			for (int i = 0; i < dims.length; i++)
+				comparators[i] = getDimensionComparator(dims[i], level);
+			return new Comparator() {
+				
+				@Override
+				public int compare(Object o1, Object o2) {
+					for (Comparator comparator : comparators) {
+						int result = comparator.compare(o1, o2);
+						if (result != 0)
+							return result;
+					}
+					return 0;
+				}
+			};
+		}
+		
+		/**
+		 * Sorts the given partition in main memory by a stable sort.
+		 * 
+		 * @param data
+		 * @param dims the dimensions to be compared
+		 * @param level
+		 * @return
+		 */
+		@SuppressWarnings("unchecked")
+		protected List sortInMemory(List data, int[] dims, int level){
+			Object[] array = data.toArray();
+			Arrays.parallelSort(array, getCascadeComparator(dims, level));
+			return Arrays.asList(array);
+		}
+		
+		/**
+		 * Tiles one partition. The result is the number of written nodes,
+		 * the index entries are collected in {@link #entries}.
+		 */
+		@SuppressWarnings("serial")
+		protected class TileTask extends RecursiveTask<TileTask> {
+			
+			protected List data;
+			
+			protected int level;
+			
+			protected ByteArrayOutputStream entries = new ByteArrayOutputStream();
+			
+			protected int written;
+			
+			protected TileTask(List data, int level) {
+				this.data = data;
+				this.level = level;
+			}
+			
+			@Override
+			protected TileTask compute() {
+				try {
+					int number = data.size();
+					if (number <= maxRecordsProNode){ 
+						written = writeNode(data.iterator(), number, level, new DataOutputStream(entries));
+						return this;
+					}
+					boolean external = ESORT && (number > B_Leaf*B_Leaf*20);
+					int approxTreeHeight = ((int)(Math.ceil( Math.log(number)/ Math.log(maxRecordsProNode))))-1;
+					int M = (int)Math.floor(Math.pow(maxRecordsProNode, approxTreeHeight));
+					List<SplitTask> dimensions = new ArrayList<SplitTask>(dimension);
+					for (int i = 0; i < dimension; i++)
+						dimensions.add(new SplitTask(data, i, level, M, external));
+					ForkJoinTask.invokeAll(dimensions);
+					// ties are resolved in favour of the lower dimension like in the sequential version
+					SplitTask best = dimensions.get(0);
+					for (SplitTask split : dimensions)
+						if (split.costs < best.costs)
+							best = split;
+					List sorted = best.sorted;
+					if (!external && best.dim != dimension-1) {
+						// the sequential version sorts the partition by the chosen
+						// dimension after it has been sorted by the last one
+						int[] dims = new int[dimension+1];
+						dims[0] = best.dim;
+						for (int i = 1; i <= dimension; i++)
+							dims[i] = dimension-i;
+						sorted = sortInMemory(data, dims, level);
+					}
+					data = null;
+					for (SplitTask split : dimensions)
+						split.sorted = null;
+					TileTask left = new TileTask(new ArrayList(sorted.subList(0, best.argMin+1)), level);
+					TileTask right = new TileTask(new ArrayList(sorted.subList(best.argMin+1, sorted.size())), level);
+					sorted = null;
+					left.fork();
+					right.compute();
+					left.join();
+					left.entries.writeTo(entries);
+					right.entries.writeTo(entries);
+					written = left.written + right.written;
+					return this;
+				}
+				catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		
+		/**
+		 * Evaluates the split positions of a partition along one dimension.
+		 */
+		@SuppressWarnings("serial")
+		protected class SplitTask extends RecursiveTask<SplitTask> {
+			
+			protected List sorted;
+			
+			protected int dim, level, M;
+			
+			protected boolean external;
+			
+			protected double costs = Double.MAX_VALUE;
+			
+			protected int argMin = 0;
+			
+			protected SplitTask(List data, int dim, int level, int M, boolean external) {
+				this.sorted = data;
+				this.dim = dim;
+				this.level = level;
+				this.M = M;
+				this.external = external;
+			}
+			
+			@Override
+			protected SplitTask compute() {
+				if (external) {
+					try {
+						sorted = sort(sorted, getDimensionComparator(dim, level), level);
+					}
+					catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				else {
+					// the sequential version sorts by all dimensions up to this one in place
+					int[] dims = new int[dim+1];
+					for (int i = 0; i <= dim; i++)
+						dims[i] = dim-i;
+					sorted = sortInMemory(sorted, dims, level);
+				}
+				RecursiveTask<List<DoublePointRectangle>> backward = new RecursiveTask<List<DoublePointRectangle>>() {
+					@Override
+					protected List<DoublePointRectangle> compute() {
+						return computeCosts(sorted, false, level);
+					}
+				};
+				backward.fork();
+				List<DoublePointRectangle> forwardList = computeCosts(sorted, true, level);
+				List<DoublePointRectangle> backwardList = backward.join();
+				int number = sorted.size();
+				int splits = number/M;
+				for(int k = 1; k <= splits; k++){
+					int splitIndex = k*M;
+					if (splitIndex  < number){
+						double fcost = costFunction.invoke(forwardList.get(splitIndex-1), backwardList.get(splitIndex));
+						if (fcost < costs){
+							costs = fcost;
+							argMin = splitIndex-1;
+						}
+					}
+				}
+				return this;
+			}
+		}
+	}
+
 }
@@ -0,0 +1,458 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.rtrees;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Stack;
+
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.filters.Filter;
+import xxl.core.cursors.mappers.Mapper;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.Descriptor;
+import xxl.core.indexStructures.RTree;
+import xxl.core.indexStructures.Tree;
+import xxl.core.io.converters.Converter;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.predicates.Equal;
+
+/**
+ * An R*-tree with an update memo for moving object workloads.
+ * 
+ * Every data object carries an object id (determined by a user defined function) and 
+ * is stored together with a stamp in a {@link StampedEntry}. An update does not search
+ * and remove the old version of an object. Instead, the new version is inserted 
+ * immediately and the memo records the stamp of the latest version and the number of 
+ * obsolete versions of the object which are still stored in the tree. Queries filter 
+ * the obsolete versions. The garbage is removed lazily: whenever an insertion 
+ * touches a leaf, the obsolete entries of this leaf are purged and the memo is 
+ * adjusted. Objects without an entry in the memo have exactly one valid version.   
+ * 
+ * For a detailed discussion see 
+ * Xiaopeng Xiong, Walid G. Aref: 
+ * "R-trees with Update Memos", ICDE 2006. 
+ * 
+ * The memo is main memory resident. Before the tree is closed, {@link #cleanUp()}
+ * should be called, which removes all obsolete entries and empties the memo.
+ * The data objects are wrapped into {@link StampedEntry}s, therefore the tree's nodes 
+ * have to be serialized with a converter created by {@link #stampedConverter(Converter)}
+ * and the size of a data entry is the size of the data object plus 8 bytes. 
+ * Object ids have to be unique, {@link #insert(Object)} is intended for new objects 
+ * and {@link #update(Object, Object)} for objects already stored in the tree.
+ * 
+ * <pre>
+ * 	UpdateMemoRTree rtree = new UpdateMemoRTree(getId);
+ * 	Converter converter = rtree.nodeConverter(UpdateMemoRTree.stampedConverter(objectConverter), dimension);
+ * 	rtree.initialize(getDescriptor, container, blockSize, dataSize+8, descriptorSize, minMaxFactor);
+ * </pre>
+ * 
+ * @see RTree
+ */
+public class UpdateMemoRTree extends RTree {
+
+	/**
+	 * A data object together with the stamp of its insertion.
+	 */
+	public static class StampedEntry {
+		
+		/**
+		 * The data object.
+		 */
+		protected Object data;
+		
+		/**
+		 * The stamp of the insertion.
+		 */
+		protected long stamp;
+		
+		/**
+		 * Creates a new stamped entry.
+		 * 
+		 * @param data the data object
+		 * @param stamp the stamp of the insertion
+		 */
+		public StampedEntry(Object data, long stamp) {
+			this.data = data;
+			this.stamp = stamp;
+		}
+		
+		/**
+		 * Returns the data object.
+		 * 
+		 * @return the data object
+		 */
+		public Object data() {
+			return data;
+		}
+		
+		/**
+		 * Returns the stamp of the insertion.
+		 * 
+		 * @return the stamp of the insertion
+		 */
+		public long stamp() {
+			return stamp;
+		}
+		
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof StampedEntry))
+				return false;
+			StampedEntry entry = (StampedEntry)object;
+			return stamp == entry.stamp && data.equals(entry.data);
+		}
+		
+		@Override
+		public int hashCode() {
+			return data.hashCode() ^ (int)(stamp ^ (stamp >>> 32));
+		}
+		
+		@Override
+		public String toString() {
+			return data + "@" + stamp;
+		}
+	}
+	
+	/**
+	 * An entry of the update memo.
+	 */
+	protected static class MemoEntry {
+		
+		/**
+		 * The stamp of the latest version. 
+		 */
+		protected long stamp;
+		
+		/**
+		 * The number of obsolete versions still stored in the tree.
+		 */
+		protected int obsolete;
+	}
+	
+	/**
+	 * Creates a converter for {@link StampedEntry}s: the stamp is written as a 
+	 * <tt>long</tt> followed by the data object.
+	 * 
+	 * @param dataConverter converter for the data objects
+	 * @return a converter for stamped entries
+	 */
+	public static Converter<StampedEntry> stampedConverter(final Converter dataConverter) {
+		return new Converter<StampedEntry>() {
+			
+			@Override
+			public StampedEntry read(DataInput dataInput, StampedEntry object) throws IOException {
+				long stamp = dataInput.readLong();
+				return new StampedEntry(dataConverter.read(dataInput, null), stamp);
+			}
+			
+			@Override
+			public void write(DataOutput dataOutput, StampedEntry object) throws IOException {
+				dataOutput.writeLong(object.stamp);
+				dataConverter.write(dataOutput, object.data);
+			}
+		};
+	}
+	
+	/**
+	 * Function mapping a data object to its object id.
+	 */
+	protected Function getId;
+	
+	/**
+	 * The update memo: object id to the stamp of its latest version and the number 
+	 * of its obsolete versions.
+	 */
+	protected Map<Object, MemoEntry> memo = new HashMap<Object, MemoEntry>();
+	
+	/**
+	 * The last assigned stamp.
+	 */
+	protected long stamp = 0;
+	
+	/**
+	 * Creates a new tree. One of the <tt>initialize</tt> methods has to be called 
+	 * before the tree can be used.
+	 * 
+	 * @param getId function mapping a data object to its object id
+	 */
+	public UpdateMemoRTree(Function getId) {
+		this.getId = getId;
+	}
+	
+	/**
+	 * Sets the last assigned stamp. When a tree is reopened, the stamp has to be 
+	 * set to a value not smaller than the largest stamp stored in the tree.  
+	 * 
+	 * @param stamp the last assigned stamp
+	 */
+	public void setStamp(long stamp) {
+		this.stamp = stamp;
+	}
+	
+	/**
+	 * Returns the last assigned stamp.
+	 * 
+	 * @return the last assigned stamp
+	 */
+	public long stamp() {
+		return stamp;
+	}
+	
+	/**
+	 * Returns the number of obsolete entries which are still stored in the tree.
+	 * 
+	 * @return the number of obsolete entries
+	 */
+	public int garbage() {
+		int garbage = 0;
+		for (MemoEntry entry : memo.values())
+			garbage += entry.obsolete;
+		return garbage;
+	}
+	
+	/**
+	 * Returns <tt>true</tt> if the given stamped entry is the latest version of its object.
+	 * 
+	 * @param entry a stamped entry
+	 * @return <tt>true</tt> if the entry is valid
+	 */
+	protected boolean isValid(StampedEntry entry) {
+		MemoEntry memoEntry = memo.get(getId.invoke(entry.data));
+		return memoEntry == null || memoEntry.stamp == entry.stamp;
+	}
+	
+	/**
+	 * Registers a new latest version of an object in the memo. 
+	 * 
+	 * @param data the object
+	 * @param obsolete <tt>true</tt> if the former version becomes obsolete
+	 * @return the stamp of the new version
+	 */
+	protected long stamp(Object data, boolean obsolete) {
+		Object id = getId.invoke(data);
+		MemoEntry memoEntry = memo.get(id);
+		if (memoEntry == null) {
+			if (!obsolete)
+				return ++stamp;
+			memo.put(id, memoEntry = new MemoEntry());
+		}
+		memoEntry.stamp = ++stamp;
+		if (obsolete)
+			memoEntry.obsolete++;
+		return memoEntry.stamp;
+	}
+	
+	/**
+	 * Removes the obsolete entries of a leaf and adjusts the memo.
+	 * 
+	 * @param entries the entries of a leaf
+	 * @return <tt>true</tt> if an entry has been removed
+	 */
+	protected boolean purge(Iterator entries) {
+		boolean purged = false;
+		while (entries.hasNext()) {
+			StampedEntry entry = (StampedEntry)entries.next();
+			Object id = getId.invoke(entry.data);
+			MemoEntry memoEntry = memo.get(id);
+			if (memoEntry != null && memoEntry.stamp != entry.stamp) {
+				entries.remove();
+				purged = true;
+				if (--memoEntry.obsolete == 0)
+					memo.remove(id);
+			}
+		}
+		return purged;
+	}
+	
+	/**
+	 * Removes all obsolete entries from the tree. Afterwards the memo is empty. 
+	 * Leaves may underflow by the cleaning.
+	 */
+	public void cleanUp() {
+		if (rootEntry() != null && !memo.isEmpty()) {
+			if (height() == 1) {
+				Node node = (Node)rootEntry().get(false);
+				if (node.purge())
+					rootEntry().update(node, true);
+				else
+					rootEntry().unfix();
+			}
+			else
+				for (Cursor leaves = super.query(rootDescriptor(), 1); leaves.hasNext();) {
+					IndexEntry indexEntry = (IndexEntry)leaves.next();
+					Node node = (Node)indexEntry.get(false);
+					if (node.purge())
+						indexEntry.update(node, true);
+					else
+						indexEntry.unfix();
+				}
+		}
+		memo.clear();
+	}
+	
+	/* (non-Javadoc)
+	 * @see xxl.core.indexStructures.ORTree#descriptor(java.lang.Object)
+	 */
+	@Override
+	public Descriptor descriptor(Object entry) {
+		return super.descriptor(entry instanceof StampedEntry ? ((StampedEntry)entry).data : entry);
+	}
+	
+	/**
+	 * Inserts a new object. The object id must not be stored in the tree.
+	 * 
+	 * @param data the object to insert
+	 */
+	@Override
+	public void insert(Object data) {
+		StampedEntry entry = new StampedEntry(data, stamp(data, false));
+		insert(entry, descriptor(entry), 0);
+	}
+	
+	/**
+	 * Inserts the new version of an object without searching the old one. 
+	 * The old version becomes obsolete and is removed lazily. 
+	 * 
+	 * @param oldData the current version of the object, only its id is used
+	 * @param newData the new version of the object
+	 */
+	@Override
+	public void update(Object oldData, Object newData) {
+		StampedEntry entry = new StampedEntry(newData, stamp(newData, true));
+		insert(entry, descriptor(entry), 0);
+	}
+	
+	/**
+	 * Removes an object logically: the current version becomes obsolete and is 
+	 * removed lazily. The memo is not changed if the object is not stored in the 
+	 * tree. 
+	 * 
+	 * @param data the current version of the object to remove
+	 * @return the removed object or <tt>null</tt> if no such object was found
+	 */
+	@Override
+	public Object remove(Object data) {
+		Object removed = null;
+		Cursor objects = query(descriptor(data), 0);
+		while (objects.hasNext()) {
+			Object object = objects.next();
+			if (Equal.DEFAULT_INSTANCE.invoke(object, data)) {
+				removed = object;
+				break;
+			}
+		}
+		objects.close();
+		if (removed != null)
+			stamp(data, true);
+		return removed;
+	}
+	
+	/**
+	 * Queries on the leaf level deliver the valid data objects, obsolete entries 
+	 * are filtered. Queries on higher levels are not affected. 
+	 * 
+	 * @see xxl.core.indexStructures.ORTree#query(xxl.core.indexStructures.Descriptor, int)
+	 */
+	@Override
+	public Cursor query(Descriptor queryDescriptor, int targetLevel) {
+		Cursor cursor = super.query(queryDescriptor, targetLevel);
+		if (targetLevel > 0)
+			return cursor;
+		return new Mapper(
+			new AbstractFunction() {
+				public Object invoke(Object entry) {
+					return ((StampedEntry)entry).data;
+				}
+			},
+			new Filter(cursor, 
+				new AbstractPredicate() {
+					public boolean invoke(Object entry) {
+						return isValid((StampedEntry)entry);
+					}
+				}
+			)
+		);
+	}
+	
+	/**
+	 * Obsolete entries are filtered. The entries of the leaf candidates are 
+	 * {@link StampedEntry}s.  
+	 * 
+	 * @see xxl.core.indexStructures.Tree#query(xxl.core.collections.queues.Queue, int)
+	 */
+	@Override
+	public Iterator query(Queue queue, int level) {
+		return new Filter(super.query(queue, level), 
+			new AbstractPredicate() {
+				public boolean invoke(Object candidate) {
+					Object entry = ((Tree.Query.Candidate)candidate).entry();
+					return !(entry instanceof StampedEntry) || isValid((StampedEntry)entry);
+				}
+			}
+		);
+	}
+	
+	/* (non-Javadoc)
+	 * @see xxl.core.indexStructures.RTree#createNode(int)
+	 */
+	@Override
+	public Tree.Node createNode(int level) {
+		return new Node().initialize(level, new LinkedList());
+	}
+	
+	/**
+	 * Nodes purge the obsolete entries of a leaf whenever an entry is inserted into the leaf.
+	 */
+	public class Node extends RTree.Node {
+		
+		/* (non-Javadoc)
+		 * @see xxl.core.indexStructures.ORTree.Node#grow(java.lang.Object, java.util.Stack)
+		 */
+		@Override
+		protected void grow(Object data, Stack path) {
+			if (level == 0)
+				purge();
+			super.grow(data, path);
+		}
+		
+		/**
+		 * Removes the obsolete entries of this leaf.
+		 * 
+		 * @return <tt>true</tt> if an entry has been removed
+		 */
+		protected boolean purge() {
+			return UpdateMemoRTree.this.purge(entries.iterator());
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.cursors.groupers.HashAggregator;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.math.functions.AggregationFunction;
+import xxl.core.math.functions.MetaDataAggregationFunction;
+import xxl.core.relational.metaData.AppendedResultSetMetaData;
+import xxl.core.relational.metaData.ColumnMetaData;
+import xxl.core.relational.metaData.ColumnMetaDataResultSetMetaData;
+import xxl.core.relational.metaData.ColumnMetaDatas;
+import xxl.core.relational.metaData.ProjectedResultSetMetaData;
+import xxl.core.relational.metaData.RenamedResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.WrappingRuntimeException;
+import xxl.core.util.metaData.CompositeMetaData;
+import xxl.core.util.metaData.MetaDataException;
+
+/**
+ * The hash group-aggregator computes aggregates like SUM, COUNT and AVG for
+ * the groups of an unsorted input metadata cursor, i.e., it combines a
+ * grouping on the given group columns with the aggregation. In contrast to
+ * the {@link GroupAggregator}, which requires an input that has been grouped
+ * by a {@link SortBasedGrouper}, the algorithm of
+ * {@link xxl.core.cursors.groupers.HashAggregator} is used internally: only
+ * the aggregates of every group are kept in a main memory hash table and the
+ * tuples of the groups that do not fit in memory are spilled to queues and
+ * aggregated recursively.
+ * 
+ * <p>Every result tuple consists of the group columns followed by the
+ * aggregates. The order of the groups is not specified.</p>
+ */
+public class HashGroupAggregator extends HashAggregator<Tuple, Object[], Tuple> implements MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> {
+
+	/**
+	 * Returns an aggregation function computing the given aggregates in an
+	 * array.
+	 *
+	 * @param aggregates the aggregation functions.
+	 * @return an aggregation function computing an array of aggregates.
+	 */
+	protected static AggregationFunction<Tuple, Object[]> aggregates(final MetaDataAggregationFunction<Tuple, Object, CompositeMetaData<Object, Object>>[] aggregates) {
+		return new AggregationFunction<Tuple, Object[]>() {
+			@Override
+			public Object[] invoke(Object[] aggregate, Tuple tuple) {
+				if (aggregate == null)
+					aggregate = new Object[aggregates.length];
+				for (int i = 0; i < aggregates.length; i++)
+					aggregate[i] = aggregates[i].invoke(aggregate[i], tuple);
+				return aggregate;
+			}
+		};
+	}
+
+	/**
+	 * Returns a function creating a result tuple from the values of the group
+	 * columns and the aggregates.
+	 *
+	 * @param groupColumns the group columns.
+	 * @param createOutputTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 * @return a function creating the result tuples.
+	 */
+	protected static Function<Object, Tuple> newResult(final int[] groupColumns, final Function<Object, ? extends Tuple> createOutputTuple) {
+		return new AbstractFunction<Object, Tuple>() {
+			@Override
+			public Tuple invoke(Object key, Object aggregate) {
+				Object[] aggregates = (Object[])aggregate;
+				ArrayList<Object> result = new ArrayList<Object>(groupColumns.length + aggregates.length);
+				if (groupColumns.length == 1)
+					result.add(key);
+				else
+					result.addAll((List<?>)key);
+				for (Object value : aggregates)
+					result.add(value);
+				return createOutputTuple.invoke(result);
+			}
+		};
+	}
+
+	/**
+	 * Returns a function creating an in-memory queue.
+	 *
+	 * @return a function creating an in-memory queue.
+	 */
+	private static Function<Function<?, Integer>, Queue<Tuple>> newListQueue() {
+		return new AbstractFunction<Function<?, Integer>, Queue<Tuple>>() {
+			@Override
+			public Queue<Tuple> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<Tuple>();
+			}
+		};
+	}
+
+	/**
+	 * An internal variable used for storing the metadata information of this
+	 * group-aggregator.
+	 */
+	protected CompositeMetaData<Object, Object> globalMetaData;
+
+	/**
+	 * Creates a new hash group-aggregator.
+	 *
+	 * @param cursor the input metadata cursor delivering the tuples to be
+	 *        grouped and aggregated.
+	 * @param groupColumns the columns the tuples are grouped by.
+	 * @param aggregates an array of metadata aggregates that each computes an
+	 *        aggregate on the tuples of a group.
+	 * @param aggregateColumnNames the column names of the aggregate columns.
+	 *        This array must have the same length as the number of given
+	 *        aggregates. If an entry equals <code>null</code>, the name
+	 *        determined by the aggregate function is taken.
+	 * @param createOutputTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 *        {@link xxl.core.relational.tuples.ArrayTuple#FACTORY_METHOD} can be
+	 *        used as a default factory method.
+	 * @param entrySize the size of a group (key and aggregates) in main
+	 *        memory.
+	 * @param memSize the memory available for the hash table.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 */
+	public HashGroupAggregator(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor, int[] groupColumns, MetaDataAggregationFunction<Tuple, Object, CompositeMetaData<Object, Object>>[] aggregates, String[] aggregateColumnNames, Function<Object, ? extends Tuple> createOutputTuple, int entrySize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) {
+		super(
+			cursor,
+			HashJoin.joinKey(groupColumns),
+			aggregates(aggregates),
+			newResult(groupColumns, createOutputTuple),
+			entrySize,
+			memSize,
+			blockSize,
+			DEFAULT_FAN_OUT,
+			newQueue
+		);
+		try {
+			if (aggregates.length != aggregateColumnNames.length)
+				throw new MetaDataException("the number of specified aggregate functions and the new column names does not match");
+			
+			ResultSetMetaData resultSetMetaData = ResultSetMetaDatas.getResultSetMetaData(cursor);
+
+			ColumnMetaData[] columnMetaDatas = new ColumnMetaData[aggregates.length];
+			for (int i = 0; i < aggregates.length; i++) {
+				columnMetaDatas[i] = ColumnMetaDatas.getColumnMetaData(aggregates[i]);
+				if (aggregateColumnNames[i] == null)
+					aggregateColumnNames[i] = columnMetaDatas[i].getColumnName();
+			}
+
+			globalMetaData = new CompositeMetaData<Object, Object>();
+			globalMetaData.add(
+				ResultSetMetaDatas.RESULTSET_METADATA_TYPE,
+				new AppendedResultSetMetaData(
+					new ProjectedResultSetMetaData(resultSetMetaData, groupColumns),
+					new RenamedResultSetMetaData(
+						new ColumnMetaDataResultSetMetaData(
+							columnMetaDatas
+						),
+						aggregateColumnNames
+					)
+				)
+			);
+		}
+		catch (SQLException e) {
+			throw new WrappingRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates a new hash group-aggregator applying the aggregates on the
+	 * given columns.
+	 *
+	 * @param cursor the input metadata cursor delivering the tuples to be
+	 *        grouped and aggregated.
+	 * @param groupColumns the columns the tuples are grouped by.
+	 * @param aggregates an array of metadata aggregates that each computes an
+	 *        aggregate on the tuples of a group.
+	 * @param aggregatedColumns the column indices determining which aggregate
+	 *        function is applied on which column. This array must have the
+	 *        same length as the number of given aggregates.
+	 * @param aggregateColumnNames the column names of the aggregate columns.
+	 *        If an entry equals <code>null</code>, the name determined by the
+	 *        aggregate function is taken.
+	 * @param createOutputTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 * @param entrySize the size of a group (key and aggregates) in main
+	 *        memory.
+	 * @param memSize the memory available for the hash table.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition.
+	 */
+	public HashGroupAggregator(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor, int[] groupColumns, MetaDataAggregationFunction<Object, Object, CompositeMetaData<Object, Object>>[] aggregates, int[] aggregatedColumns, String[] aggregateColumnNames, Function<Object, ? extends Tuple> createOutputTuple, int entrySize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) {
+		this(
+			cursor,
+			groupColumns,
+			Aggregator.getTupleAggregationFunctions(aggregates, aggregatedColumns),
+			aggregateColumnNames,
+			createOutputTuple,
+			entrySize,
+			memSize,
+			blockSize,
+			newQueue
+		);
+		try {
+			int columnCount = ResultSetMetaDatas.getResultSetMetaData(cursor).getColumnCount();
+			for (int i = 0; i < aggregatedColumns.length; i++)
+				if (aggregatedColumns[i] < 1 || columnCount < aggregatedColumns[i])
+					throw new MetaDataException("the specified column " + aggregatedColumns[i] + " cannot be aggregated because it does not exist in the underlying meta data");
+		}
+		catch (SQLException e) {
+			throw new WrappingRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates a new in-memory hash group-aggregator applying the aggregates
+	 * on the given columns. The column names of the aggregates are determined
+	 * by the aggregate functions.
+	 *
+	 * @param cursor the input metadata cursor delivering the tuples to be
+	 *        grouped and aggregated.
+	 * @param groupColumns the columns the tuples are grouped by.
+	 * @param aggregates an array of metadata aggregates that each computes an
+	 *        aggregate on the tuples of a group.
+	 * @param aggregatedColumns the column indices determining which aggregate
+	 *        function is applied on which column.
+	 * @param createOutputTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 */
+	public HashGroupAggregator(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor, int[] groupColumns, MetaDataAggregationFunction<Object, Object, CompositeMetaData<Object, Object>>[] aggregates, int[] aggregatedColumns, Function<Object, ? extends Tuple> createOutputTuple) {
+		this(cursor, groupColumns, aggregates, aggregatedColumns, new String[aggregates.length], createOutputTuple, 1, Integer.MAX_VALUE, 1, newListQueue());
+	}
+
+	/**
+	 * Returns the metadata information for this group-aggregator.
+	 *
+	 * @return the metadata information for this group-aggregator.
+	 */
+	public CompositeMetaData<Object, Object> getMetaData() {
+		return globalMetaData;
+	}
+}
@@ -0,0 +1,478 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.predicates.Predicate;
+import xxl.core.predicates.Predicates;
+import xxl.core.relational.JoinUtils;
+import xxl.core.relational.metaData.AppendedResultSetMetaData;
+import xxl.core.relational.metaData.MergedResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.metaData.UnifiedResultSetMetaData;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.metaData.CompositeMetaData;
+import xxl.core.util.metaData.MetaDataException;
+
+/**
+ * This class realizes an equi-join operator based on hashing. The two input
+ * relations need not be sorted. The algorithm of
+ * {@link xxl.core.cursors.joins.HashJoin} is used internally, i.e., the
+ * second input relation is kept in main memory hash tables as far as the
+ * memory limit allows and the remaining partitions of both relations are
+ * spilled to queues and joined recursively. So the smaller relation should be
+ * passed as second input.
+ * 
+ * <p>The join columns are either specified explicitly or, for natural, outer,
+ * semi and anti joins, determined by the columns of both relations having the
+ * same name.</p>
+ * 
+ * <p>Compared to {@link SortMergeJoin} this class neither requires sorted
+ * inputs nor sweep-areas, but it only supports equality on the join columns
+ * (plus an optional residual predicate).</p>
+ */
+public class HashJoin extends xxl.core.cursors.joins.HashJoin<Tuple, Tuple> implements MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> {
+
+	/**
+	 * An enumeration of constants specifying the join types supported by this
+	 * class.
+	 */
+	public static enum Type {
+		
+		/**
+		 * A constant specifying an equi-join on explicitly specified columns.
+		 * The columns of both relations are appended.
+		 */
+		THETA_JOIN,
+		
+		/**
+		 * A constant specifying a left outer join. The joining tuples as well
+		 * as all tuples of the first relation without join partner will be
+		 * returned; the missing columns are filled with <code>null</code>.
+		 */
+		LEFT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a right outer join. The joining tuples as well
+		 * as all tuples of the second relation without join partner will be
+		 * returned; the missing columns are filled with <code>null</code>.
+		 */
+		RIGHT_OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a full outer join. The tuples of the LEFT and
+		 * RIGHT OUTER_JOIN will be returned.
+		 */
+		OUTER_JOIN,
+		
+		/**
+		 * A constant specifying a natural join. The tuples are compared using
+		 * their common columns.
+		 */
+		NATURAL_JOIN,
+		
+		/**
+		 * A constant specifying a semi join. The tuples of the first relation
+		 * having a join partner are returned, i.e., the results become
+		 * projected to the columns of the first input relation.
+		 */
+		SEMI_JOIN,
+		
+		/**
+		 * A constant specifying an anti join. The tuples of the first relation
+		 * without join partner are returned, i.e., the results become
+		 * projected to the columns of the first input relation.
+		 */
+		ANTI_JOIN
+	}
+
+	/**
+	 * Returns a function determining the join key of a tuple, i.e., the
+	 * values of the given columns. For a single column the value itself is
+	 * the key, otherwise a list of the values.
+	 *
+	 * @param columns the indices of the join columns (the first column is 1,
+	 *        the second is 2, ...).
+	 * @return a function determining the join key of a tuple.
+	 */
+	public static Function<Tuple, Object> joinKey(final int... columns) {
+		return new AbstractFunction<Tuple, Object>() {
+			@Override
+			public Object invoke(Tuple tuple) {
+				if (columns.length == 1)
+					return tuple.getObject(columns[0]);
+				Object[] key = new Object[columns.length];
+				for (int i = 0; i < columns.length; i++)
+					key[i] = tuple.getObject(columns[i]);
+				return Arrays.asList(key);
+			}
+		};
+	}
+
+	/**
+	 * Returns the indices of the columns both relations have in common (i.e.,
+	 * the columns having the same name).
+	 *
+	 * @param metaData1 the relational metadata of the first relation.
+	 * @param metaData2 the relational metadata of the second relation.
+	 * @return an array containing the indices of the common columns of the
+	 *         first relation at position 0 and the indices of the common
+	 *         columns of the second relation at position 1.
+	 * @throws MetaDataException if the metadata cannot be accessed.
+	 */
+	public static int[][] commonColumns(ResultSetMetaData metaData1, ResultSetMetaData metaData2) throws MetaDataException {
+		try {
+			UnifiedResultSetMetaData metaData = new UnifiedResultSetMetaData(metaData1, metaData2);
+			List<int[]> columns = new ArrayList<int[]>();
+			for (int i = 1; i <= metaData.getColumnCount(); i++) {
+				int[] column = new int[2];
+				int origins = 0;
+				for (Iterator<int[]> indices = metaData.originalColumnIndices(i); indices.hasNext(); origins++) {
+					int[] index = indices.next();
+					column[index[0]] = index[1];
+				}
+				if (origins > 1)
+					columns.add(column);
+			}
+			int[][] result = new int[2][columns.size()];
+			for (int i = 0; i < columns.size(); i++) {
+				result[0][i] = columns.get(i)[0];
+				result[1][i] = columns.get(i)[1];
+			}
+			return result;
+		}
+		catch (SQLException sqle) {
+			throw new MetaDataException("meta data cannot be accessed due to the following sql exception: " + sqle.getMessage());
+		}
+	}
+
+	/**
+	 * Computes the relational metadata of a hash join.
+	 *
+	 * @param cursor1 the input metadata cursor delivering the elements of the
+	 *        first relation.
+	 * @param cursor2 the input metadata cursor delivering the elements of the
+	 *        second relation.
+	 * @param natural <code>true</code> if the common columns are unified,
+	 *        <code>false</code> if the columns are appended.
+	 * @param type the type of the join operation.
+	 * @return relational metadata that is appropriate for the type of join.
+	 */
+	public static MergedResultSetMetaData computeResultSetMetaData(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, boolean natural, Type type) {
+		ResultSetMetaData metaData1 = ResultSetMetaDatas.getResultSetMetaData(cursor1);
+		if (type == Type.SEMI_JOIN || type == Type.ANTI_JOIN)
+			return new UnifiedResultSetMetaData(metaData1);
+		ResultSetMetaData metaData2 = ResultSetMetaDatas.getResultSetMetaData(cursor2);
+		return natural ?
+			new UnifiedResultSetMetaData(metaData1, metaData2) :
+			new AppendedResultSetMetaData(metaData1, metaData2);
+	}
+
+	/**
+	 * Returns a function creating an in-memory queue.
+	 *
+	 * @return a function creating an in-memory queue.
+	 */
+	private static Function<Function<?, Integer>, Queue<Tuple>> newListQueue() {
+		return new AbstractFunction<Function<?, Integer>, Queue<Tuple>>() {
+			@Override
+			public Queue<Tuple> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<Tuple>();
+			}
+		};
+	}
+
+	/**
+	 * An internal variable used for storing the metadata information of this
+	 * join operator.
+	 */
+	protected CompositeMetaData<Object, Object> globalMetaData;
+
+	/**
+	 * Advanced constructor for a new hash join.
+	 * 
+	 * <p>Handle with care! Do not use this constructor if you do not know
+	 * exactly what you are doing.</p>
+	 *
+	 * @param cursor1 the input metadata cursor delivering the elements of the
+	 *        first relation.
+	 * @param cursor2 the input metadata cursor delivering the elements of the
+	 *        second (smaller) relation.
+	 * @param columns1 the join columns of the first relation.
+	 * @param columns2 the join columns of the second relation.
+	 * @param metaData the relational metadata of the new hash join.
+	 * @param residual a predicate that is additionally evaluated on the
+	 *        tuples with equal join columns.
+	 * @param createTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 *        {@link xxl.core.relational.tuples.ArrayTuple#FACTORY_METHOD} can be
+	 *        used.
+	 * @param type the type of the join operation. Possible values are the
+	 *        elements of the enumeration defined above in this class.
+	 * @param objectSize the size of a tuple in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, int[] columns1, int[] columns2, MergedResultSetMetaData metaData, Predicate<? super Tuple> residual, Function<Object, ? extends Tuple> createTuple, Type type, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) {
+		super(
+			cursor1,
+			cursor2,
+			joinKey(columns1),
+			joinKey(columns2),
+			residual,
+			JoinUtils.genericJoinTupleFactory(createTuple, metaData),
+			type == Type.LEFT_OUTER_JOIN ?
+				xxl.core.cursors.joins.HashJoin.Type.LEFT_OUTER_JOIN :
+				type == Type.RIGHT_OUTER_JOIN ?
+					xxl.core.cursors.joins.HashJoin.Type.RIGHT_OUTER_JOIN :
+					type == Type.OUTER_JOIN ?
+						xxl.core.cursors.joins.HashJoin.Type.OUTER_JOIN :
+						type == Type.SEMI_JOIN ?
+							xxl.core.cursors.joins.HashJoin.Type.SEMI_JOIN :
+							type == Type.ANTI_JOIN ?
+								xxl.core.cursors.joins.HashJoin.Type.ANTI_JOIN :
+								xxl.core.cursors.joins.HashJoin.Type.THETA_JOIN,
+			objectSize,
+			memSize,
+			blockSize,
+			newQueue
+		);
+		if (columns1.length != columns2.length)
+			throw new IllegalArgumentException("the relations have to be joined on the same number of columns");
+
+		globalMetaData = new CompositeMetaData<Object, Object>();
+		globalMetaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, metaData);
+	}
+
+	/**
+	 * Constructs a new hash join on the given columns. The columns of both
+	 * relations are appended (except for semi and anti joins).
+	 *
+	 * @param cursor1 the input metadata cursor delivering the elements of the
+	 *        first relation.
+	 * @param cursor2 the input metadata cursor delivering the elements of the
+	 *        second (smaller) relation.
+	 * @param columns1 the join columns of the first relation.
+	 * @param columns2 the join columns of the second relation.
+	 * @param createTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 *        {@link xxl.core.relational.tuples.ArrayTuple#FACTORY_METHOD} can be
+	 *        used.
+	 * @param type the type of the join operation. Possible values are the
+	 *        elements of the enumeration defined above in this class.
+	 * @param objectSize the size of a tuple in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, int[] columns1, int[] columns2, Function<Object, ? extends Tuple> createTuple, Type type, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) {
+		this(
+			cursor1,
+			cursor2,
+			columns1,
+			columns2,
+			computeResultSetMetaData(cursor1, cursor2, false, type),
+			Predicates.TRUE,
+			createTuple,
+			type,
+			objectSize,
+			memSize,
+			blockSize,
+			newQueue
+		);
+	}
+
+	/**
+	 * Constructs a new hash join on the common columns of both relations.
+	 *
+	 * @param cursor1 the input metadata cursor delivering the elements of the
+	 *        first relation.
+	 * @param cursor2 the input metadata cursor delivering the elements of the
+	 *        second (smaller) relation.
+	 * @param columns the indices of the common columns as returned by
+	 *        {@link #commonColumns(ResultSetMetaData, ResultSetMetaData)}.
+	 * @param createTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 * @param type the type of the join operation.
+	 * @param objectSize the size of a tuple in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition.
+	 */
+	private HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, int[][] columns, Function<Object, ? extends Tuple> createTuple, Type type, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) {
+		this(
+			cursor1,
+			cursor2,
+			columns[0],
+			columns[1],
+			computeResultSetMetaData(cursor1, cursor2, true, type),
+			Predicates.TRUE,
+			createTuple,
+			type,
+			objectSize,
+			memSize,
+			blockSize,
+			newQueue
+		);
+	}
+
+	/**
+	 * Constructs a new hash join on the common columns of both relations
+	 * (natural, outer, semi or anti join).
+	 *
+	 * @param cursor1 the input metadata cursor delivering the elements of the
+	 *        first relation.
+	 * @param cursor2 the input metadata cursor delivering the elements of the
+	 *        second (smaller) relation.
+	 * @param createTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 *        {@link xxl.core.relational.tuples.ArrayTuple#FACTORY_METHOD} can be
+	 *        used.
+	 * @param type the type of the join operation. Possible values are the
+	 *        elements of the enumeration defined above in this class except
+	 *        <code>THETA_JOIN</code>.
+	 * @param objectSize the size of a tuple in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 * @throws IllegalArgumentException if a theta join is specified.
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, Function<Object, ? extends Tuple> createTuple, Type type, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) throws IllegalArgumentException {
+		this(
+			cursor1,
+			cursor2,
+			commonColumns(ResultSetMetaDatas.getResultSetMetaData(cursor1), ResultSetMetaDatas.getResultSetMetaData(cursor2)),
+			createTuple,
+			checkNatural(type),
+			objectSize,
+			memSize,
+			blockSize,
+			newQueue
+		);
+	}
+
+	/**
+	 * Constructs a new in-memory hash join on the common columns of both
+	 * relations (natural, outer, semi or anti join).
+	 *
+	 * @param cursor1 the input metadata cursor delivering the elements of the
+	 *        first relation.
+	 * @param cursor2 the input metadata cursor delivering the elements of the
+	 *        second (smaller) relation.
+	 * @param createTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 *        {@link xxl.core.relational.tuples.ArrayTuple#FACTORY_METHOD} can be
+	 *        used.
+	 * @param type the type of the join operation. Possible values are the
+	 *        elements of the enumeration defined above in this class except
+	 *        <code>THETA_JOIN</code>.
+	 * @throws IllegalArgumentException if a theta join is specified.
+	 */
+	public HashJoin(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor1, MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor2, Function<Object, ? extends Tuple> createTuple, Type type) throws IllegalArgumentException {
+		this(cursor1, cursor2, createTuple, type, 1, Integer.MAX_VALUE, 1, newListQueue());
+	}
+
+	/**
+	 * Constructs a new hash join on the common columns of both relations
+	 * (natural, outer, semi or anti join).
+	 *
+	 * @param resultSet1 the input result set delivering the elements of the
+	 *        first relation.
+	 * @param resultSet2 the input result set delivering the elements of the
+	 *        second (smaller) relation.
+	 * @param createTuple a function that maps a list of objects (column
+	 *        values) to a new result tuple.
+	 *        {@link xxl.core.relational.tuples.ArrayTuple#FACTORY_METHOD} can be
+	 *        used.
+	 * @param type the type of the join operation. Possible values are the
+	 *        elements of the enumeration defined above in this class except
+	 *        <code>THETA_JOIN</code>.
+	 * @param objectSize the size of a tuple in main memory.
+	 * @param memSize the memory available for the hash tables.
+	 * @param blockSize the size of the buffer of a spilled partition.
+	 * @param newQueue a function returning a new queue used for spilling a
+	 *        partition. The function takes two parameterless functions
+	 *        returning the sizes of the input and output buffers.
+	 * @throws IllegalArgumentException if a theta join is specified.
+	 */
+	public HashJoin(ResultSet resultSet1, ResultSet resultSet2, Function<Object, ? extends Tuple> createTuple, Type type, int objectSize, int memSize, int blockSize, Function<Function<?, Integer>, ? extends Queue<Tuple>> newQueue) throws IllegalArgumentException {
+		this(
+			new ResultSetMetaDataCursor(resultSet1),
+			new ResultSetMetaDataCursor(resultSet2),
+			createTuple,
+			type,
+			objectSize,
+			memSize,
+			blockSize,
+			newQueue
+		);
+	}
+
+	/**
+	 * Checks that the given type can be computed on the common columns of
+	 * both relations.
+	 *
+	 * @param type the type of the join operation.
+	 * @return the given type.
+	 * @throws IllegalArgumentException if a theta join is specified.
+	 */
+	private static Type checkNatural(Type type) throws IllegalArgumentException {
+		if (type == Type.THETA_JOIN)
+			throw new IllegalArgumentException("for using a theta join, the join columns must be specified");
+		return type;
+	}
+
+	/**
+	 * Returns the metadata information for this metadata-cursor as a
+	 * composite metadata ({@link CompositeMetaData}).
+	 *
+	 * @return the metadata information for this metadata-cursor as a
+	 *         composite metadata ({@link CompositeMetaData}).
+	 */
+	public CompositeMetaData<Object, Object> getMetaData() {
+		return globalMetaData;
+	}
+}
@@ -0,0 +1,114 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.relational.cursors;
+
+import java.util.Comparator;
+
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.relational.tuples.Tuples;
+import xxl.core.util.metaData.CompositeMetaData;
+
+/**
+ * A sort operator delivering only the first <code>k</code> tuples of the
+ * sorted input, i.e., an ordering followed by a limit.
+ * 
+ * <p>This class uses the algorithm of
+ * {@link xxl.core.cursors.sorters.TopKSorter} and additionally forwards the
+ * metadata. A detailed description of the algorithm is contained in
+ * {@link xxl.core.cursors.sorters.TopKSorter}. Whenever a
+ * {@link MergeSorter merge-sorter} would be followed by a
+ * {@link xxl.core.cursors.filters.Taker taker}, this operator should be
+ * used instead.</p>
+ */
+public class TopKSorter extends xxl.core.cursors.sorters.TopKSorter<Tuple> implements MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> {
+
+	/**
+	 * The metadata provided by the top-k sorter.
+	 */
+	protected CompositeMetaData<Object, Object> globalMetaData;
+
+	/**
+	 * Creates a new top-k sorter.
+	 *
+	 * @param cursor the input metadata cursor to be sorted.
+	 * @param comparator the comparator defining the order of the tuples.
+	 * @param k the number of tuples to be delivered.
+	 * @param objectSize the size of a tuple in main memory.
+	 * @param memSize the memory available to the heap of a pass. If
+	 *        <code>k</code> tuples do not fit into it, the result is computed
+	 *        in several passes.
+	 */
+	public TopKSorter(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor, Comparator<? super Tuple> comparator, int k, int objectSize, int memSize) {
+		super(cursor, comparator, k, objectSize, memSize);
+		
+		this.globalMetaData = new CompositeMetaData<Object, Object>();
+		globalMetaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, ResultSetMetaDatas.getResultSetMetaData(cursor));
+	}
+
+	/**
+	 * Creates a new top-k sorter holding all <code>k</code> tuples in main
+	 * memory.
+	 *
+	 * @param cursor the input metadata cursor to be sorted.
+	 * @param comparator the comparator defining the order of the tuples.
+	 * @param k the number of tuples to be delivered.
+	 */
+	public TopKSorter(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor, Comparator<? super Tuple> comparator, int k) {
+		super(cursor, comparator, k);
+		
+		this.globalMetaData = new CompositeMetaData<Object, Object>();
+		globalMetaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, ResultSetMetaDatas.getResultSetMetaData(cursor));
+	}
+
+	/**
+	 * Creates a new top-k sorter holding all <code>k</code> tuples in main
+	 * memory.
+	 *
+	 * @param cursor the input metadata cursor to be sorted.
+	 * @param onColumns an array of column indices identifying the column to be
+	 *        compared: the first column is 1, the second is 2, ...
+	 * @param ascending an array of <code>boolean</code> values that determines
+	 *        the order (<tt>ascending=true</tt>/<tt>descending=false</tt>) for
+	 *        each dimension.
+	 * @param k the number of tuples to be delivered.
+	 */
+	public TopKSorter(MetaDataCursor<? extends Tuple, CompositeMetaData<Object, Object>> cursor, int[] onColumns, boolean[] ascending, int k) {
+		this(cursor, Tuples.getTupleComparator(onColumns, ascending), k);
+	}
+
+	/**
+	 * Returns the metadata information for this metadata-cursor as a composite
+	 * metadata ({@link CompositeMetaData}).
+	 *
+	 * @return the metadata information for this metadata-cursor as a composite
+	 *         metadata ({@link CompositeMetaData}).
+	 */
+	public CompositeMetaData<Object, Object> getMetaData() {
+		return globalMetaData;
+	}
+}
@@ -0,0 +1,376 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.spatial;
+
+import java.util.Arrays;
+
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.spatial.points.Point;
+
+/** 
+ * A table-driven encoder computing Z-order (Morton) and Hilbert values with 
+ * <tt>long</tt> keys for 2 to 16 dimensions. In contrast to the methods of 
+ * {@link SpaceFillingCurves}, the encoder does not allocate any objects per key, 
+ * so it is suitable for computing the keys of large data sets (e.g., for bulk loading).
+ * 
+ * The Z-order value interleaves the bits of the coordinates. The bits of a coordinate 
+ * are spread byte-wise by a precomputed table. The Hilbert value is computed 
+ * from the Z-order value: its <tt>dimensions</tt> bits of every level are mapped to 
+ * the next <tt>dimensions</tt> bits of the Hilbert value by the state machine of 
+ * C. Hamilton ("Compact Hilbert Indices", Technical Report CS-2006-07, Dalhousie 
+ * University, 2006). For up to {@link #MAX_TABLE_DIMENSIONS} dimensions, the 
+ * transitions of the state machine are precomputed in a table; for more dimensions 
+ * they are computed by a few bit operations.
+ * 
+ * The product of the dimensions and the bits per dimension must not exceed 63, 
+ * so the keys are non-negative. Points with <tt>double</tt> coordinates are 
+ * mapped to the grid of the encoder by a universe.
+ * 
+ * @see SpaceFillingCurves
+ */
+public class SpaceFillingCurveEncoder {
+
+	/** The maximum number of dimensions.
+	 */
+	public static final int MAX_DIMENSIONS = 16;
+	
+	/** The maximum number of dimensions whose Hilbert state transitions are precomputed.
+	 */
+	public static final int MAX_TABLE_DIMENSIONS = 6;
+	
+	/** The Hilbert state transition tables of the dimensions (created on demand).
+	 */
+	protected static final int[][] HILBERT_TABLES = new int[MAX_TABLE_DIMENSIONS+1][];
+
+	/** The number of dimensions.
+	 */
+	protected final int dimensions;
+	
+	/** The number of bits per dimension.
+	 */
+	protected final int bits;
+	
+	/** The bits of a byte spread to every <tt>dimensions</tt>-th bit.
+	 */
+	protected final long[] spread = new long[256];
+	
+	/** The Hilbert state transition table or <tt>null</tt> if the transitions are computed.
+	 */
+	protected final int[] hilbertTable;
+	
+	/** The lower bounds of the universe.
+	 */
+	protected final double[] low;
+	
+	/** The factors mapping the coordinates of the universe to the grid.
+	 */
+	protected final double[] scale;
+	
+	/** Creates a new encoder for the given universe.
+	 * 
+	 * @param bitsPerDimension the number of bits per dimension
+	 * @param low the lower bounds of the universe
+	 * @param high the upper bounds of the universe
+	 */
+	public SpaceFillingCurveEncoder (int bitsPerDimension, double[] low, double[] high) {
+		this.dimensions = low.length;
+		this.bits = bitsPerDimension;
+		if (dimensions < 2 || dimensions > MAX_DIMENSIONS)
+			throw new IllegalArgumentException("The number of dimensions has to be between 2 and "+MAX_DIMENSIONS+".");
+		if (bits < 1 || bits*dimensions > 63)
+			throw new IllegalArgumentException("The keys of "+dimensions+" dimensions support 1 to "+(63/dimensions)+" bits per dimension.");
+		if (high.length != dimensions)
+			throw new IllegalArgumentException("The bounds of the universe have different dimensions.");
+		for (int value = 0; value < 256; value++)
+			for (int bit = 0; bit < 8; bit++)
+				if ((value & (1 << bit)) != 0)
+					spread[value] |= 1L << (bit*dimensions);
+		this.hilbertTable = dimensions <= MAX_TABLE_DIMENSIONS ? hilbertTable(dimensions) : null;
+		this.low = low.clone();
+		this.scale = new double[dimensions];
+		for (int i = 0; i < dimensions; i++)
+			scale[i] = (1L << bits) / (high[i] - low[i]);
+	}
+
+	/** Creates a new encoder for the unit cube [0,1)<sup>dimensions</sup>.
+	 * 
+	 * @param dimensions the number of dimensions
+	 * @param bitsPerDimension the number of bits per dimension
+	 */
+	public SpaceFillingCurveEncoder (int dimensions, int bitsPerDimension) {
+		this(bitsPerDimension, new double[dimensions], filled(dimensions, 1.0));
+	}
+	
+	/** Returns an array of the given length filled with the given value.
+	 * 
+	 * @param length the length of the array
+	 * @param value the value of the entries
+	 * @return the new array
+	 */
+	private static double[] filled (int length, double value) {
+		double[] array = new double[length];
+		Arrays.fill(array, value);
+		return array;
+	}
+
+	/** Rotates the lowest <tt>n</tt> bits of <tt>value</tt> to the right.
+	 * 
+	 * @param value the value to rotate
+	 * @param shift the number of positions (0 &lt;= shift &lt;= n)
+	 * @param n the number of bits
+	 * @return the rotated value
+	 */
+	protected static int rotateRight (int value, int shift, int n) {
+		shift %= n;
+		return ((value >>> shift) | (value << (n-shift))) & ((1 << n)-1);
+	}
+	
+	/** Rotates the lowest <tt>n</tt> bits of <tt>value</tt> to the left.
+	 * 
+	 * @param value the value to rotate
+	 * @param shift the number of positions (0 &lt;= shift &lt;= n)
+	 * @param n the number of bits
+	 * @return the rotated value
+	 */
+	protected static int rotateLeft (int value, int shift, int n) {
+		shift %= n;
+		return ((value << shift) | (value >>> (n-shift))) & ((1 << n)-1);
+	}
+	
+	/** Returns the inverse of the Gray code.
+	 * 
+	 * @param gray a Gray code
+	 * @return the value whose Gray code is <tt>gray</tt>
+	 */
+	protected static int grayInverse (int gray) {
+		for (int shift = 1; shift < 32; shift <<= 1)
+			gray ^= gray >>> shift;
+		return gray;
+	}
+	
+	/** Returns the entry point of the <tt>w</tt>-th sub-cube (in Gray code).
+	 * 
+	 * @param w the index of the sub-cube
+	 * @return the entry point of the sub-cube
+	 */
+	protected static int entry (int w) {
+		if (w == 0)
+			return 0;
+		int i = (w-1) & ~1;
+		return i ^ (i >>> 1);
+	}
+	
+	/** Returns the intra sub-cube direction of the <tt>w</tt>-th sub-cube.
+	 * 
+	 * @param w the index of the sub-cube
+	 * @param n the number of dimensions
+	 * @return the direction of the sub-cube
+	 */
+	protected static int direction (int w, int n) {
+		if (w == 0)
+			return 0;
+		return Integer.numberOfTrailingZeros(~((w & 1) == 0 ? w-1 : w)) % n;
+	}
+	
+	/** Returns the Hilbert state transition table of the given dimensions.
+	 * The state <tt>e*n+d</tt> consists of the entry point <tt>e</tt> and the 
+	 * direction <tt>d</tt>. The entry <tt>state*2<sup>n</sup>+l</tt> contains the 
+	 * next state (shifted by <tt>n</tt>) and the index <tt>w</tt> of the sub-cube 
+	 * containing the bits <tt>l</tt> of a level.
+	 * 
+	 * @param n the number of dimensions
+	 * @return the transition table
+	 */
+	protected static synchronized int[] hilbertTable (int n) {
+		if (HILBERT_TABLES[n] == null) {
+			int cells = 1 << n;
+			int[] table = new int[cells*n*cells];
+			for (int e = 0; e < cells; e++)
+				for (int d = 0; d < n; d++)
+					for (int l = 0; l < cells; l++) {
+						int w = grayInverse(rotateRight(l ^ e, d+1, n));
+						int nextE = e ^ rotateLeft(entry(w), d+1, n);
+						int nextD = (d + direction(w, n) + 1) % n;
+						table[(e*n+d)*cells+l] = ((nextE*n+nextD) << n) | w;
+					}
+			HILBERT_TABLES[n] = table;
+		}
+		return HILBERT_TABLES[n];
+	}
+
+	/** Spreads the bits of a coordinate to every <tt>dimensions</tt>-th bit.
+	 * 
+	 * @param coordinate the coordinate
+	 * @return the spread bits
+	 */
+	protected long spread (int coordinate) {
+		long result = 0;
+		for (int shift = 0; coordinate != 0; shift += 8*dimensions, coordinate >>>= 8)
+			result |= spread[coordinate & 0xff] << shift;
+		return result;
+	}
+	
+	/** Maps a coordinate of the given dimension to the grid.
+	 * 
+	 * @param value the coordinate
+	 * @param dimension the dimension
+	 * @return the grid coordinate
+	 */
+	protected int gridCoordinate (double value, int dimension) {
+		long coordinate = (long)((value - low[dimension])*scale[dimension]);
+		return (int)Math.max(0, Math.min((1L << bits)-1, coordinate));
+	}
+	
+	/** Computes the Z-order value of the given grid coordinates.
+	 * 
+	 * @param coordinates the coordinates (0 &lt;= coordinate &lt; 2<sup>bitsPerDimension</sup>)
+	 * @return the Z-order value
+	 */
+	public long zOrder (int[] coordinates) {
+		long z = 0;
+		for (int i = 0; i < dimensions; i++)
+			z |= spread(coordinates[i]) << (dimensions-1-i);
+		return z;
+	}
+	
+	/** Computes the Z-order value of the given point of the universe.
+	 * 
+	 * @param point the coordinates of the point
+	 * @return the Z-order value
+	 */
+	public long zOrder (double[] point) {
+		long z = 0;
+		for (int i = 0; i < dimensions; i++)
+			z |= spread(gridCoordinate(point[i], i)) << (dimensions-1-i);
+		return z;
+	}
+	
+	/** Computes the Z-order value of the given point of the universe.
+	 * 
+	 * @param point the point
+	 * @return the Z-order value
+	 */
+	public long zOrder (Point point) {
+		long z = 0;
+		for (int i = 0; i < dimensions; i++)
+			z |= spread(gridCoordinate(point.getValue(i), i)) << (dimensions-1-i);
+		return z;
+	}
+
+	/** Computes the Hilbert value of the cell with the given Z-order value.
+	 * 
+	 * @param z a Z-order value
+	 * @return the Hilbert value of the cell
+	 */
+	public long hilbertFromZOrder (long z) {
+		int n = dimensions, mask = (1 << n)-1;
+		long hilbert = 0;
+		if (hilbertTable != null)
+			for (int level = bits-1, state = 0; level >= 0; level--) {
+				int transition = hilbertTable[(state << n) | (int)((z >>> (level*n)) & mask)];
+				hilbert = (hilbert << n) | (transition & mask);
+				state = transition >>> n;
+			}
+		else
+			for (int level = bits-1, e = 0, d = 0; level >= 0; level--) {
+				int l = (int)((z >>> (level*n)) & mask);
+				int w = grayInverse(rotateRight(l ^ e, d+1, n));
+				e ^= rotateLeft(entry(w), d+1, n);
+				d = (d + direction(w, n) + 1) % n;
+				hilbert = (hilbert << n) | w;
+			}
+		return hilbert;
+	}
+	
+	/** Computes the Hilbert value of the given grid coordinates.
+	 * 
+	 * @param coordinates the coordinates (0 &lt;= coordinate &lt; 2<sup>bitsPerDimension</sup>)
+	 * @return the Hilbert value
+	 */
+	public long hilbert (int[] coordinates) {
+		return hilbertFromZOrder(zOrder(coordinates));
+	}
+
+	/** Computes the Hilbert value of the given point of the universe.
+	 * 
+	 * @param point the coordinates of the point
+	 * @return the Hilbert value
+	 */
+	public long hilbert (double[] point) {
+		return hilbertFromZOrder(zOrder(point));
+	}
+	
+	/** Computes the Hilbert value of the given point of the universe.
+	 * 
+	 * @param point the point
+	 * @return the Hilbert value
+	 */
+	public long hilbert (Point point) {
+		return hilbertFromZOrder(zOrder(point));
+	}
+	
+	/** Returns a function computing the Hilbert value (a <tt>Long</tt>) of a point. 
+	 * It can be used as the key function of a {@link xxl.core.indexStructures.HilbertRTree}.
+	 * 
+	 * @return a function computing the Hilbert value of a point
+	 */
+	public Function<Point, Long> hilbertFunction () {
+		return new AbstractFunction<Point, Long>() {
+			public Long invoke (Point point) {
+				return Long.valueOf(hilbert(point));
+			}
+		};
+	}
+	
+	/** Returns a function computing the Z-order value (a <tt>Long</tt>) of a point. 
+	 * 
+	 * @return a function computing the Z-order value of a point
+	 */
+	public Function<Point, Long> zOrderFunction () {
+		return new AbstractFunction<Point, Long>() {
+			public Long invoke (Point point) {
+				return Long.valueOf(zOrder(point));
+			}
+		};
+	}
+	
+	/** Returns the number of dimensions.
+	 * 
+	 * @return the number of dimensions
+	 */
+	public int dimensions () {
+		return dimensions;
+	}
+	
+	/** Returns the number of bits per dimension.
+	 * 
+	 * @return the number of bits per dimension
+	 */
+	public int bitsPerDimension () {
+		return bits;
+	}
+}
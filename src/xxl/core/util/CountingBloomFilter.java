@@ -0,0 +1,316 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import xxl.core.io.Convertable;
+
+/**
+ * A counting Bloom filter answering approximate membership queries for byte
+ * sequences (e.g. serialized keys). Unlike a plain Bloom filter, each of the
+ * <tt>m</tt> positions is a 4 bit counter, so elements can be removed again.
+ * An element is hashed to <tt>k</tt> positions by double hashing a 64 bit
+ * hash value.<br>
+ * {@link #mightContain(byte[])} never returns <tt>false</tt> for an element
+ * that was added (and not removed); it returns <tt>true</tt> for other
+ * elements with a probability depending on <tt>m</tt>, <tt>k</tt> and the
+ * number of elements. A counter which reaches 15 sticks at that value, so
+ * removals can never introduce false negatives, but the filter should be
+ * dimensioned for the expected number of elements.<br>
+ * The filter implements {@link Convertable}, so it can be written to and read
+ * from any data output and input.
+ *
+ * @see xxl.core.indexStructures.BPlusTree#enableFilter(int, double)
+ */
+public class CountingBloomFilter implements Convertable {
+
+	/**
+	 * The maximal value of a counter. A saturated counter is never changed.
+	 */
+	protected static final int MAX_COUNT = 15;
+
+	/**
+	 * The counters, 16 per long.
+	 */
+	protected long[] counters;
+
+	/**
+	 * The number of counters <tt>m</tt>.
+	 */
+	protected int size;
+
+	/**
+	 * The number of hash functions <tt>k</tt>.
+	 */
+	protected int hashFunctions;
+
+	/**
+	 * Creates a filter with the given number of counters and hash functions.
+	 *
+	 * @param size the number of counters
+	 * @param hashFunctions the number of hash functions
+	 * @throws IllegalArgumentException if one of the parameters is not positive
+	 */
+	public CountingBloomFilter(int size, int hashFunctions) throws IllegalArgumentException {
+		if (size <= 0 || hashFunctions <= 0)
+			throw new IllegalArgumentException("The size and the number of hash functions have to be positive.");
+		this.size = size;
+		this.hashFunctions = hashFunctions;
+		this.counters = new long[(size+15)>>>4];
+	}
+
+	/**
+	 * Creates a filter dimensioned for the expected number of elements, so
+	 * that a query for an element that was not added returns <tt>true</tt>
+	 * with (approximately) the given probability.
+	 *
+	 * @param expectedElements the expected number of elements
+	 * @param falsePositiveRate the desired probability of false positives
+	 *        with <tt>0 &lt; falsePositiveRate &lt; 1</tt>
+	 * @throws IllegalArgumentException if one of the parameters is illegal
+	 */
+	public CountingBloomFilter(int expectedElements, double falsePositiveRate) throws IllegalArgumentException {
+		this(optimalSize(expectedElements, falsePositiveRate), optimalHashFunctions(expectedElements, falsePositiveRate));
+	}
+
+	/**
+	 * Creates an empty filter. Its state has to be set by {@link #read(DataInput)}.
+	 */
+	public CountingBloomFilter() {
+	}
+
+	/**
+	 * Returns the number of counters minimizing the space of a filter for the
+	 * given number of elements and false positive rate, i.e.
+	 * <tt>-n ln(p) / ln(2)^2</tt>.
+	 *
+	 * @param expectedElements the expected number of elements
+	 * @param falsePositiveRate the desired probability of false positives
+	 * @return the number of counters
+	 * @throws IllegalArgumentException if one of the parameters is illegal
+	 */
+	public static int optimalSize(int expectedElements, double falsePositiveRate) throws IllegalArgumentException {
+		if (expectedElements <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1))
+			throw new IllegalArgumentException("Illegal number of elements ("+expectedElements+") or false positive rate ("+falsePositiveRate+").");
+		return (int)Math.min(Integer.MAX_VALUE-15, Math.ceil(-expectedElements*Math.log(falsePositiveRate)/(Math.log(2)*Math.log(2))));
+	}
+
+	/**
+	 * Returns the number of hash functions minimizing the false positive
+	 * rate of a filter with {@link #optimalSize(int, double)} counters, i.e.
+	 * <tt>m/n ln(2)</tt>.
+	 *
+	 * @param expectedElements the expected number of elements
+	 * @param falsePositiveRate the desired probability of false positives
+	 * @return the number of hash functions
+	 */
+	public static int optimalHashFunctions(int expectedElements, double falsePositiveRate) {
+		return Math.max(1, (int)Math.round((double)optimalSize(expectedElements, falsePositiveRate)/expectedElements*Math.log(2)));
+	}
+
+	/**
+	 * Returns a 64 bit hash value of the given bytes (FNV-1a followed by the
+	 * finalization step of MurmurHash3).
+	 *
+	 * @param bytes the bytes
+	 * @param offset the position of the first byte
+	 * @param length the number of bytes
+	 * @return the hash value
+	 */
+	public static long hash(byte[] bytes, int offset, int length) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = offset; i < offset+length; i++)
+			h = (h^(bytes[i]&0xff))*0x100000001b3L;
+		h ^= h>>>33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h>>>33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h>>>33;
+		return h;
+	}
+
+	/**
+	 * Returns the position of the counter of the given hash function.
+	 */
+	private int position(long hash, int function) {
+		int h1 = (int)hash, h2 = (int)(hash>>>32);
+		return ((h1+function*h2)&Integer.MAX_VALUE)%size;
+	}
+
+	/**
+	 * Returns the value of a counter.
+	 */
+	private int count(int position) {
+		return (int)(counters[position>>>4]>>>((position&15)<<2))&MAX_COUNT;
+	}
+
+	/**
+	 * Adds the given value to a counter.
+	 */
+	private void change(int position, int delta) {
+		counters[position>>>4] += (long)delta<<((position&15)<<2);
+	}
+
+	/**
+	 * Adds an element given by its hash value to the filter.
+	 *
+	 * @param hash the hash value of the element
+	 */
+	public void add(long hash) {
+		for (int i = 0; i < hashFunctions; i++) {
+			int position = position(hash, i);
+			if (count(position) < MAX_COUNT)
+				change(position, 1);
+		}
+	}
+
+	/**
+	 * Adds an element to the filter.
+	 *
+	 * @param element the bytes of the element
+	 */
+	public void add(byte[] element) {
+		add(hash(element, 0, element.length));
+	}
+
+	/**
+	 * Removes an element given by its hash value from the filter. The element
+	 * has to be added before, otherwise elements still contained in the
+	 * filter may be reported as missing.
+	 *
+	 * @param hash the hash value of the element
+	 */
+	public void remove(long hash) {
+		for (int i = 0; i < hashFunctions; i++) {
+			int position = position(hash, i), count = count(position);
+			if (count > 0 && count < MAX_COUNT)
+				change(position, -1);
+		}
+	}
+
+	/**
+	 * Removes an element from the filter. The element has to be added
+	 * before, otherwise elements still contained in the filter may be
+	 * reported as missing.
+	 *
+	 * @param element the bytes of the element
+	 */
+	public void remove(byte[] element) {
+		remove(hash(element, 0, element.length));
+	}
+
+	/**
+	 * Checks whether an element given by its hash value may be contained in
+	 * the filter.
+	 *
+	 * @param hash the hash value of the element
+	 * @return <tt>false</tt> if the element is definitely not contained,
+	 *         <tt>true</tt> otherwise
+	 */
+	public boolean mightContain(long hash) {
+		for (int i = 0; i < hashFunctions; i++)
+			if (count(position(hash, i)) == 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks whether an element may be contained in the filter.
+	 *
+	 * @param element the bytes of the element
+	 * @return <tt>false</tt> if the element is definitely not contained,
+	 *         <tt>true</tt> otherwise
+	 */
+	public boolean mightContain(byte[] element) {
+		return mightContain(hash(element, 0, element.length));
+	}
+
+	/**
+	 * Removes all elements from the filter.
+	 */
+	public void clear() {
+		java.util.Arrays.fill(counters, 0L);
+	}
+
+	/**
+	 * Returns the number of counters of this filter.
+	 *
+	 * @return the number of counters
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of hash functions of this filter.
+	 *
+	 * @return the number of hash functions
+	 */
+	public int hashFunctions() {
+		return hashFunctions;
+	}
+
+	/**
+	 * Reads the state of the filter (the number of counters, the number of
+	 * hash functions and the counters) from the given data input.
+	 *
+	 * @param in the data input
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void read(DataInput in) throws IOException {
+		size = in.readInt();
+		hashFunctions = in.readInt();
+		counters = new long[(size+15)>>>4];
+		for (int i = 0; i < counters.length; i++)
+			counters[i] = in.readLong();
+	}
+
+	/**
+	 * Writes the state of the filter (the number of counters, the number of
+	 * hash functions and the counters) to the given data output.
+	 *
+	 * @param out the data output
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(hashFunctions);
+		for (int i = 0; i < counters.length; i++)
+			out.writeLong(counters[i]);
+	}
+
+	/**
+	 * Returns a string representation of this filter.
+	 *
+	 * @return a string representation of this filter
+	 */
+	public String toString() {
+		return "CountingBloomFilter[counters="+size+", hash functions="+hashFunctions+"]";
+	}
+}
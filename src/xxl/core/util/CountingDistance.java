@@ -0,0 +1,115 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class decorates a distance function with a counter and counts every 
+ * call of the {@link #distance(Object, Object)} method. It is interesting for 
+ * the performance analysis of metric index structures like the M-tree, whose 
+ * costs are dominated by the number of distance computations if the metric is 
+ * expensive (e.g., the edit distance). The counter is thread-safe, so the 
+ * decorated distance function can be shared by concurrent threads.
+ * 
+ * Usage example (1).
+ * <pre>
+ *     CountingDistance distance = new CountingDistance(LpMetric.EUCLIDEAN);
+ *     MTree mTree = new MTree(distance);
+ *     ...
+ *     distance.reset();
+ *     Cursors.count(mTree.query(querySphere));
+ *     System.out.println(distance.count());
+ * </pre>
+ *
+ * @param <T> the type of the objects whose distance can be determined by this
+ *        class.
+ * @see xxl.core.util.Distance
+ */
+public class CountingDistance<T> implements Distance<T>, Decorator<Distance<T>> {
+
+	/**
+	 * The decorated distance function.
+	 */
+	protected Distance<T> distance;
+	
+	/**
+	 * The number of distance computations since the last reset.
+	 */
+	protected AtomicLong counter = new AtomicLong();
+	
+	/**
+	 * Creates a new counting distance function decorating the given distance function.
+	 * 
+	 * @param distance the distance function to be decorated
+	 */
+	public CountingDistance(Distance<T> distance) {
+		this.distance = distance;
+	}
+
+	/**
+	 * Computes the distance between the given objects by calling the decorated 
+	 * distance function and increments the counter.
+	 * 
+	 * @param object1 first object
+	 * @param object2 second object
+	 * @return returns the distance between given objects 
+	 */
+	public double distance(T object1, T object2) {
+		counter.incrementAndGet();
+		return distance.distance(object1, object2);
+	}
+	
+	/**
+	 * Returns the number of distance computations since the last reset.
+	 * 
+	 * @return the number of distance computations since the last reset
+	 */
+	public long count() {
+		return counter.get();
+	}
+	
+	/**
+	 * Resets the counter.
+	 */
+	public void reset() {
+		counter.set(0);
+	}
+	
+	/* (non-Javadoc)
+	 * @see xxl.core.util.Decorator#getDecoree()
+	 */
+	public Distance<T> getDecoree() {
+		return distance;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "distance computations: "+counter.get();
+	}
+}
@@ -0,0 +1,189 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A parallel least significant digit radix sort of <tt>long</tt> keys carrying 
+ * <tt>int</tt> payloads (e.g., the positions of the sorted objects in an array). 
+ * The keys are sorted by bytes. Every pass counts the bytes of the keys of 
+ * disjoint chunks in parallel, computes the target positions of the chunks by 
+ * prefix sums and scatters the chunks in parallel. Passes whose byte is equal 
+ * for all keys are skipped, so small keys (e.g., the Hilbert values of a 
+ * {@link xxl.core.spatial.SpaceFillingCurveEncoder}) need less passes. 
+ * The sort is stable and works on primitive arrays only, i.e., it does not 
+ * create an object per key.
+ */
+public class RadixSort {
+
+	/** The number of keys below which the keys are sorted by a single thread.
+	 */
+	public static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+	
+	/** The default constructor has private access in order to ensure
+	 * non-instantiability.
+	 */
+	private RadixSort () {
+	}
+
+	/** Sorts the keys in ascending order and permutes the payloads accordingly.
+	 * 
+	 * @param keys the keys
+	 * @param payloads the payloads, <tt>payloads[i]</tt> belongs to <tt>keys[i]</tt>
+	 * @param threads the number of threads
+	 */
+	public static void sort (final long[] keys, final int[] payloads, int threads) {
+		final int size = keys.length;
+		if (payloads.length != size)
+			throw new IllegalArgumentException("The number of keys and payloads differ.");
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is required.");
+		final int chunks = size < SEQUENTIAL_THRESHOLD ? 1 : Math.min(threads, size/(SEQUENTIAL_THRESHOLD/2));
+		final int chunkSize = (size+chunks-1)/Math.max(chunks, 1);
+		final int[][] counts = new int[chunks][256];
+		final long[][] key = {keys, new long[size]};
+		final int[][] payload = {payloads, new int[size]};
+		ForkJoinPool pool = chunks > 1 ? new ForkJoinPool(chunks) : null;
+		try {
+			int source = 0;
+			for (int pass = 0; pass < 8; pass++) {
+				final int shift = pass*8;
+				final int from = source;
+				// flips the sign bit, so negative keys precede the positive ones
+				final long flip = pass == 7 ? Long.MIN_VALUE : 0;
+				run(pool, chunks, new Chunk() {
+					public void run (int chunk) {
+						int[] count = counts[chunk];
+						java.util.Arrays.fill(count, 0);
+						long[] k = key[from];
+						for (int i = chunk*chunkSize, end = Math.min(size, i+chunkSize); i < end; i++)
+							count[(int)(((k[i]^flip) >>> shift) & 0xff)]++;
+					}
+				});
+				// skips the pass if all keys have the same byte
+				boolean skip = false;
+				for (int digit = 0; digit < 256 && !skip; digit++) {
+					int total = 0;
+					for (int chunk = 0; chunk < chunks; chunk++)
+						total += counts[chunk][digit];
+					if (total == size)
+						skip = true;
+					else if (total > 0)
+						break;
+				}
+				if (skip)
+					continue;
+				for (int digit = 0, offset = 0; digit < 256; digit++)
+					for (int chunk = 0; chunk < chunks; chunk++) {
+						int count = counts[chunk][digit];
+						counts[chunk][digit] = offset;
+						offset += count;
+					}
+				run(pool, chunks, new Chunk() {
+					public void run (int chunk) {
+						int[] offset = counts[chunk];
+						long[] k = key[from], targetKeys = key[1-from];
+						int[] p = payload[from], targetPayloads = payload[1-from];
+						for (int i = chunk*chunkSize, end = Math.min(size, i+chunkSize); i < end; i++) {
+							int target = offset[(int)(((k[i]^flip) >>> shift) & 0xff)]++;
+							targetKeys[target] = k[i];
+							targetPayloads[target] = p[i];
+						}
+					}
+				});
+				source = 1-source;
+			}
+			if (source != 0) {
+				System.arraycopy(key[1], 0, keys, 0, size);
+				System.arraycopy(payload[1], 0, payloads, 0, size);
+			}
+		}
+		finally {
+			if (pool != null)
+				pool.shutdown();
+		}
+	}
+	
+	/** Sorts the keys in ascending order and returns the permutation of the 
+	 * positions of the keys, i.e., the <tt>i</tt>-th entry of the result is the 
+	 * original position of the <tt>i</tt>-th smallest key. The array of keys 
+	 * is sorted, too.
+	 * 
+	 * @param keys the keys
+	 * @param threads the number of threads
+	 * @return the positions of the keys in ascending order of the keys
+	 */
+	public static int[] sortedPositions (long[] keys, int threads) {
+		int[] positions = new int[keys.length];
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = i;
+		sort(keys, positions, threads);
+		return positions;
+	}
+	
+	/** The work on a chunk of the keys.
+	 */
+	private interface Chunk {
+		
+		/** Processes the given chunk.
+		 * 
+		 * @param chunk the number of the chunk
+		 */
+		void run (int chunk);
+	}
+	
+	/** Processes all chunks, in parallel if a pool is given.
+	 * 
+	 * @param pool the pool or <tt>null</tt>
+	 * @param chunks the number of chunks
+	 * @param work the work on a chunk
+	 */
+	private static void run (ForkJoinPool pool, final int chunks, final Chunk work) {
+		if (pool == null) {
+			for (int chunk = 0; chunk < chunks; chunk++)
+				work.run(chunk);
+			return;
+		}
+		pool.invoke(new RecursiveAction() {
+			protected void compute () {
+				List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+				for (int chunk = 0; chunk < chunks; chunk++) {
+					final int number = chunk;
+					tasks.add(new RecursiveAction() {
+						protected void compute () {
+							work.run(number);
+						}
+					});
+				}
+				invokeAll(tasks);
+			}
+		});
+	}
+}
@@ -0,0 +1,328 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A memory manager dividing a global amount of main memory among the
+ * {@link MemoryManageable memory manageable} objects (e.g., sorters, hash
+ * joins, hash aggregators and sweep areas) that run concurrently. Objects
+ * are {@link #register(MemoryManageable) registered} when they start to
+ * consume memory and {@link #unregister(MemoryManageable) unregistered} when
+ * they are finished. Every time the set of registered objects or the global
+ * amount of memory changes, the memory is redistributed by a
+ * {@link Strategy strategy} and the resulting amounts are assigned to the
+ * objects by calling {@link MemoryManageable#assignMemSize(int)}. Memory is
+ * revoked before it is granted, i.e., the objects whose memory is reduced are
+ * informed first, so the sum of the assigned amounts never exceeds the global
+ * amount.
+ * 
+ * <p>In addition, the memory manager accounts for the memory usage of the
+ * registered objects: {@link #getCurrentMemUsage()} returns the sum of their
+ * current memory usage and records the peak, and
+ * {@link #getSpilledObjects()} returns the number of objects spilled by the
+ * {@link SpillingMemoryManageable spilling} objects, including the objects
+ * that have already been unregistered.</p>
+ * 
+ * <p><b>Example usage:</b>
+ * <code><pre>
+ *   MemoryManager manager = new MemoryManager(64*1024*1024, MemoryManager.FAIR);
+ *   HashJoin join = new HashJoin(...);
+ *   HashAggregator aggregator = new HashAggregator(join, ...);
+ *   manager.register(join);
+ *   manager.register(aggregator);
+ *   ...
+ *   manager.unregister(join);  // the memory of the join is granted to the aggregator
+ * </pre></code></p>
+ * 
+ * <p>All methods are synchronized, so the objects may be registered and
+ * unregistered by different threads. The method <code>assignMemSize</code> of
+ * a registered object is called while the lock of the memory manager is
+ * held.</p>
+ *
+ * @see MemoryManageable
+ * @see SpillingMemoryManageable
+ */
+public class MemoryManager implements MemoryMonitorable {
+
+	/**
+	 * A strategy distributing the global amount of memory among the
+	 * registered objects.
+	 */
+	public static interface Strategy {
+
+		/**
+		 * Distributes the given amount of memory among the given objects.
+		 * 
+		 * @param memSize the amount of memory to be distributed (in bytes).
+		 * @param objects the registered objects.
+		 * @return an array containing the amount of memory for every object
+		 *         (in bytes). The sum of the amounts must not exceed
+		 *         <code>memSize</code>.
+		 */
+		public abstract int[] distribute(int memSize, MemoryManageable[] objects);
+	}
+
+	/**
+	 * A strategy dividing the memory fairly among the objects (max-min
+	 * fairness): no object gets more than it prefers and the memory that is
+	 * not needed by the objects preferring less than an equal share is
+	 * divided equally among the other objects.
+	 */
+	public static final Strategy FAIR = new Strategy() {
+		public int[] distribute(int memSize, final MemoryManageable[] objects) {
+			Integer[] order = new Integer[objects.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer i, Integer j) {
+					long preferred0 = preferredMemSize(objects[i]), preferred1 = preferredMemSize(objects[j]);
+					return preferred0 < preferred1 ? -1 : preferred0 > preferred1 ? 1 : 0;
+				}
+			});
+			int[] sizes = new int[objects.length];
+			long remaining = memSize;
+			for (int i = 0; i < order.length; i++) {
+				sizes[order[i]] = (int)Math.min(preferredMemSize(objects[order[i]]), remaining/(order.length-i));
+				remaining -= sizes[order[i]];
+			}
+			return sizes;
+		}
+	};
+
+	/**
+	 * A strategy dividing the memory among the objects proportionally to the
+	 * amount of memory they prefer. If the memory suffices, every object gets
+	 * the amount it prefers.
+	 */
+	public static final Strategy PROPORTIONAL = new Strategy() {
+		public int[] distribute(int memSize, MemoryManageable[] objects) {
+			long preferred = 0;
+			for (MemoryManageable object : objects)
+				preferred += preferredMemSize(object);
+			int[] sizes = new int[objects.length];
+			for (int i = 0; i < objects.length; i++)
+				sizes[i] = (int)(preferred <= memSize ?
+					preferredMemSize(objects[i]) :
+					(long)(preferredMemSize(objects[i])*((double)memSize/preferred))
+				);
+			return sizes;
+		}
+	};
+
+	/**
+	 * The global amount of memory (in bytes).
+	 */
+	protected int memSize;
+
+	/**
+	 * The strategy distributing the memory.
+	 */
+	protected Strategy strategy;
+
+	/**
+	 * The registered objects.
+	 */
+	protected List<MemoryManageable> objects = new ArrayList<MemoryManageable>();
+
+	/**
+	 * The maximal memory usage of the registered objects observed so far.
+	 */
+	protected int peakMemUsage = 0;
+
+	/**
+	 * The number of objects spilled by the objects that have already been
+	 * unregistered.
+	 */
+	protected long spilledObjects = 0;
+
+	/**
+	 * Creates a new memory manager.
+	 * 
+	 * @param memSize the global amount of memory (in bytes).
+	 * @param strategy the strategy distributing the memory among the
+	 *        registered objects.
+	 * @throws IllegalArgumentException if <code>memSize</code> is negative.
+	 */
+	public MemoryManager(int memSize, Strategy strategy) throws IllegalArgumentException {
+		if (memSize < 0)
+			throw new IllegalArgumentException("memSize < 0");
+		this.memSize = memSize;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Creates a new memory manager dividing the memory {@link #FAIR fairly}
+	 * among the registered objects.
+	 * 
+	 * @param memSize the global amount of memory (in bytes).
+	 */
+	public MemoryManager(int memSize) {
+		this(memSize, FAIR);
+	}
+
+	/**
+	 * Returns the amount of memory an object prefers. An unknown amount is
+	 * treated as {@link MemoryManageable#MAXIMUM}.
+	 * 
+	 * @param object a memory manageable object.
+	 * @return the preferred amount of memory (in bytes).
+	 */
+	protected static long preferredMemSize(MemoryManageable object) {
+		int preferred = object.getPreferredMemSize();
+		return preferred < 0 ? MemoryManageable.MAXIMUM : preferred;
+	}
+
+	/**
+	 * Registers the given object and redistributes the memory.
+	 * 
+	 * @param object the object to be registered.
+	 * @throws IllegalArgumentException if the object is already registered.
+	 */
+	public synchronized void register(MemoryManageable object) throws IllegalArgumentException {
+		if (objects.contains(object))
+			throw new IllegalArgumentException("the object is already registered");
+		objects.add(object);
+		redistribute();
+	}
+
+	/**
+	 * Unregisters the given object and grants its memory to the remaining
+	 * objects.
+	 * 
+	 * @param object the object to be unregistered.
+	 * @return <code>true</code> if the object was registered.
+	 */
+	public synchronized boolean unregister(MemoryManageable object) {
+		int index = objects.indexOf(object);
+		if (index == -1)
+			return false;
+		getCurrentMemUsage();
+		if (object instanceof SpillingMemoryManageable)
+			spilledObjects += ((SpillingMemoryManageable)object).getSpilledObjects();
+		objects.remove(index);
+		redistribute();
+		return true;
+	}
+
+	/**
+	 * Returns the global amount of memory.
+	 * 
+	 * @return the global amount of memory (in bytes).
+	 */
+	public synchronized int getMemSize() {
+		return memSize;
+	}
+
+	/**
+	 * Sets the global amount of memory and redistributes it.
+	 * 
+	 * @param memSize the new global amount of memory (in bytes).
+	 * @throws IllegalArgumentException if <code>memSize</code> is negative.
+	 */
+	public synchronized void setMemSize(int memSize) throws IllegalArgumentException {
+		if (memSize < 0)
+			throw new IllegalArgumentException("memSize < 0");
+		this.memSize = memSize;
+		redistribute();
+	}
+
+	/**
+	 * Returns the number of registered objects.
+	 * 
+	 * @return the number of registered objects.
+	 */
+	public synchronized int size() {
+		return objects.size();
+	}
+
+	/**
+	 * Redistributes the memory among the registered objects. This method has
+	 * to be called when the preferred amount of memory of a registered object
+	 * has changed. The objects whose memory is reduced are informed before
+	 * the others.
+	 */
+	public synchronized void redistribute() {
+		if (objects.isEmpty())
+			return;
+		int[] sizes = strategy.distribute(memSize, objects.toArray(new MemoryManageable[objects.size()]));
+		for (int i = 0; i < sizes.length; i++)
+			if (sizes[i] < objects.get(i).getAssignedMemSize())
+				objects.get(i).assignMemSize(sizes[i]);
+		for (int i = 0; i < sizes.length; i++)
+			if (sizes[i] > objects.get(i).getAssignedMemSize())
+				objects.get(i).assignMemSize(sizes[i]);
+	}
+
+	/**
+	 * Returns the sum of the current memory usage of the registered objects
+	 * and updates the peak memory usage. Objects whose memory usage is
+	 * unknown are not taken into account.
+	 * 
+	 * @return the current memory usage (in bytes).
+	 */
+	public synchronized int getCurrentMemUsage() {
+		long usage = 0;
+		for (MemoryManageable object : objects) {
+			int current = object.getCurrentMemUsage();
+			if (current != SIZE_UNKNOWN)
+				usage += current;
+		}
+		int current = (int)Math.min(usage, Integer.MAX_VALUE);
+		peakMemUsage = Math.max(peakMemUsage, current);
+		return current;
+	}
+
+	/**
+	 * Returns the maximal memory usage of the registered objects observed by
+	 * {@link #getCurrentMemUsage()} so far.
+	 * 
+	 * @return the peak memory usage (in bytes).
+	 */
+	public synchronized int getPeakMemUsage() {
+		return peakMemUsage;
+	}
+
+	/**
+	 * Returns the number of objects spilled by the
+	 * {@link SpillingMemoryManageable spilling} objects that are or have been
+	 * registered.
+	 * 
+	 * @return the number of spilled objects.
+	 */
+	public synchronized long getSpilledObjects() {
+		long spilled = spilledObjects;
+		for (MemoryManageable object : objects)
+			if (object instanceof SpillingMemoryManageable)
+				spilled += ((SpillingMemoryManageable)object).getSpilledObjects();
+		return spilled;
+	}
+
+}
@@ -0,0 +1,61 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util.memory;
+
+/**
+ * A memory manageable object that spills its data to external memory when
+ * its assigned memory does not suffice, e.g., a sorter, a hash join or a
+ * hash aggregator. In addition to the current memory usage, such an object
+ * reports the maximal amount of memory it has used and the number of objects
+ * it has spilled so far, so a {@link MemoryManager memory manager} is able
+ * to account for the memory and the I/O of the operators it controls.
+ * 
+ * <p>When the memory manager revokes memory by assigning a smaller amount of
+ * memory, the object has to reduce its memory usage by spilling further data
+ * as soon as possible. The point in time this happens depends on the
+ * algorithm of the object.</p>
+ *
+ * @see MemoryManager
+ */
+public interface SpillingMemoryManageable extends MemoryManageable {
+
+	/**
+	 * Returns the maximal amount of memory which has been used by this
+	 * object so far.
+	 * 
+	 * @return Returns the peak memory usage (in bytes).
+	 */
+	public abstract int getPeakMemUsage();
+
+	/**
+	 * Returns the number of objects which have been spilled to external
+	 * memory by this object so far.
+	 * 
+	 * @return Returns the number of spilled objects.
+	 */
+	public abstract long getSpilledObjects();
+
+}
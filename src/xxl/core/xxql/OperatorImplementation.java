@@ -43,6 +43,8 @@ import xxl.core.cursors.Cursor;
 import xxl.core.cursors.differences.NestedLoopsDifference;
 import xxl.core.cursors.filters.Filter;
 import xxl.core.cursors.joins.NestedLoopsJoin;
+import xxl.core.cursors.mappers.Mapper;
+import xxl.core.cursors.sorters.TopKSorter;
 import xxl.core.functions.AbstractFunction;
 import xxl.core.functions.Function;
 import xxl.core.relational.cursors.NestedLoopsDistinct;
@@ -51,6 +53,7 @@ import xxl.core.relational.metaData.ColumnMetaDatas;
 import xxl.core.relational.metaData.ResultSetMetaDatas;
 import xxl.core.relational.tuples.ArrayTuple;
 import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.Pair;
 import xxl.core.util.metaData.CompositeMetaData;
 import xxl.core.xxql.columns.Column;
 
@@ -469,32 +472,49 @@ public class OperatorImplementation {
 			}
 		};
 		
-		AdvTupleCursor ret = new AdvTupleCursor(src, id, src.getResultSetMetaData(), src){
-			
-			{
-				doNotCache = false;
-			}
-			
-			@Override
-			public void setCachingStrategy(CachingStrategy strat, boolean recursive) {
-				super.setCachingStrategy(strat, recursive);
-				this.doNotCache=false; // make sure this cursor does cache!
-			}
-			
-			@Override
-			protected boolean hasNextObject() {
-				// when hasNext() or next() is called the first time, we cache everything into the 
-				// internal list and sort.
-				if(firstRun){ 
-					// this will cache all elements in the list, sort them an reset the cursor
-					internal_sort(comp);
-					// TODO: als optimierung koennte man jetzt einen "ist sortiert" flag setzen und
-					// bei joins, gruppierungen etc die sorted varianten nehmen
-				} 
-				return super.hasNextObject();
-			}
-		};
-		return ret;
+		return new SortedCursor(src, comp);
+	}
+	
+	/**
+	 * The cursor returned by {@link OperatorImplementation#orderBy(AdvTupleCursor, boolean, Column...)}.
+	 * It caches and sorts all tuples of its input when the first tuple is requested. The comparator
+	 * is kept, so {@link OperatorImplementation#top(AdvTupleCursor, int) top()} can replace the
+	 * sort by a {@link TopKSorter}.
+	 */
+	@SuppressWarnings("serial")
+	static class SortedCursor extends AdvTupleCursor {
+		
+		/** the input of the sort */
+		final AdvTupleCursor input;
+		
+		/** the comparator for the whole tuple */
+		final Comparator<Tuple> comparator;
+		
+		SortedCursor(AdvTupleCursor input, Comparator<Tuple> comparator) {
+			super(input, id, input.getResultSetMetaData(), input);
+			this.input = input;
+			this.comparator = comparator;
+			doNotCache = false;
+		}
+		
+		@Override
+		public void setCachingStrategy(CachingStrategy strat, boolean recursive) {
+			super.setCachingStrategy(strat, recursive);
+			this.doNotCache=false; // make sure this cursor does cache!
+		}
+		
+		@Override
+		protected boolean hasNextObject() {
+			// when hasNext() or next() is called the first time, we cache everything into the 
+			// internal list and sort.
+			if(firstRun){ 
+				// this will cache all elements in the list, sort them an reset the cursor
+				internal_sort(comparator);
+				// TODO: als optimierung koennte man jetzt einen "ist sortiert" flag setzen und
+				// bei joins, gruppierungen etc die sorted varianten nehmen
+			} 
+			return super.hasNextObject();
+		}
 	}
 	
 	public Iterable<Object> getIterableForColumn(final AdvTupleCursor cur, final Column col){
@@ -541,6 +561,35 @@ public class OperatorImplementation {
 		if(limit<0){
 			throw new RuntimeException("top() must not be invoked with a negative count");
 		}
+		// an ordering followed by a limit: keep only the first tuples in a bounded heap instead of
+		// sorting the whole input (as long as the sorted cursor has not been used on its own)
+		if(src instanceof SortedCursor && !src.inUse){
+			final SortedCursor sorted = (SortedCursor)src;
+			// the tuples are numbered in input order, so equal tuples keep the order of the (stable) sort
+			Cursor<Pair<Tuple, Integer>> numbered = new Mapper<Tuple, Pair<Tuple, Integer>>(
+				new AbstractFunction<Tuple, Pair<Tuple, Integer>>() {
+					int position = 0;
+					
+					@Override
+					public Pair<Tuple, Integer> invoke(Tuple tuple) {
+						return new Pair<Tuple, Integer>(tuple, position++);
+					}
+				}, sorted.input);
+			Comparator<Pair<Tuple, Integer>> comparator = new Comparator<Pair<Tuple, Integer>>() {
+				public int compare(Pair<Tuple, Integer> p1, Pair<Tuple, Integer> p2) {
+					int tmp = sorted.comparator.compare(p1.getFirst(), p2.getFirst());
+					return tmp != 0 ? tmp : p1.getSecond().compareTo(p2.getSecond());
+				}
+			};
+			return new AdvTupleCursor(new TopKSorter<Pair<Tuple, Integer>>(numbered, comparator, limit), 
+					new AbstractFunction<Object, Tuple>() {
+						@SuppressWarnings("unchecked")
+						@Override
+						public Tuple invoke(Object pair) {
+							return ((Pair<Tuple, Integer>)pair).getFirst();
+						}
+					}, src.getResultSetMetaData(), sorted.input);
+		}
 		AdvTupleCursor ret = new AdvTupleCursor(src, id, src.getResultSetMetaData(), src){
 			int count = 0;
 			@Override
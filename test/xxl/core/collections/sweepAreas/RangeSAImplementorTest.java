@@ -0,0 +1,172 @@
+package xxl.core.collections.sweepAreas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * Tests the {@link RangeSAImplementor range-based implementors} and the
+ * {@link RangeSweepArea} against a sequential scan.
+ */
+public class RangeSAImplementorTest {
+
+	private static class Interval {
+		final int id;
+		final double low, high;
+
+		Interval(int id, double low, double high) {
+			this.id = id;
+			this.low = low;
+			this.high = high;
+		}
+
+		public String toString() {
+			return id + "[" + low + "," + high + "]";
+		}
+	}
+
+	private static final Function<Interval, Double> LOW = new AbstractFunction<Interval, Double>() {
+		public Double invoke(Interval interval) {
+			return interval.low;
+		}
+	};
+
+	private static final Function<Interval, Double> HIGH = new AbstractFunction<Interval, Double>() {
+		public Double invoke(Interval interval) {
+			return interval.high;
+		}
+	};
+
+	private static final Function<Interval, Double>[] QUERY_LOW = new Function[] {LOW, LOW};
+
+	private static final Function<Interval, Double>[] QUERY_HIGH = new Function[] {HIGH, HIGH};
+
+	private static final Comparator<Interval> BY_ID = new Comparator<Interval>() {
+		public int compare(Interval interval0, Interval interval1) {
+			return interval0.id - interval1.id;
+		}
+	};
+
+	private static List<Interval> randomIntervals(int size, double maxLength, long seed) {
+		Random random = new Random(seed);
+		List<Interval> intervals = new ArrayList<Interval>();
+		for (int i = 0; i < size; i++) {
+			double low = random.nextInt(10000);
+			intervals.add(new Interval(i, low, low + (maxLength == 0 ? 0 : random.nextInt((int)maxLength))));
+		}
+		return intervals;
+	}
+
+	private static List<Interval> sorted(Iterator<Interval> iterator) {
+		List<Interval> result = new ArrayList<Interval>();
+		while (iterator.hasNext())
+			result.add(iterator.next());
+		Collections.sort(result, BY_ID);
+		return result;
+	}
+
+	private static List<RangeSweepArea<Interval>> sweepAreas(boolean points) {
+		List<RangeSweepArea<Interval>> sweepAreas = new ArrayList<RangeSweepArea<Interval>>();
+		sweepAreas.add(new RangeSweepArea<Interval>(new IntervalTreeSAImplementor<Interval>(LOW, HIGH, QUERY_LOW, QUERY_HIGH), 0, false, 2));
+		sweepAreas.add(new RangeSweepArea<Interval>(new SegmentTreeSAImplementor<Interval>(LOW, HIGH, QUERY_LOW, QUERY_HIGH, 0, 20000), 0, false, 2));
+		if (points)
+			sweepAreas.add(new RangeSweepArea<Interval>(new SortedArraySAImplementor<Interval>(LOW, QUERY_LOW, QUERY_HIGH, 4), 0, false, 2));
+		return sweepAreas;
+	}
+
+	private static void check(boolean points) {
+		List<Interval> elements = randomIntervals(3000, points ? 0 : 500, 42);
+		List<Interval> queries = randomIntervals(300, 200, 43);
+		for (RangeSweepArea<Interval> sweepArea : sweepAreas(points)) {
+			List<Interval> contained = new ArrayList<Interval>();
+			for (Interval element : elements) {
+				sweepArea.insert(element);
+				contained.add(element);
+			}
+			Assert.assertEquals(sweepArea.size(), elements.size());
+			Assert.assertEquals(sorted(sweepArea.iterator()), elements);
+			for (int i = 0; i < queries.size(); i++) {
+				Interval query = queries.get(i);
+				List<Interval> expected = new ArrayList<Interval>();
+				for (Interval element : contained)
+					if (element.low <= query.high && element.high >= query.low)
+						expected.add(element);
+				Assert.assertEquals(sorted(sweepArea.query(query, 1)), expected, sweepArea.getImplementor().getClass().getName());
+				if (i % 50 == 0) {
+					// remove every second element overlapping the query
+					Iterator<Interval> iterator = sweepArea.query(query, 1);
+					for (int j = 0; iterator.hasNext(); j++) {
+						Interval element = iterator.next();
+						if (j % 2 == 0) {
+							iterator.remove();
+							contained.remove(element);
+						}
+					}
+					Assert.assertEquals(sweepArea.size(), contained.size());
+				}
+			}
+		}
+	}
+
+	private static void checkExpiration(boolean points) {
+		List<Interval> elements = randomIntervals(3000, points ? 0 : 500, 44);
+		List<Interval> queries = randomIntervals(500, 100, 45);
+		Collections.sort(queries, new Comparator<Interval>() {
+			public int compare(Interval interval0, Interval interval1) {
+				return Double.compare(interval0.low, interval1.low);
+			}
+		});
+		for (RangeSweepArea<Interval> sweepArea : sweepAreas(points)) {
+			List<Interval> contained = new ArrayList<Interval>(elements);
+			for (Interval element : elements)
+				sweepArea.insert(element);
+			for (Interval query : queries) {
+				List<Interval> expected = new ArrayList<Interval>();
+				for (Iterator<Interval> iterator = contained.iterator(); iterator.hasNext();) {
+					Interval element = iterator.next();
+					if (element.high < query.low) {
+						expected.add(element);
+						iterator.remove();
+					}
+				}
+				Assert.assertEquals(sorted(sweepArea.expire(query, 1)), expected);
+				Assert.assertEquals(sweepArea.size(), contained.size());
+				List<Interval> result = new ArrayList<Interval>();
+				for (Interval element : contained)
+					if (element.low <= query.high)
+						result.add(element);
+				Assert.assertEquals(sorted(sweepArea.query(query, 1)), result);
+			}
+			Assert.assertEquals(sorted(sweepArea.iterator()), contained);
+		}
+	}
+
+	@Test
+	public void queryIntervals() {
+		check(false);
+	}
+
+	@Test
+	public void queryPoints() {
+		check(true);
+	}
+
+	@Test
+	public void expireIntervals() {
+		checkExpiration(false);
+	}
+
+	@Test
+	public void expirePoints() {
+		checkExpiration(true);
+	}
+}
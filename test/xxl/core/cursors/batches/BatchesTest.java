@@ -0,0 +1,192 @@
+package xxl.core.cursors.batches;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.cursors.batches.BatchAggregator.Aggregate;
+import xxl.core.cursors.batches.BatchFunctions.Arithmetic;
+import xxl.core.cursors.batches.BatchPredicates.Comparison;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * Tests the vectorized batch cursors against scalar reference results.
+ */
+public class BatchesTest {
+
+	private static final Batch.Type[] TYPES = {Batch.Type.LONG, Batch.Type.DOUBLE, Batch.Type.LONG};
+
+	private static long[] keys;
+	private static double[] values;
+	private static long[] ids;
+
+	static {
+		Random random = new Random(42);
+		int size = 5000;
+		keys = new long[size];
+		values = new double[size];
+		ids = new long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = random.nextInt(100);
+			values[i] = random.nextInt(10000) / 100.0;
+			ids[i] = i;
+		}
+	}
+
+	private static BatchCursor input(int capacity) {
+		return Batches.fromArrays(TYPES, new Object[] {keys, values, ids}, keys.length, capacity);
+	}
+
+	private static List<Object[]> toList(Iterator<Object[]> iterator) {
+		List<Object[]> result = new ArrayList<Object[]>();
+		while (iterator.hasNext())
+			result.add(iterator.next());
+		return result;
+	}
+
+	@Test
+	public void adapters() {
+		List<Long> input = new ArrayList<Long>();
+		for (long i = 0; i < 2500; i++)
+			input.add(i);
+		Function<Long, Object>[] columns = new Function[] {
+			new AbstractFunction<Long, Object>() {
+				public Object invoke(Long value) {
+					return value;
+				}
+			},
+			new AbstractFunction<Long, Object>() {
+				public Object invoke(Long value) {
+					return value / 2.0;
+				}
+			},
+			new AbstractFunction<Long, Object>() {
+				public Object invoke(Long value) {
+					return "#" + value;
+				}
+			}
+		};
+		Batch.Type[] types = {Batch.Type.LONG, Batch.Type.DOUBLE, Batch.Type.OBJECT};
+		List<Object[]> result = toList(Batches.toCursor(Batches.fromCursor(input.iterator(), types, columns, 1000)));
+		Assert.assertEquals(result.size(), input.size());
+		for (int i = 0; i < result.size(); i++)
+			Assert.assertEquals(result.get(i), new Object[] {(long)i, i / 2.0, "#" + i});
+	}
+
+	@Test
+	public void filter() {
+		BatchCursor cursor = new BatchFilter(
+			new BatchFilter(input(512), BatchPredicates.between(0, 10L, 60L, false)),
+			BatchPredicates.or(
+				BatchPredicates.compare(1, Comparison.LESS, 20.0),
+				BatchPredicates.not(BatchPredicates.compare(0, Comparison.NOT_EQUAL, 42L))
+			)
+		);
+		List<Object[]> result = toList(Batches.toCursor(cursor));
+		List<Long> expected = new ArrayList<Long>();
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] >= 10 && keys[i] <= 60 && (values[i] < 20.0 || keys[i] == 42))
+				expected.add(ids[i]);
+		Assert.assertEquals(result.size(), expected.size());
+		for (int i = 0; i < result.size(); i++)
+			Assert.assertEquals(result.get(i)[2], expected.get(i));
+	}
+
+	@Test
+	public void mapper() {
+		BatchCursor cursor = new BatchMapper(
+			new BatchFilter(input(300), BatchPredicates.compare(0, Comparison.GREATER_EQUAL, 50L)),
+			new int[] {2},
+			BatchFunctions.arithmetic(Arithmetic.MULTIPLY, 0, 1),
+			BatchFunctions.arithmetic(Arithmetic.ADD, 0, 1L)
+		);
+		Assert.assertEquals(cursor.types(), new Batch.Type[] {Batch.Type.LONG, Batch.Type.DOUBLE, Batch.Type.LONG});
+		Iterator<Object[]> result = Batches.toCursor(cursor);
+		for (int i = 0; i < keys.length; i++)
+			if (keys[i] >= 50)
+				Assert.assertEquals(result.next(), new Object[] {ids[i], keys[i] * values[i], keys[i] + 1});
+		Assert.assertFalse(result.hasNext());
+	}
+
+	@Test
+	public void groupedAggregation() {
+		BatchCursor cursor = new BatchAggregator(
+			new BatchFilter(input(256), BatchPredicates.compare(1, Comparison.GREATER, 10.0)),
+			0,
+			new Aggregate[] {Aggregate.COUNT, Aggregate.SUM, Aggregate.MIN, Aggregate.MAX, Aggregate.AVG},
+			new int[] {0, 1, 2, 2, 1},
+			32
+		);
+		Map<Long, double[]> expected = new HashMap<Long, double[]>();
+		for (int i = 0; i < keys.length; i++)
+			if (values[i] > 10.0) {
+				double[] aggregates = expected.get(keys[i]);
+				if (aggregates == null)
+					expected.put(keys[i], aggregates = new double[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+				aggregates[0]++;
+				aggregates[1] += values[i];
+				aggregates[2] = Math.min(aggregates[2], ids[i]);
+				aggregates[3] = Math.max(aggregates[3], ids[i]);
+			}
+		List<Object[]> result = toList(Batches.toCursor(cursor));
+		Assert.assertEquals(result.size(), expected.size());
+		for (Object[] row : result) {
+			double[] aggregates = expected.get(row[0]);
+			Assert.assertEquals(row[1], (long)aggregates[0]);
+			Assert.assertEquals((Double)row[2], aggregates[1], 1e-6);
+			Assert.assertEquals(row[3], (long)aggregates[2]);
+			Assert.assertEquals(row[4], (long)aggregates[3]);
+			Assert.assertEquals((Double)row[5], aggregates[1] / aggregates[0], 1e-6);
+		}
+	}
+
+	@Test
+	public void globalAggregation() {
+		Aggregate[] aggregates = {Aggregate.COUNT, Aggregate.SUM};
+		List<Object[]> result = toList(Batches.toCursor(new BatchAggregator(input(1024), -1, aggregates, new int[] {0, 0})));
+		long sum = 0;
+		for (long key : keys)
+			sum += key;
+		Assert.assertEquals(result.size(), 1);
+		Assert.assertEquals(result.get(0), new Object[] {(long)keys.length, sum});
+		BatchCursor empty = new BatchFilter(input(1024), BatchPredicates.compare(0, Comparison.LESS, 0L));
+		Assert.assertFalse(new BatchAggregator(empty, -1, aggregates, new int[] {0, 0}).hasNext());
+	}
+
+	@Test
+	public void hashJoin() {
+		int size = 300;
+		long[] buildKeys = new long[size];
+		Object[] names = new Object[size];
+		for (int i = 0; i < size; i++) {
+			buildKeys[i] = i % 150;
+			names[i] = "name" + i;
+		}
+		BatchCursor build = Batches.fromArrays(new Batch.Type[] {Batch.Type.LONG, Batch.Type.OBJECT}, new Object[] {buildKeys, names}, size, 64);
+		BatchCursor probe = new BatchFilter(input(500), BatchPredicates.compare(1, Comparison.LESS, 50.0));
+		List<Object[]> result = toList(Batches.toCursor(new BatchHashJoin(probe, build, 0, 0, 100)));
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < keys.length; i++)
+			if (values[i] < 50.0)
+				for (int j = 0; j < size; j++)
+					if (keys[i] == buildKeys[j])
+						expected.add(ids[i] + ":" + names[j]);
+		List<String> actual = new ArrayList<String>();
+		for (Object[] row : result) {
+			Assert.assertEquals(row[0], row[3]);
+			actual.add(row[2] + ":" + row[4]);
+		}
+		Object[] expectedArray = expected.toArray(), actualArray = actual.toArray();
+		Arrays.sort(expectedArray);
+		Arrays.sort(actualArray);
+		Assert.assertEquals(actualArray, expectedArray);
+	}
+}
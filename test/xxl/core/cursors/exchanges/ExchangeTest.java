@@ -0,0 +1,252 @@
+package xxl.core.cursors.exchanges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.filters.Filter;
+import xxl.core.cursors.groupers.HashAggregator;
+import xxl.core.cursors.mappers.Mapper;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.functions.Identity;
+import xxl.core.math.statistics.parametric.aggregates.Count;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.util.WrappingRuntimeException;
+
+/**
+ * Tests the {@link Exchange} operator for the different routing strategies
+ * and the parallel execution of cursor pipelines.
+ */
+public class ExchangeTest {
+
+	private static List<Integer> randomInput(int size, long seed) {
+		Random random = new Random(seed);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(1000));
+		return input;
+	}
+
+	private static <E> List<E> toList(Iterator<E> iterator) {
+		List<E> result = new ArrayList<E>();
+		while (iterator.hasNext())
+			result.add(iterator.next());
+		return result;
+	}
+
+	private static <E extends Comparable<? super E>> List<E> sorted(List<E> list) {
+		List<E> result = new ArrayList<E>(list);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Consumes all outputs of an exchange concurrently and returns the
+	 * elements tagged with the index of their output.
+	 */
+	private static List<Integer[]> consumeAll(final Exchange<Integer> exchange) {
+		List<Iterator<Integer[]>> outputs = new ArrayList<Iterator<Integer[]>>();
+		for (int i = 0; i < exchange.consumers(); i++) {
+			final int index = i;
+			outputs.add(
+				new Mapper<Integer, Integer[]>(
+					new AbstractFunction<Integer, Integer[]>() {
+						public Integer[] invoke(Integer element) {
+							return new Integer[] {index, element};
+						}
+					},
+					exchange.output(i)
+				)
+			);
+		}
+		return toList(Exchange.gather(outputs));
+	}
+
+	@Test
+	public void gather() {
+		List<List<Integer>> inputs = new ArrayList<List<Integer>>();
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 4; i++) {
+			inputs.add(randomInput(1000*i, i));
+			expected.addAll(inputs.get(i));
+		}
+		List<Iterator<Integer>> iterators = new ArrayList<Iterator<Integer>>();
+		for (List<Integer> input : inputs)
+			iterators.add(input.iterator());
+		Assert.assertEquals(sorted(toList(Exchange.gather(iterators))), sorted(expected));
+	}
+
+	@Test
+	public void hashPartition() {
+		List<Integer> input = randomInput(20000, 1);
+		Function<Integer, Integer> partitioner = Exchange.hashPartitioner(Identity.DEFAULT_INSTANCE, 3);
+		List<Integer> result = new ArrayList<Integer>();
+		for (Integer[] element : consumeAll(new Exchange<Integer>(Arrays.asList(input.subList(0, 10000).iterator(), input.subList(10000, 20000).iterator()), 3, partitioner))) {
+			Assert.assertEquals(element[0], partitioner.invoke(element[1]));
+			result.add(element[1]);
+		}
+		Assert.assertEquals(sorted(result), sorted(input));
+	}
+
+	@Test
+	public void rangePartition() {
+		List<Integer> input = randomInput(10000, 2);
+		List<Integer> result = new ArrayList<Integer>();
+		Exchange<Integer> exchange = new Exchange<Integer>(
+			Collections.singletonList(input.iterator()),
+			3,
+			Exchange.Type.PARTITION,
+			Exchange.<Integer, Integer>rangePartitioner(new Identity<Integer>(), ComparableComparator.INTEGER_COMPARATOR, 300, 600),
+			10,
+			2
+		);
+		for (Integer[] element : consumeAll(exchange)) {
+			Assert.assertEquals((int)element[0], element[1] <= 300 ? 0 : element[1] <= 600 ? 1 : 2);
+			result.add(element[1]);
+		}
+		Assert.assertEquals(sorted(result), sorted(input));
+	}
+
+	@Test
+	public void broadcast() {
+		List<Integer> input = randomInput(5000, 3);
+		Map<Integer, List<Integer>> outputs = new HashMap<Integer, List<Integer>>();
+		for (Integer[] element : consumeAll(new Exchange<Integer>(Collections.singletonList(input.iterator()), 3, Exchange.Type.BROADCAST))) {
+			if (!outputs.containsKey(element[0]))
+				outputs.put(element[0], new ArrayList<Integer>());
+			outputs.get(element[0]).add(element[1]);
+		}
+		Assert.assertEquals(outputs.size(), 3);
+		for (List<Integer> output : outputs.values())
+			Assert.assertEquals(output, input);
+	}
+
+	@Test
+	public void parallelPipeline() {
+		List<Integer> input = randomInput(50000, 4);
+		// selection and projection on four workers
+		Cursor<Integer> result = Exchange.parallel(
+			input.iterator(),
+			new AbstractFunction<Cursor<Integer>, Cursor<Integer>>() {
+				public Cursor<Integer> invoke(Cursor<Integer> partition) {
+					return new Mapper<Integer, Integer>(
+						new AbstractFunction<Integer, Integer>() {
+							public Integer invoke(Integer element) {
+								return element*2;
+							}
+						},
+						new Filter<Integer>(
+							partition,
+							new AbstractPredicate<Integer>() {
+								public boolean invoke(Integer element) {
+									return element%3 == 0;
+								}
+							}
+						)
+					);
+				}
+			},
+			null,
+			4
+		);
+		List<Integer> expected = new ArrayList<Integer>();
+		for (Integer element : input)
+			if (element%3 == 0)
+				expected.add(element*2);
+		Assert.assertEquals(sorted(toList(result)), sorted(expected));
+	}
+
+	@Test
+	public void parallelAggregation() {
+		List<Integer> input = randomInput(50000, 5);
+		Cursor<Object[]> result = Exchange.parallel(
+			input.iterator(),
+			new AbstractFunction<Cursor<Integer>, Cursor<Object[]>>() {
+				public Cursor<Object[]> invoke(Cursor<Integer> partition) {
+					return new HashAggregator<Integer, Long, Object[]>(
+						partition,
+						Identity.DEFAULT_INSTANCE,
+						new Count(),
+						new AbstractFunction<Object, Object[]>() {
+							public Object[] invoke(Object key, Object count) {
+								return new Object[] {key, count};
+							}
+						}
+					);
+				}
+			},
+			Exchange.hashPartitioner(Identity.DEFAULT_INSTANCE, 4),
+			4
+		);
+		Map<Object, Long> expected = new HashMap<Object, Long>(), counts = new HashMap<Object, Long>();
+		for (Integer element : input)
+			expected.put(element, expected.containsKey(element) ? expected.get(element)+1 : 1L);
+		while (result.hasNext()) {
+			Object[] group = result.next();
+			Assert.assertNull(counts.put(group[0], (Long)group[1]));
+		}
+		result.close();
+		Assert.assertEquals(counts, expected);
+	}
+
+	@Test(timeOut = 10000)
+	public void failureAndEarlyClose() {
+		Iterator<Integer> failing = new Iterator<Integer>() {
+			int count = 0;
+
+			public boolean hasNext() {
+				return true;
+			}
+
+			public Integer next() {
+				if (++count == 1000)
+					throw new IllegalStateException("failure");
+				return count;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		Cursor<Integer> cursor = Exchange.gather(Collections.singletonList(failing));
+		try {
+			while (cursor.hasNext())
+				cursor.next();
+			Assert.fail();
+		}
+		catch (WrappingRuntimeException e) {
+			Assert.assertTrue(e.throwable instanceof IllegalStateException);
+		}
+		cursor.close();
+		// closing the consumer of an infinite producer stops the producer
+		Iterator<Integer> infinite = new Iterator<Integer>() {
+			public boolean hasNext() {
+				return true;
+			}
+
+			public Integer next() throws NoSuchElementException {
+				return 0;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		cursor = Exchange.gather(Collections.singletonList(infinite));
+		for (int i = 0; i < 10000; i++)
+			cursor.next();
+		cursor.close();
+	}
+}
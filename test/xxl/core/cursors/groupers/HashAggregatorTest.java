@@ -0,0 +1,141 @@
+package xxl.core.cursors.groupers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.queues.io.BlockBasedQueue;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.unions.Sequentializer;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.functions.Identity;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.math.statistics.parametric.aggregates.Count;
+import xxl.core.math.statistics.parametric.aggregates.Sum;
+
+/**
+ * Tests the {@link HashAggregator} in memory, with spilled partitions and as
+ * two-phase aggregation.
+ */
+public class HashAggregatorTest {
+
+	private static final Function<Object, Object[]> NEW_RESULT = new AbstractFunction<Object, Object[]>() {
+		public Object[] invoke(Object key, Object aggregate) {
+			return new Object[] {key, aggregate};
+		}
+	};
+
+	private static List<Integer> randomInput(int size, int keys, long seed) {
+		Random random = new Random(seed);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(keys));
+		return input;
+	}
+
+	private static Map<Object, Long> expectedCounts(List<Integer> input) {
+		Map<Object, Long> counts = new HashMap<Object, Long>();
+		for (Integer element : input)
+			counts.put(element, counts.containsKey(element) ? counts.get(element)+1 : 1L);
+		return counts;
+	}
+
+	private static Map<Object, Long> counts(Cursor<Object[]> aggregator) {
+		Map<Object, Long> counts = new HashMap<Object, Long>();
+		aggregator.open();
+		while (aggregator.hasNext()) {
+			Object[] group = aggregator.next();
+			Assert.assertFalse(counts.containsKey(group[0]), "group returned twice: " + group[0]);
+			counts.put(group[0], ((Number)group[1]).longValue());
+		}
+		aggregator.close();
+		return counts;
+	}
+
+	@Test
+	public void inMemory() {
+		List<Integer> input = randomInput(10000, 100, 1);
+		Assert.assertEquals(
+			counts(new HashAggregator<Integer, Long, Object[]>(input.iterator(), Identity.DEFAULT_INSTANCE, new Count(), NEW_RESULT)),
+			expectedCounts(input)
+		);
+	}
+
+	@Test
+	public void spilling() {
+		List<Integer> input = randomInput(100000, 20000, 2);
+		MapContainer container = new MapContainer();
+		// 500 groups fit in memory, 20000 groups are spilled over several levels
+		Assert.assertEquals(
+			counts(
+				new HashAggregator<Integer, Long, Object[]>(
+					input.iterator(),
+					Identity.DEFAULT_INSTANCE,
+					new Count(),
+					NEW_RESULT,
+					32,
+					32*500,
+					512,
+					4,
+					BlockBasedQueue.createBlockBasedQueueFunctionForMergeSorter(container, 512, IntegerConverter.DEFAULT_INSTANCE)
+				)
+			),
+			expectedCounts(input)
+		);
+		Assert.assertEquals(container.size(), 0);
+	}
+
+	@Test
+	public void twoPhase() {
+		final List<Integer> input = randomInput(50000, 5000, 3);
+		final int partitions = 4;
+		// partial aggregation of every quarter of the input with a small table
+		Iterator<Iterator<Object[]>> partials = new Iterator<Iterator<Object[]>>() {
+			int partition = 0;
+
+			public boolean hasNext() {
+				return partition < partitions;
+			}
+
+			public Iterator<Object[]> next() {
+				List<Integer> part = input.subList(partition*input.size()/partitions, (partition+1)*input.size()/partitions);
+				partition++;
+				HashAggregator<Integer, Long, Object[]> partial = new HashAggregator<Integer, Long, Object[]>(part.iterator(), Identity.DEFAULT_INSTANCE, new Count(), NEW_RESULT, 32, 32*300);
+				partial.open();
+				return partial;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		// final aggregation summing up the partial counts
+		Assert.assertEquals(
+			counts(
+				new HashAggregator<Object[], Number, Object[]>(
+					new Sequentializer<Object[]>(partials),
+					new AbstractFunction<Object[], Object>() {
+						public Object invoke(Object[] partial) {
+							return partial[0];
+						}
+					},
+					new Sum().compose(new AbstractFunction<Object[], Number>() {
+						public Number invoke(Object[] partial) {
+							return (Number)partial[1];
+						}
+					}),
+					NEW_RESULT
+				)
+			),
+			expectedCounts(input)
+		);
+	}
+}
@@ -0,0 +1,161 @@
+package xxl.core.cursors.joins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.collections.queues.io.BlockBasedQueue;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.predicates.AbstractPredicate;
+import xxl.core.predicates.Predicate;
+import xxl.core.predicates.Predicates;
+
+/**
+ * Tests the {@link HashJoin} against a nested-loops evaluation for all join
+ * types, in memory as well as with spilled and recursively repartitioned
+ * partitions.
+ */
+public class HashJoinTest {
+
+	/**
+	 * Elements are encoded as <tt>key*ID_RANGE+id</tt>.
+	 */
+	private static final long ID_RANGE = 100000;
+
+	private static final Function<Long, Long> KEY = new AbstractFunction<Long, Long>() {
+		@Override
+		public Long invoke(Long element) {
+			return element/ID_RANGE;
+		}
+	};
+
+	private static final Function<Long, String> NEW_RESULT = new AbstractFunction<Long, String>() {
+		@Override
+		public String invoke(Long element0, Long element1) {
+			return element0+","+element1;
+		}
+	};
+
+	private static final Predicate<Long> EVEN_SUM = new AbstractPredicate<Long>() {
+		@Override
+		public boolean invoke(Long element0, Long element1) {
+			return (element0+element1)%2 == 0;
+		}
+	};
+
+	private static List<Long> createInput(int size, int keys, int skewedKey, int skewed, long seed) {
+		Random random = new Random(seed);
+		List<Long> input = new ArrayList<Long>();
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(keys)*ID_RANGE+i);
+		for (int i = 0; i < skewed; i++)
+			input.add(skewedKey*ID_RANGE+size+i);
+		Collections.shuffle(input, random);
+		return input;
+	}
+
+	private static List<String> expected(List<Long> input0, List<Long> input1, Predicate<? super Long> predicate, HashJoin.Type type) {
+		List<String> results = new ArrayList<String>();
+		boolean[] matched1 = new boolean[input1.size()];
+		for (Long element0 : input0) {
+			boolean matched = false;
+			for (int i = 0; i < input1.size(); i++) {
+				Long element1 = input1.get(i);
+				if (KEY.invoke(element0).equals(KEY.invoke(element1)) && predicate.invoke(element0, element1)) {
+					matched = matched1[i] = true;
+					if (type != HashJoin.Type.SEMI_JOIN && type != HashJoin.Type.ANTI_JOIN)
+						results.add(NEW_RESULT.invoke(element0, element1));
+				}
+			}
+			if (matched ? type == HashJoin.Type.SEMI_JOIN : type == HashJoin.Type.LEFT_OUTER_JOIN || type == HashJoin.Type.OUTER_JOIN || type == HashJoin.Type.ANTI_JOIN)
+				results.add(NEW_RESULT.invoke(element0, null));
+		}
+		if (type == HashJoin.Type.RIGHT_OUTER_JOIN || type == HashJoin.Type.OUTER_JOIN)
+			for (int i = 0; i < input1.size(); i++)
+				if (!matched1[i])
+					results.add(NEW_RESULT.invoke(null, input1.get(i)));
+		Collections.sort(results);
+		return results;
+	}
+
+	private static List<String> join(HashJoin<Long, String> join) {
+		List<String> results = new ArrayList<String>();
+		join.open();
+		while (join.hasNext())
+			results.add(join.next());
+		join.close();
+		Collections.sort(results);
+		return results;
+	}
+
+	private static class CountingQueueFactory extends AbstractFunction<Function<?, Integer>, Queue<Long>> {
+		int queues = 0;
+
+		@Override
+		public Queue<Long> invoke(Function<?, Integer> inputBufferSize, Function<?, Integer> outputBufferSize) {
+			queues++;
+			return new ListQueue<Long>();
+		}
+	}
+
+	@Test
+	public void inMemory() {
+		List<Long> input0 = createInput(2000, 400, 0, 0, 1), input1 = createInput(800, 600, 0, 0, 2);
+		for (HashJoin.Type type : HashJoin.Type.values()) {
+			CountingQueueFactory factory = new CountingQueueFactory();
+			HashJoin<Long, String> join = new HashJoin<Long, String>(input0.iterator(), input1.iterator(), KEY, KEY, Predicates.TRUE, NEW_RESULT, type, 16, 1 << 20, 64, factory);
+			Assert.assertEquals(join(join), expected(input0, input1, Predicates.TRUE, type), type.toString());
+			Assert.assertEquals(factory.queues, 0);
+		}
+	}
+
+	@Test
+	public void spilledPartitions() {
+		List<Long> input0 = createInput(3000, 500, 0, 0, 3), input1 = createInput(1500, 700, 0, 0, 4);
+		for (HashJoin.Type type : HashJoin.Type.values()) {
+			CountingQueueFactory factory = new CountingQueueFactory();
+			HashJoin<Long, String> join = new HashJoin<Long, String>(input0.iterator(), input1.iterator(), KEY, KEY, EVEN_SUM, NEW_RESULT, type, 16, 16*100, 16, 8, factory);
+			Assert.assertEquals(join(join), expected(input0, input1, EVEN_SUM, type), type.toString());
+			Assert.assertTrue(factory.queues > 8, "spilled partitions: "+factory.queues);
+		}
+	}
+
+	@Test
+	public void skewedPartitions() {
+		List<Long> input0 = createInput(1000, 200, 7, 50, 5), input1 = createInput(500, 200, 7, 400, 6);
+		for (HashJoin.Type type : HashJoin.Type.values()) {
+			HashJoin<Long, String> join = new HashJoin<Long, String>(input0.iterator(), input1.iterator(), KEY, KEY, Predicates.TRUE, NEW_RESULT, type, 16, 16*100, 16, 4, new CountingQueueFactory());
+			Assert.assertEquals(join(join), expected(input0, input1, Predicates.TRUE, type), type.toString());
+		}
+	}
+
+	@Test
+	public void blockBasedQueues() {
+		List<Long> input0 = createInput(5000, 1000, 0, 0, 7), input1 = createInput(2000, 1000, 0, 0, 8);
+		final MapContainer container = new MapContainer();
+		HashJoin<Long, String> join = new HashJoin<Long, String>(
+			input0.iterator(),
+			input1.iterator(),
+			KEY,
+			KEY,
+			Predicates.TRUE,
+			NEW_RESULT,
+			HashJoin.Type.OUTER_JOIN,
+			16,
+			16*256,
+			256,
+			BlockBasedQueue.createBlockBasedQueueFunctionForMergeSorter(container, 256, LongConverter.DEFAULT_INSTANCE)
+		);
+		Assert.assertEquals(join(join), expected(input0, input1, Predicates.TRUE, HashJoin.Type.OUTER_JOIN));
+		Assert.assertEquals(container.size(), 0);
+	}
+}
@@ -0,0 +1,136 @@
+package xxl.core.cursors.sorters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * Tests the {@link NormalizedKeySorter} for integer, double and string keys
+ * and its use for the run creation of the {@link MergeSorter}.
+ */
+public class NormalizedKeySorterTest {
+
+	private static <E extends Comparable<? super E>> void check(List<E> input, Cursor<E> sorter) {
+		List<E> expected = new ArrayList<E>(input);
+		Collections.sort(expected);
+		List<E> result = new ArrayList<E>();
+		sorter.open();
+		while (sorter.hasNext())
+			result.add(sorter.next());
+		sorter.close();
+		Assert.assertEquals(result, expected);
+	}
+
+	@Test
+	public void integers() {
+		Random random = new Random(1);
+		for (int size : new int[] {0, 1, 10, 1000, 100000}) {
+			List<Integer> input = new ArrayList<Integer>();
+			for (int i = 0; i < size; i++)
+				input.add(random.nextInt());
+			check(input, new NormalizedKeySorter<Integer>(input.iterator(), NormalizedKeySorter.INTEGER_NORMALIZER, null));
+		}
+		List<Long> longs = new ArrayList<Long>();
+		for (int i = 0; i < 1000; i++)
+			longs.add(random.nextInt(100) - 50L);
+		longs.add(Long.MIN_VALUE);
+		longs.add(Long.MAX_VALUE);
+		check(longs, new NormalizedKeySorter<Long>(longs.iterator(), NormalizedKeySorter.LONG_NORMALIZER, null));
+	}
+
+	@Test
+	public void doubles() {
+		Random random = new Random(2);
+		List<Double> input = new ArrayList<Double>();
+		for (int i = 0; i < 1000; i++)
+			input.add(random.nextGaussian() * 1000);
+		input.add(0.0);
+		input.add(-0.0);
+		input.add(Double.NEGATIVE_INFINITY);
+		input.add(Double.POSITIVE_INFINITY);
+		input.add(Double.MIN_VALUE);
+		input.add(-Double.MAX_VALUE);
+		check(input, new NormalizedKeySorter<Double>(input.iterator(), NormalizedKeySorter.DOUBLE_NORMALIZER, null));
+	}
+
+	@Test
+	public void stringsWithTies() {
+		Random random = new Random(3);
+		List<String> input = new ArrayList<String>();
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder string = new StringBuilder("key");
+			for (int j = random.nextInt(6); j > 0; j--)
+				string.append((char)('a' + random.nextInt(3)));
+			input.add(string.toString());
+		}
+		check(input, new NormalizedKeySorter<String>(input.iterator(), NormalizedKeySorter.STRING_NORMALIZER, ComparableComparator.STRING_COMPARATOR));
+	}
+
+	@Test
+	public void reverseOrder() {
+		Random random = new Random(4);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i++)
+			input.add(random.nextInt(100));
+		NormalizedKeySorter<Integer> sorter = new NormalizedKeySorter<Integer>(input.iterator(), NormalizedKeySorter.reverse(NormalizedKeySorter.<Integer, Number>normalizer(new AbstractFunction<Integer, Integer>() {
+			public Integer invoke(Integer i) {
+				return i;
+			}
+		}, NormalizedKeySorter.INTEGER_NORMALIZER)), null);
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected, Collections.reverseOrder());
+		List<Integer> result = new ArrayList<Integer>();
+		sorter.open();
+		while (sorter.hasNext())
+			result.add(sorter.next());
+		sorter.close();
+		Assert.assertEquals(result, expected);
+	}
+
+	@Test
+	public void parallelRadixPasses() {
+		Random random = new Random(6);
+		for (int threads : new int[] {1, 4}) {
+			Object[] array = new Object[100000];
+			for (int i = 0; i < array.length; i++)
+				array[i] = random.nextBoolean() ? random.nextLong() : Long.valueOf(random.nextInt(100) - 50);
+			List<Object> expected = new ArrayList<Object>();
+			Collections.addAll(expected, array);
+			Collections.sort(expected.subList(10, array.length-10), new Comparator<Object>() {
+				public int compare(Object o1, Object o2) {
+					return ((Long)o1).compareTo((Long)o2);
+				}
+			});
+			NormalizedKeySorter.sort(array, 10, array.length-10, NormalizedKeySorter.LONG_NORMALIZER, null, threads);
+			for (int i = 0; i < array.length; i++)
+				Assert.assertEquals(array[i], expected.get(i));
+		}
+	}
+
+	@Test
+	public void mergeSorter() {
+		Random random = new Random(5);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < 50000; i++)
+			input.add(random.nextInt(10000) - 5000);
+		Function<Function<?, Integer>, Queue<Integer>> newQueue = new AbstractFunction<Function<?, Integer>, Queue<Integer>>() {
+			public Queue<Integer> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<Integer>();
+			}
+		};
+		Comparator<Integer> comparator = ComparableComparator.INTEGER_COMPARATOR;
+		check(input, new MergeSorter<Integer>(input.iterator(), comparator, NormalizedKeySorter.INTEGER_NORMALIZER, 16, 16*1024, 16*1024, newQueue, false));
+	}
+}
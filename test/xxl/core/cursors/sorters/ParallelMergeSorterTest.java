@@ -0,0 +1,85 @@
+package xxl.core.cursors.sorters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.SynchronizedContainer;
+import xxl.core.collections.queues.io.BlockBasedQueue;
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.Cursor;
+import xxl.core.io.converters.IntegerConverter;
+
+/**
+ * Tests the {@link ParallelMergeSorter} for different numbers of threads,
+ * memory sizes and input orders.
+ */
+public class ParallelMergeSorterTest {
+
+	private static List<Integer> randomInput(int size, long seed) {
+		Random random = new Random(seed);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(size/2));
+		return input;
+	}
+
+	private static void check(List<Integer> input, Cursor<Integer> sorter) {
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+		List<Integer> result = new ArrayList<Integer>();
+		sorter.open();
+		while (sorter.hasNext())
+			result.add(sorter.next());
+		sorter.close();
+		Assert.assertEquals(result, expected);
+	}
+
+	@Test
+	public void inMemory() {
+		List<Integer> input = randomInput(1000, 1);
+		check(input, new ParallelMergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 1 << 20, 4));
+		check(new ArrayList<Integer>(), new ParallelMergeSorter<Integer>(new ArrayList<Integer>().iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 1 << 20, 4));
+	}
+
+	@Test
+	public void manyRuns() {
+		List<Integer> input = randomInput(50000, 2);
+		for (int threads = 1; threads <= 4; threads++)
+			// 16 elements per chunk and a fan-in of 2: many runs and intermediate merges
+			check(input, new ParallelMergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 16*16*(threads+1), threads));
+	}
+
+	@Test
+	public void presortedInput() {
+		List<Integer> input = randomInput(20000, 3);
+		Collections.sort(input);
+		check(input, new ParallelMergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 16*1000, 3));
+		Collections.reverse(input);
+		check(input, new ParallelMergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 16*1000, 3));
+	}
+
+	@Test
+	public void blockBasedQueues() {
+		List<Integer> input = randomInput(100000, 4);
+		MapContainer container = new MapContainer();
+		check(
+			input,
+			new ParallelMergeSorter<Integer>(
+				input.iterator(),
+				ComparableComparator.INTEGER_COMPARATOR,
+				16,
+				16*4096,
+				512,
+				4,
+				BlockBasedQueue.createBlockBasedQueueFunctionForMergeSorter(new SynchronizedContainer(container), 512, IntegerConverter.DEFAULT_INSTANCE)
+			)
+		);
+		Assert.assertEquals(container.size(), 0);
+	}
+}
@@ -0,0 +1,92 @@
+package xxl.core.cursors.sorters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.sources.Enumerator;
+
+/**
+ * Tests the {@link TopKSorter} in a single pass and in several passes.
+ */
+public class TopKSorterTest {
+
+	private static List<Integer> randomInput(int size, long seed) {
+		Random random = new Random(seed);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(size/4));
+		return input;
+	}
+
+	private static List<Integer> expected(List<Integer> input, int k) {
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+		return expected.subList(0, Math.min(k, expected.size()));
+	}
+
+	private static List<Integer> toList(TopKSorter<Integer> sorter) {
+		List<Integer> result = new ArrayList<Integer>();
+		while (sorter.hasNext())
+			result.add(sorter.next());
+		sorter.close();
+		return result;
+	}
+
+	@Test
+	public void singlePass() {
+		List<Integer> input = randomInput(10000, 42);
+		for (int k : new int[] {1, 10, 100, 9999, 10000, 20000}) {
+			TopKSorter<Integer> sorter = new TopKSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, k);
+			Assert.assertEquals(toList(sorter), expected(input, k));
+			Assert.assertEquals(sorter.passes(), 1);
+		}
+	}
+
+	@Test
+	public void multiplePasses() {
+		List<Integer> input = randomInput(10000, 7);
+		TopKSorter<Integer> sorter = new TopKSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 1000, 16, 16*128);
+		Assert.assertEquals(toList(sorter), expected(input, 1000));
+		Assert.assertEquals(sorter.passes(), 8);
+		sorter = new TopKSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 20000, 16, 16*3000);
+		Assert.assertEquals(toList(sorter), expected(input, 20000));
+		Assert.assertEquals(sorter.passes(), 4);
+	}
+
+	@Test
+	public void zeroDoesNotReadInput() {
+		Iterator<Integer> input = new Iterator<Integer>() {
+			public boolean hasNext() {
+				throw new AssertionError("input read");
+			}
+
+			public Integer next() {
+				throw new AssertionError("input read");
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		Assert.assertFalse(new TopKSorter<Integer>(input, ComparableComparator.INTEGER_COMPARATOR, 0).hasNext());
+	}
+
+	@Test
+	public void reset() {
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 30; i++)
+			expected.add(i);
+		TopKSorter<Integer> sorter = new TopKSorter<Integer>(new Enumerator(100), ComparableComparator.INTEGER_COMPARATOR, 30, 1, 10);
+		Assert.assertEquals(sorter.next(), Integer.valueOf(0));
+		Assert.assertEquals(sorter.next(), Integer.valueOf(1));
+		sorter.reset();
+		Assert.assertEquals(toList(sorter), expected);
+	}
+}
@@ -0,0 +1,101 @@
+package xxl.core.cursors.unions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.sorters.MergeSorter;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+
+/**
+ * Tests the {@link LoserTreeMerger} for different numbers of inputs and its
+ * use as merge strategy of the {@link MergeSorter}.
+ */
+public class LoserTreeMergerTest {
+
+	private static List<Integer> toList(Cursor<Integer> cursor) {
+		List<Integer> result = new ArrayList<Integer>();
+		cursor.open();
+		while (cursor.hasNext())
+			result.add(cursor.next());
+		cursor.close();
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void merge() {
+		Random random = new Random(1);
+		for (int k : new int[] {0, 1, 2, 3, 7, 8, 100}) {
+			List<Integer> expected = new ArrayList<Integer>();
+			Iterator<Integer>[] inputs = new Iterator[k];
+			for (int i = 0; i < k; i++) {
+				List<Integer> run = new ArrayList<Integer>();
+				for (int j = random.nextInt(50); j > 0; j--)
+					run.add(random.nextInt(100));
+				Collections.sort(run);
+				expected.addAll(run);
+				inputs[i] = run.iterator();
+			}
+			Collections.sort(expected);
+			Assert.assertEquals(toList(new LoserTreeMerger<Integer>(ComparableComparator.INTEGER_COMPARATOR, inputs)), expected);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void stable() {
+		List<int[]> first = new ArrayList<int[]>(), second = new ArrayList<int[]>();
+		for (int i = 0; i < 10; i++) {
+			first.add(new int[] {i/2, 0});
+			second.add(new int[] {i/3, 1});
+		}
+		LoserTreeMerger<int[]> merger = new LoserTreeMerger<int[]>(
+			new java.util.Comparator<int[]>() {
+				public int compare(int[] a, int[] b) {
+					return a[0] - b[0];
+				}
+			},
+			first.iterator(),
+			second.iterator()
+		);
+		merger.open();
+		int[] previous = merger.next();
+		while (merger.hasNext()) {
+			int[] current = merger.next();
+			Assert.assertTrue(previous[0] < current[0] || previous[0] == current[0] && previous[1] <= current[1]);
+			previous = current;
+		}
+		merger.close();
+	}
+
+	@Test
+	public void mergeSorter() {
+		Random random = new Random(2);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < 50000; i++)
+			input.add(random.nextInt(10000));
+		Function<Function<?, Integer>, Queue<Integer>> newQueue = new AbstractFunction<Function<?, Integer>, Queue<Integer>>() {
+			public Queue<Integer> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<Integer>();
+			}
+		};
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+		// small memory: many runs, intermediate merges and a wide final merge
+		Assert.assertEquals(
+			toList(new MergeSorter<Integer>(input.iterator(), ComparableComparator.INTEGER_COMPARATOR, 16, 16*1024, 1 << 20, newQueue, LoserTreeMerger.factory(ComparableComparator.INTEGER_COMPARATOR), false)),
+			expected
+		);
+	}
+}
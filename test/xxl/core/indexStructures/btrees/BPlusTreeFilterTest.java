@@ -0,0 +1,138 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.btrees;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.CounterContainer;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.BPlusTreeBulkLoading;
+import xxl.core.indexStructures.keyRanges.IntegerKeyRange;
+import xxl.core.indexStructures.separators.IntegerSeparator;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+
+/**
+ * Tests the key filter of the {@link BPlusTree}: lookups of missing keys
+ * must not read nodes (in most cases) and existing keys must always be found.
+ */
+public class BPlusTreeFilterTest {
+
+	public static final int BLOCK_SIZE = 512;
+	public static final int NUMBER_OF_ELEMENTS = 20000;
+
+	private static BPlusTree createBPlusTree(CounterContainer container, boolean duplicates) {
+		BPlusTree tree = new BPlusTree(BLOCK_SIZE, 0.5, duplicates);
+		Function<Object, Object> getKey = new AbstractFunction<Object, Object>() {
+			@Override
+			public Object invoke(Object argument) {
+				return argument;
+			}
+		};
+		MeasuredFixedSizeConverter<Integer> converter = new MeasuredFixedSizeConverter<Integer>(IntegerConverter.DEFAULT_INSTANCE);
+		tree.initialize(getKey, container, converter, converter, IntegerSeparator.FACTORY_FUNCTION, IntegerKeyRange.FACTORY_FUNCTION);
+		return tree;
+	}
+
+	@Test
+	public void missesReadNoNodes() {
+		CounterContainer container = new CounterContainer(new MapContainer());
+		BPlusTree tree = createBPlusTree(container, false);
+		tree.enableFilter(NUMBER_OF_ELEMENTS, 0.01);
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i++)
+			tree.insert(2*i);
+
+		container.reset();
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i++)
+			Assert.assertNull(tree.exactMatchQuery(2*i+1));
+		Assert.assertTrue(container.gets < NUMBER_OF_ELEMENTS/20, "node reads: "+container.gets);
+
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i++) {
+			Assert.assertEquals(tree.exactMatchQuery(2*i), 2*i);
+			Assert.assertTrue(tree.contains(2*i));
+		}
+		Assert.assertTrue(container.gets > NUMBER_OF_ELEMENTS);
+	}
+
+	@Test
+	public void removedKeysAreFiltered() {
+		CounterContainer container = new CounterContainer(new MapContainer());
+		BPlusTree tree = createBPlusTree(container, false);
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i++)
+			tree.insert(i);
+		// the filter is filled with the keys already stored in the tree
+		tree.enableFilter(NUMBER_OF_ELEMENTS, 0.01);
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i += 2)
+			Assert.assertEquals(tree.remove(i), i);
+
+		container.reset();
+		for (int i = 0; i < NUMBER_OF_ELEMENTS; i += 2)
+			Assert.assertFalse(tree.contains(i));
+		Assert.assertTrue(container.gets < NUMBER_OF_ELEMENTS/20, "node reads: "+container.gets);
+		for (int i = 1; i < NUMBER_OF_ELEMENTS; i += 2)
+			Assert.assertTrue(tree.contains(i));
+
+		tree.clear();
+		Assert.assertFalse(tree.getFilter().mightContain(new byte[] {0, 0, 0, 1}));
+	}
+
+	@Test
+	public void duplicatesAndBulkLoading() {
+		CounterContainer container = new CounterContainer(new MapContainer());
+		BPlusTree tree = createBPlusTree(container, true);
+		tree.enableFilter(NUMBER_OF_ELEMENTS, 0.01);
+		List<Integer> data = new ArrayList<Integer>();
+		for (int i = 0; i < NUMBER_OF_ELEMENTS/2; i++) {
+			data.add(4*i);
+			data.add(4*i);
+		}
+		new BPlusTreeBulkLoading(tree, data.iterator());
+
+		container.reset();
+		for (int i = 0; i < NUMBER_OF_ELEMENTS/2; i++) {
+			Cursor cursor = tree.aloneKeyQuery(4*i+2);
+			Assert.assertFalse(cursor.hasNext());
+			cursor.close();
+		}
+		Assert.assertTrue(container.gets < NUMBER_OF_ELEMENTS/20, "node reads: "+container.gets);
+		for (int i = 0; i < NUMBER_OF_ELEMENTS/2; i++) {
+			Cursor cursor = tree.aloneKeyQuery(4*i);
+			int count = 0;
+			for (; cursor.hasNext(); cursor.next())
+				count++;
+			cursor.close();
+			Assert.assertEquals(count, 2);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.btrees;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.CounterContainer;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.LSMTree;
+import xxl.core.indexStructures.keyRanges.IntegerKeyRange;
+import xxl.core.indexStructures.separators.IntegerSeparator;
+import xxl.core.io.converters.IntegerConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+
+/**
+ * Tests the {@link LSMTree} against a <code>TreeMap</code>.
+ */
+public class LSMTreeTest {
+
+	public static final int BLOCK_SIZE = 512;
+
+	/**
+	 * The containers of all runs created by a tree.
+	 */
+	private List<CounterContainer> containers = new ArrayList<CounterContainer>();
+
+	private LSMTree createLSMTree(int bufferCapacity, int fanout) {
+		containers.clear();
+		MeasuredFixedSizeConverter<Integer> converter = new MeasuredFixedSizeConverter<Integer>(IntegerConverter.DEFAULT_INSTANCE);
+		return new LSMTree(BLOCK_SIZE, bufferCapacity, fanout).initialize(
+			new AbstractFunction<Object, Object>() {
+				@Override
+				public Object invoke(Object argument) {
+					return argument;
+				}
+			},
+			converter,
+			converter,
+			IntegerSeparator.FACTORY_FUNCTION,
+			IntegerKeyRange.FACTORY_FUNCTION,
+			new AbstractFunction<BPlusTree, Container>() {
+				@Override
+				public Container invoke(BPlusTree tree) {
+					CounterContainer container = new CounterContainer(new MapContainer());
+					synchronized (containers) {
+						containers.add(container);
+					}
+					return container;
+				}
+			}
+		);
+	}
+
+	private static List<Object> toList(Cursor cursor) {
+		List<Object> result = new ArrayList<Object>();
+		while (cursor.hasNext())
+			result.add(cursor.next());
+		cursor.close();
+		return result;
+	}
+
+	private static void check(LSMTree lsm, TreeMap<Integer, Integer> expected, Random random) {
+		for (int i = -10; i < 3010; i++)
+			Assert.assertEquals(lsm.exactMatchQuery(i), expected.get(i), "key "+i);
+		Assert.assertEquals(toList(lsm.query()), new ArrayList<Object>(expected.values()));
+		for (int i = 0; i < 20; i++) {
+			int from = random.nextInt(3000), to = from+random.nextInt(500);
+			Assert.assertEquals(toList(lsm.rangeQuery(from, to)), new ArrayList<Object>(expected.subMap(from, true, to, true).values()));
+		}
+	}
+
+	@Test
+	public void compareWithTreeMap() {
+		LSMTree lsm = createLSMTree(100, 3);
+		TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(3000);
+			if (random.nextInt(4) == 0) {
+				lsm.remove(key);
+				expected.remove(key);
+			}
+			else {
+				lsm.insert(key);
+				expected.put(key, key);
+			}
+			if (i%5000 == 0)
+				check(lsm, expected, random);
+		}
+		check(lsm, expected, random);
+		Assert.assertTrue(lsm.levels() > 2, "levels: "+lsm.levels());
+		for (int level = 0; level < lsm.levels(); level++)
+			Assert.assertTrue(lsm.runs(level) < 3);
+
+		lsm.close();
+		check(lsm, expected, random);
+	}
+
+	@Test
+	public void filtersSkipRuns() {
+		LSMTree lsm = createLSMTree(1000, 4);
+		for (int i = 0; i < 20000; i++)
+			lsm.insert(2*i);
+		lsm.flush();
+		for (CounterContainer container : containers)
+			container.reset();
+		for (int i = 0; i < 20000; i++)
+			Assert.assertNull(lsm.exactMatchQuery(2*i+1));
+		int gets = 0;
+		for (CounterContainer container : containers)
+			gets += container.gets;
+		Assert.assertTrue(gets < 2000, "node reads: "+gets);
+	}
+
+	@Test
+	public void releaseReplacedRuns() {
+		LSMTree lsm = createLSMTree(50, 2);
+		for (int i = 0; i < 1000; i++)
+			lsm.insert(i);
+		Cursor open = lsm.query();
+		for (int i = 0; i < 1000; i++)
+			lsm.remove(i);
+		lsm.close();
+		Assert.assertFalse(lsm.query().hasNext());
+		// the open cursor still reads the runs which existed when it was created
+		Assert.assertEquals(toList(open).size(), 1000);
+		// only the containers of the current runs are not released
+		int runs = 0, usedContainers = 0;
+		for (int level = 0; level < lsm.levels(); level++)
+			runs += lsm.runs(level);
+		for (CounterContainer container : containers)
+			if (container.size() > 0)
+				usedContainers++;
+		Assert.assertEquals(usedContainers, runs);
+		Assert.assertTrue(containers.size() > runs);
+	}
+
+	@Test
+	public void backgroundCompactionWithConcurrentReader() throws InterruptedException {
+		final LSMTree lsm = createLSMTree(500, 4).enableBackgroundCompaction();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread reader = new Thread() {
+			public void run() {
+				try {
+					while (!done.get()) {
+						// keys below 1000 are inserted first and never changed afterwards
+						for (int i = 0; i < 1000; i += 37)
+							if (lsm.exactMatchQuery(i) != null)
+								Assert.assertEquals(lsm.exactMatchQuery(i), i);
+						Integer last = null;
+						for (Iterator it = lsm.rangeQuery(0, 999); it.hasNext();) {
+							Integer next = (Integer)it.next();
+							Assert.assertTrue(last == null || last < next);
+							last = next;
+						}
+					}
+				}
+				catch (Throwable t) {
+					failure.set(t);
+				}
+			}
+		};
+		for (int i = 0; i < 1000; i++)
+			lsm.insert(i);
+		reader.start();
+		TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+		for (int i = 0; i < 1000; i++)
+			expected.put(i, i);
+		Random random = new Random(7);
+		for (int i = 0; i < 50000; i++) {
+			int key = 1000+random.nextInt(2000);
+			lsm.insert(key);
+			expected.put(key, key);
+		}
+		done.set(true);
+		reader.join();
+		Assert.assertNull(failure.get());
+		lsm.close();
+		Assert.assertEquals(toList(lsm.query()), new ArrayList<Object>(expected.values()));
+		for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+			Assert.assertEquals(lsm.exactMatchQuery(entry.getKey()), entry.getValue());
+	}
+}
@@ -0,0 +1,174 @@
+package xxl.core.indexStructures.btrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.cursors.Cursors;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.BPlusTreeBulkLoading;
+import xxl.core.indexStructures.LearnedIndex;
+import xxl.core.indexStructures.keyRanges.LongKeyRange;
+import xxl.core.indexStructures.separators.LongSeparator;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredFixedSizeConverter;
+
+/**
+ * Tests the {@link LearnedIndex} against a binary search over the sorted
+ * keys for uniform, skewed and duplicate keys.
+ */
+public class LearnedIndexTest {
+
+	public static final int NUMBER_OF_ELEMENTS = 50000;
+
+	private static final Function<Object, Object> IDENTITY = new AbstractFunction<Object, Object>() {
+		@Override
+		public Object invoke(Object argument) {
+			return argument;
+		}
+	};
+
+	private static void check(long[] sortedKeys, int epsilon) {
+		List<Long> list = new ArrayList<Long>();
+		for (long key : sortedKeys)
+			list.add(key);
+		LearnedIndex index = new LearnedIndex(list.iterator(), IDENTITY, epsilon);
+		Assert.assertEquals(index.size(), sortedKeys.length);
+		Assert.assertEquals(index.segments(index.height()-1), 1);
+
+		Random random = new Random(7);
+		// the probes also lie far below the minimum and above the maximum key
+		long min = sortedKeys.length == 0 ? -1 : sortedKeys[0]-(sortedKeys[sortedKeys.length-1]-sortedKeys[0])-2;
+		long max = sortedKeys.length == 0 ? 1 : sortedKeys[sortedKeys.length-1]+2;
+		for (int i = 0; i < 5000; i++) {
+			long key = i%2 == 0 && sortedKeys.length > 0 ? sortedKeys[random.nextInt(sortedKeys.length)] : min+(long)(random.nextDouble()*(max-min));
+			boolean contained = Arrays.binarySearch(sortedKeys, key) >= 0;
+			Object result = index.exactMatchQuery(key);
+			Assert.assertEquals(result != null, contained, "key "+key);
+			if (contained)
+				Assert.assertEquals(result, key);
+		}
+		for (int i = 0; i < 200; i++) {
+			long a = min+(long)(random.nextDouble()*(max-min)), b = a+random.nextInt(1000);
+			int expected = 0;
+			for (long key : sortedKeys)
+				if (key >= a && key <= b)
+					expected++;
+			Cursor cursor = index.rangeQuery(a, b);
+			long previous = Long.MIN_VALUE;
+			int count = 0;
+			while (cursor.hasNext()) {
+				long key = (Long)cursor.next();
+				Assert.assertTrue(key >= a && key <= b && key >= previous);
+				previous = key;
+				count++;
+			}
+			Assert.assertEquals(count, expected);
+		}
+	}
+
+	@Test
+	public void uniformKeys() {
+		long[] keys = new long[NUMBER_OF_ELEMENTS];
+		Random random = new Random(42);
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = random.nextInt(10*NUMBER_OF_ELEMENTS);
+		Arrays.sort(keys);
+		long[] distinct = new long[keys.length];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++)
+			if (n == 0 || distinct[n-1] != keys[i])
+				distinct[n++] = keys[i];
+		check(Arrays.copyOf(distinct, n), 16);
+	}
+
+	@Test
+	public void skewedKeys() {
+		long[] keys = new long[NUMBER_OF_ELEMENTS];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = (long)i*i*i/7+i;
+		check(keys, 4);
+	}
+
+	@Test
+	public void duplicateKeys() {
+		long[] keys = new long[NUMBER_OF_ELEMENTS];
+		Random random = new Random(3);
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = random.nextInt(500) == 0 ? i : i/100;
+		Arrays.sort(keys);
+		check(keys, 8);
+
+		List<Long> list = new ArrayList<Long>();
+		for (long key : keys)
+			list.add(key);
+		LearnedIndex index = new LearnedIndex(list.iterator(), IDENTITY, 8);
+		Assert.assertEquals(Cursors.count(index.rangeQuery(5L, 5L)), countOf(keys, 5L));
+	}
+
+	private static int countOf(long[] keys, long key) {
+		int count = 0;
+		for (long k : keys)
+			if (k == key)
+				count++;
+		return count;
+	}
+
+	@Test
+	public void keysBelowMinimum() {
+		long[] keys = new long[1000];
+		List<Long> list = new ArrayList<Long>();
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = 1000+i;
+			list.add(keys[i]);
+		}
+		LearnedIndex index = new LearnedIndex(list.iterator(), IDENTITY, 4);
+		Assert.assertNull(index.exactMatchQuery(0L));
+		Assert.assertNull(index.exactMatchQuery(Long.MIN_VALUE/2));
+		Assert.assertEquals(index.exactMatchQuery(1000L), 1000L);
+		Assert.assertEquals(Cursors.count(index.rangeQuery(-5000L, 1002L)), 3);
+		Assert.assertEquals(Cursors.count(index.rangeQuery(-5000L, 999L)), 0);
+		Assert.assertEquals(Cursors.count(index.rangeQuery(1998L, 5000L)), 2);
+		check(keys, 4);
+		check(new long[] {1000}, 4);
+	}
+
+	@Test
+	public void emptyData() {
+		LearnedIndex index = new LearnedIndex(new ArrayList<Long>().iterator(), IDENTITY, 8);
+		Assert.assertNull(index.exactMatchQuery(1L));
+		Assert.assertFalse(index.rangeQuery(0L, 10L).hasNext());
+		check(new long[0], 8);
+	}
+
+	@Test
+	public void buildFromBPlusTree() {
+		BPlusTree tree = new BPlusTree(512, 0.5, false);
+		MeasuredFixedSizeConverter<Long> converter = new MeasuredFixedSizeConverter<Long>(LongConverter.DEFAULT_INSTANCE);
+		tree.initialize(IDENTITY, new MapContainer(), converter, converter, LongSeparator.FACTORY_FUNCTION, LongKeyRange.FACTORY_FUNCTION);
+		List<Long> list = new ArrayList<Long>();
+		for (long i = 0; i < NUMBER_OF_ELEMENTS; i++)
+			list.add(3*i);
+		new BPlusTreeBulkLoading(tree, list.iterator());
+
+		LearnedIndex index = new LearnedIndex(tree, 16);
+		Assert.assertEquals(index.size(), NUMBER_OF_ELEMENTS);
+		for (long i = 0; i < 3*NUMBER_OF_ELEMENTS; i++)
+			Assert.assertEquals(index.exactMatchQuery(i), i%3 == 0 ? (Object)i : null);
+		Assert.assertEquals(Cursors.count(index.rangeQuery(30L, 60L)), 11);
+		Assert.assertEquals(Cursors.count(index.query()), NUMBER_OF_ELEMENTS);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void unsortedData() {
+		new LearnedIndex(Arrays.asList(3L, 1L, 2L).iterator(), IDENTITY, 8);
+	}
+}
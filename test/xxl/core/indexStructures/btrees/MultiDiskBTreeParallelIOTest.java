@@ -0,0 +1,113 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.btrees;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.DecoratorContainer;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.sources.Permutator;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.MultiDiskBTree;
+import xxl.core.util.Interval1D;
+
+/**
+ * Checks the parallel I/O mode of the {@link MultiDiskBTree}: the results of 
+ * parallel range queries, the write queues of the leaf containers and the 
+ * concurrent reads of the disks.
+ */
+public class MultiDiskBTreeParallelIOTest {
+
+	public static final int DISKS = 4;
+	
+	public static final int SIZE = 20000;
+
+	/** The threads which read leaves. */
+	static Set<String> readers = Collections.synchronizedSet(new HashSet<String>());
+	
+	static Function getDescriptor = new AbstractFunction() {
+		public Object invoke (Object object) {
+			return new Interval1D(object);
+		}
+	};
+	
+	static MultiDiskBTree createTree () {
+		Container [] containers = new Container[DISKS];
+		for (int i = 0; i < DISKS; i++)
+			containers[i] = new DecoratorContainer(new MapContainer()) {
+				public Object get (Object id, boolean unfix) {
+					readers.add(Thread.currentThread().getName()+"@"+Thread.currentThread().getId());
+					return super.get(id, unfix);
+				}
+				public Object [] batchInsert (Object [] blocks) {
+					return container.batchInsert(blocks);
+				}
+			};
+		return new MultiDiskBTree().initialize(getDescriptor, new MapContainer(), containers, 10, 25);
+	}
+	
+	static List<Object> query (MultiDiskBTree btree, int from, int to, boolean parallel) {
+		Interval1D range = new Interval1D(new Integer(from), new Integer(to));
+		return Cursors.toList(parallel ? btree.parallelQuery(range, 3) : btree.query(range, 0));
+	}
+
+	@Test
+	public void parallelQueries () {
+		MultiDiskBTree btree = createTree().enableParallelIO(16);
+		Assert.assertTrue(btree.isParallelIOEnabled());
+		for (Iterator it = new Permutator(SIZE); it.hasNext();)
+			btree.insert(it.next());
+		int [][] ranges = {{0, SIZE}, {100, 200}, {-10, 5}, {SIZE-3, SIZE+10}, {5000, 15000}, {SIZE+1, SIZE+2}};
+		for (int [] range : ranges) {
+			List<Object> expected = new ArrayList<Object>();
+			for (int i = Math.max(range[0], 0); i <= Math.min(range[1], SIZE-1); i++)
+				expected.add(new Integer(i));
+			Assert.assertEquals(query(btree, range[0], range[1], true), expected);
+		}
+		readers.clear();
+		query(btree, 0, SIZE, true);
+		Assert.assertEquals(readers.size(), DISKS, "one I/O worker per disk");
+		for (int i = SIZE; i < 2*SIZE; i++)
+			btree.insert(new Integer(i));
+		List<Object> parallel = query(btree, 0, 2*SIZE, true);
+		Assert.assertEquals(parallel.size(), 2*SIZE);
+		btree.disableParallelIO();
+		Assert.assertFalse(btree.isParallelIOEnabled());
+		Assert.assertEquals(query(btree, 0, 2*SIZE, false), parallel);
+		Assert.assertEquals(query(btree, 0, 2*SIZE, true), parallel);
+	}
+}
@@ -0,0 +1,246 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.indexBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.indexStructures.ARTIndexedSet;
+import xxl.core.indexStructures.AdaptiveRadixTree;
+import xxl.core.indexStructures.builder.Builders;
+import xxl.core.indexStructures.builder.ART.ARTConfiguration;
+import xxl.core.util.FileUtils;
+
+/**
+ * Tests the {@link ARTIndexedSet} against a <code>TreeSet</code> and checks the snapshot
+ * persistence of the underlying {@link AdaptiveRadixTree}.
+ * 
+ */
+public class ARTIndexedSetTest {
+
+  final int MAX_ITEMS_TO_INSERT = 20_000;
+  final String MY_TABLE_NAME = "TableTest";
+
+  private static <E> List<E> toList(Iterator<E> it) {
+    List<E> result = new ArrayList<E>();
+    while (it.hasNext())
+      result.add(it.next());
+    return result;
+  }
+
+  @Test
+  public void checkIntegersAgainstTreeSet() {
+    ARTIndexedSet<Integer> set =
+        Builders.createART.Integer(MY_TABLE_NAME).getBuilder().create();
+    TreeSet<Integer> expected = new TreeSet<Integer>();
+    Random random = new Random(42);
+
+    for (int i = 0; i < MAX_ITEMS_TO_INSERT; i++) {
+      int value = random.nextInt(10_000) - 5_000;
+      if (random.nextInt(3) == 0)
+        Assert.assertEquals(set.remove(value), expected.remove(value));
+      else
+        Assert.assertEquals(set.add(value), expected.add(value));
+    }
+    Assert.assertEquals(set.size(), expected.size());
+    Assert.assertEquals(toList(set.iterator()), new ArrayList<Integer>(expected));
+    Assert.assertEquals(set.first(), expected.first());
+    Assert.assertEquals(set.last(), expected.last());
+
+    for (int i = 0; i < 100; i++) {
+      int from = random.nextInt(12_000) - 6_000;
+      int to = from + random.nextInt(3_000);
+      SortedSet<Integer> sub = set.subSet(from, to);
+      SortedSet<Integer> expectedSub = expected.subSet(from, to);
+      Assert.assertEquals(toList(sub.iterator()), new ArrayList<Integer>(expectedSub));
+      Assert.assertEquals(sub.size(), expectedSub.size());
+      Assert.assertEquals(toList(set.headSet(to).iterator()),
+          new ArrayList<Integer>(expected.headSet(to)));
+      Assert.assertEquals(toList(set.tailSet(from).iterator()),
+          new ArrayList<Integer>(expected.tailSet(from)));
+    }
+    Assert.assertFalse(set.contains("no integer"));
+  }
+
+  @Test
+  public void checkDoublesOrder() {
+    ARTIndexedSet<Double> set =
+        Builders.createART.Double(MY_TABLE_NAME).getBuilder().create();
+    TreeSet<Double> expected = new TreeSet<Double>();
+    Random random = new Random(7);
+    for (int i = 0; i < 5_000; i++) {
+      double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+      Assert.assertEquals(set.add(value), expected.add(value));
+    }
+    set.add(Double.NEGATIVE_INFINITY);
+    expected.add(Double.NEGATIVE_INFINITY);
+    set.add(Double.POSITIVE_INFINITY);
+    expected.add(Double.POSITIVE_INFINITY);
+    Assert.assertEquals(toList(set.iterator()), new ArrayList<Double>(expected));
+  }
+
+  @Test
+  public void checkNodeGrowAndShrink() {
+    AdaptiveRadixTree<Integer> tree = new AdaptiveRadixTree<Integer>();
+    NavigableMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+    // all children of the root share the first byte, so the inner node grows through every type
+    for (int i = 0; i < 256; i++) {
+      tree.put(new byte[] {1, (byte) i}, i);
+      expected.put(i, i);
+      Assert.assertEquals(toList(tree.values()), new ArrayList<Integer>(expected.values()));
+    }
+    for (int i = 255; i >= 0; i -= 1 + (i & 1)) {
+      Assert.assertEquals(tree.remove(new byte[] {1, (byte) i}), Integer.valueOf(i));
+      expected.remove(i);
+      Assert.assertEquals(toList(tree.values()), new ArrayList<Integer>(expected.values()));
+    }
+    Assert.assertEquals(tree.size(), expected.size());
+    for (Integer i : expected.keySet())
+      Assert.assertEquals(tree.get(new byte[] {1, (byte) (int) i}), i);
+  }
+
+  @Test
+  public void checkSnapshotsAreConsistent() throws InterruptedException {
+    final AdaptiveRadixTree<Integer> tree = new AdaptiveRadixTree<Integer>();
+    Thread writer = new Thread() {
+      public void run() {
+        Random random = new Random(5);
+        for (int i = 0; i < 200_000; i++) {
+          int key = random.nextInt(1_000);
+          byte[] bytes = new byte[] {(byte) (key >> 8), (byte) key};
+          if (random.nextBoolean())
+            tree.put(bytes, key);
+          else
+            tree.remove(bytes);
+        }
+      }
+    };
+    writer.start();
+    // every snapshot taken without locking sees the size of its own root
+    while (writer.isAlive()) {
+      AdaptiveRadixTree<Integer> snapshot = tree.snapshot();
+      Assert.assertEquals(snapshot.size(), toList(snapshot.values()).size());
+    }
+    writer.join();
+    Assert.assertEquals(tree.size(), toList(tree.values()).size());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void checkPrefixKeysAreRejected() {
+    AdaptiveRadixTree<Integer> tree = new AdaptiveRadixTree<Integer>();
+    tree.put(new byte[] {1, 2}, 1);
+    tree.put(new byte[] {1}, 2);
+  }
+
+  @Test
+  public void checkIteratorIsolation() {
+    ARTIndexedSet<Long> set =
+        Builders.createART.Long(MY_TABLE_NAME).getBuilder().create();
+    for (long i = 0; i < 1_000; i++)
+      set.add(i);
+    Iterator<Long> it = set.iterator();
+    set.clear();
+    for (long i = 0; i < 1_000; i++)
+      set.add(-i - 1);
+    Assert.assertEquals(toList(it).size(), 1_000);
+    Assert.assertEquals(set.first(), Long.valueOf(-1_000));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void checkAddOutsideView() {
+    ARTIndexedSet<Integer> set =
+        Builders.createART.Integer(MY_TABLE_NAME).getBuilder().create();
+    set.headSet(10).add(10);
+  }
+
+  @Test
+  public void checkSnapshotRoundTrip() {
+    ARTIndexedSet<Integer> set =
+        Builders.createART.Integer(MY_TABLE_NAME).setBlockSize(512)
+            .getBuilder().create();
+    for (int i = -MAX_ITEMS_TO_INSERT; i < MAX_ITEMS_TO_INSERT; i += 3)
+      set.add(i);
+
+    MapContainer container = new MapContainer();
+    Object id = set.saveSnapshot(container);
+    Assert.assertTrue(container.size() > 1);
+
+    ARTIndexedSet<Integer> restored =
+        Builders.createART.Integer(MY_TABLE_NAME).restoreFrom(container, id)
+            .getBuilder().create();
+    Assert.assertEquals(restored.size(), set.size());
+    Assert.assertEquals(toList(restored.iterator()), toList(set.iterator()));
+
+    AdaptiveRadixTree.release(container, id);
+    Assert.assertEquals(container.size(), 0);
+  }
+
+  @Test
+  public void checkSaveAndReload() throws IOException {
+    String path =
+        System.getProperty("java.io.tmpdir") + "temp/tests/ARTIndexedSetTest/"
+            + System.currentTimeMillis() + "/" + Thread.currentThread().getId();
+    Assert.assertTrue(new File(path).mkdirs());
+    try {
+      ARTConfiguration creator = Builders.createART.Timestamp(MY_TABLE_NAME);
+      creator.storeAt(path);
+      ARTIndexedSet<java.sql.Timestamp> set = creator.getBuilder().create();
+      for (long i = 0; i < 5_000; i++)
+        set.add(new java.sql.Timestamp(i * 1_000));
+      set.save();
+
+      ARTIndexedSet<java.sql.Timestamp> restored =
+          Builders.loadART.from(path, MY_TABLE_NAME).getBuilder().create();
+      Assert.assertEquals(restored.size(), 5_000);
+      Assert.assertEquals(toList(restored.iterator()), toList(set.iterator()));
+
+      // saving again replaces the old snapshot
+      restored.add(new java.sql.Timestamp(-1));
+      restored.save();
+      restored = Builders.loadART.from(path, MY_TABLE_NAME).getBuilder().create();
+      Assert.assertEquals(restored.size(), 5_001);
+      Assert.assertEquals(restored.first(), new java.sql.Timestamp(-1));
+    } finally {
+      FileUtils.removeFile(new File(path));
+    }
+  }
+
+  public String toString() {
+    return "ARTIndexedSet operations and snapshots";
+  }
+}
@@ -0,0 +1,107 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.indexBuilder;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.indexStructures.BPlusIndexedSet;
+import xxl.core.indexStructures.BPlusTree;
+import xxl.core.indexStructures.builder.Builders;
+import xxl.core.indexStructures.builder.BPlusTree.BPlusConfiguration.Creator;
+import xxl.core.util.FileUtils;
+
+/**
+ * Tests the key filter of a {@link BPlusIndexedSet} and that it is written and reloaded together
+ * with the set.
+ * 
+ */
+public class BPlusIndexedSetFilterTest {
+
+  final int MAX_ITEMS_TO_INSERT = 10_000;
+  final String MY_TABLE_NAME = "TableTest";
+
+  @Test
+  public void checkContainsWithFilter() {
+    Creator creator =
+        Builders.createBPlusTree.Integer(MY_TABLE_NAME).setFilter(
+            MAX_ITEMS_TO_INSERT, 0.01);
+    BPlusIndexedSet<Integer> set = creator.getBuilder().create();
+    Assert.assertNotNull(set.getIndexStructure().getFilter());
+
+    for (int i = 0; i < MAX_ITEMS_TO_INSERT; i++)
+      Assert.assertTrue(set.add(2 * i));
+    for (int i = 0; i < MAX_ITEMS_TO_INSERT; i++) {
+      Assert.assertTrue(set.contains(2 * i));
+      Assert.assertFalse(set.contains(2 * i + 1));
+    }
+    for (int i = 0; i < MAX_ITEMS_TO_INSERT; i += 2)
+      Assert.assertTrue(set.remove(2 * i));
+    for (int i = 0; i < MAX_ITEMS_TO_INSERT; i++)
+      Assert.assertEquals(set.contains(2 * i), i % 2 == 1);
+  }
+
+  @Test
+  public void checkSaveAndReloadFilter() throws IOException {
+    String path =
+        System.getProperty("java.io.tmpdir")
+            + "temp/tests/BPlusIndexedSetFilterTest/"
+            + System.currentTimeMillis() + "/" + Thread.currentThread().getId();
+    Assert.assertTrue(new File(path).mkdirs());
+    try {
+      Creator creator =
+          Builders.createBPlusTree.Integer(MY_TABLE_NAME).setFilter(
+              MAX_ITEMS_TO_INSERT, 0.01);
+      creator.storeAt(path);
+      BPlusIndexedSet<Integer> set = creator.getBuilder().create();
+      for (int i = 0; i < MAX_ITEMS_TO_INSERT; i++)
+        set.add(i);
+      set.save();
+      Assert.assertTrue(new File(set.getFilePath()
+          + BPlusIndexedSet.FILTER_FILE_EXTENSION).isFile());
+
+      BPlusIndexedSet<Integer> restored =
+          Builders.loadBPlusTree.from(path, MY_TABLE_NAME).getBuilder()
+              .create();
+      BPlusTree tree = restored.getIndexStructure();
+      Assert.assertNotNull(tree.getFilter());
+      Assert.assertEquals(tree.getFilter().size(),
+          set.getIndexStructure().getFilter().size());
+      for (int i = 0; i < MAX_ITEMS_TO_INSERT; i++)
+        Assert.assertNotNull(tree.exactMatchQuery(i));
+      Assert.assertNull(tree.exactMatchQuery(-1));
+    } finally {
+      FileUtils.removeFile(new File(path));
+    }
+  }
+
+  public String toString() {
+    return "BPlusIndexedSet key filter";
+  }
+}
@@ -0,0 +1,201 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.mtrees;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Constant;
+import xxl.core.indexStructures.MTree;
+import xxl.core.indexStructures.MTreeBulkLoading;
+import xxl.core.indexStructures.ORTree;
+import xxl.core.indexStructures.SlimTree;
+import xxl.core.indexStructures.Sphere;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.LpMetric;
+import xxl.core.spatial.points.DoublePoint;
+
+/**
+ * Bulk-loads M-trees and Slim-trees by {@link MTreeBulkLoading} and checks the 
+ * capacities and covering radii of the nodes and the results of range queries.
+ */
+public class MTreeBulkLoadingTest {
+
+	public static final int DIMENSION = 4;
+	
+	public static final int MIN_CAPACITY = 10;
+	
+	public static final int MAX_CAPACITY = 25;
+	
+	public static final double EPSILON = 0.15;
+
+	static Converter centerConverter = new ConvertableConverter(
+		new AbstractFunction() {
+			public Object invoke () {
+				return new DoublePoint(DIMENSION);
+			}
+		}
+	);
+
+	static Converter descriptorConverter = new ConvertableConverter(
+		new AbstractFunction() {
+			public Object invoke () {
+				return new Sphere(new DoublePoint(DIMENSION), 0.0, centerConverter);
+			}
+		}
+	);
+
+	static List<DoublePoint> points(int number, long seed) {
+		Random random = new Random(seed);
+		List<DoublePoint> points = new ArrayList<DoublePoint>(number);
+		for (int i = 0; i < number; i++) {
+			double[] point = new double[DIMENSION];
+			for (int d = 0; d < DIMENSION; d++)
+				point[d] = random.nextDouble();
+			points.add(new DoublePoint(point));
+		}
+		return points;
+	}
+
+	static MTree load(MTree mTree, List<DoublePoint> points, int threads, boolean slimDown) {
+		Container container = new ConverterContainer(new MapContainer(), 
+			mTree.nodeConverter(mTree.leafEntryConverter(centerConverter), mTree.indexEntryConverter(descriptorConverter)));
+		mTree.initialize(Sphere.getFactoryFunction(centerConverter), container, MIN_CAPACITY, MAX_CAPACITY);
+		new MTreeBulkLoading(mTree, points.iterator(), new Constant(container), MIN_CAPACITY, MAX_CAPACITY, slimDown, threads, 42);
+		return mTree;
+	}
+
+	/** Checks the capacities, covering radii and distances to the parent of a 
+	 * subtree and returns its points.
+	 */
+	static List<DoublePoint> check(MTree mTree, ORTree.IndexEntry indexEntry, boolean root, double[] leafRadii) {
+		Sphere sphere = (Sphere)indexEntry.descriptor();
+		ORTree.Node node = (ORTree.Node)indexEntry.get(true);
+		if (!root)
+			Assert.assertTrue(node.number() >= MIN_CAPACITY && node.number() <= MAX_CAPACITY, "capacity "+node.number());
+		List<DoublePoint> points = new ArrayList<DoublePoint>();
+		for (Iterator entries = node.entries(); entries.hasNext();) {
+			Object entry = entries.next();
+			Sphere child = MTree.sphereFrom(entry);
+			Assert.assertEquals(child.getDistanceToParent(), sphere.centerDistance(child), 1e-9);
+			if (node.level() == 0) {
+				DoublePoint point = (DoublePoint)((MTree.LeafEntry)entry).getData();
+				Assert.assertTrue(sphere.centerDistance(child) <= sphere.radius() + 1e-9);
+				points.add(point);
+			}
+			else
+				for (DoublePoint point : check(mTree, (ORTree.IndexEntry)entry, false, leafRadii))
+					points.add(point);
+		}
+		if (node.level() == 0)
+			leafRadii[0] += sphere.radius();
+		for (DoublePoint point : points)
+			Assert.assertTrue(LpMetric.EUCLIDEAN.distance((DoublePoint)sphere.center(), point) <= sphere.radius() + 1e-9);
+		return points;
+	}
+
+	static Set<DoublePoint> result(Cursor cursor) {
+		Set<DoublePoint> result = new HashSet<DoublePoint>();
+		while (cursor.hasNext())
+			result.add((DoublePoint)cursor.next());
+		cursor.close();
+		return result;
+	}
+
+	static void checkQueries(MTree mTree, List<DoublePoint> data) {
+		for (DoublePoint query : points(50, 4711)) {
+			Set<DoublePoint> expected = new HashSet<DoublePoint>();
+			for (DoublePoint point : data)
+				if (LpMetric.EUCLIDEAN.distance(query, point) <= EPSILON)
+					expected.add(point);
+			Assert.assertEquals(result(mTree.query(new Sphere(query, EPSILON, centerConverter))), expected);
+		}
+	}
+
+	static double verify(MTree mTree, List<DoublePoint> data) {
+		double[] leafRadii = new double[1];
+		List<DoublePoint> points = check(mTree, (ORTree.IndexEntry)mTree.rootEntry(), true, leafRadii);
+		Assert.assertEquals(new HashSet<DoublePoint>(points), new HashSet<DoublePoint>(data));
+		Assert.assertEquals(points.size(), data.size());
+		checkQueries(mTree, data);
+		return leafRadii[0];
+	}
+
+	@Test
+	public void mTree() {
+		List<DoublePoint> data = points(20000, 1);
+		MTree mTree = load(new MTree(), data, 4, false);
+		verify(mTree, data);
+		// the tree is usable for further insertions
+		List<DoublePoint> more = points(2000, 2);
+		for (DoublePoint point : more)
+			mTree.insert(point);
+		data.addAll(more);
+		checkQueries(mTree, data);
+	}
+
+	@Test
+	public void slimTree() {
+		List<DoublePoint> data = points(20000, 3);
+		double slimmed = verify(load(new SlimTree(), data, 4, true), data);
+		double plain = verify(load(new SlimTree(), data, 4, false), data);
+		Assert.assertTrue(slimmed < plain, slimmed+" vs. "+plain);
+	}
+
+	@Test
+	public void threadsDoNotChangeTree() {
+		List<DoublePoint> data = points(5000, 5);
+		MTree sequential = load(new MTree(), data, 1, false), parallel = load(new MTree(), data, 8, false);
+		Assert.assertEquals(sequential.height(), parallel.height());
+		Assert.assertEquals(sequential.rootDescriptor(), parallel.rootDescriptor());
+		verify(parallel, data);
+	}
+
+	@Test
+	public void smallInputs() {
+		for (int size : new int[]{0, 1, MAX_CAPACITY, MAX_CAPACITY+1}) {
+			List<DoublePoint> data = points(size, size);
+			MTree mTree = load(new MTree(), data, 2, false);
+			if (size == 0)
+				Assert.assertNull(mTree.rootEntry());
+			else
+				verify(mTree, data);
+		}
+	}
+}
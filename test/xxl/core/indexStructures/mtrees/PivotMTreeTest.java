@@ -0,0 +1,166 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.mtrees;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.MTree;
+import xxl.core.indexStructures.PivotTable;
+import xxl.core.indexStructures.SlimTree;
+import xxl.core.indexStructures.Sphere;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.LpMetric;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.util.CountingDistance;
+
+/**
+ * Compares range queries on M-trees and Slim-trees whose entries are filtered by 
+ * the distances to the pivots of a {@link PivotTable} with the same queries on 
+ * trees without pivots.
+ */
+public class PivotMTreeTest {
+
+	public static final int DIMENSION = 8;
+	
+	public static final int POINTS = 5000;
+	
+	public static final int QUERIES = 100;
+	
+	public static final double EPSILON = 0.3;
+
+	static Converter centerConverter = new ConvertableConverter(
+		new AbstractFunction() {
+			public Object invoke () {
+				return new DoublePoint(DIMENSION);
+			}
+		}
+	);
+
+	static List<DoublePoint> points(int number, long seed) {
+		Random random = new Random(seed);
+		List<DoublePoint> points = new ArrayList<DoublePoint>(number);
+		for (int i = 0; i < number; i++) {
+			double[] point = new double[DIMENSION];
+			// clustered data: the last coordinates are correlated with the first one
+			for (int d = 0; d < DIMENSION; d++)
+				point[d] = d < DIMENSION/2 ? random.nextDouble() : point[0]*0.5 + random.nextDouble()*0.1;
+			points.add(new DoublePoint(point));
+		}
+		return points;
+	}
+
+	static MTree createTree(MTree mTree, final CountingDistance distance, final PivotTable pivotTable) {
+		Function getDescriptor = pivotTable != null ?
+			pivotTable.getFactoryFunction(centerConverter) : 
+			Sphere.getFactoryFunction(centerConverter, distance);
+		Converter descriptorConverter = new ConvertableConverter(
+			new AbstractFunction() {
+				public Object invoke () {
+					return pivotTable != null ? 
+						pivotTable.createSphere(new DoublePoint(DIMENSION), 0.0, centerConverter) :
+						new Sphere(new DoublePoint(DIMENSION), 0.0, centerConverter, distance, Sphere.SphereMinimumDistance.DEFAULT_INSTANCE);
+				}
+			}
+		);
+		mTree.initialize(getDescriptor, 
+			new ConverterContainer(new MapContainer(), 
+				mTree.nodeConverter(mTree.leafEntryConverter(centerConverter), mTree.indexEntryConverter(descriptorConverter))), 
+			10, 25);
+		return mTree;
+	}
+
+	static Set<DoublePoint> result(Cursor cursor) {
+		Set<DoublePoint> result = new HashSet<DoublePoint>();
+		while (cursor.hasNext())
+			result.add((DoublePoint)cursor.next());
+		cursor.close();
+		return result;
+	}
+
+	void compare(MTree plainTree, CountingDistance plainDistance, MTree pivotTree, CountingDistance pivotDistance, PivotTable pivotTable) {
+		List<DoublePoint> data = points(POINTS, 42);
+		for (DoublePoint point : data) {
+			plainTree.insert(point);
+			pivotTree.insert(point);
+		}
+		plainDistance.reset();
+		pivotDistance.reset();
+		for (DoublePoint query : points(QUERIES, 4711)) {
+			Set<DoublePoint> expected = new HashSet<DoublePoint>();
+			for (DoublePoint point : data)
+				if (LpMetric.EUCLIDEAN.distance(query, point) <= EPSILON)
+					expected.add(point);
+			Assert.assertEquals(result(plainTree.query(new Sphere(query, EPSILON, centerConverter, plainDistance, Sphere.SphereMinimumDistance.DEFAULT_INSTANCE))), expected);
+			Assert.assertEquals(result(pivotTree.query(pivotTable.createSphere(query, EPSILON, centerConverter))), expected);
+		}
+		Assert.assertTrue(pivotDistance.count() < plainDistance.count(), pivotDistance+" vs. "+plainDistance);
+	}
+
+	PivotTable pivotTable(CountingDistance distance) {
+		return new PivotTable(PivotTable.selectPivots(points(200, 1).iterator(), 8, LpMetric.EUCLIDEAN), distance);
+	}
+
+	@Test
+	public void mTree() {
+		CountingDistance plainDistance = new CountingDistance(LpMetric.EUCLIDEAN);
+		CountingDistance pivotDistance = new CountingDistance(LpMetric.EUCLIDEAN);
+		PivotTable pivotTable = pivotTable(pivotDistance);
+		MTree plainTree = createTree(new MTree(plainDistance), plainDistance, null);
+		MTree pivotTree = createTree(new MTree(pivotDistance), pivotDistance, pivotTable);
+		compare(plainTree, plainDistance, pivotTree, pivotDistance, pivotTable);
+	}
+
+	@Test
+	public void slimTree() {
+		CountingDistance plainDistance = new CountingDistance(LpMetric.EUCLIDEAN);
+		CountingDistance pivotDistance = new CountingDistance(LpMetric.EUCLIDEAN);
+		PivotTable pivotTable = pivotTable(pivotDistance);
+		MTree plainTree = createTree(new SlimTree(plainDistance), plainDistance, null);
+		MTree pivotTree = createTree(new SlimTree(pivotDistance), pivotDistance, pivotTable);
+		compare(plainTree, plainDistance, pivotTree, pivotDistance, pivotTable);
+	}
+
+	@Test
+	public void selectPivots() {
+		Object[] pivots = PivotTable.selectPivots(points(100, 3).iterator(), 5, LpMetric.EUCLIDEAN);
+		Assert.assertEquals(pivots.length, 5);
+		Assert.assertEquals(new HashSet<Object>(java.util.Arrays.asList(pivots)).size(), 5);
+		Assert.assertEquals(PivotTable.selectPivots(new ArrayList<Object>().iterator(), 5, LpMetric.EUCLIDEAN).length, 0);
+	}
+}
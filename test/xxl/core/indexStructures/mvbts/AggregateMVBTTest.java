@@ -0,0 +1,133 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.mvbts;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.AggregateMVBT;
+import xxl.core.indexStructures.AggregateMVBT.Aggregate;
+import xxl.core.indexStructures.descriptors.LongMVRegion;
+import xxl.core.indexStructures.descriptors.LongMVSeparator;
+import xxl.core.indexStructures.descriptors.LongVersion;
+import xxl.core.io.converters.Converters;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredConverter;
+
+/**
+ * Compares the range-aggregate queries of an {@link AggregateMVBT} with the aggregates 
+ * computed from the history of the inserted and removed keys. 
+ */
+public class AggregateMVBTTest {
+
+	public static final int VERSIONS = 20000;
+
+	static Function<Object, Long> getKey = new AbstractFunction<Object, Long>() {
+		@Override
+		public Long invoke(Object argument) {
+			return (Long)argument;
+		}
+	};
+
+	static Function<Object, Long> measure = new AbstractFunction<Object, Long>() {
+		@Override
+		public Long invoke(Object argument) {
+			return (Long)argument % 1000;
+		}
+	};
+
+	static MeasuredConverter<Long> longConverter = Converters.createMeasuredConverter(LongConverter.DEFAULT_INSTANCE);
+
+	static AggregateMVBT createTree() {
+		AggregateMVBT tree = new AggregateMVBT(1024, 0.25f, 0.5f, Long.MIN_VALUE, measure);
+		Container blocks = new MapContainer();
+		tree.initialize(null, null, null, null, getKey, 
+			new ConverterContainer(blocks, tree.rootsTree().nodeConverter()),
+			new ConverterContainer(blocks, tree.nodeConverter()),
+			LongVersion.VERSION_MEASURED_CONVERTER, longConverter, longConverter,
+			LongMVSeparator.FACTORY_FUNCTION, LongMVRegion.FACTORY_FUNCTION);
+		return tree;
+	}
+
+	static Aggregate expected(List<long[]> history, long min, long max, long version) {
+		Aggregate aggregate = new Aggregate();
+		for (long[] record : history)
+			if (record[0] >= min && record[0] <= max && record[1] <= version && version < record[2])
+				aggregate.add(record[0] % 1000);
+		return aggregate;
+	}
+
+	@Test
+	public void rangeAggregates() {
+		AggregateMVBT tree = createTree();
+		Random random = new Random(42);
+		// key, insert version, delete version
+		List<long[]> history = new ArrayList<long[]>();
+		List<long[]> alive = new ArrayList<long[]>();
+		Set<Long> keys = new HashSet<Long>();
+		for (long version = 1; version <= VERSIONS; version++) {
+			for (int i = random.nextInt(3); i >= 0; i--) {
+				if (alive.size() > 100 && random.nextInt(5) < 2) {
+					long[] record = alive.remove(random.nextInt(alive.size()));
+					tree.remove(new LongVersion(version), new Long(record[0]));
+					record[2] = version;
+					keys.remove(record[0]);
+				}
+				else {
+					long[] record = new long[]{random.nextInt(1000000), version, Long.MAX_VALUE};
+					if (!keys.add(record[0]))
+						continue;
+					tree.insert(new LongVersion(version), new Long(record[0]));
+					history.add(record);
+					alive.add(record);
+				}
+			}
+		}
+		for (int i = 0; i < 200; i++) {
+			long version = 1 + random.nextInt(VERSIONS);
+			long min = random.nextInt(1000000);
+			long max = i % 10 == 0 ? Long.MAX_VALUE : min + random.nextInt(1000000 - (int)min + 1);
+			Assert.assertEquals(tree.aggregate(min, max, new LongVersion(version)), expected(history, min, max, version));
+		}
+		Assert.assertEquals(tree.aggregate(Long.MIN_VALUE, Long.MAX_VALUE), expected(history, Long.MIN_VALUE, Long.MAX_VALUE, VERSIONS));
+	}
+
+	@Test
+	public void emptyTree() {
+		Assert.assertEquals(createTree().aggregate(Long.MIN_VALUE, Long.MAX_VALUE, new LongVersion(1)).count(), 0);
+	}
+}
@@ -0,0 +1,150 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.mvbts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.SynchronizedContainer;
+import xxl.core.cursors.Cursors;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.ConcurrentMVBTree;
+import xxl.core.indexStructures.descriptors.LongMVRegion;
+import xxl.core.indexStructures.descriptors.LongMVSeparator;
+import xxl.core.indexStructures.descriptors.LongVersion;
+import xxl.core.io.converters.Converters;
+import xxl.core.io.converters.LongConverter;
+import xxl.core.io.converters.MeasuredConverter;
+
+/**
+ * Runs snapshot readers of a {@link ConcurrentMVBTree} concurrently with its
+ * writer. Key <tt>k</tt> is inserted at version <tt>k</tt> and removed at
+ * version <tt>NUMBER+k</tt>, so the number of live keys is known for every
+ * version.
+ */
+public class ConcurrentMVBTreeTest {
+
+	public static final int NUMBER = 20000;
+	public static final int READERS = 4;
+
+	static Function<Object, Long> getKey = new AbstractFunction<Object, Long>() {
+		@Override
+		public Long invoke(Object argument) {
+			return (Long)argument;
+		}
+	};
+
+	static MeasuredConverter<Long> longConverter = Converters.createMeasuredConverter(LongConverter.DEFAULT_INSTANCE);
+
+	static int expectedCount(long version) {
+		return (int)(version <= NUMBER ? version : 2*NUMBER-version);
+	}
+
+	static ConcurrentMVBTree createTree() {
+		ConcurrentMVBTree tree = new ConcurrentMVBTree(1024, 0.25f, 0.5f, Long.MIN_VALUE);
+		Container blocks = new SynchronizedContainer(new MapContainer());
+		tree.initialize(null, null, null, null, getKey, 
+			ConcurrentMVBTree.snapshotContainer(blocks, tree.rootsTree().nodeConverter()),
+			ConcurrentMVBTree.snapshotContainer(blocks, tree.nodeConverter()),
+			LongVersion.VERSION_MEASURED_CONVERTER, longConverter, longConverter,
+			LongMVSeparator.FACTORY_FUNCTION, LongMVRegion.FACTORY_FUNCTION);
+		return tree;
+	}
+
+	@Test
+	public void snapshotReadersDuringUpdates() throws Exception {
+		final ConcurrentMVBTree tree = createTree();
+		tree.insert(new LongVersion(1), new Long(1));
+		final AtomicBoolean done = new AtomicBoolean(false);
+		ExecutorService service = Executors.newFixedThreadPool(READERS);
+		List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+		for (int r = 0; r < READERS; r++)
+			readers.add(service.submit(new Callable<Integer>() {
+				public Integer call() {
+					int checks = 0;
+					while (!done.get()) {
+						ConcurrentMVBTree.Snapshot snapshot = tree.snapshot();
+						try {
+							long version = ((LongVersion)snapshot.version()).version;
+							Assert.assertEquals(Cursors.count(snapshot.keyRangeQuery(Long.MIN_VALUE, Long.MAX_VALUE)), expectedCount(version));
+							if (version < 2*NUMBER)
+								Assert.assertNotNull(snapshot.exactMatchQuery(new Long(version <= NUMBER ? version : version-NUMBER+1)));
+							long old = Math.max(1, version/2);
+							Assert.assertEquals(Cursors.count(tree.keyRangeQuery(Long.MIN_VALUE, Long.MAX_VALUE, new LongVersion(old))), expectedCount(old));
+							checks++;
+						}
+						finally {
+							snapshot.close();
+						}
+					}
+					return checks;
+				}
+			}));
+		for (long k = 2; k <= NUMBER; k++)
+			tree.insert(new LongVersion(k), new Long(k));
+		for (long k = 1; k <= NUMBER; k++)
+			tree.remove(new LongVersion(NUMBER+k), new Long(k));
+		done.set(true);
+		for (Future<Integer> reader : readers)
+			Assert.assertTrue(reader.get() > 0);
+		service.shutdown();
+		for (long version = 1; version <= 2*NUMBER; version += 997)
+			Assert.assertEquals(Cursors.count(tree.keyRangeQuery(Long.MIN_VALUE, Long.MAX_VALUE, new LongVersion(version))), expectedCount(version));
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void versionsMustIncrease() {
+		ConcurrentMVBTree tree = createTree();
+		tree.insert(new LongVersion(1), new Long(1));
+		tree.insert(new LongVersion(1), new Long(2));
+	}
+
+	@Test
+	public void purgeWaitsForSnapshots() {
+		ConcurrentMVBTree tree = createTree();
+		for (long k = 1; k <= 2000; k++)
+			tree.insert(new LongVersion(k), new Long(k));
+		ConcurrentMVBTree.Snapshot snapshot = tree.snapshot(new LongVersion(10));
+		for (long k = 1; k <= 2000; k++)
+			tree.remove(new LongVersion(2000+k), new Long(k));
+		tree.setCutoffVersion(new LongVersion(3000));
+		Assert.assertEquals(Cursors.count(snapshot.keyRangeQuery(Long.MIN_VALUE, Long.MAX_VALUE)), 10);
+		snapshot.close();
+		tree.insert(new LongVersion(4001), new Long(1));
+		Assert.assertEquals(Cursors.count(tree.keyRangeQuery(Long.MIN_VALUE, Long.MAX_VALUE, new LongVersion(3500))), 500);
+	}
+}
@@ -0,0 +1,179 @@
+package xxl.core.indexStructures.mvbts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.Container;
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.containers.io.ConverterContainer;
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.Functional.NullaryFunction;
+import xxl.core.functions.Functional.UnaryFunction;
+import xxl.core.indexStructures.MVBTPlus;
+import xxl.core.indexStructures.MVBTPlus.Element;
+import xxl.core.indexStructures.MVBTPlus.LongVersion;
+import xxl.core.indexStructures.MVBTPlus.OperationType;
+import xxl.core.indexStructures.MVBTree.LeafEntry;
+import xxl.core.indexStructures.mvbts.MVBTPlusLoadingExample.LongMVRegion;
+import xxl.core.indexStructures.mvbts.MVBTPlusLoadingExample.LongMVSeparator;
+import xxl.core.indexStructures.mvbts.MVBTPlusLoadingExample.PayLoadEntry;
+import xxl.core.util.Pair;
+
+/**
+ * Tests {@link MVBTPlus#parallelBulkLoad(Iterator, Container, int, UnaryFunction, int, int)}
+ * against the sequential {@link MVBTPlus#bulkLoad(Iterator, NullaryFunction, int)} of the
+ * same update stream, especially for queries at the partition borders.
+ */
+public class MVBTPlusParallelBulkLoadTest {
+
+	private static final int BLOCK_SIZE = 1024;
+
+	private static final long KEYS = 2000;
+
+	private static final NullaryFunction<Queue<Element>> QUEUE_FUNCTION = new NullaryFunction<Queue<Element>>() {
+		public Queue<Element> invoke() {
+			return new ListQueue<Element>();
+		}
+	};
+
+	/**
+	 * Returns a stream of inserts, updates and deletes; several operations may share a version.
+	 */
+	private static List<Element> workload(int operations, long seed) {
+		Random random = new Random(seed);
+		List<Long> alive = new ArrayList<Long>();
+		List<Element> elements = new ArrayList<Element>();
+		long version = 1;
+		for (int i = 0; i < operations; i++) {
+			if (random.nextInt(4) != 0)
+				version++;
+			int operation = alive.size() < 100 ? 0 : random.nextInt(3);
+			long key;
+			OperationType type;
+			if (operation == 0) {
+				do
+					key = random.nextLong() % KEYS;
+				while (alive.contains(key));
+				alive.add(key);
+				type = OperationType.INSERT;
+			}
+			else {
+				key = alive.get(random.nextInt(alive.size()));
+				if (operation == 1)
+					type = OperationType.UPDATE;
+				else {
+					alive.remove(key);
+					type = OperationType.DELETE;
+				}
+			}
+			// a version must not change a key twice
+			if (containsKey(elements, key, version))
+				version++;
+			elements.add(new Element(new Pair<Long, PayLoadEntry>(key, new PayLoadEntry(key, version)), new LongVersion(version), type));
+		}
+		return elements;
+	}
+
+	private static boolean containsKey(List<Element> elements, long key, long version) {
+		for (int i = elements.size()-1; i >= 0 && elements.get(i).getElement2().getTimeStamp() == version; i--)
+			if (((Pair<Long, PayLoadEntry>)elements.get(i).getElement1()).getFirst() == key)
+				return true;
+		return false;
+	}
+
+	private static MVBTPlus createTree(Container blockContainer) {
+		MVBTPlus tree = new MVBTPlus(BLOCK_SIZE, Long.MIN_VALUE);
+		tree.initialize(null, null, null, null, MVBTPlusLoadingExample.getKey,
+				new ConverterContainer(new MapContainer(), tree.rootsTree().nodeConverter()),
+				new ConverterContainer(blockContainer, tree.nodeConverter()),
+				MVBTPlusLoadingExample.keyConverter, MVBTPlusLoadingExample.dataConverter,
+				LongMVSeparator.FACTORY_FUNCTION, LongMVRegion.FACTORY_FUNCTION);
+		return tree;
+	}
+
+	/**
+	 * Returns the data and insert versions of the answers. The end versions are not compared: as for
+	 * the copies made by version splits, an entry reached in a node that is not alive any more may
+	 * still be alive in this node.
+	 */
+	private static List<String> query(MVBTPlus tree, long begin, long end) {
+		List<String> result = new ArrayList<String>();
+		Cursor cursor = tree.rangePeriodQuery(Long.MIN_VALUE, Long.MAX_VALUE, new LongVersion(begin), new LongVersion(end));
+		while (cursor.hasNext()) {
+			LeafEntry entry = (LeafEntry)cursor.next();
+			Pair<Long, PayLoadEntry> data = (Pair<Long, PayLoadEntry>)entry.data();
+			result.add(data.getFirst()+":"+data.getSecond().getSecond()+" "+entry.getLifespan().beginVersion());
+		}
+		cursor.close();
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void parallelLoadEqualsSequentialLoad() {
+		List<Element> elements = workload(20000, 42);
+		long lastVersion = elements.get(elements.size()-1).getElement2().getTimeStamp();
+		MVBTPlus sequential = createTree(new MapContainer());
+		sequential.bulkLoad(elements.iterator(), QUEUE_FUNCTION, 200);
+		for (int threads : new int[] {1, 3}) {
+			Container blockContainer = new MapContainer();
+			MVBTPlus parallel = createTree(blockContainer);
+			parallel.parallelBulkLoad(elements.iterator(), blockContainer, 3000, new UnaryFunction<Integer, NullaryFunction<Queue<Element>>>() {
+				public NullaryFunction<Queue<Element>> invoke(Integer partition) {
+					return QUEUE_FUNCTION;
+				}
+			}, 600, threads);
+			List<LongVersion> borders = parallel.partitionVersions();
+			Assert.assertTrue(borders.size() >= 5);
+			List<Long> versions = new ArrayList<Long>();
+			for (LongVersion border : borders)
+				for (long version = border.getTimeStamp()-1; version <= border.getTimeStamp()+1; version++)
+					versions.add(version);
+			versions.add(1L);
+			versions.add(lastVersion);
+			versions.add(lastVersion+1);
+			for (long version : versions)
+				Assert.assertEquals(query(parallel, version, version), query(sequential, version, version), "time slice "+version);
+			for (int i = 0; i < versions.size(); i++)
+				for (int j = i; j < versions.size(); j += 5)
+					if (versions.get(i) <= versions.get(j))
+						Assert.assertEquals(query(parallel, versions.get(i), versions.get(j)), query(sequential, versions.get(i), versions.get(j)), "range period "+versions.get(i)+" "+versions.get(j));
+		}
+	}
+
+	@Test
+	public void savedPartitionVersions() throws IOException {
+		List<Element> elements = workload(10000, 43);
+		long lastVersion = elements.get(elements.size()-1).getElement2().getTimeStamp();
+		Container blockContainer = new MapContainer();
+		MVBTPlus tree = createTree(blockContainer);
+		tree.parallelBulkLoad(elements.iterator(), blockContainer, 3000, new UnaryFunction<Integer, NullaryFunction<Queue<Element>>>() {
+			public NullaryFunction<Queue<Element>> invoke(Integer partition) {
+				return QUEUE_FUNCTION;
+			}
+		}, 600, 2);
+		List<String> expected = query(tree, 1, lastVersion);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		MVBTPlus.PARTITION_VERSIONS_CONVERTER.write(new DataOutputStream(output), tree.partitionVersions());
+		List<LongVersion> borders = MVBTPlus.PARTITION_VERSIONS_CONVERTER.read(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+		Assert.assertEquals(borders.toString(), tree.partitionVersions().toString());
+		// a query over several partitions misses elements without the partition versions
+		tree.setPartitionVersions(Collections.<LongVersion>emptyList());
+		Assert.assertTrue(query(tree, 1, lastVersion).size() < expected.size());
+		tree.setPartitionVersions(borders);
+		Assert.assertEquals(query(tree, 1, lastVersion), expected);
+	}
+}
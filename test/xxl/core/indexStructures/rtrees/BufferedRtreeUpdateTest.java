@@ -0,0 +1,156 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.rtrees;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.collections.queues.ArrayQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursors;
+import xxl.core.functions.Functional.NullaryFunction;
+import xxl.core.functions.Identity;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+import xxl.core.spatial.rectangles.Rectangles;
+
+/**
+ * Checks the buffered update mode of {@link BufferedRtree} against a list of
+ * the live objects.
+ */
+public class BufferedRtreeUpdateTest {
+
+	public static final int BLOCK_SIZE = 512;
+	public static final int DATA_SIZE = 2 * 2 * 8;
+
+	static int expected(List<DoublePointRectangle> live, DoublePointRectangle query) {
+		int count = 0;
+		for (DoublePointRectangle r : live)
+			if (r.overlaps(query))
+				count++;
+		return count;
+	}
+
+	static final NullaryFunction<Queue<BufferedRtree.Update<DoublePointRectangle>>> QUEUE_FUNCTION = new NullaryFunction<Queue<BufferedRtree.Update<DoublePointRectangle>>>() {
+		@Override
+		public Queue<BufferedRtree.Update<DoublePointRectangle>> invoke() {
+			return new ArrayQueue<BufferedRtree.Update<DoublePointRectangle>>();
+		}
+	};
+
+	static BufferedRtree<DoublePointRectangle> createTree() {
+		BufferedRtree<DoublePointRectangle> rtree = new BufferedRtree<DoublePointRectangle>(BLOCK_SIZE, DATA_SIZE, 2);
+		rtree.initialize(null, new Identity<DoublePointRectangle>(), new MapContainer(), BLOCK_SIZE, DATA_SIZE, DATA_SIZE, 0.33);
+		rtree.enableBufferedUpdates(QUEUE_FUNCTION, 400);
+		return rtree;
+	}
+
+	static DoublePointRectangle randomRectangle(Random random) {
+		double x = random.nextDouble(), y = random.nextDouble();
+		return new DoublePointRectangle(new double[] { x, y }, new double[] { x + 0.001, y + 0.001 });
+	}
+
+	@Test
+	public void testInsertRemoveQuery() {
+		BufferedRtree<DoublePointRectangle> rtree = createTree();
+		Random random = new Random(42);
+		List<DoublePointRectangle> live = new ArrayList<DoublePointRectangle>();
+		DoublePointRectangle query = new DoublePointRectangle(new double[] { 0.1, 0.3 }, new double[] { 0.4, 0.5 });
+		for (int i = 0; i < 30000; i++) {
+			int operation = live.size() > 100 ? random.nextInt(8) : 7;
+			if (operation < 2)
+				rtree.removeBuffered(live.remove(random.nextInt(live.size())));
+			else if (operation == 2)
+				// objects which are not stored are not removed
+				rtree.removeBuffered(randomRectangle(random));
+			else {
+				DoublePointRectangle r = randomRectangle(random);
+				live.add(r);
+				rtree.insertBuffered(r);
+			}
+			if (i % 5000 == 0)
+				Assert.assertEquals(Cursors.count(rtree.query(query)), expected(live, query));
+		}
+		rtree.disableBufferedUpdates();
+		Assert.assertFalse(rtree.isBufferedUpdateMode());
+		Assert.assertEquals(Cursors.count(rtree.query()), live.size());
+		Assert.assertEquals(Cursors.count(rtree.query(query)), expected(live, query));
+	}
+
+	@Test
+	public void testRemovalOnlyAffectsEarlierInserts() {
+		Random random = new Random(7);
+		for (int n : new int[] { 50, 5000 }) {
+			BufferedRtree<DoublePointRectangle> rtree = createTree();
+			List<DoublePointRectangle> live = new ArrayList<DoublePointRectangle>();
+			for (int i = 0; i < n; i++) {
+				live.add(randomRectangle(random));
+				rtree.insertBuffered(live.get(i));
+			}
+			rtree.flushBuffers();
+			// a removal of an absent object does not cancel a later insert
+			DoublePointRectangle absent = randomRectangle(random);
+			rtree.removeBuffered(absent);
+			rtree.insertBuffered(absent);
+			// a removal cancels an insert which is still buffered
+			DoublePointRectangle buffered = randomRectangle(random);
+			rtree.insertBuffered(buffered);
+			rtree.removeBuffered(buffered);
+			// a stored object removed and inserted again is kept
+			rtree.removeBuffered(live.get(0));
+			rtree.insertBuffered(live.get(0));
+			rtree.flushBuffers();
+			Assert.assertEquals(Cursors.count(rtree.query()), n + 1);
+			Assert.assertEquals(Cursors.count(rtree.query(absent)), expected(live, absent) + 1);
+			Assert.assertEquals(Cursors.count(rtree.query(buffered)), expected(live, buffered));
+			Assert.assertEquals(Cursors.count(rtree.query(live.get(0))), expected(live, live.get(0)));
+		}
+	}
+
+	@Test
+	public void testUpdateConverter() throws IOException {
+		Converter<BufferedRtree.Update<DoublePointRectangle>> converter = BufferedRtree.getUpdateConverter(Rectangles.getDoublePointRectangleConverter(2));
+		DoublePointRectangle r = randomRectangle(new Random(3));
+		for (boolean removal : new boolean[] { false, true }) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			converter.write(new DataOutputStream(output), new BufferedRtree.Update<DoublePointRectangle>(r, removal));
+			Assert.assertEquals(output.size(), 1 + DATA_SIZE);
+			BufferedRtree.Update<DoublePointRectangle> update = converter.read(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+			Assert.assertEquals(update.getObject(), r);
+			Assert.assertEquals(update.isRemoval(), removal);
+		}
+	}
+}
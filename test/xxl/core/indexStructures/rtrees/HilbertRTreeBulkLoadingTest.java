@@ -0,0 +1,89 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.rtrees;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.indexStructures.HilbertRTree;
+import xxl.core.indexStructures.HilbertRTreeBulkLoading;
+import xxl.core.spatial.SpaceFillingCurveEncoder;
+import xxl.core.spatial.points.DoublePoint;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Bulk-loads a {@link HilbertRTree} from unsorted points whose Hilbert values 
+ * are computed by a {@link SpaceFillingCurveEncoder} and sorted by 
+ * {@link HilbertRTreeBulkLoading#sortByKeys(Object[], long[], int)}, and 
+ * checks the results of range queries.
+ */
+public class HilbertRTreeBulkLoadingTest {
+
+	@Test
+	public void bulkLoadSortedKeys () {
+		int dimension = SimpleHilbertRTreeTest.dimension, size = 20000;
+		SpaceFillingCurveEncoder encoder = new SpaceFillingCurveEncoder(dimension, 31);
+		HilbertRTree tree = new HilbertRTree(SimpleHilbertRTreeTest.blockSize, SimpleHilbertRTreeTest.universe, SimpleHilbertRTreeTest.minMaxFactor);
+		tree.initialize(encoder.hilbertFunction(), SimpleHilbertRTreeTest.getEntryMBR,
+			new MapContainer(),
+			SimpleHilbertRTreeTest.keyConverter,
+			SimpleHilbertRTreeTest.dataConverter,
+			SimpleHilbertRTreeTest.createORSeparator,
+			SimpleHilbertRTreeTest.createORKeyRange);
+		Random random = new Random(42);
+		DoublePoint[] points = new DoublePoint[size];
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++) {
+			points[i] = new DoublePoint(new double[] {random.nextDouble(), random.nextDouble()});
+			keys[i] = encoder.hilbert(points[i]);
+		}
+		new HilbertRTreeBulkLoading(tree, points, keys, 4);
+		for (int i = 1; i < size; i++)
+			Assert.assertTrue(keys[i-1] <= keys[i]);
+		for (int query = 0; query < 20; query++) {
+			double[] low = {random.nextDouble()*0.9, random.nextDouble()*0.9};
+			double[] high = {low[0]+0.1, low[1]+0.1};
+			DoublePointRectangle range = new DoublePointRectangle(low, high);
+			int expected = 0;
+			for (DoublePoint point : points)
+				if (range.contains(new DoublePointRectangle(point, point)))
+					expected++;
+			int count = 0;
+			Cursor results = tree.queryOR(range, 0);
+			while (results.hasNext()) {
+				DoublePoint point = (DoublePoint)results.next();
+				Assert.assertTrue(range.contains(new DoublePointRectangle(point, point)));
+				count++;
+			}
+			results.close();
+			Assert.assertEquals(count, expected);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.indexStructures.rtrees;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursors;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.indexStructures.RTree;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Compares the range queries of {@link PackedRTree} against a linear scan.
+ */
+public class PackedRTreeTest {
+
+	public static final int DIMENSION = 2;
+	public static final int NUMBER = 5000;
+
+	static Function<Object, Object> IDENTITY = new AbstractFunction<Object, Object>() {
+		@Override
+		public Object invoke(Object o) {
+			return o;
+		}
+	};
+
+	List<DoublePointRectangle> rectangles;
+	List<DoublePointRectangle> queries;
+
+	@BeforeClass
+	public void createData() {
+		Random random = new Random(42);
+		rectangles = new ArrayList<DoublePointRectangle>();
+		for (int i = 0; i < NUMBER; i++)
+			rectangles.add(randomRectangle(random, 0.01));
+		queries = new ArrayList<DoublePointRectangle>();
+		for (int i = 0; i < 50; i++)
+			queries.add(randomRectangle(random, 0.2));
+	}
+
+	static DoublePointRectangle randomRectangle(Random random, double maxExtent) {
+		double[] low = new double[DIMENSION], high = new double[DIMENSION];
+		for (int d = 0; d < DIMENSION; d++) {
+			low[d] = random.nextDouble();
+			high[d] = low[d] + random.nextDouble() * maxExtent;
+		}
+		return new DoublePointRectangle(low, high);
+	}
+
+	int scan(DoublePointRectangle query) {
+		int count = 0;
+		for (DoublePointRectangle r : rectangles)
+			if (r.overlaps(query))
+				count++;
+		return count;
+	}
+
+	void check(PackedRTree packed) {
+		Assert.assertEquals(packed.size(), NUMBER);
+		for (DoublePointRectangle query : queries) {
+			int expected = scan(query);
+			Assert.assertEquals(Cursors.count(packed.query(query)), expected);
+			double[][] corners = PackedRTree.corners(query, DIMENSION);
+			Assert.assertEquals(packed.count(corners[0], corners[1]), expected);
+		}
+	}
+
+	@Test
+	public void testPack() {
+		check(PackedRTree.pack(rectangles.iterator(), IDENTITY, DIMENSION, 16));
+	}
+
+	@Test
+	public void testSnapshot() {
+		RTree rtree = new RTree();
+		rtree.initialize(IDENTITY, new MapContainer(), 4, 16);
+		for (DoublePointRectangle r : rectangles)
+			rtree.insert(r);
+		PackedRTree packed = PackedRTree.snapshot(rtree);
+		Assert.assertEquals(packed.height(), rtree.height());
+		check(packed);
+	}
+}
@@ -0,0 +1,154 @@
+package xxl.core.indexStructures.rtrees;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.Functional.UnaryFunction;
+import xxl.core.functions.Identity;
+import xxl.core.indexStructures.ORTree;
+import xxl.core.indexStructures.RTree;
+import xxl.core.indexStructures.Tree;
+import xxl.core.io.converters.ConvertableConverter;
+import xxl.core.io.converters.Converter;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+import xxl.core.spatial.rectangles.Rectangles;
+
+/**
+ * Loads the same rectangles with the {@link STRBulkLoader} and the
+ * {@link STRBulkLoader.ParallelSTRBulkLoader} and compares the leaves and the
+ * results of window queries of both trees.
+ */
+public class STRBulkLoaderTest {
+
+	public static final int DIMENSION = 2;
+
+	public static final int DATA_SIZE = DIMENSION * 2 * 8;
+
+	public static final Converter<DoublePointRectangle> CONVERTER = new ConvertableConverter<DoublePointRectangle>(Rectangles.factoryFunctionDoublePointRectangle(DIMENSION));
+
+	public static final UnaryFunction<DoublePointRectangle, DoublePointRectangle> TO_RECTANGLE = new UnaryFunction<DoublePointRectangle, DoublePointRectangle>() {
+		@Override
+		public DoublePointRectangle invoke(DoublePointRectangle rectangle) {
+			return rectangle;
+		}
+	};
+
+	/**
+	 * Returns rectangles whose lower left corners lie on a grid of the given
+	 * resolution, or are arbitrary if the resolution is 0.
+	 */
+	public static List<DoublePointRectangle> randomRectangles(int number, int resolution, long seed) {
+		Random random = new Random(seed);
+		List<DoublePointRectangle> rectangles = new ArrayList<DoublePointRectangle>();
+		for (int i = 0; i < number; i++) {
+			double[] low = new double[DIMENSION], high = new double[DIMENSION];
+			for (int d = 0; d < DIMENSION; d++) {
+				low[d] = resolution == 0 ? random.nextDouble()*0.99 : random.nextInt(resolution)*0.99/resolution;
+				high[d] = low[d] + (resolution == 0 ? random.nextDouble()*0.01 : 0.005);
+			}
+			rectangles.add(new DoublePointRectangle(low, high));
+		}
+		return rectangles;
+	}
+
+	public static RTree createTree(int blockSize) {
+		RTree rtree = new RTree();
+		rtree.initialize(null, new Identity<DoublePointRectangle>(), new MapContainer(), blockSize, DATA_SIZE, DATA_SIZE, 0.33);
+		return rtree;
+	}
+
+	public static String createPath() throws IOException {
+		File directory = Files.createTempDirectory("bulkload").toFile();
+		directory.deleteOnExit();
+		return directory.getPath() + File.separator;
+	}
+
+	/**
+	 * Collects the entries of all leaves from left to right.
+	 */
+	public static List<List<Object>> leaves(RTree rtree) {
+		List<List<Object>> leaves = new ArrayList<List<Object>>();
+		leaves(rtree.rootEntry(), leaves);
+		return leaves;
+	}
+
+	private static void leaves(Tree.IndexEntry indexEntry, List<List<Object>> leaves) {
+		ORTree.Node node = (ORTree.Node)indexEntry.get(true);
+		List<Object> entries = new ArrayList<Object>();
+		for (Iterator it = node.entries(); it.hasNext();)
+			entries.add(it.next());
+		if (node.level() == 0)
+			leaves.add(entries);
+		else
+			for (Object entry : entries)
+				leaves((Tree.IndexEntry)entry, leaves);
+	}
+
+	public static List<Object> query(RTree rtree, DoublePointRectangle window) {
+		List<Object> results = new ArrayList<Object>();
+		Cursor cursor = rtree.query(window);
+		while (cursor.hasNext())
+			results.add(cursor.next());
+		cursor.close();
+		return results;
+	}
+
+	/**
+	 * Compares the leaves of both trees and the results of window queries
+	 * against each other and against a scan of the rectangles.
+	 */
+	public static void assertSameTrees(RTree sequential, RTree parallel, List<DoublePointRectangle> rectangles) {
+		Assert.assertEquals(parallel.height(), sequential.height());
+		List<List<Object>> leaves = leaves(sequential);
+		Assert.assertEquals(leaves(parallel), leaves);
+		int size = 0;
+		for (List<Object> leaf : leaves)
+			size += leaf.size();
+		Assert.assertEquals(size, rectangles.size());
+		Random random = new Random(7);
+		List<DoublePointRectangle> windows = new ArrayList<DoublePointRectangle>();
+		windows.add(new DoublePointRectangle(new double[] {0, 0}, new double[] {1, 1}));
+		for (int i = 0; i < 30; i++) {
+			double extent = i < 10 ? 0.01 : i < 20 ? 0.1 : 0.4;
+			double[] low = {random.nextDouble()*(1-extent), random.nextDouble()*(1-extent)};
+			windows.add(new DoublePointRectangle(low, new double[] {low[0]+extent, low[1]+extent}));
+		}
+		for (DoublePointRectangle window : windows) {
+			List<Object> results = query(sequential, window);
+			Assert.assertEquals(query(parallel, window), results);
+			int expected = 0;
+			for (DoublePointRectangle rectangle : rectangles)
+				if (rectangle.overlaps(window))
+					expected++;
+			Assert.assertEquals(results.size(), expected);
+		}
+	}
+
+	private static RTree load(STRBulkLoader<DoublePointRectangle> loader, List<DoublePointRectangle> rectangles) throws IOException {
+		loader.init(rectangles.size(), 1024*1024, DATA_SIZE, CONVERTER, TO_RECTANGLE);
+		loader.buildRTree(rectangles.iterator());
+		return loader.getRTree();
+	}
+
+	@Test
+	public void parallelLoadEqualsSequentialLoad() throws IOException {
+		int blockSize = 512;
+		int[] sortingFunction = {0, 1};
+		for (int number : new int[] {100, 20000}) {
+			List<DoublePointRectangle> rectangles = randomRectangles(number, 0, number);
+			RTree sequential = load(new STRBulkLoader<DoublePointRectangle>(createTree(blockSize), createPath(), DIMENSION, blockSize, 0.33, 0.8, sortingFunction), rectangles);
+			RTree parallel = load(new STRBulkLoader.ParallelSTRBulkLoader<DoublePointRectangle>(createTree(blockSize), createPath(), DIMENSION, blockSize, 0.33, 0.8, sortingFunction, 4), rectangles);
+			assertSameTrees(sequential, parallel, rectangles);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package xxl.core.indexStructures.rtrees;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import xxl.core.indexStructures.RTree;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+import xxl.core.spatial.rectangles.Rectangles;
+
+/**
+ * Loads the same rectangles with the {@link TGSBulkLoader} and the
+ * {@link TGSBulkLoader.ParallelTGSBulkLoader} and compares the leaves and the
+ * results of window queries of both trees. The rectangles lie on a grid, so
+ * many of them have equal centers in a dimension.
+ */
+public class TGSBulkLoaderTest {
+
+	private static RTree load(TGSBulkLoader<DoublePointRectangle> loader, List<DoublePointRectangle> rectangles) throws IOException {
+		loader.init(rectangles.size(), 64*1024, STRBulkLoaderTest.DATA_SIZE, STRBulkLoaderTest.CONVERTER, STRBulkLoaderTest.TO_RECTANGLE);
+		loader.buildRTree(rectangles.iterator());
+		return loader.getRTree();
+	}
+
+	private static void assertParallelLoadEqualsSequentialLoad() throws IOException {
+		int blockSize = 256;
+		DoublePointRectangle universe = Rectangles.getUnitUniverseDoublePointRectangle(STRBulkLoaderTest.DIMENSION);
+		for (int resolution : new int[] {0, 40}) {
+			List<DoublePointRectangle> rectangles = STRBulkLoaderTest.randomRectangles(3000, resolution, resolution);
+			RTree sequential = load(new TGSBulkLoader<DoublePointRectangle>(STRBulkLoaderTest.createTree(blockSize), STRBulkLoaderTest.createPath(), STRBulkLoaderTest.DIMENSION, blockSize, 0.33, 0.8, universe), rectangles);
+			RTree parallel = load(new TGSBulkLoader.ParallelTGSBulkLoader<DoublePointRectangle>(STRBulkLoaderTest.createTree(blockSize), STRBulkLoaderTest.createPath(), STRBulkLoaderTest.DIMENSION, blockSize, 0.33, 0.8, universe, null, 4), rectangles);
+			STRBulkLoaderTest.assertSameTrees(sequential, parallel, rectangles);
+		}
+	}
+
+	@Test
+	public void parallelLoadEqualsSequentialLoadInMemory() throws IOException {
+		boolean esort = TGSBulkLoader.ESORT;
+		TGSBulkLoader.ESORT = false;
+		try {
+			assertParallelLoadEqualsSequentialLoad();
+		}
+		finally {
+			TGSBulkLoader.ESORT = esort;
+		}
+	}
+
+	@Test
+	public void parallelLoadEqualsSequentialLoadExternal() throws IOException {
+		boolean esort = TGSBulkLoader.ESORT;
+		TGSBulkLoader.ESORT = true;
+		try {
+			assertParallelLoadEqualsSequentialLoad();
+		}
+		finally {
+			TGSBulkLoader.ESORT = esort;
+		}
+	}
+}
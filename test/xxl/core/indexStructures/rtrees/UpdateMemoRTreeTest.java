@@ -0,0 +1,143 @@
+package xxl.core.indexStructures.rtrees;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.containers.MapContainer;
+import xxl.core.cursors.Cursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.spatial.rectangles.DoublePointRectangle;
+
+/**
+ * Checks the {@link UpdateMemoRTree} for a mix of inserts, updates, removes and
+ * queries against a map of the live objects.
+ */
+public class UpdateMemoRTreeTest {
+
+	public static final int BLOCK_SIZE = 512;
+	public static final int DATA_SIZE = 4 + 2 * 2 * 8 + 8;
+
+	/**
+	 * A moving object: an id and its current position.
+	 */
+	static class MovingObject {
+
+		final int id;
+		final DoublePointRectangle position;
+
+		MovingObject(int id, DoublePointRectangle position) {
+			this.id = id;
+			this.position = position;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return object instanceof MovingObject && id == ((MovingObject)object).id && position.equals(((MovingObject)object).position);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public String toString() {
+			return id + ":" + position;
+		}
+	}
+
+	static final Function GET_ID = new AbstractFunction() {
+		public Object invoke(Object object) {
+			return ((MovingObject)object).id;
+		}
+	};
+
+	static final Function GET_DESCRIPTOR = new AbstractFunction() {
+		public Object invoke(Object object) {
+			return ((MovingObject)object).position;
+		}
+	};
+
+	static MovingObject randomObject(Random random, int id) {
+		double x = random.nextDouble(), y = random.nextDouble();
+		return new MovingObject(id, new DoublePointRectangle(new double[] { x, y }, new double[] { x + 0.001, y + 0.001 }));
+	}
+
+	static void checkQuery(UpdateMemoRTree rtree, Map<Integer, MovingObject> live, DoublePointRectangle query) {
+		List<MovingObject> expected = new ArrayList<MovingObject>();
+		for (MovingObject object : live.values())
+			if (object.position.overlaps(query))
+				expected.add(object);
+		List<MovingObject> result = new ArrayList<MovingObject>();
+		Cursor cursor = rtree.query(query);
+		while (cursor.hasNext())
+			result.add((MovingObject)cursor.next());
+		cursor.close();
+		Assert.assertEquals(result.size(), expected.size());
+		Assert.assertTrue(result.containsAll(expected));
+	}
+
+	@Test
+	public void testInsertUpdateRemoveQuery() {
+		UpdateMemoRTree rtree = new UpdateMemoRTree(GET_ID);
+		rtree.initialize(GET_DESCRIPTOR, new MapContainer(), BLOCK_SIZE, DATA_SIZE, 2 * 2 * 8, 0.33);
+		Random random = new Random(42);
+		Map<Integer, MovingObject> live = new HashMap<Integer, MovingObject>();
+		List<Integer> ids = new ArrayList<Integer>();
+		DoublePointRectangle query = new DoublePointRectangle(new double[] { 0.1, 0.3 }, new double[] { 0.4, 0.5 });
+		int nextId = 0, purges = 0;
+		for (int i = 0; i < 20000; i++) {
+			int operation = live.size() < 100 ? 0 : random.nextInt(10);
+			int garbage = rtree.garbage();
+			if (operation == 0) {
+				MovingObject object = randomObject(random, nextId++);
+				rtree.insert(object);
+				live.put(object.id, object);
+				ids.add(object.id);
+				if (rtree.garbage() < garbage)
+					purges++;
+			}
+			else if (operation < 7) {
+				MovingObject old = live.get(ids.get(random.nextInt(ids.size())));
+				MovingObject object = randomObject(random, old.id);
+				rtree.update(old, object);
+				live.put(object.id, object);
+				if (rtree.garbage() <= garbage)
+					purges++;
+			}
+			else if (operation < 9) {
+				Integer id = ids.remove(random.nextInt(ids.size()));
+				MovingObject object = live.remove(id);
+				Assert.assertEquals(rtree.remove(object), object);
+				Assert.assertEquals(rtree.garbage(), garbage + 1);
+			}
+			else {
+				// removed, never inserted and outdated versions are not found
+				int memoSize = rtree.memo.size();
+				Assert.assertNull(rtree.remove(randomObject(random, random.nextInt(nextId + 10))));
+				MovingObject object = live.get(ids.get(random.nextInt(ids.size())));
+				Assert.assertNull(rtree.remove(new MovingObject(object.id, randomObject(random, 0).position)));
+				Assert.assertEquals(rtree.garbage(), garbage);
+				Assert.assertEquals(rtree.memo.size(), memoSize);
+			}
+			if (i % 100 == 0)
+				checkQuery(rtree, live, query);
+		}
+		Assert.assertTrue(purges > 0);
+		Assert.assertTrue(rtree.garbage() > 0);
+		checkQuery(rtree, live, (DoublePointRectangle)rtree.rootDescriptor());
+		rtree.cleanUp();
+		Assert.assertTrue(rtree.memo.isEmpty());
+		Assert.assertEquals(rtree.garbage(), 0);
+		// without a memo every stored entry is valid
+		checkQuery(rtree, live, (DoublePointRectangle)rtree.rootDescriptor());
+		checkQuery(rtree, live, query);
+	}
+}
@@ -0,0 +1,135 @@
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.math.functions.MetaDataAggregationFunction;
+import xxl.core.relational.metaData.ColumnMetaDataResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.metaData.StoredColumnMetaData;
+import xxl.core.relational.tuples.ArrayTuple;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.metaData.CompositeMetaData;
+
+/**
+ * Tests the {@link HashGroupAggregator} on a relation
+ * <tt>R(ID, GRP, VALUE)</tt>.
+ */
+public class HashGroupAggregatorTest {
+
+	private static StoredColumnMetaData column(String name, int type) {
+		return new StoredColumnMetaData(false, true, true, false, ResultSetMetaData.columnNullable, true, 10, name, name, "", 10, 0, "", "", type, true, false, false);
+	}
+
+	private static MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> relation(List<Tuple> tuples) {
+		CompositeMetaData<Object, Object> metaData = new CompositeMetaData<Object, Object>();
+		metaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, new ColumnMetaDataResultSetMetaData(column("ID", Types.INTEGER), column("GRP", Types.INTEGER), column("VALUE", Types.INTEGER)));
+		return Cursors.wrapToMetaDataCursor(tuples.iterator(), metaData);
+	}
+
+	private static List<String> results(HashGroupAggregator aggregator) throws Exception {
+		List<String> results = new ArrayList<String>();
+		aggregator.open();
+		ResultSetMetaData metaData = ResultSetMetaDatas.getResultSetMetaData(aggregator);
+		while (aggregator.hasNext()) {
+			Tuple tuple = aggregator.next();
+			StringBuilder result = new StringBuilder();
+			for (int i = 1; i <= metaData.getColumnCount(); i++)
+				result.append(i == 1 ? "" : " ").append(metaData.getColumnName(i)).append('=').append(tuple.getObject(i));
+			results.add(result.toString());
+		}
+		aggregator.close();
+		Collections.sort(results);
+		return results;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void groupBy() throws Exception {
+		List<Tuple> tuples = Arrays.<Tuple>asList(
+			new ArrayTuple(1, 1, 10),
+			new ArrayTuple(2, 2, 20),
+			new ArrayTuple(3, 1, 30),
+			new ArrayTuple(4, 3, 40),
+			new ArrayTuple(5, 2, 50)
+		);
+		Assert.assertEquals(
+			results(
+				new HashGroupAggregator(
+					relation(tuples),
+					new int[] {2},
+					new MetaDataAggregationFunction[] {Aggregator.COUNT, Aggregator.SUM},
+					new int[] {3, 3},
+					new String[] {"CNT", "TOTAL"},
+					ArrayTuple.FACTORY_METHOD,
+					1,
+					Integer.MAX_VALUE,
+					1,
+					new AbstractFunction<Function<?, Integer>, Queue<Tuple>>() {
+						public Queue<Tuple> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+							return new ListQueue<Tuple>();
+						}
+					}
+				)
+			),
+			Arrays.asList("GRP=1 CNT=2 TOTAL=40.0", "GRP=2 CNT=2 TOTAL=70.0", "GRP=3 CNT=1 TOTAL=40.0")
+		);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void spilledGroups() throws Exception {
+		Random random = new Random(1);
+		List<Tuple> tuples = new ArrayList<Tuple>();
+		long[] sums = new long[1000];
+		for (int i = 0; i < 20000; i++) {
+			int group = random.nextInt(sums.length), value = random.nextInt(100);
+			sums[group] += value;
+			tuples.add(new ArrayTuple(i, group, value));
+		}
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < sums.length; i++)
+			if (sums[i] > 0)
+				expected.add("ID=" + i + " SUM=" + (double)sums[i]);
+		Collections.sort(expected);
+		// group by two columns (the second one is constant) with 50 groups in memory
+		List<String> results = new ArrayList<String>();
+		for (String result : results(
+			new HashGroupAggregator(
+				relation(tuples),
+				new int[] {2, 2},
+				new MetaDataAggregationFunction[] {Aggregator.SUM},
+				new int[] {3},
+				new String[] {"SUM"},
+				ArrayTuple.FACTORY_METHOD,
+				16,
+				16*50,
+				1,
+				new AbstractFunction<Function<?, Integer>, Queue<Tuple>>() {
+					public Queue<Tuple> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+						return new ListQueue<Tuple>();
+					}
+				}
+			)
+		)) {
+			String[] columns = result.split(" ");
+			results.add("ID=" + columns[0].substring(4) + " " + columns[2]);
+		}
+		Collections.sort(results);
+		Assert.assertEquals(results, expected);
+	}
+}
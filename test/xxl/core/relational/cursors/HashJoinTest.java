@@ -0,0 +1,115 @@
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.relational.metaData.ColumnMetaDataResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.metaData.StoredColumnMetaData;
+import xxl.core.relational.tuples.ArrayTuple;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.util.metaData.CompositeMetaData;
+
+/**
+ * Tests the relational {@link HashJoin} on two small relations
+ * <tt>R(ID, NAME)</tt> and <tt>S(ID, VALUE)</tt>.
+ */
+public class HashJoinTest {
+
+	private static StoredColumnMetaData column(String name, int type) {
+		return new StoredColumnMetaData(false, true, true, false, ResultSetMetaData.columnNullable, true, 10, name, name, "", 10, 0, "", "", type, true, false, false);
+	}
+
+	private static MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> relation(String column, Object[][] rows) {
+		CompositeMetaData<Object, Object> metaData = new CompositeMetaData<Object, Object>();
+		metaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, new ColumnMetaDataResultSetMetaData(column("ID", Types.INTEGER), column(column, Types.VARCHAR)));
+		List<Tuple> tuples = new ArrayList<Tuple>();
+		for (Object[] row : rows)
+			tuples.add(new ArrayTuple(row));
+		return Cursors.wrapToMetaDataCursor(tuples.iterator(), metaData);
+	}
+
+	private static MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> r() {
+		return relation("NAME", new Object[][] {{1, "a"}, {2, "b"}, {3, "c"}, {3, "d"}});
+	}
+
+	private static MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> s() {
+		return relation("VALUE", new Object[][] {{3, "x"}, {2, "y"}, {4, "z"}});
+	}
+
+	private static List<String> results(HashJoin join) throws Exception {
+		List<String> results = new ArrayList<String>();
+		join.open();
+		ResultSetMetaData metaData = ResultSetMetaDatas.getResultSetMetaData(join);
+		while (join.hasNext()) {
+			Tuple tuple = join.next();
+			StringBuilder result = new StringBuilder();
+			for (int i = 1; i <= metaData.getColumnCount(); i++)
+				result.append(i == 1 ? "" : " ").append(metaData.getColumnName(i)).append('=').append(tuple.getObject(i));
+			results.add(result.toString());
+		}
+		join.close();
+		Collections.sort(results);
+		return results;
+	}
+
+	@Test
+	public void naturalJoin() throws Exception {
+		Assert.assertEquals(
+			results(new HashJoin(r(), s(), ArrayTuple.FACTORY_METHOD, HashJoin.Type.NATURAL_JOIN)),
+			Arrays.asList("ID=2 NAME=b VALUE=y", "ID=3 NAME=c VALUE=x", "ID=3 NAME=d VALUE=x")
+		);
+	}
+
+	@Test
+	public void outerJoin() throws Exception {
+		Assert.assertEquals(
+			results(new HashJoin(r(), s(), ArrayTuple.FACTORY_METHOD, HashJoin.Type.OUTER_JOIN)),
+			Arrays.asList("ID=1 NAME=a VALUE=null", "ID=2 NAME=b VALUE=y", "ID=3 NAME=c VALUE=x", "ID=3 NAME=d VALUE=x", "ID=4 NAME=null VALUE=z")
+		);
+	}
+
+	@Test
+	public void semiAndAntiJoin() throws Exception {
+		Assert.assertEquals(
+			results(new HashJoin(r(), s(), ArrayTuple.FACTORY_METHOD, HashJoin.Type.SEMI_JOIN)),
+			Arrays.asList("ID=2 NAME=b", "ID=3 NAME=c", "ID=3 NAME=d")
+		);
+		Assert.assertEquals(
+			results(new HashJoin(r(), s(), ArrayTuple.FACTORY_METHOD, HashJoin.Type.ANTI_JOIN)),
+			Arrays.asList("ID=1 NAME=a")
+		);
+	}
+
+	@Test
+	public void equiJoinOnColumns() throws Exception {
+		Function<Function<?, Integer>, Queue<Tuple>> newQueue = new AbstractFunction<Function<?, Integer>, Queue<Tuple>>() {
+			@Override
+			public Queue<Tuple> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<Tuple>();
+			}
+		};
+		Assert.assertEquals(
+			results(new HashJoin(r(), s(), new int[] {1}, new int[] {1}, ArrayTuple.FACTORY_METHOD, HashJoin.Type.LEFT_OUTER_JOIN, 64, 128, 64, newQueue)),
+			Arrays.asList("ID=1 NAME=a ID=null VALUE=null", "ID=2 NAME=b ID=2 VALUE=y", "ID=3 NAME=c ID=3 VALUE=x", "ID=3 NAME=d ID=3 VALUE=x")
+		);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void thetaJoinRequiresColumns() {
+		new HashJoin(r(), s(), ArrayTuple.FACTORY_METHOD, HashJoin.Type.THETA_JOIN);
+	}
+}
@@ -0,0 +1,89 @@
+package xxl.core.relational.cursors;
+
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.cursors.Cursors;
+import xxl.core.cursors.MetaDataCursor;
+import xxl.core.relational.metaData.ColumnMetaDataResultSetMetaData;
+import xxl.core.relational.metaData.ResultSetMetaDatas;
+import xxl.core.relational.metaData.StoredColumnMetaData;
+import xxl.core.relational.tuples.ArrayTuple;
+import xxl.core.relational.tuples.Tuple;
+import xxl.core.relational.tuples.Tuples;
+import xxl.core.util.metaData.CompositeMetaData;
+
+/**
+ * Tests the metadata and the order of the relational {@link TopKSorter} on a
+ * relation <tt>R(ID, GRP, VALUE)</tt>.
+ */
+public class TopKSorterTest {
+
+	private static StoredColumnMetaData column(String name, int type) {
+		return new StoredColumnMetaData(false, true, true, false, ResultSetMetaData.columnNullable, true, 10, name, name, "", 10, 0, "", "", type, true, false, false);
+	}
+
+	private static final ResultSetMetaData META_DATA = new ColumnMetaDataResultSetMetaData(column("ID", Types.INTEGER), column("GRP", Types.INTEGER), column("VALUE", Types.INTEGER));
+
+	private static MetaDataCursor<Tuple, CompositeMetaData<Object, Object>> relation(List<Tuple> tuples) {
+		CompositeMetaData<Object, Object> metaData = new CompositeMetaData<Object, Object>();
+		metaData.add(ResultSetMetaDatas.RESULTSET_METADATA_TYPE, META_DATA);
+		return Cursors.wrapToMetaDataCursor(tuples.iterator(), metaData);
+	}
+
+	private static List<Tuple> relation(int number, long seed) {
+		Random random = new Random(seed);
+		List<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < number; i++)
+			tuples.add(new ArrayTuple(i, random.nextInt(10), random.nextInt(100)));
+		return tuples;
+	}
+
+	private static List<Tuple> results(TopKSorter sorter) {
+		List<Tuple> results = new ArrayList<Tuple>();
+		sorter.open();
+		while (sorter.hasNext())
+			results.add(sorter.next());
+		sorter.close();
+		return results;
+	}
+
+	private static void assertOrder(List<Tuple> results, List<Tuple> tuples, Comparator<? super Tuple> comparator, int k) {
+		List<Tuple> expected = new ArrayList<Tuple>(tuples);
+		Collections.sort(expected, comparator);
+		Assert.assertEquals(results.size(), Math.min(k, tuples.size()));
+		for (int i = 0; i < results.size(); i++)
+			Assert.assertEquals(comparator.compare(results.get(i), expected.get(i)), 0);
+	}
+
+	@Test
+	public void metaData() throws Exception {
+		TopKSorter sorter = new TopKSorter(relation(relation(10, 1)), new int[] {3}, new boolean[] {true}, 3);
+		ResultSetMetaData metaData = ResultSetMetaDatas.getResultSetMetaData(sorter);
+		Assert.assertSame(metaData, META_DATA);
+		Assert.assertEquals(metaData.getColumnCount(), 3);
+		Assert.assertEquals(metaData.getColumnName(3), "VALUE");
+		Assert.assertEquals(sorter.getMetaData().size(), 1);
+	}
+
+	@Test
+	public void order() {
+		List<Tuple> tuples = relation(1000, 2);
+		int[] onColumns = {2, 3, 1};
+		boolean[] ascending = {true, false, true};
+		Comparator<? super Tuple> comparator = Tuples.getTupleComparator(onColumns, ascending);
+		for (int k : new int[] {0, 1, 25, 1000, 1500}) {
+			assertOrder(results(new TopKSorter(relation(tuples), onColumns, ascending, k)), tuples, comparator, k);
+			// several passes: the heap holds 10 tuples
+			assertOrder(results(new TopKSorter(relation(tuples), comparator, k, 16, 160)), tuples, comparator, k);
+		}
+	}
+}
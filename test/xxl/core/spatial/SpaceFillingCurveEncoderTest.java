@@ -0,0 +1,115 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.spatial;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the Z-order and Hilbert values of a {@link SpaceFillingCurveEncoder} 
+ * on complete grids.
+ */
+public class SpaceFillingCurveEncoderTest {
+
+	/** Enumerates all cells of the grid, checks that the Hilbert values are a 
+	 * permutation of the cells and that cells with consecutive Hilbert values 
+	 * are neighbors.
+	 */
+	static void checkHilbertCurve (int dimensions, int bits) {
+		SpaceFillingCurveEncoder encoder = new SpaceFillingCurveEncoder(dimensions, bits);
+		int cells = 1 << (dimensions*bits);
+		int[][] cellOf = new int[cells][];
+		boolean[] zOrders = new boolean[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			int[] coordinates = new int[dimensions];
+			for (int i = 0, rest = cell; i < dimensions; i++, rest >>>= bits)
+				coordinates[i] = rest & ((1 << bits)-1);
+			long z = encoder.zOrder(coordinates);
+			Assert.assertTrue(z >= 0 && z < cells);
+			Assert.assertFalse(zOrders[(int)z], "duplicate Z-order value");
+			zOrders[(int)z] = true;
+			long hilbert = encoder.hilbert(coordinates);
+			Assert.assertTrue(hilbert >= 0 && hilbert < cells);
+			Assert.assertNull(cellOf[(int)hilbert], "duplicate Hilbert value");
+			cellOf[(int)hilbert] = coordinates;
+		}
+		Assert.assertEquals(encoder.hilbertFromZOrder(0), 0);
+		for (int h = 1; h < cells; h++) {
+			int distance = 0;
+			for (int i = 0; i < dimensions; i++)
+				distance += Math.abs(cellOf[h][i]-cellOf[h-1][i]);
+			Assert.assertEquals(distance, 1, "Hilbert values "+(h-1)+" and "+h+" are not neighbors");
+		}
+	}
+
+	@Test
+	public void hilbertCurveTables () {
+		checkHilbertCurve(2, 1);
+		checkHilbertCurve(2, 5);
+		checkHilbertCurve(3, 4);
+		checkHilbertCurve(4, 3);
+		checkHilbertCurve(6, 2);
+	}
+
+	@Test
+	public void hilbertCurveComputed () {
+		checkHilbertCurve(7, 2);
+		checkHilbertCurve(9, 2);
+		checkHilbertCurve(16, 1);
+	}
+	
+	@Test
+	public void zOrder () {
+		SpaceFillingCurveEncoder encoder = new SpaceFillingCurveEncoder(2, 31);
+		int[] coordinates = {Integer.MAX_VALUE, 0};
+		// the first dimension provides the most significant bit of every level
+		Assert.assertEquals(encoder.zOrder(coordinates), 0x2AAAAAAAAAAAAAAAL);
+		Random random = new Random(42);
+		for (int n = 0; n < 1000; n++) {
+			coordinates[0] = random.nextInt(1 << 30);
+			coordinates[1] = random.nextInt(1 << 30);
+			Assert.assertEquals(encoder.zOrder(coordinates), SpaceFillingCurves.computeZCode(coordinates, 31));
+		}
+	}
+	
+	@Test
+	public void universe () {
+		SpaceFillingCurveEncoder encoder = new SpaceFillingCurveEncoder(4, new double[] {-1, 10}, new double[] {1, 20});
+		Assert.assertEquals(encoder.hilbert(new double[] {-1, 10}), 0);
+		Assert.assertEquals(encoder.hilbert(new double[] {-5, 0}), 0);
+		// the curve ends in the corner of the last dimension
+		Assert.assertEquals(encoder.hilbert(new double[] {-1, 20}), 255);
+		Assert.assertEquals(encoder.hilbert(new double[] {-0.9, 19.9}), 255);
+		Assert.assertEquals(encoder.zOrder(new double[] {1, 20}), 255);
+	}
+	
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void tooManyBits () {
+		new SpaceFillingCurveEncoder(3, 22);
+	}
+}
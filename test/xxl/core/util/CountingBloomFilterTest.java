@@ -0,0 +1,116 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link CountingBloomFilter}.
+ */
+public class CountingBloomFilterTest {
+
+	private static byte[] bytes(int i) {
+		return new byte[] {(byte)(i>>>24), (byte)(i>>>16), (byte)(i>>>8), (byte)i};
+	}
+
+	@Test
+	public void noFalseNegatives() {
+		CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.add(bytes(2*i));
+		for (int i = 0; i < 10000; i++)
+			Assert.assertTrue(filter.mightContain(bytes(2*i)));
+	}
+
+	@Test
+	public void falsePositiveRate() {
+		CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+		Assert.assertEquals(filter.hashFunctions(), 7);
+		for (int i = 0; i < 10000; i++)
+			filter.add(bytes(2*i));
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++)
+			if (filter.mightContain(bytes(2*i+1)))
+				falsePositives++;
+		Assert.assertTrue(falsePositives < 2000, "false positives: "+falsePositives);
+	}
+
+	@Test
+	public void removeElements() {
+		CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+		for (int i = 0; i < 1000; i++)
+			filter.add(bytes(i));
+		for (int i = 0; i < 1000; i += 2)
+			filter.remove(bytes(i));
+		for (int i = 1; i < 1000; i += 2)
+			Assert.assertTrue(filter.mightContain(bytes(i)));
+		int remaining = 0;
+		for (int i = 0; i < 1000; i += 2)
+			if (filter.mightContain(bytes(i)))
+				remaining++;
+		Assert.assertTrue(remaining < 50, "removed elements still reported: "+remaining);
+		filter.clear();
+		for (int i = 0; i < 1000; i++)
+			Assert.assertFalse(filter.mightContain(bytes(i)));
+	}
+
+	@Test
+	public void saturatedCountersAreKept() {
+		CountingBloomFilter filter = new CountingBloomFilter(16, 2);
+		for (int i = 0; i < 20; i++)
+			filter.add(bytes(1));
+		for (int i = 0; i < 20; i++)
+			filter.remove(bytes(1));
+		Assert.assertTrue(filter.mightContain(bytes(1)));
+	}
+
+	@Test
+	public void readWrite() throws IOException {
+		CountingBloomFilter filter = new CountingBloomFilter(5000, 0.05);
+		for (int i = 0; i < 5000; i++)
+			filter.add(bytes(i*7));
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		filter.write(new DataOutputStream(output));
+		CountingBloomFilter read = new CountingBloomFilter();
+		read.read(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+		Assert.assertEquals(read.size(), filter.size());
+		Assert.assertEquals(read.hashFunctions(), filter.hashFunctions());
+		for (int i = 0; i < 50000; i++)
+			Assert.assertEquals(read.mightContain(bytes(i)), filter.mightContain(bytes(i)));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void illegalFalsePositiveRate() {
+		new CountingBloomFilter(100, 1.0);
+	}
+}
@@ -0,0 +1,91 @@
+/* XXL: The eXtensible and fleXible Library for data processing
+
+Copyright (C) 2000-2011 Prof. Dr. Bernhard Seeger
+                        Head of the Database Research Group
+                        Department of Mathematics and Computer Science
+                        University of Marburg
+                        Germany
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 3 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library;  If not, see <http://www.gnu.org/licenses/>. 
+
+    http://code.google.com/p/xxl/
+
+*/
+
+package xxl.core.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the sequential and the parallel {@link RadixSort} against
+ * {@link Arrays#sort(long[])}, including its stability.
+ */
+public class RadixSortTest {
+
+	static long[] randomKeys (Random random, int size) {
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = i%3 == 0 ? random.nextLong() : random.nextInt(1000);
+		return keys;
+	}
+
+	@Test
+	public void sortedPositions () {
+		Random random = new Random(42);
+		int[] sizes = {0, 1, 1000, 100000};
+		for (int size : sizes)
+			for (int threads = 1; threads <= 4; threads += 3) {
+				long[] keys = randomKeys(random, size);
+				long[] expected = keys.clone();
+				Arrays.sort(expected);
+				long[] original = keys.clone();
+				int[] positions = RadixSort.sortedPositions(keys, threads);
+				Assert.assertEquals(keys, expected);
+				for (int i = 0; i < size; i++) {
+					Assert.assertEquals(original[positions[i]], keys[i]);
+					// stable
+					if (i > 0 && keys[i-1] == keys[i])
+						Assert.assertTrue(positions[i-1] < positions[i]);
+				}
+			}
+	}
+
+	@Test
+	public void sortWithPayloads () {
+		Random random = new Random(43);
+		for (int threads = 1; threads <= 4; threads += 3) {
+			long[] keys = randomKeys(random, 50000);
+			int[] payloads = new int[keys.length];
+			for (int i = 0; i < payloads.length; i++)
+				payloads[i] = random.nextInt();
+			long[] originalKeys = keys.clone();
+			int[] originalPayloads = payloads.clone();
+			int[] positions = RadixSort.sortedPositions(keys.clone(), threads);
+			RadixSort.sort(keys, payloads, threads);
+			for (int i = 0; i < keys.length; i++) {
+				Assert.assertEquals(keys[i], originalKeys[positions[i]]);
+				Assert.assertEquals(payloads[i], originalPayloads[positions[i]]);
+			}
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void differentLengths () {
+		RadixSort.sort(new long[2], new int[1], 1);
+	}
+}
@@ -0,0 +1,241 @@
+package xxl.core.util.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.collections.queues.ListQueue;
+import xxl.core.collections.queues.Queue;
+import xxl.core.comparators.ComparableComparator;
+import xxl.core.cursors.groupers.HashAggregator;
+import xxl.core.cursors.joins.HashJoin;
+import xxl.core.cursors.sorters.TopKSorter;
+import xxl.core.functions.AbstractFunction;
+import xxl.core.functions.Function;
+import xxl.core.functions.Identity;
+import xxl.core.math.statistics.parametric.aggregates.Count;
+
+/**
+ * Tests the distribution strategies of the {@link MemoryManager} and the
+ * revocation of memory from running operators.
+ */
+public class MemoryManagerTest {
+
+	private static final Function<Object, Object[]> NEW_RESULT = new AbstractFunction<Object, Object[]>() {
+		public Object[] invoke(Object element0, Object element1) {
+			return new Object[] {element0, element1};
+		}
+	};
+
+	private static List<Integer> randomInput(int size, int keys, long seed) {
+		Random random = new Random(seed);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < size; i++)
+			input.add(random.nextInt(keys));
+		return input;
+	}
+
+	/**
+	 * Returns an iteration over the given list that sets the memory of the
+	 * memory manager to <code>memSizes[i]</code> after <code>after[i]</code>
+	 * elements have been delivered.
+	 */
+	private static Iterator<Integer> resizing(final List<Integer> input, final MemoryManager manager, final int[] after, final int[] memSizes) {
+		return new Iterator<Integer>() {
+			int position = 0;
+
+			public boolean hasNext() {
+				return position < input.size();
+			}
+
+			public Integer next() {
+				for (int i = 0; i < after.length; i++)
+					if (position == after[i])
+						manager.setMemSize(memSizes[i]);
+				return input.get(position++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static Function<Function<?, Integer>, Queue<Integer>> newListQueue() {
+		return new AbstractFunction<Function<?, Integer>, Queue<Integer>>() {
+			public Queue<Integer> invoke(Function<?, Integer> function1, Function<?, Integer> function2) {
+				return new ListQueue<Integer>();
+			}
+		};
+	}
+
+	private static Map<Object, Long> counts(HashAggregator<Integer, Long, Object[]> aggregator) {
+		Map<Object, Long> counts = new HashMap<Object, Long>();
+		aggregator.open();
+		while (aggregator.hasNext()) {
+			Object[] group = aggregator.next();
+			Assert.assertFalse(counts.containsKey(group[0]), "group returned twice: " + group[0]);
+			counts.put(group[0], ((Number)group[1]).longValue());
+		}
+		aggregator.close();
+		return counts;
+	}
+
+	private static Map<Object, Long> expectedCounts(List<Integer> input) {
+		Map<Object, Long> counts = new HashMap<Object, Long>();
+		for (Integer element : input)
+			counts.put(element, counts.containsKey(element) ? counts.get(element)+1 : 1L);
+		return counts;
+	}
+
+	private static TopKSorter<Integer> sorter(int preferredMemSize) {
+		return new TopKSorter<Integer>(new ArrayList<Integer>().iterator(), ComparableComparator.INTEGER_COMPARATOR, preferredMemSize, 1, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void strategies() {
+		TopKSorter<Integer> small = sorter(100), medium = sorter(1000), large = sorter(10000);
+		MemoryManager manager = new MemoryManager(3000, MemoryManager.FAIR);
+		manager.register(small);
+		manager.register(medium);
+		manager.register(large);
+		Assert.assertEquals(small.getAssignedMemSize(), 100);
+		Assert.assertEquals(medium.getAssignedMemSize(), 1000);
+		Assert.assertEquals(large.getAssignedMemSize(), 1900);
+		manager.setMemSize(1500);
+		Assert.assertEquals(small.getAssignedMemSize(), 100);
+		Assert.assertEquals(medium.getAssignedMemSize(), 700);
+		Assert.assertEquals(large.getAssignedMemSize(), 700);
+		Assert.assertTrue(manager.unregister(small));
+		Assert.assertFalse(manager.unregister(small));
+		Assert.assertEquals(medium.getAssignedMemSize(), 750);
+		Assert.assertEquals(large.getAssignedMemSize(), 750);
+
+		small = sorter(100);
+		medium = sorter(1000);
+		large = sorter(10000);
+		manager = new MemoryManager(11100, MemoryManager.PROPORTIONAL);
+		manager.register(small);
+		manager.register(medium);
+		manager.register(large);
+		Assert.assertEquals(large.getAssignedMemSize(), 10000);
+		manager.setMemSize(1110);
+		Assert.assertEquals(small.getAssignedMemSize(), 10);
+		Assert.assertEquals(medium.getAssignedMemSize(), 100);
+		Assert.assertEquals(large.getAssignedMemSize(), 1000);
+	}
+
+	@Test
+	public void revokeFromHashJoin() {
+		List<Integer> input0 = randomInput(20000, 5000, 1), input1 = randomInput(10000, 5000, 2);
+		Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+		for (Integer element : input1)
+			counts.put(element, counts.containsKey(element) ? counts.get(element)+1 : 1);
+		int expected = 0;
+		for (Integer element : input0)
+			if (counts.containsKey(element))
+				expected += counts.get(element);
+
+		MemoryManager manager = new MemoryManager(Integer.MAX_VALUE);
+		HashJoin<Integer, Object[]> join = new HashJoin<Integer, Object[]>(
+			input0.iterator(),
+			resizing(input1, manager, new int[] {5000}, new int[] {1000}),
+			Identity.DEFAULT_INSTANCE,
+			Identity.DEFAULT_INSTANCE,
+			NEW_RESULT,
+			HashJoin.Type.THETA_JOIN
+		);
+		manager.register(join);
+		int results = 0;
+		join.open();
+		while (join.hasNext()) {
+			Object[] result = join.next();
+			Assert.assertEquals(result[0], result[1]);
+			results++;
+		}
+		join.close();
+		Assert.assertEquals(results, expected);
+		Assert.assertEquals(join.getAssignedMemSize(), 1000);
+		Assert.assertTrue(join.getSpilledObjects() > 0);
+		Assert.assertTrue(join.getPeakMemUsage() >= 5000);
+		Assert.assertEquals(join.getCurrentMemUsage(), 0);
+		manager.unregister(join);
+		Assert.assertEquals(manager.getSpilledObjects(), join.getSpilledObjects());
+	}
+
+	@Test
+	public void revokeFromHashAggregator() {
+		List<Integer> input = randomInput(20000, 2000, 3);
+		MemoryManager manager = new MemoryManager(16*4000);
+		HashAggregator<Integer, Long, Object[]> aggregator = new HashAggregator<Integer, Long, Object[]>(
+			resizing(input, manager, new int[] {500}, new int[] {16*100}),
+			Identity.DEFAULT_INSTANCE,
+			new Count(),
+			NEW_RESULT,
+			16,
+			16*2000,
+			1,
+			HashAggregator.DEFAULT_FAN_OUT,
+			newListQueue()
+		);
+		manager.register(aggregator);
+		Assert.assertEquals(aggregator.getAssignedMemSize(), 16*2000);
+		Assert.assertEquals(counts(aggregator), expectedCounts(input));
+		Assert.assertEquals(aggregator.getAssignedMemSize(), 16*100);
+		Assert.assertTrue(aggregator.getSpilledObjects() > 0);
+		Assert.assertTrue(aggregator.getPeakMemUsage() <= 16*2000);
+		manager.unregister(aggregator);
+		Assert.assertEquals(manager.size(), 0);
+		Assert.assertEquals(manager.getSpilledObjects(), aggregator.getSpilledObjects());
+	}
+
+	@Test
+	public void resizeHashAggregator() {
+		// a key whose partition is spilled must not become resident when the
+		// memory is raised afterwards
+		MemoryManager manager = new MemoryManager(1);
+		List<Integer> input = Arrays.asList(1, 2, 2);
+		HashAggregator<Integer, Long, Object[]> aggregator = new HashAggregator<Integer, Long, Object[]>(
+			resizing(input, manager, new int[] {2}, new int[] {16}),
+			Identity.DEFAULT_INSTANCE,
+			new Count(),
+			NEW_RESULT,
+			1,
+			16,
+			1,
+			HashAggregator.DEFAULT_FAN_OUT,
+			newListQueue()
+		);
+		manager.register(aggregator);
+		Assert.assertEquals(aggregator.getAssignedMemSize(), 1);
+		Assert.assertEquals(counts(aggregator), expectedCounts(input));
+		Assert.assertEquals(aggregator.getAssignedMemSize(), 16);
+
+		input = randomInput(20000, 2000, 4);
+		for (int[] memSizes : new int[][] {{16*100, 16*3000, 16*50, 16*4000}, {16*4000, 16*50, 16*3000, 16*100}}) {
+			manager = new MemoryManager(memSizes[0]);
+			aggregator = new HashAggregator<Integer, Long, Object[]>(
+				resizing(input, manager, new int[] {2000, 8000, 14000}, new int[] {memSizes[1], memSizes[2], memSizes[3]}),
+				Identity.DEFAULT_INSTANCE,
+				new Count(),
+				NEW_RESULT,
+				16,
+				16*4000,
+				1,
+				HashAggregator.DEFAULT_FAN_OUT,
+				newListQueue()
+			);
+			manager.register(aggregator);
+			Assert.assertEquals(counts(aggregator), expectedCounts(input));
+			Assert.assertTrue(aggregator.getSpilledObjects() > 0);
+			Assert.assertEquals(aggregator.getAssignedMemSize(), memSizes[3]);
+		}
+	}
+}
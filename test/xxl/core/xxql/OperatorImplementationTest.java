@@ -0,0 +1,73 @@
+package xxl.core.xxql;
+
+import static xxl.core.xxql.columns.ColumnUtils.col;
+import static xxl.core.xxql.columns.ColumnUtils.colOBJCALL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import xxl.core.relational.tuples.Tuple;
+
+/**
+ * Checks that <code>orderBy(...).top(k)</code>, which uses a top-k sorter
+ * unless the sorted cursor has been iterated before, delivers the first
+ * <code>k</code> tuples of the ordering.
+ */
+public class OperatorImplementationTest {
+
+	private static List<String> words(int number, long seed) {
+		Random random = new Random(seed);
+		List<String> words = new ArrayList<String>();
+		for (int i = 0; i < number; i++) {
+			StringBuilder word = new StringBuilder();
+			for (int j = random.nextInt(6); j >= 0; j--)
+				word.append((char)('a' + random.nextInt(26)));
+			words.add(word.toString());
+		}
+		return words;
+	}
+
+	private static List<Object> values(AdvTupleCursor cursor) {
+		List<Object> values = new ArrayList<Object>();
+		while (cursor.hasNext())
+			values.add(((Tuple)cursor.next()).getObject(1));
+		return values;
+	}
+
+	@Test
+	public void orderByTop() {
+		List<String> words = words(1000, 42);
+		for (boolean asc : new boolean[] {true, false})
+			for (int k : new int[] {0, 1, 10, 999, 1000, 2000}) {
+				List<Object> ordered = values(new AdvTupleCursor(words, "w", null).orderBy(asc, col("w.value")));
+				List<Object> top = values(new AdvTupleCursor(words, "w", null).orderBy(asc, col("w.value")).top(k));
+				Assert.assertEquals(top, ordered.subList(0, Math.min(k, ordered.size())));
+			}
+	}
+
+	@Test
+	public void orderByTopWithTies() {
+		// many words share their length, the ordering keeps the input order of equal lengths
+		List<String> words = words(1000, 43);
+		for (int k : new int[] {1, 10, 150, 1000}) {
+			List<Object> ordered = values(new AdvTupleCursor(words, "w", null).orderBy(colOBJCALL(col("w.value"), "length")));
+			List<Object> top = values(new AdvTupleCursor(words, "w", null).orderBy(colOBJCALL(col("w.value"), "length")).top(k));
+			Assert.assertEquals(top, ordered.subList(0, k));
+		}
+	}
+
+	@Test
+	public void topOfIteratedOrdering() {
+		List<String> words = words(500, 44);
+		List<Object> ordered = values(new AdvTupleCursor(words, "w", null).orderBy(col("w.value")));
+		AdvTupleCursor sorted = new AdvTupleCursor(words, "w", null).orderBy(col("w.value"));
+		for (int i = 0; i < 5; i++)
+			Assert.assertEquals(((Tuple)sorted.next()).getObject(1), ordered.get(i));
+		// the sorted cursor is in use, top() limits the rest of the ordering as before
+		Assert.assertEquals(values(sorted.top(20)), ordered.subList(5, 25));
+	}
+}